@@ -0,0 +1,38 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Defines an interface which can be implemented by the users to reduce the
+ * values contributed by the vertices in a superstep into a single global
+ * value. The values are reduced by every Worker thread, then by every Worker
+ * and finally by the Master, which makes the result of a superstep available
+ * to all the vertices in the next superstep. The aggregation must therefore be
+ * commutative and associative.
+ * 
+ * @param <A>
+ *            the type of the aggregated value
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface Aggregator<A extends Serializable> extends Serializable {
+	/**
+	 * Creates the value of the aggregator when no vertex contributed to it.
+	 * 
+	 * @return Returns the initial value
+	 */
+	public A createInitialValue();
+
+	/**
+	 * Aggregates two values.
+	 * 
+	 * @param first
+	 *            Represents the value aggregated so far
+	 * @param second
+	 *            Represents the new value
+	 * @return Returns the value that replaces both the values
+	 */
+	public A aggregate(A first, A second);
+}
@@ -0,0 +1,34 @@
+package api;
+
+import java.io.Serializable;
+
+/**
+ * Represents the medium through which a {@link api.Vertex Vertex} contributes
+ * to the global values of the {@link api.Aggregator Aggregators} and reads
+ * their values reduced in the previous superstep.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface AggregatorContext {
+	/**
+	 * Contributes a value to an aggregator in the current superstep.
+	 * 
+	 * @param name
+	 *            Represents the name of the aggregator
+	 * @param value
+	 *            Represents the value contributed by the vertex
+	 */
+	public void aggregate(String name, Serializable value);
+
+	/**
+	 * Gets the value of an aggregator reduced in the previous superstep.
+	 * 
+	 * @param name
+	 *            Represents the name of the aggregator
+	 * @return Returns the aggregated value, or the initial value of the
+	 *         aggregator if no vertex contributed to it
+	 */
+	public Serializable getAggregatedValue(String name);
+}
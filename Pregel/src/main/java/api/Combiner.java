@@ -0,0 +1,28 @@
+package api;
+
+import java.io.Serializable;
+
+import system.Message;
+
+/**
+ * Defines an interface which can be overridden by the users to fold the
+ * messages sent to the same destination vertex into a single message. A
+ * combiner is applied by the Workers both while queuing outgoing messages and
+ * while receiving messages, so it must be commutative and associative.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface Combiner extends Serializable {
+	/**
+	 * Combines two messages sent to the same destination vertex.
+	 * 
+	 * @param first
+	 *            Represents the message already queued for the vertex
+	 * @param second
+	 *            Represents the new message for the vertex
+	 * @return Returns the message that replaces both the messages
+	 */
+	public Message combine(Message first, Message second);
+}
@@ -0,0 +1,43 @@
+package api;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Defines an interface which can be implemented by the users to write the
+ * {@link api.Data Data} of the messages sent between Workers in a compact
+ * form, instead of with Java serialization. A codec is registered for its data
+ * class with {@link api.DataCodecs#register(Class, DataCodec) DataCodecs}.
+ * 
+ * @param <D>
+ *            the type of the data
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface DataCodec<D extends Data<?>> {
+	/**
+	 * Writes the data.
+	 * 
+	 * @param out
+	 *            Represents the output
+	 * @param data
+	 *            Represents the data
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(DataOutput out, D data) throws IOException;
+
+	/**
+	 * Reads the data written by {@link #write(DataOutput, Data)}.
+	 * 
+	 * @param in
+	 *            Represents the input
+	 * @return Returns the data
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public D read(DataInput in) throws IOException;
+}
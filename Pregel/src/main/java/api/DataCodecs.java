@@ -0,0 +1,64 @@
+package api;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the registry of the {@link api.DataCodec DataCodecs}, by data
+ * class name. A data class usually registers its codec in a static
+ * initializer, so the codec is known as soon as the class is loaded, both by
+ * the Worker sending the data and by the Worker reading it.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class DataCodecs {
+
+	/** The codecs, by data class name. */
+	private static ConcurrentHashMap<String, DataCodec<?>> codecs = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers the codec of a data class.
+	 * 
+	 * @param dataClass
+	 *            Represents the data class
+	 * @param codec
+	 *            Represents the codec
+	 */
+	public static <D extends Data<?>> void register(Class<D> dataClass,
+			DataCodec<D> codec) {
+		codecs.put(dataClass.getName(), codec);
+	}
+
+	/**
+	 * Gets the codec of a data class.
+	 * 
+	 * @param dataClass
+	 *            Represents the data class
+	 * @return Returns the codec, or null if none is registered
+	 */
+	public static DataCodec<?> getCodec(Class<?> dataClass) {
+		return codecs.get(dataClass.getName());
+	}
+
+	/**
+	 * Gets the codec of a data class, loading the class so that it can
+	 * register its codec.
+	 * 
+	 * @param dataClassName
+	 *            Represents the data class name
+	 * @return Returns the codec, or null if none is registered
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	public static DataCodec<?> getCodec(String dataClassName)
+			throws ClassNotFoundException {
+		DataCodec<?> codec = codecs.get(dataClassName);
+		if (codec == null) {
+			Class.forName(dataClassName, true, DataCodecs.class
+					.getClassLoader());
+			codec = codecs.get(dataClassName);
+		}
+		return codec;
+	}
+}
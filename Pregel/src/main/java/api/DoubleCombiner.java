@@ -0,0 +1,23 @@
+package api;
+
+/**
+ * Defines an interface which can be implemented by a {@link api.Combiner
+ * Combiner} to fold double valued messages without boxing them.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface DoubleCombiner {
+	/**
+	 * Combines the values of two messages sent to the same destination
+	 * vertex.
+	 * 
+	 * @param first
+	 *            Represents the value already queued for the vertex
+	 * @param second
+	 *            Represents the new value for the vertex
+	 * @return Returns the value that replaces both the values
+	 */
+	public double combine(double first, double second);
+}
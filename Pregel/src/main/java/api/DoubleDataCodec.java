@@ -0,0 +1,49 @@
+package api;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Defines a {@link api.DataCodec DataCodec} for data holding a double value,
+ * which is written as its eight bytes.
+ * 
+ * @param <D>
+ *            the type of the data
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public abstract class DoubleDataCodec<D extends Data<Double>> implements
+		DataCodec<D> {
+
+	/**
+	 * Creates the data holding the value.
+	 * 
+	 * @param value
+	 *            Represents the value
+	 * @return Returns the data
+	 */
+	protected abstract D createData(double value);
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DataCodec#write(java.io.DataOutput, api.Data)
+	 */
+	@Override
+	public void write(DataOutput out, D data) throws IOException {
+		out.writeDouble(data.getValue());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DataCodec#read(java.io.DataInput)
+	 */
+	@Override
+	public D read(DataInput in) throws IOException {
+		return createData(in.readDouble());
+	}
+}
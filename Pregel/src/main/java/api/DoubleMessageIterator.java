@@ -0,0 +1,25 @@
+package api;
+
+/**
+ * Represents an iterator over the double valued messages sent to a vertex.
+ * Unlike {@link java.util.Iterator Iterator}, the values are not boxed.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface DoubleMessageIterator {
+	/**
+	 * Checks whether there are more messages.
+	 * 
+	 * @return true, if there are more messages
+	 */
+	public boolean hasNext();
+
+	/**
+	 * Gets the value of the next message.
+	 * 
+	 * @return Returns the value of the next message
+	 */
+	public double next();
+}
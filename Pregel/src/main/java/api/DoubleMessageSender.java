@@ -0,0 +1,21 @@
+package api;
+
+/**
+ * Represents the medium through which a {@link api.DoubleMessageVertex
+ * DoubleMessageVertex} sends double valued messages to other vertices.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface DoubleMessageSender {
+	/**
+	 * Sends a message to the destination vertex.
+	 * 
+	 * @param destinationVertexID
+	 *            Represents the unique vertex identifier of the destination
+	 * @param value
+	 *            Represents the value of the message
+	 */
+	public void sendMessage(long destinationVertexID, double value);
+}
@@ -0,0 +1,100 @@
+package api;
+
+import graphs.VertexID;
+
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import system.Edge;
+import system.Message;
+import utility.GeneralUtils;
+
+/**
+ * Represents a vertex whose messages are double values. The Workers keep the
+ * messages of such vertices in primitive arrays and call
+ * {@link #compute(DoubleMessageIterator, DoubleMessageSender)} instead of
+ * {@link #compute(Iterator)}.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public abstract class DoubleMessageVertex extends Vertex {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -6120915036185312047L;
+
+	/**
+	 * Constructs the vertex
+	 * 
+	 * @param vertexID
+	 *            Represents the pair object containing partitionID and
+	 *            vertexIdentifier
+	 * @param outgoingEdges
+	 *            Represents the list of outgoing edges from the source vertex
+	 */
+	protected DoubleMessageVertex(VertexID vertexID, List<Edge> outgoingEdges)
+			throws RemoteException {
+		super(vertexID, outgoingEdges);
+	}
+
+	/**
+	 * abstract compute method, When a vertex is active, it executes it compute
+	 * method by taking all input messages and sends message to all its outgoing
+	 * edges through the sender
+	 * 
+	 * @param messageIterator
+	 *            Represents the iterator of incoming message values
+	 * @param sender
+	 *            Represents the sender of the outgoing messages
+	 */
+	public abstract void compute(DoubleMessageIterator messageIterator,
+			DoubleMessageSender sender) throws RemoteException;
+
+	/**
+	 * Creates the Data wrapping the value of a message, used when the messages
+	 * of this vertex have to be handled as {@link system.Message Message}
+	 * 
+	 * @param value
+	 *            Represents the value of the message
+	 * @return Returns the data wrapping the value
+	 */
+	protected abstract Data<Double> createMessageData(double value);
+
+	/**
+	 * Bridges the generic compute method to the double valued one.
+	 * 
+	 * @param iterator
+	 *            , iterator of messages
+	 * @return Returns the map of outgoing messages from this vertex
+	 */
+	@Override
+	public Map<VertexID, Message> compute(final Iterator<Message> iterator)
+			throws RemoteException {
+		final Map<VertexID, Message> vertexMessageMap = new HashMap<>();
+		compute(new DoubleMessageIterator() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public double next() {
+				return ((Number) iterator.next().getData().getValue())
+						.doubleValue();
+			}
+		}, new DoubleMessageSender() {
+			@Override
+			public void sendMessage(long destinationVertexID, double value) {
+				vertexMessageMap.put(
+						new VertexID(GeneralUtils
+								.getPartitionID(destinationVertexID),
+								destinationVertexID), new Message(getID(),
+								createMessageData(value)));
+			}
+		});
+		return vertexMessageMap;
+	}
+}
@@ -0,0 +1,35 @@
+package api;
+
+/**
+ * Defines an {@link api.Aggregator Aggregator} which sums double values.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class DoubleSumAggregator implements Aggregator<Double> {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 4718297413592265436L;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Aggregator#createInitialValue()
+	 */
+	@Override
+	public Double createInitialValue() {
+		return 0.0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Aggregator#aggregate(java.io.Serializable,
+	 * java.io.Serializable)
+	 */
+	@Override
+	public Double aggregate(Double first, Double second) {
+		return first + second;
+	}
+}
@@ -8,8 +8,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import system.CompressedEdgeStore;
 import system.Edge;
 import system.Message;
+import system.PackedEdgeList;
 
 /**
  * Represents the pair object containing partitionID and vertexIdentifier
@@ -24,12 +26,23 @@ public abstract class Vertex implements Serializable {
 	private static final long serialVersionUID = 2036651815090314092L;
 	/** Represents the vertex identifier */
 	private VertexID vertexID;
-	/** Represents the list of outgoing edges for this vertex */
+	/**
+	 * Represents the list of outgoing edges for this vertex, until the edges
+	 * are moved to the edge store of its partition
+	 */
 	private List<Edge> outgoingEdges;
+	/** Represents the compressed edge store of the partition */
+	private CompressedEdgeStore edgeStore;
+	/** Represents the index of this vertex in the edge store */
+	private int edgeStoreIndex;
 	/** Represents the data of the vertex */
 	private Data<?> data;
 	/** Represents the current superstep */
 	private long superstep;
+	/** Represents whether the vertex voted to halt in the current superstep */
+	private boolean votedToHalt;
+	/** Represents the aggregators of the Worker thread computing the vertex */
+	private transient AggregatorContext aggregatorContext;
 
 	/**
 	 * Constructs the vertex
@@ -61,20 +74,88 @@ public abstract class Vertex implements Serializable {
 	 * @return Returns the list of outgoing edges for this source vertex
 	 */
 	public List<Edge> getOutgoingEdges() {
+		if (edgeStore != null) {
+			return edgeStore.getEdges(edgeStoreIndex, vertexID);
+		}
 		return outgoingEdges;
 	}
 
+	/**
+	 * Gets the number of outgoing edges for this source vertex
+	 * 
+	 * @return Returns the number of outgoing edges
+	 */
+	public int getNumOutgoingEdges() {
+		if (edgeStore != null) {
+			return edgeStore.getNumEdges(edgeStoreIndex);
+		}
+		return outgoingEdges.size();
+	}
+
+	/**
+	 * Gets the destination vertex identifier of an outgoing edge, without
+	 * creating the {@link system.Edge Edge}
+	 * 
+	 * @param index
+	 *            Represents the index of the outgoing edge
+	 * @return Returns the destination vertex identifier
+	 */
+	public long getOutgoingEdgeDestID(int index) {
+		if (edgeStore != null) {
+			return edgeStore.getDestinationID(edgeStoreIndex, index);
+		}
+		if (outgoingEdges instanceof PackedEdgeList) {
+			return ((PackedEdgeList) outgoingEdges).getDestinationID(index);
+		}
+		return outgoingEdges.get(index).getDestID().getVertexID();
+	}
+
+	/**
+	 * Gets the weight of an outgoing edge, without creating the
+	 * {@link system.Edge Edge}
+	 * 
+	 * @param index
+	 *            Represents the index of the outgoing edge
+	 * @return Returns the edge weight
+	 */
+	public double getOutgoingEdgeWeight(int index) {
+		if (edgeStore != null) {
+			return edgeStore.getWeight(edgeStoreIndex, index);
+		}
+		if (outgoingEdges instanceof PackedEdgeList) {
+			return ((PackedEdgeList) outgoingEdges).getWeight(index);
+		}
+		return outgoingEdges.get(index).getEdgeWeight();
+	}
+
+	/**
+	 * Moves the outgoing edges of this vertex to the compressed edge store of
+	 * its partition
+	 * 
+	 * @param edgeStore
+	 *            Represents the compressed edge store of the partition
+	 * @param index
+	 *            Represents the index of this vertex in the edge store
+	 */
+	public void setEdgeStore(CompressedEdgeStore edgeStore, int index) {
+		this.edgeStore = edgeStore;
+		this.edgeStoreIndex = index;
+		this.outgoingEdges = null;
+	}
+
 	/**
 	 * returns String representation of the Vertex
 	 */
 	public String toString() {
-		return "(" + vertexID + "{" + data + "}" + "-" + outgoingEdges + ")";
+		return "(" + vertexID + "{" + data + "}" + "-" + getOutgoingEdges()
+				+ ")";
 	}
 
 	/**
 	 * abstract compute method, When a vertex is active, it executes it compute
 	 * method by taking all input messages and sends message to all its outgoing
-	 * edges
+	 * edges. Every vertex is active in the first superstep, and remains active
+	 * until it calls {@link #voteToHalt()}
 	 * 
 	 * @param iterator
 	 *            , iterator of messages
@@ -83,6 +164,88 @@ public abstract class Vertex implements Serializable {
 	public abstract Map<VertexID, Message> compute(Iterator<Message> iterator)
 			throws RemoteException;
 
+	/**
+	 * Deactivates the vertex. A halted vertex is not computed in the following
+	 * supersteps until a message is sent to it, which reactivates it. The
+	 * computation ends when every vertex has halted and no messages are in
+	 * transit.
+	 */
+	public void voteToHalt() {
+		this.votedToHalt = true;
+	}
+
+	/**
+	 * Checks whether the vertex voted to halt in the current superstep
+	 * 
+	 * @return Returns true, if the vertex voted to halt
+	 */
+	public boolean hasVotedToHalt() {
+		return votedToHalt;
+	}
+
+	/**
+	 * Activates the vertex before it is computed, clearing its previous vote
+	 * to halt
+	 */
+	public void activate() {
+		this.votedToHalt = false;
+	}
+
+	/**
+	 * Gets the combiner used to fold the messages sent to the same vertex.
+	 * Override this method to supply an application specific combiner.
+	 * 
+	 * @return Returns the combiner, or null if messages must not be combined
+	 */
+	public Combiner getCombiner() {
+		return null;
+	}
+
+	/**
+	 * Gets the aggregators the vertices can contribute to, by name. Override
+	 * this method to supply application specific aggregators.
+	 * 
+	 * @return Returns the aggregators, or null if the application has none
+	 */
+	public Map<String, Aggregator<?>> getAggregators() {
+		return null;
+	}
+
+	/**
+	 * Contributes a value to an aggregator in the current superstep. The
+	 * aggregated value is available to every vertex in the next superstep.
+	 * 
+	 * @param name
+	 *            Represents the name of the aggregator
+	 * @param value
+	 *            Represents the value contributed by the vertex
+	 */
+	public void aggregate(String name, Serializable value) {
+		aggregatorContext.aggregate(name, value);
+	}
+
+	/**
+	 * Gets the value of an aggregator reduced in the previous superstep.
+	 * 
+	 * @param name
+	 *            Represents the name of the aggregator
+	 * @return Returns the aggregated value, or the initial value of the
+	 *         aggregator in the first superstep
+	 */
+	public Serializable getAggregatedValue(String name) {
+		return aggregatorContext.getAggregatedValue(name);
+	}
+
+	/**
+	 * Sets the aggregators of the Worker thread computing the vertex
+	 * 
+	 * @param aggregatorContext
+	 *            Represents the aggregators of the Worker thread
+	 */
+	public void setAggregatorContext(AggregatorContext aggregatorContext) {
+		this.aggregatorContext = aggregatorContext;
+	}
+
 	/**
 	 * gets Data associated with the vertex
 	 * 
@@ -0,0 +1,42 @@
+package applications;
+
+import system.Message;
+import api.Combiner;
+import api.DoubleCombiner;
+
+/**
+ * Defines the Combiner for the PageRank graph problem. The destination vertex
+ * only needs the sum of the ranks sent to it.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class PageRankCombiner implements Combiner, DoubleCombiner {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -1527370412004735166L;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Combiner#combine(system.Message, system.Message)
+	 */
+	@Override
+	public Message combine(Message first, Message second) {
+		PageRankData firstData = (PageRankData) first.getData();
+		PageRankData secondData = (PageRankData) second.getData();
+		return new Message(null, new PageRankData(firstData.getValue()
+				+ secondData.getValue()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DoubleCombiner#combine(double, double)
+	 */
+	@Override
+	public double combine(double first, double second) {
+		return first + second;
+	}
+}
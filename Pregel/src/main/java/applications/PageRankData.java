@@ -1,6 +1,8 @@
 package applications;
 
 import api.Data;
+import api.DataCodecs;
+import api.DoubleDataCodec;
 
 /**
  * Defines the implementation of Data that is specific to the PageRank graph problem.
@@ -14,6 +16,17 @@ public class PageRankData implements Data<Double>{
 	Double value;
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = -3455938165928334533L;
+
+	static {
+		DataCodecs.register(PageRankData.class,
+				new DoubleDataCodec<PageRankData>() {
+					@Override
+					protected PageRankData createData(double value) {
+						return new PageRankData(value);
+					}
+				});
+	}
+
 	/** Constructs the page rank data
 	 * @param value Represents the value of the Page rank data 
 	 */
@@ -4,13 +4,17 @@ import graphs.VertexID;
 
 import java.rmi.RemoteException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import system.Edge;
-import system.Message;
-import api.Vertex;
+import api.Aggregator;
+import api.Combiner;
+import api.Data;
+import api.DoubleSumAggregator;
+import api.DoubleMessageIterator;
+import api.DoubleMessageSender;
+import api.DoubleMessageVertex;
 
 /**
  * Defines the Vertex implementation for the PageRank graph problem.
@@ -20,10 +24,25 @@ import api.Vertex;
  * @author Vijayaraghavan Subbaiah
  */
 
-public class PageRankVertex extends Vertex {
+public class PageRankVertex extends DoubleMessageVertex {
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 3545610632519357452L;
 
+	/** The aggregator of the absolute rank changes of a superstep. */
+	public static final String DELTA_AGGREGATOR = "PageRank.delta";
+
+	/** The aggregator of the ranks of a superstep. */
+	public static final String RANK_AGGREGATOR = "PageRank.rank";
+
+	/**
+	 * The ranks have converged once the sum of the absolute rank changes of a
+	 * superstep is at most this fraction of the sum of the ranks.
+	 */
+	private static final double TOLERANCE = 0.01;
+
+	/** The number of supersteps after which the ranks are left as they are. */
+	private static final long MAX_SUPERSTEPS = 100;
+
 	/**
 	 * Instantiates a new PageRank vertex.
 	 * 
@@ -40,37 +59,87 @@ public class PageRankVertex extends Vertex {
 	}
 
 	/**
-	 * Represents the overrided compute method
+	 * Represents the overrided compute method. Every vertex computes until the
+	 * ranks aggregated in the previous superstep have converged, so all the
+	 * vertices halt in the same superstep.
 	 * 
 	 * @param messageIterator
-	 *            Represents the iterator for the incoming messages for this
+	 *            Represents the iterator for the incoming message values for
+	 *            this vertex
+	 * @param sender
+	 *            Represents the sender of the outgoing messages from this
 	 *            vertex
-	 * @return Returns the map of outgoing messages from this vertex
 	 */
 	@Override
-	public Map<VertexID, Message> compute(Iterator<Message> messageIterator) {
-		Map<VertexID, Message> vertexMessageMap = new HashMap<>();
-		int numOutgoingEdges = this.getOutgoingEdges().size();
-		PageRankData data = null;
-		if (this.getSuperstep() < 30) {
+	public void compute(DoubleMessageIterator messageIterator,
+			DoubleMessageSender sender) {
+		int numOutgoingEdges = this.getNumOutgoingEdges();
+		if (!hasConverged()) {
 			double sum = 0;
 			double updatedRank = 0;
 			while (messageIterator.hasNext()) {
-				Message message = messageIterator.next();
-				data = (PageRankData) message.getData();
-				sum += data.getValue();
+				sum += messageIterator.next();
 			}
-			updatedRank = (0.15 / numOutgoingEdges + 0.85 * sum);
-			((PageRankData) this.getData()).setValue(updatedRank);
-			for (Edge edge : this.getOutgoingEdges()) {
-				vertexMessageMap.put(edge.getDestID(),
-						new Message(this.getID(), new PageRankData(
-								((PageRankData) this.getData()).getValue()
-										/ numOutgoingEdges)));
+			updatedRank = (0.15 / Math.max(numOutgoingEdges, 1) + 0.85 * sum);
+			PageRankData data = (PageRankData) this.getData();
+			aggregate(DELTA_AGGREGATOR, Math.abs(updatedRank - data.getValue()));
+			aggregate(RANK_AGGREGATOR, updatedRank);
+			data.setValue(updatedRank);
+			for (int i = 0; i < numOutgoingEdges; i++) {
+				sender.sendMessage(this.getOutgoingEdgeDestID(i), updatedRank
+						/ numOutgoingEdges);
 			}
 		} else {
-			// votetohalt
+			voteToHalt();
+		}
+	}
+
+	/**
+	 * Checks whether the ranks computed in the previous superstep have
+	 * converged
+	 * 
+	 * @return Returns true, if the ranks have converged
+	 */
+	private boolean hasConverged() {
+		long superstep = this.getSuperstep();
+		if (superstep == 0) {
+			return false;
 		}
-		return vertexMessageMap;
+		double delta = (Double) getAggregatedValue(DELTA_AGGREGATOR);
+		double rank = (Double) getAggregatedValue(RANK_AGGREGATOR);
+		return delta <= TOLERANCE * rank || superstep >= MAX_SUPERSTEPS;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DoubleMessageVertex#createMessageData(double)
+	 */
+	@Override
+	protected Data<Double> createMessageData(double value) {
+		return new PageRankData(value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Vertex#getCombiner()
+	 */
+	@Override
+	public Combiner getCombiner() {
+		return new PageRankCombiner();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Vertex#getAggregators()
+	 */
+	@Override
+	public Map<String, Aggregator<?>> getAggregators() {
+		Map<String, Aggregator<?>> aggregators = new HashMap<>();
+		aggregators.put(DELTA_AGGREGATOR, new DoubleSumAggregator());
+		aggregators.put(RANK_AGGREGATOR, new DoubleSumAggregator());
+		return aggregators;
 	}
 }
@@ -9,6 +9,7 @@ import utility.Props;
 import api.Client2Master;
 import api.Data;
 import exceptions.PropertyNotFoundException;
+import graphs.BinaryGraphReader;
 import graphs.InputGenerator;
 
 /**
@@ -52,9 +53,12 @@ public class ShortestPathClient {
 		double minEdgeWeight = properties.getDoubleProperty("MIN_EDGE_WEIGHT");
 		double maxEdgeWeight = properties.getDoubleProperty("MAX_EDGE_WEIGHT");
 		String graphFile = properties.getStringProperty("INPUT_GRAPH");
-		InputGenerator inputGenerator = new InputGenerator(numVertices,
-				minEdgeWeight, maxEdgeWeight, graphFile);
-		inputGenerator.generateInput();
+		// A graph converted to the binary graph format is used as it is.
+		if (!BinaryGraphReader.isBinaryGraph(graphFile)) {
+			InputGenerator inputGenerator = new InputGenerator(numVertices,
+					minEdgeWeight, maxEdgeWeight, graphFile);
+			inputGenerator.generateInput();
+		}
 		String vertexClassName = null;
 		Data<Double> data = null;
 		vertexClassName = "applications.ShortestPathVertex";
@@ -0,0 +1,44 @@
+package applications;
+
+import system.Message;
+import api.Combiner;
+import api.DoubleCombiner;
+
+/**
+ * Defines the Combiner for the Shortest-Path graph problem. Only the message
+ * carrying the minimum distance matters to the destination vertex.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class ShortestPathCombiner implements Combiner, DoubleCombiner {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 6213870339245611529L;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Combiner#combine(system.Message, system.Message)
+	 */
+	@Override
+	public Message combine(Message first, Message second) {
+		ShortestPathData firstData = (ShortestPathData) first.getData();
+		ShortestPathData secondData = (ShortestPathData) second.getData();
+		if (firstData.compareTo(secondData) > 0) {
+			return second;
+		}
+		return first;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DoubleCombiner#combine(double, double)
+	 */
+	@Override
+	public double combine(double first, double second) {
+		return Math.min(first, second);
+	}
+}
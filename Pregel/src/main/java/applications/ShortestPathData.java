@@ -1,6 +1,8 @@
 package applications;
 
 import api.Data;
+import api.DataCodecs;
+import api.DoubleDataCodec;
 
 /**
  * Defines the implementation of Data that is specific to the Shortest-Path
@@ -16,6 +18,16 @@ public class ShortestPathData implements Data<Double> {
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = -3455938165928334533L;
 
+	static {
+		DataCodecs.register(ShortestPathData.class,
+				new DoubleDataCodec<ShortestPathData>() {
+					@Override
+					protected ShortestPathData createData(double value) {
+						return new ShortestPathData(value);
+					}
+				});
+	}
+
 	/**
 	 * Constructs the shortest path data
 	 * 
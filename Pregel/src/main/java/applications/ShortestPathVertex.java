@@ -3,14 +3,14 @@ package applications;
 import graphs.VertexID;
 
 import java.rmi.RemoteException;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import system.Edge;
-import system.Message;
-import api.Vertex;
+import api.Combiner;
+import api.Data;
+import api.DoubleMessageIterator;
+import api.DoubleMessageSender;
+import api.DoubleMessageVertex;
 
 /**
  * Defines the Vertex implementation for the Shortest-Path graph problem.
@@ -19,7 +19,7 @@ import api.Vertex;
  * @author Gautham Narayanasamy
  * @author Vijayaraghavan Subbaiah
  */
-public class ShortestPathVertex extends Vertex {
+public class ShortestPathVertex extends DoubleMessageVertex {
 
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = -4522743163505176658L;
@@ -42,36 +42,51 @@ public class ShortestPathVertex extends Vertex {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see api.Vertex#compute(java.util.Iterator)
+	 * @see api.DoubleMessageVertex#compute(api.DoubleMessageIterator,
+	 * api.DoubleMessageSender)
 	 */
-
 	@Override
-	public Map<VertexID, Message> compute(Iterator<Message> messageIterator)
-			throws RemoteException {
-		// System.out.println("ShortestPathVertex: compute");
-		Map<VertexID, Message> vertexMessageMap = new HashMap<>();
-		ShortestPathData minData = (ShortestPathData) this.getData();
+	public void compute(DoubleMessageIterator messageIterator,
+			DoubleMessageSender sender) throws RemoteException {
+		ShortestPathData data = (ShortestPathData) this.getData();
+		double minDistance = data.getValue();
 
 		while (messageIterator.hasNext()) {
-			Message message = messageIterator.next();
-			ShortestPathData currData = (ShortestPathData) message.getData();
-			if (minData.compareTo(currData) > 0) {
-				minData = currData;
+			minDistance = Math.min(minDistance, messageIterator.next());
+		}
+		// Only a shorter distance is propagated; the vertex is reactivated
+		// when a neighbour finds a shorter path to it.
+		if (minDistance < data.getValue()) {
+			// sets the current vertex data to minimum data computed
+			data.setValue(minDistance);
+			// Iterate the outgoing edges and send the resultant distance to
+			// each of the destination vertices.
+			int numOutgoingEdges = this.getNumOutgoingEdges();
+			for (int i = 0; i < numOutgoingEdges; i++) {
+				sender.sendMessage(this.getOutgoingEdgeDestID(i), minDistance
+						+ this.getOutgoingEdgeWeight(i));
 			}
 		}
-		// sets the current vertex data to minimum data computed
-		this.setData(minData);
-		// Iterate the outgoing edges and assign the resultant message to be
-		// sent to each of the destination vertices.
+		voteToHalt();
+	}
 
-		// create message to all outgoing edges
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.DoubleMessageVertex#createMessageData(double)
+	 */
+	@Override
+	protected Data<Double> createMessageData(double value) {
+		return new ShortestPathData(value);
+	}
 
-		for (Edge edge : this.getOutgoingEdges()) {
-			vertexMessageMap.put(
-					edge.getDestID(),
-					new Message(this.getID(), new ShortestPathData(minData
-							.getValue() + edge.getEdgeWeight())));
-		}
-		return vertexMessageMap;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see api.Vertex#getCombiner()
+	 */
+	@Override
+	public Combiner getCombiner() {
+		return new ShortestPathCombiner();
 	}
 }
@@ -0,0 +1,303 @@
+package graphs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import utility.VertexLineParser;
+import exceptions.InvalidVertexLineException;
+
+/**
+ * Converts an input graph from the text adjacency format written by
+ * {@link graphs.InputGenerator InputGenerator} to the binary graph format read
+ * by {@link graphs.BinaryGraphReader BinaryGraphReader}. The text file is
+ * parsed once and the binary file can be used as the input graph of any number
+ * of runs, as long as MAX_VERTICES_PER_PARTITION is not changed. <br>
+ * The vertex lines of the text file must be sorted by vertex identifier.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class BinaryGraphConverter {
+
+	/** The parser of the vertex lines. */
+	private VertexLineParser parser = new VertexLineParser();
+
+	/** The output stream of the partitions. */
+	private DataOutputStream out;
+
+	/** The number of bytes written so far. */
+	private long position;
+
+	/** The offset of every partition written so far. */
+	private long[] partitionOffsets = new long[16];
+
+	/** The length of every partition written so far. */
+	private long[] partitionLengths = new long[16];
+
+	/** The number of partitions written so far. */
+	private int numPartitions;
+
+	/** The number of vertices written so far. */
+	private long numVertices;
+
+	/** The number of edges written so far. */
+	private long numEdges;
+
+	/** The vertex identifiers of the current partition. */
+	private long[] vertexIDs = new long[1024];
+
+	/** The offset of the first edge of every vertex of the current partition. */
+	private int[] offsets = new int[1025];
+
+	/** The destination vertex identifiers of the current partition. */
+	private long[] destinationIDs = new long[4096];
+
+	/** The edge weights of the current partition. */
+	private double[] weights = new double[4096];
+
+	/** The number of vertices of the current partition. */
+	private int partitionNumVertices;
+
+	/** The number of edges of the current partition. */
+	private int partitionNumEdges;
+
+	/**
+	 * Converts the text input graph to the binary graph format.
+	 * 
+	 * @param textFileName
+	 *            Represents the text input graph file name
+	 * @param binaryFileName
+	 *            Represents the binary graph file name
+	 * @param maxVerticesPerPartition
+	 *            Represents the maximum number of vertices per partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public void convert(String textFileName, String binaryFileName,
+			long maxVerticesPerPartition) throws IOException,
+			InvalidVertexLineException {
+		try (BufferedInputStream in = new BufferedInputStream(
+				new FileInputStream(textFileName), 1 << 16);
+				RandomAccessFile file = new RandomAccessFile(binaryFileName,
+						"rw")) {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			channel.position(BinaryGraphReader.HEADER_SIZE);
+			out = new DataOutputStream(new BufferedOutputStream(
+					Channels.newOutputStream(channel), 1 << 16));
+			position = BinaryGraphReader.HEADER_SIZE;
+
+			// The number of partitions follows from the number of vertices in
+			// the first line, as in the GraphPartitioner.
+			StringBuilder header = new StringBuilder();
+			int b;
+			while ((b = in.read()) != -1 && b != '\n') {
+				header.append((char) b);
+			}
+			long declaredVertices = Long.parseLong(header.toString().trim());
+			int declaredPartitions = (int) ((declaredVertices
+					+ maxVerticesPerPartition - 1) / maxVerticesPerPartition);
+
+			long previousID = -1;
+			while (parser.scanNext(in)) {
+				long vertexID = parser.getSourceID();
+				if (vertexID <= previousID) {
+					throw new IOException("Vertex " + vertexID
+							+ " is not sorted by vertex identifier");
+				}
+				previousID = vertexID;
+				while (vertexID / maxVerticesPerPartition > numPartitions) {
+					writePartition();
+				}
+				addVertex(vertexID);
+			}
+			writePartition();
+			while (numPartitions < declaredPartitions) {
+				writePartition();
+			}
+
+			// Partition index
+			long indexOffset = position;
+			for (int i = 0; i < numPartitions; i++) {
+				out.writeLong(partitionOffsets[i]);
+				out.writeLong(partitionLengths[i]);
+			}
+			out.flush();
+
+			ByteBuffer headerBuffer = ByteBuffer
+					.allocate(BinaryGraphReader.HEADER_SIZE);
+			headerBuffer.putInt(BinaryGraphReader.MAGIC);
+			headerBuffer.putInt(BinaryGraphReader.VERSION);
+			headerBuffer.putLong(numVertices);
+			headerBuffer.putLong(numEdges);
+			headerBuffer.putLong(maxVerticesPerPartition);
+			headerBuffer.putInt(numPartitions);
+			headerBuffer.putLong(indexOffset);
+			headerBuffer.flip();
+			channel.write(headerBuffer, 0);
+		}
+		System.out.println("BinaryGraphConverter: " + numVertices
+				+ " vertices, " + numEdges + " edges, " + numPartitions
+				+ " partitions written to " + binaryFileName);
+	}
+
+	/**
+	 * Adds the vertex scanned last to the current partition.
+	 * 
+	 * @param vertexID
+	 *            Represents the vertex identifier
+	 */
+	private void addVertex(long vertexID) {
+		if (partitionNumVertices == vertexIDs.length) {
+			vertexIDs = Arrays.copyOf(vertexIDs, vertexIDs.length * 2);
+			offsets = Arrays.copyOf(offsets, vertexIDs.length + 1);
+		}
+		vertexIDs[partitionNumVertices] = vertexID;
+		offsets[partitionNumVertices] = partitionNumEdges;
+		partitionNumVertices++;
+		int vertexNumEdges = parser.getNumEdges();
+		if (partitionNumEdges + vertexNumEdges > destinationIDs.length) {
+			int capacity = Math.max(destinationIDs.length * 2,
+					partitionNumEdges + vertexNumEdges);
+			destinationIDs = Arrays.copyOf(destinationIDs, capacity);
+			weights = Arrays.copyOf(weights, capacity);
+		}
+		for (int i = 0; i < vertexNumEdges; i++) {
+			destinationIDs[partitionNumEdges] = parser.getDestinationID(i);
+			weights[partitionNumEdges] = parser.getWeight(i);
+			partitionNumEdges++;
+		}
+	}
+
+	/**
+	 * Writes the current partition and starts the next one.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writePartition() throws IOException {
+		offsets[partitionNumVertices] = partitionNumEdges;
+		boolean intIDs = fitInts(vertexIDs, partitionNumVertices)
+				&& fitInts(destinationIDs, partitionNumEdges);
+		boolean uniformWeight = true;
+		for (int i = 1; i < partitionNumEdges && uniformWeight; i++) {
+			uniformWeight = Double.doubleToLongBits(weights[i]) == Double
+					.doubleToLongBits(weights[0]);
+		}
+		int flags = (intIDs ? BinaryGraphReader.INT_IDS : 0)
+				| (uniformWeight ? BinaryGraphReader.UNIFORM_WEIGHT : 0);
+		int idSize = intIDs ? 4 : 8;
+		long length = 12L + (long) idSize
+				* (partitionNumVertices + partitionNumEdges) + 4L
+				* (partitionNumVertices + 1)
+				+ (uniformWeight ? 8L : 8L * partitionNumEdges);
+
+		out.writeInt(flags);
+		out.writeInt(partitionNumVertices);
+		out.writeInt(partitionNumEdges);
+		writeIDs(vertexIDs, partitionNumVertices, intIDs);
+		for (int i = 0; i <= partitionNumVertices; i++) {
+			out.writeInt(offsets[i]);
+		}
+		writeIDs(destinationIDs, partitionNumEdges, intIDs);
+		if (uniformWeight) {
+			out.writeDouble(partitionNumEdges > 0 ? weights[0] : 0);
+		} else {
+			for (int i = 0; i < partitionNumEdges; i++) {
+				out.writeDouble(weights[i]);
+			}
+		}
+
+		if (numPartitions == partitionOffsets.length) {
+			partitionOffsets = Arrays.copyOf(partitionOffsets,
+					numPartitions * 2);
+			partitionLengths = Arrays.copyOf(partitionLengths,
+					numPartitions * 2);
+		}
+		partitionOffsets[numPartitions] = position;
+		partitionLengths[numPartitions] = length;
+		numPartitions++;
+		position += length;
+		numVertices += partitionNumVertices;
+		numEdges += partitionNumEdges;
+		partitionNumVertices = 0;
+		partitionNumEdges = 0;
+	}
+
+	/**
+	 * Checks whether the vertex identifiers can be stored as ints.
+	 * 
+	 * @param ids
+	 *            Represents the vertex identifiers
+	 * @param length
+	 *            Represents the number of vertex identifiers
+	 * @return Returns true, if every identifier fits in an unsigned int
+	 */
+	private static boolean fitInts(long[] ids, int length) {
+		for (int i = 0; i < length; i++) {
+			if ((ids[i] >>> 32) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes vertex identifiers.
+	 * 
+	 * @param ids
+	 *            Represents the vertex identifiers
+	 * @param length
+	 *            Represents the number of vertex identifiers
+	 * @param intIDs
+	 *            Represents whether the identifiers are written as ints
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeIDs(long[] ids, int length, boolean intIDs)
+			throws IOException {
+		for (int i = 0; i < length; i++) {
+			if (intIDs) {
+				out.writeInt((int) ids[i]);
+			} else {
+				out.writeLong(ids[i]);
+			}
+		}
+	}
+
+	/**
+	 * Converts a text input graph to the binary graph format, using the
+	 * MAX_VERTICES_PER_PARTITION of the system properties.
+	 * 
+	 * @param args
+	 *            the text input graph file name and the binary graph file
+	 *            name
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out
+					.println("Usage: java graphs.BinaryGraphConverter <text graph file> <binary graph file>");
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		try {
+			new BinaryGraphConverter().convert(args[0], args[1],
+					GraphPartitioner.MAX_VERTICES_PER_PARTITION);
+		} catch (IOException | InvalidVertexLineException e) {
+			e.printStackTrace();
+		}
+		System.out.println("Time taken: "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+	}
+}
@@ -0,0 +1,329 @@
+package graphs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import system.CompressedEdgeStore;
+import system.Edge;
+import system.Partition;
+import utility.GeneralUtils;
+import utility.VertexFactory;
+import api.Vertex;
+
+/**
+ * Reads graphs stored in the binary graph format written by
+ * {@link graphs.BinaryGraphConverter BinaryGraphConverter}. <br>
+ * The file starts with a header holding the magic number, the format version,
+ * the number of vertices, the number of edges, the maximum number of vertices
+ * per partition the graph was partitioned with, the number of partitions and
+ * the offset of the partition index. Every partition is then stored in
+ * compressed sparse row form: its flags, the number of vertices and edges, the
+ * sorted vertex identifiers, the offset of the first edge of every vertex, the
+ * destination vertex identifiers and the edge weights. The identifiers are
+ * stored as ints if they all fit, and a single weight is stored if all the
+ * edges of the partition have the same weight. The partition index at
+ * the end of the file holds the offset and length of every partition. <br>
+ * Partitions are read by memory mapping their byte range, so a partition is
+ * sliced out of the file with bulk copies and without any parsing.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class BinaryGraphReader implements Closeable {
+
+	/** The magic number identifying the binary graph format, "PRGB". */
+	public static final int MAGIC = 0x50524742;
+
+	/** The version of the binary graph format. */
+	public static final int VERSION = 1;
+
+	/** The size of the header in bytes. */
+	public static final int HEADER_SIZE = 44;
+
+	/** The size of a partition index entry in bytes. */
+	public static final int INDEX_ENTRY_SIZE = 16;
+
+	/** The partition flag for vertex identifiers stored as ints. */
+	public static final int INT_IDS = 1;
+
+	/** The partition flag for a single weight shared by all the edges. */
+	public static final int UNIFORM_WEIGHT = 2;
+
+	/** The input graph file. */
+	private RandomAccessFile file;
+
+	/** The number of vertices. */
+	private long numVertices;
+
+	/** The number of edges. */
+	private long numEdges;
+
+	/** The maximum number of vertices per partition. */
+	private long maxVerticesPerPartition;
+
+	/** The number of partitions. */
+	private int numPartitions;
+
+	/** The offset of every partition. */
+	private long[] partitionOffsets;
+
+	/** The length of every partition. */
+	private long[] partitionLengths;
+
+	/**
+	 * Opens the binary graph file and reads its header and partition index.
+	 * 
+	 * @param fileName
+	 *            Represents the input graph file name
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public BinaryGraphReader(String fileName) throws IOException {
+		file = new RandomAccessFile(fileName, "r");
+		FileChannel channel = file.getChannel();
+		if (channel.size() < HEADER_SIZE) {
+			file.close();
+			throw new IOException(fileName + " is not a binary graph");
+		}
+		MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0,
+				HEADER_SIZE);
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			file.close();
+			throw new IOException(fileName
+					+ " is not a binary graph of version " + VERSION);
+		}
+		numVertices = header.getLong();
+		numEdges = header.getLong();
+		maxVerticesPerPartition = header.getLong();
+		numPartitions = header.getInt();
+		long indexOffset = header.getLong();
+
+		partitionOffsets = new long[numPartitions];
+		partitionLengths = new long[numPartitions];
+		MappedByteBuffer index = channel.map(MapMode.READ_ONLY, indexOffset,
+				(long) numPartitions * INDEX_ENTRY_SIZE);
+		for (int i = 0; i < numPartitions; i++) {
+			partitionOffsets[i] = index.getLong();
+			partitionLengths[i] = index.getLong();
+		}
+	}
+
+	/**
+	 * Checks whether the file is stored in the binary graph format.
+	 * 
+	 * @param fileName
+	 *            Represents the input graph file name
+	 * @return Returns true, if the file exists and starts with the magic number
+	 */
+	public static boolean isBinaryGraph(String fileName) {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			return file.length() >= HEADER_SIZE && file.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the number of vertices
+	 * 
+	 * @return Returns the number of vertices
+	 */
+	public long getNumVertices() {
+		return numVertices;
+	}
+
+	/**
+	 * Gets the number of edges
+	 * 
+	 * @return Returns the number of edges
+	 */
+	public long getNumEdges() {
+		return numEdges;
+	}
+
+	/**
+	 * Gets the maximum number of vertices per partition the graph was
+	 * partitioned with
+	 * 
+	 * @return Returns the maximum number of vertices per partition
+	 */
+	public long getMaxVerticesPerPartition() {
+		return maxVerticesPerPartition;
+	}
+
+	/**
+	 * Gets the number of partitions
+	 * 
+	 * @return Returns the number of partitions
+	 */
+	public int getNumPartitions() {
+		return numPartitions;
+	}
+
+	/**
+	 * Gets the byte range of every partition, so that the Workers can read
+	 * their partitions themselves.
+	 * 
+	 * @return Returns the input split of every partition
+	 */
+	public List<InputSplit> getInputSplits() {
+		List<InputSplit> inputSplits = new ArrayList<>(numPartitions);
+		for (int i = 0; i < numPartitions; i++) {
+			inputSplits.add(new InputSplit(i, partitionOffsets[i],
+					partitionOffsets[i] + partitionLengths[i]));
+		}
+		return inputSplits;
+	}
+
+	/**
+	 * Reads a partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition id
+	 * @param vertexFactory
+	 *            Represents the factory of the application specific vertex
+	 *            class
+	 * @return Returns the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Partition readPartition(int partitionID, VertexFactory vertexFactory)
+			throws IOException {
+		return readPartition(file.getChannel(), new InputSplit(partitionID,
+				partitionOffsets[partitionID], partitionOffsets[partitionID]
+						+ partitionLengths[partitionID]), vertexFactory);
+	}
+
+	/**
+	 * Reads only the sorted vertex identifiers of a partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition id
+	 * @return Returns the vertex identifiers
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public long[] readVertexIDs(int partitionID) throws IOException {
+		ByteBuffer buffer = file.getChannel().map(MapMode.READ_ONLY,
+				partitionOffsets[partitionID], partitionLengths[partitionID]);
+		int flags = buffer.getInt();
+		long[] vertexIDs = new long[buffer.getInt()];
+		buffer.getInt();
+		readIDs(buffer, vertexIDs, flags);
+		return vertexIDs;
+	}
+
+	/**
+	 * Reads the partition stored in the byte range of a binary graph file.
+	 * 
+	 * @param fileName
+	 *            Represents the input graph file name
+	 * @param inputSplit
+	 *            Represents the byte range of the partition
+	 * @param vertexFactory
+	 *            Represents the factory of the application specific vertex
+	 *            class
+	 * @return Returns the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static Partition readPartition(String fileName,
+			InputSplit inputSplit, VertexFactory vertexFactory)
+			throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			return readPartition(file.getChannel(), inputSplit, vertexFactory);
+		}
+	}
+
+	/**
+	 * Reads the partition stored in the byte range of a binary graph file.
+	 * 
+	 * @param channel
+	 *            Represents the channel of the input graph file
+	 * @param inputSplit
+	 *            Represents the byte range of the partition
+	 * @param vertexFactory
+	 *            Represents the factory of the application specific vertex
+	 *            class
+	 * @return Returns the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static Partition readPartition(FileChannel channel,
+			InputSplit inputSplit, VertexFactory vertexFactory)
+			throws IOException {
+		if (vertexFactory == null) {
+			throw new IOException("Vertex class cannot be instantiated");
+		}
+		ByteBuffer buffer = channel.map(MapMode.READ_ONLY,
+				inputSplit.getStart(), inputSplit.getLength());
+		int flags = buffer.getInt();
+		int numVertices = buffer.getInt();
+		int numEdges = buffer.getInt();
+		long[] vertexIDs = new long[numVertices];
+		int[] offsets = new int[numVertices + 1];
+		long[] destinationIDs = new long[numEdges];
+		double[] weights = new double[numEdges];
+
+		readIDs(buffer, vertexIDs, flags);
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + (numVertices + 1) * 4);
+		readIDs(buffer, destinationIDs, flags);
+		if ((flags & UNIFORM_WEIGHT) != 0) {
+			Arrays.fill(weights, buffer.getDouble());
+		} else {
+			buffer.asDoubleBuffer().get(weights);
+		}
+
+		List<Edge> noEdges = Collections.emptyList();
+		Vertex[] vertices = new Vertex[numVertices];
+		for (int i = 0; i < numVertices; i++) {
+			vertices[i] = vertexFactory.newVertex(
+					new VertexID(GeneralUtils.getPartitionID(vertexIDs[i]),
+							vertexIDs[i]), noEdges);
+		}
+		return new Partition(inputSplit.getPartitionID(), vertexIDs, vertices,
+				new CompressedEdgeStore(offsets, destinationIDs, weights));
+	}
+
+	/**
+	 * Reads vertex identifiers and advances the buffer past them.
+	 * 
+	 * @param buffer
+	 *            Represents the buffer positioned at the identifiers
+	 * @param ids
+	 *            Represents the array the identifiers are read into
+	 * @param flags
+	 *            Represents the flags of the partition
+	 */
+	private static void readIDs(ByteBuffer buffer, long[] ids, int flags) {
+		if ((flags & INT_IDS) != 0) {
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = buffer.getInt() & 0xFFFFFFFFL;
+			}
+		} else {
+			buffer.asLongBuffer().get(ids);
+			buffer.position(buffer.position() + ids.length * 8);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
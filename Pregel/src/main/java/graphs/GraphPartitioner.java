@@ -1,16 +1,19 @@
 package graphs;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.rmi.RemoteException;
+import java.io.RandomAccessFile;
 import java.util.*;
 
+import exceptions.InvalidVertexLineException;
 import exceptions.PropertyNotFoundException;
 
 import system.Partition;
-import utility.Props;
 import utility.GeneralUtils;
+import utility.Props;
+import utility.VertexFactory;
+import utility.VertexLineParser;
 import api.Vertex;
 
 /**
@@ -26,12 +29,32 @@ public class GraphPartitioner implements Iterable<Partition> {
 	private long numVertices;
 	/** Number of partitions */
 	private int numPartitions;
-	/** Buffered Reader to buffer file */
-	private BufferedReader br;
+	/** Buffered input stream to buffer file */
+	private BufferedInputStream br;
+	/** Parser of the vertex lines */
+	private VertexLineParser parser;
+	/** Reader of the input graph, if it is in the binary graph format */
+	private BinaryGraphReader binaryReader;
 	/** Vertex class name of the application */
 	private String vertexClassName;
+	/** The input graph file name */
+	private String fileName;
+	/** Strategy mapping the vertices to the partitions */
+	private PartitioningStrategy partitioningStrategy;
+	/**
+	 * Vertices of every partition not yet iterated over, if the partitions
+	 * are built by reading the whole graph
+	 */
+	private List<Map<VertexID, Vertex>> groupedVertices;
+	/** Vertex read past the end of the previous partition */
+	private Vertex nextVertex;
 	/** Maximum number of vertices per partition */
 	public static long MAX_VERTICES_PER_PARTITION;
+	/**
+	 * Partitioning strategy: RANGE, BALANCED_RANGE, HASH, LOCALITY or the class
+	 * name of a {@link graphs.PartitioningStrategy PartitioningStrategy}
+	 */
+	private static String PARTITIONING_STRATEGY;
 
 	static {
 		try {
@@ -40,6 +63,13 @@ public class GraphPartitioner implements Iterable<Partition> {
 		} catch (PropertyNotFoundException e) {
 			e.printStackTrace();
 		}
+		try {
+			PARTITIONING_STRATEGY = Props.getInstance().getStringProperty(
+					"PARTITIONING_STRATEGY");
+		} catch (PropertyNotFoundException e) {
+			/** set to default partitioning strategy **/
+			PARTITIONING_STRATEGY = "RANGE";
+		}
 	}
 
 	/**
@@ -59,8 +89,20 @@ public class GraphPartitioner implements Iterable<Partition> {
 	public GraphPartitioner(String fileName, String vertexClassName)
 			throws NumberFormatException, IOException {
 		this.vertexClassName = vertexClassName;
-		br = new BufferedReader(new FileReader(fileName));
-		numVertices = Long.parseLong(br.readLine());
+		this.fileName = fileName;
+		if (BinaryGraphReader.isBinaryGraph(fileName)) {
+			binaryReader = new BinaryGraphReader(fileName);
+			numVertices = binaryReader.getNumVertices();
+		} else {
+			br = new BufferedInputStream(new FileInputStream(fileName), 1 << 16);
+			StringBuilder header = new StringBuilder();
+			int b;
+			while ((b = br.read()) != -1 && b != '\n') {
+				header.append((char) b);
+			}
+			numVertices = Long.parseLong(header.toString().trim());
+			parser = new VertexLineParser(vertexClassName);
+		}
 		if (numVertices < MAX_VERTICES_PER_PARTITION)
 			numPartitions = 1;
 		else {
@@ -68,24 +110,240 @@ public class GraphPartitioner implements Iterable<Partition> {
 			if (numVertices % MAX_VERTICES_PER_PARTITION != 0)
 				numPartitions += 1;
 		}
+		partitioningStrategy = createPartitioningStrategy();
+		GeneralUtils.setPartitioningStrategy(partitioningStrategy);
+		System.out.println("GraphPartitioner: " + numPartitions
+				+ " partitions by " + partitioningStrategy);
+		if (isBinaryPartitioned()) {
+			numPartitions = binaryReader.getNumPartitions();
+		} else if (binaryReader != null) {
+			System.out.println("GraphPartitioner: The partitions stored in "
+					+ fileName + " are not those of " + partitioningStrategy
+					+ ", its vertices are regrouped");
+		}
+	}
+
+	/**
+	 * Creates the partitioning strategy configured by PARTITIONING_STRATEGY.
+	 * 
+	 * @return Returns the partitioning strategy
+	 * @throws IOException
+	 */
+	private PartitioningStrategy createPartitioningStrategy()
+			throws IOException {
+		switch (PARTITIONING_STRATEGY) {
+		case "RANGE":
+			return new RangePartitioningStrategy(MAX_VERTICES_PER_PARTITION);
+		case "BALANCED_RANGE":
+			long[] firstVertexIDs = findBalancedRanges();
+			numPartitions = firstVertexIDs.length + 1;
+			return new RangePartitioningStrategy(firstVertexIDs);
+		case "HASH":
+			return new HashPartitioningStrategy(numPartitions);
+		case "LOCALITY":
+			return partitionByLocality();
+		default:
+			try {
+				return (PartitioningStrategy) Class
+						.forName(PARTITIONING_STRATEGY)
+						.getConstructor(int.class).newInstance(numPartitions);
+			} catch (ReflectiveOperationException | ClassCastException e) {
+				throw new IOException("Partitioning strategy "
+						+ PARTITIONING_STRATEGY + " cannot be instantiated", e);
+			}
+		}
 	}
 
 	/**
-	 * Gets the list of vertices comprising a partition
+	 * Finds the ranges of vertex identifiers holding MAX_VERTICES_PER_PARTITION
+	 * vertices each, by reading the sorted vertex identifiers of the input
+	 * graph.
 	 * 
+	 * @return Returns the first vertex identifier of every range but the
+	 *         first one
+	 * @throws IOException
+	 */
+	private long[] findBalancedRanges() throws IOException {
+		List<Long> firstVertexIDs = new ArrayList<>();
+		long vertexCounter = 0;
+		if (binaryReader != null) {
+			for (int i = 0; i < binaryReader.getNumPartitions(); i++) {
+				for (long vertexID : binaryReader.readVertexIDs(i)) {
+					if (vertexCounter > 0
+							&& vertexCounter % MAX_VERTICES_PER_PARTITION == 0) {
+						firstVertexIDs.add(vertexID);
+					}
+					vertexCounter++;
+				}
+			}
+		} else {
+			try (BufferedInputStream in = new BufferedInputStream(
+					new FileInputStream(fileName), 1 << 16)) {
+				int b;
+				// Skip the line holding the number of vertices.
+				while ((b = in.read()) != -1 && b != '\n') {
+				}
+				b = in.read();
+				while (b != -1) {
+					long vertexID = 0;
+					boolean isVertexLine = false;
+					while (b >= '0' && b <= '9') {
+						vertexID = vertexID * 10 + (b - '0');
+						isVertexLine = true;
+						b = in.read();
+					}
+					if (isVertexLine) {
+						if (vertexCounter > 0
+								&& vertexCounter % MAX_VERTICES_PER_PARTITION == 0) {
+							firstVertexIDs.add(vertexID);
+						}
+						vertexCounter++;
+					}
+					while (b != -1 && b != '\n') {
+						b = in.read();
+					}
+					b = in.read();
+				}
+			}
+		}
+		long[] ranges = new long[firstVertexIDs.size()];
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] = firstVertexIDs.get(i);
+		}
+		return ranges;
+	}
+
+	/**
+	 * Partitions the input graph by the {@link graphs.LocalityPartitioner
+	 * LocalityPartitioner}, which reads the whole graph once.
+	 * 
+	 * @return Returns the locality partitioning strategy
+	 * @throws IOException
+	 */
+	private PartitioningStrategy partitionByLocality() throws IOException {
+		LocalityPartitioner partitioner = new LocalityPartitioner();
+		long[] destinationIDs = new long[16];
+		if (binaryReader != null) {
+			VertexFactory vertexFactory = VertexFactory
+					.getInstance(vertexClassName);
+			for (int i = 0; i < binaryReader.getNumPartitions(); i++) {
+				for (Vertex vertex : binaryReader.readPartition(i,
+						vertexFactory).getVertices()) {
+					destinationIDs = addLocalityVertex(partitioner, vertex,
+							destinationIDs);
+				}
+			}
+		} else {
+			try (BufferedInputStream in = new BufferedInputStream(
+					new FileInputStream(fileName), 1 << 16)) {
+				int b;
+				// Skip the line holding the number of vertices.
+				while ((b = in.read()) != -1 && b != '\n') {
+				}
+				VertexLineParser localityParser = new VertexLineParser(
+						vertexClassName);
+				Vertex vertex;
+				while ((vertex = localityParser.readVertex(in)) != null) {
+					destinationIDs = addLocalityVertex(partitioner, vertex,
+							destinationIDs);
+				}
+			} catch (InvalidVertexLineException e) {
+				throw new IOException(e);
+			}
+		}
+		return partitioner.partition(numPartitions);
+	}
+
+	/**
+	 * Adds the vertex and its outgoing edges to the locality partitioner.
+	 * 
+	 * @param partitioner
+	 *            Represents the locality partitioner
+	 * @param vertex
+	 *            Represents the vertex
+	 * @param destinationIDs
+	 *            Represents the buffer of the destination identifiers
+	 * @return Returns the buffer of the destination identifiers, which is
+	 *         grown if it is too small
+	 */
+	private static long[] addLocalityVertex(LocalityPartitioner partitioner,
+			Vertex vertex, long[] destinationIDs) {
+		int numEdges = vertex.getNumOutgoingEdges();
+		if (numEdges > destinationIDs.length) {
+			destinationIDs = new long[Math.max(numEdges,
+					destinationIDs.length * 2)];
+		}
+		for (int i = 0; i < numEdges; i++) {
+			destinationIDs[i] = vertex.getOutgoingEdgeDestID(i);
+		}
+		partitioner.addVertex(vertex.getID().getVertexID(), destinationIDs,
+				numEdges);
+		return destinationIDs;
+	}
+
+	/**
+	 * Checks if the partitions stored in the binary graph file are the
+	 * partitions of the partitioning strategy.
+	 * 
+	 * @return Returns true, if the input graph is a binary graph partitioned
+	 *         with the same fixed width ranges
+	 */
+	private boolean isBinaryPartitioned() {
+		return binaryReader != null
+				&& partitioningStrategy instanceof RangePartitioningStrategy
+				&& ((RangePartitioningStrategy) partitioningStrategy)
+						.getWidth() == binaryReader
+						.getMaxVerticesPerPartition();
+	}
+
+	/**
+	 * Checks if the Workers can load their partitions from byte ranges of the
+	 * input graph file, which needs the vertices of every partition to be
+	 * contiguous in it.
+	 * 
+	 * @return Returns true, if the partitions have input splits
+	 */
+	public boolean hasInputSplits() {
+		if (binaryReader != null) {
+			return isBinaryPartitioned();
+		}
+		return partitioningStrategy instanceof RangePartitioningStrategy;
+	}
+
+	/**
+	 * Gets the strategy mapping the vertices to the partitions
+	 * 
+	 * @return Returns the partitioning strategy
+	 */
+	public PartitioningStrategy getPartitioningStrategy() {
+		return partitioningStrategy;
+	}
+
+	/**
+	 * Gets the list of vertices comprising a partition, which are the next
+	 * vertex lines of the input graph as long as its ranges of vertex
+	 * identifiers are in increasing order
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
 	 * @return Returns list of vertices comprising a partition
 	 */
-	public Map<VertexID, Vertex> getNextVertices() {
+	public Map<VertexID, Vertex> getNextVertices(int partitionID) {
 		Map<VertexID, Vertex> vertexMap = new HashMap<>();
 		try {
-			String strLine;
-			long vertexCounter = 0;
-			Vertex vertex = null;
-			while ((vertexCounter < MAX_VERTICES_PER_PARTITION)
-					&& ((strLine = br.readLine()) != null)) {
-				vertexCounter += 1;
-				vertex = GeneralUtils.generateVertex(strLine, vertexClassName);
-				vertexMap.put(vertex.getID(), vertex);
+			if (nextVertex == null) {
+				nextVertex = parser.readVertex(br);
+			}
+			while (nextVertex != null
+					&& nextVertex.getID().getPartitionID() <= partitionID) {
+				if (nextVertex.getID().getPartitionID() < partitionID) {
+					System.out.println("GraphPartitioner: Vertex "
+							+ nextVertex.getID()
+							+ " is out of order and is skipped");
+				} else {
+					vertexMap.put(nextVertex.getID(), nextVertex);
+				}
+				nextVertex = parser.readVertex(br);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -93,6 +351,65 @@ public class GraphPartitioner implements Iterable<Partition> {
 		return vertexMap;
 	}
 
+	/**
+	 * Gets the list of vertices comprising a partition when its vertices are
+	 * not contiguous in the input graph. The whole graph is read and grouped
+	 * into the partitions the first time.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
+	 * @return Returns list of vertices comprising a partition
+	 * @throws IOException
+	 */
+	private Map<VertexID, Vertex> getGroupedVertices(int partitionID)
+			throws IOException {
+		if (groupedVertices == null) {
+			groupedVertices = new ArrayList<>(numPartitions);
+			for (int i = 0; i < numPartitions; i++) {
+				groupedVertices.add(new HashMap<VertexID, Vertex>());
+			}
+			if (binaryReader != null) {
+				VertexFactory vertexFactory = VertexFactory
+						.getInstance(vertexClassName);
+				for (int i = 0; i < binaryReader.getNumPartitions(); i++) {
+					for (Vertex vertex : binaryReader.readPartition(i,
+							vertexFactory).getVertices()) {
+						addGroupedVertex(vertex);
+					}
+				}
+			} else {
+				try {
+					Vertex vertex;
+					while ((vertex = parser.readVertex(br)) != null) {
+						addGroupedVertex(vertex);
+					}
+				} catch (InvalidVertexLineException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+		Map<VertexID, Vertex> vertexMap = groupedVertices.get(partitionID);
+		groupedVertices.set(partitionID, null);
+		return vertexMap;
+	}
+
+	/**
+	 * Adds the vertex to the vertices of its partition
+	 * 
+	 * @param vertex
+	 *            Represents the vertex
+	 * @throws IOException
+	 */
+	private void addGroupedVertex(Vertex vertex) throws IOException {
+		int partitionID = vertex.getID().getPartitionID();
+		if (partitionID < 0 || partitionID >= numPartitions) {
+			throw new IOException("Vertex " + vertex.getID()
+					+ " is mapped to partition " + partitionID + " of "
+					+ numPartitions + " by " + partitioningStrategy);
+		}
+		groupedVertices.get(partitionID).put(vertex.getID(), vertex);
+	}
+
 	/**
 	 * Iterator to iterate through the partitions of a graph
 	 */
@@ -108,11 +425,7 @@ public class GraphPartitioner implements Iterable<Partition> {
 				if (partitionCounter < numPartitions)
 					return true;
 				else {
-					try {
-						br.close();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
+					close();
 					return false;
 				}
 			}
@@ -122,9 +435,18 @@ public class GraphPartitioner implements Iterable<Partition> {
 			public Partition next() {
 				Partition nextPartition = null;
 				try {
-					nextPartition = new Partition(partitionCounter,
-							getNextVertices());
-				} catch (RemoteException e) {
+					if (isBinaryPartitioned()) {
+						nextPartition = binaryReader.readPartition(
+								partitionCounter,
+								VertexFactory.getInstance(vertexClassName));
+					} else if (hasInputSplits()) {
+						nextPartition = new Partition(partitionCounter,
+								getNextVertices(partitionCounter));
+					} else {
+						nextPartition = new Partition(partitionCounter,
+								getGroupedVertices(partitionCounter));
+					}
+				} catch (IOException e) {
 					// TODO Auto-generated catch block
 					e.printStackTrace();
 				}
@@ -139,6 +461,141 @@ public class GraphPartitioner implements Iterable<Partition> {
 		return iter;
 	}
 
+	/**
+	 * Gets the byte ranges of the input file holding the vertex lines of every
+	 * partition, so that the Workers can parse their partitions themselves.
+	 * As the vertex lines are sorted by vertex identifier, the start of each
+	 * range partition is found by a binary search over the file instead of
+	 * reading it. A binary graph file holds the byte ranges in its partition
+	 * index.
+	 * 
+	 * @return Returns the input split of every partition, or null if the
+	 *         partitions have none
+	 * @see #hasInputSplits()
+	 * @throws IOException
+	 */
+	public List<InputSplit> getInputSplits() throws IOException {
+		if (!hasInputSplits()) {
+			return null;
+		}
+		if (binaryReader != null) {
+			return binaryReader.getInputSplits();
+		}
+		RangePartitioningStrategy ranges = (RangePartitioningStrategy) partitioningStrategy;
+		List<InputSplit> inputSplits = new ArrayList<>();
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			// Skip the line holding the number of vertices.
+			file.readLine();
+			long start = file.getFilePointer();
+			long fileLength = file.length();
+			for (int partitionID = 0; partitionID < numPartitions; partitionID++) {
+				long end = fileLength;
+				if (partitionID + 1 < numPartitions) {
+					end = findFirstLine(file, start, fileLength,
+							ranges.getFirstVertexID(partitionID + 1));
+				}
+				inputSplits.add(new InputSplit(partitionID, start, end));
+				start = end;
+			}
+		}
+		return inputSplits;
+	}
+
+	/**
+	 * Finds the offset of the first vertex line in the range whose vertex
+	 * identifier is not smaller than the given one.
+	 * 
+	 * @param file
+	 *            Represents the input graph file
+	 * @param low
+	 *            Represents the offset of a vertex line starting the range
+	 * @param high
+	 *            Represents the offset after the range
+	 * @param vertexID
+	 *            Represents the vertex identifier to search for
+	 * @return Returns the offset of the vertex line, or high if there is none
+	 * @throws IOException
+	 */
+	private static long findFirstLine(RandomAccessFile file, long low,
+			long high, long vertexID) throws IOException {
+		// Every line starting before lo has a smaller vertex identifier; the
+		// line searched for starts in [lo, hi) or is the first line at hi.
+		long lo = low;
+		long hi = high;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			long lineStart = nextLineStart(file, mid, low, high);
+			if (lineStart < high && readVertexID(file, lineStart) < vertexID) {
+				lo = lineStart + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return nextLineStart(file, lo, low, high);
+	}
+
+	/**
+	 * Finds the offset of the first line starting at or after the position.
+	 * 
+	 * @param file
+	 *            Represents the input graph file
+	 * @param position
+	 *            Represents the position
+	 * @param low
+	 *            Represents the offset of a known line start
+	 * @param high
+	 *            Represents the offset after the range being searched
+	 * @return Returns the offset of the line, or high if there is none
+	 * @throws IOException
+	 */
+	private static long nextLineStart(RandomAccessFile file, long position,
+			long low, long high) throws IOException {
+		if (position <= low) {
+			return low;
+		}
+		file.seek(position - 1);
+		int b;
+		while ((b = file.read()) != -1 && b != '\n') {
+		}
+		return Math.min(file.getFilePointer(), high);
+	}
+
+	/**
+	 * Reads the source vertex identifier of the vertex line.
+	 * 
+	 * @param file
+	 *            Represents the input graph file
+	 * @param lineStart
+	 *            Represents the offset of the vertex line
+	 * @return Returns the source vertex identifier
+	 * @throws IOException
+	 */
+	private static long readVertexID(RandomAccessFile file, long lineStart)
+			throws IOException {
+		file.seek(lineStart);
+		long vertexID = 0;
+		int b;
+		while ((b = file.read()) >= '0' && b <= '9') {
+			vertexID = vertexID * 10 + (b - '0');
+		}
+		return vertexID;
+	}
+
+	/**
+	 * Closes the input graph file.
+	 */
+	public void close() {
+		try {
+			if (binaryReader != null) {
+				binaryReader.close();
+			} else {
+				br.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Gets the number of partitions
 	 * 
@@ -0,0 +1,56 @@
+package graphs;
+
+/**
+ * Spreads the vertices over the partitions by a hash of their identifiers,
+ * so that the partitions have about as many vertices however the
+ * identifiers are clustered. The vertices of a partition are not contiguous
+ * in the input graph, so the Master builds the partitions.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class HashPartitioningStrategy implements PartitioningStrategy {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -3526817092745130811L;
+
+	/** The number of partitions. */
+	private int numPartitions;
+
+	/**
+	 * Constructs the hash partitioning strategy
+	 * 
+	 * @param numPartitions
+	 *            Represents the number of partitions
+	 */
+	public HashPartitioningStrategy(int numPartitions) {
+		this.numPartitions = Math.max(1, numPartitions);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see graphs.PartitioningStrategy#getPartitionID(long)
+	 */
+	@Override
+	public int getPartitionID(long vertexID) {
+		// Every bit of the hash depends on every bit of the identifier, so
+		// identifiers a fixed distance apart land in unrelated partitions.
+		long hash = vertexID;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return (int) ((hash >>> 1) % numPartitions);
+	}
+
+	/**
+	 * Overrides the java Object's toString() method
+	 */
+	@Override
+	public String toString() {
+		return "HASH(" + numPartitions + ")";
+	}
+}
@@ -0,0 +1,82 @@
+package graphs;
+
+import java.io.Serializable;
+
+/**
+ * Represents the byte range of the input graph file holding the vertex lines
+ * of a partition.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class InputSplit implements Serializable {
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 2457810950862313337L;
+	/** Partition identifier */
+	private int partitionID;
+	/** Offset of the first byte of the split */
+	private long start;
+	/** Offset after the last byte of the split */
+	private long end;
+
+	/**
+	 * Constructs the input split
+	 * 
+	 * @param partitionID
+	 *            Represents the partition whose vertices the split holds
+	 * @param start
+	 *            Represents the offset of the first byte of the split
+	 * @param end
+	 *            Represents the offset after the last byte of the split
+	 */
+	public InputSplit(int partitionID, long start, long end) {
+		this.partitionID = partitionID;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Gets the partition identifier
+	 * 
+	 * @return Returns the partition identifier
+	 */
+	public int getPartitionID() {
+		return partitionID;
+	}
+
+	/**
+	 * Gets the offset of the first byte of the split
+	 * 
+	 * @return Returns the offset of the first byte of the split
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the offset after the last byte of the split
+	 * 
+	 * @return Returns the offset after the last byte of the split
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Gets the length of the split in bytes
+	 * 
+	 * @return Returns the length of the split in bytes
+	 */
+	public long getLength() {
+		return end - start;
+	}
+
+	/**
+	 * Overrides the java Object's toString() method
+	 */
+	@Override
+	public String toString() {
+		return "(" + partitionID + ", " + start + "-" + end + ")";
+	}
+}
@@ -0,0 +1,309 @@
+package graphs;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Partitions the graph so that neighbouring vertices end up in the same
+ * partition, which turns their messages into local ones. <br>
+ * The vertices are added as they are read from the input graph. They are then
+ * placed one after the other by the linear deterministic greedy heuristic:
+ * every vertex goes to the partition holding most of its neighbours placed so
+ * far, weighted by how much room the partition has left. A few passes of label
+ * propagation then move every vertex to the partition holding most of its
+ * neighbours, as long as the partitions stay balanced. The edges are taken as
+ * undirected, since a message can cross an edge either way in the supersteps.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class LocalityPartitioner {
+
+	/** The number of label propagation passes after the greedy placement */
+	private static final int REFINEMENT_PASSES = 3;
+
+	/**
+	 * The fraction of vertices a partition may have over the average during
+	 * the label propagation
+	 */
+	private static final double MAX_IMBALANCE = 0.05;
+
+	/** The number of vertices added */
+	private int numVertices;
+
+	/** The identifiers of the vertices, in the order they were added */
+	private long[] vertexIDs = new long[1024];
+
+	/** The offset of the first outgoing edge of every vertex */
+	private int[] edgeOffsets = new int[1025];
+
+	/** The number of outgoing edges added */
+	private int numEdges;
+
+	/** The destination identifiers of the outgoing edges */
+	private long[] destinationIDs = new long[4096];
+
+	/**
+	 * Adds a vertex with its outgoing edges. The vertices are placed in the
+	 * order they are added.
+	 * 
+	 * @param vertexID
+	 *            Represents the vertex identifier
+	 * @param vertexDestinationIDs
+	 *            Represents the destination identifiers of its outgoing edges
+	 * @param vertexNumEdges
+	 *            Represents the number of outgoing edges
+	 */
+	public void addVertex(long vertexID, long[] vertexDestinationIDs,
+			int vertexNumEdges) {
+		if (numVertices == vertexIDs.length) {
+			vertexIDs = Arrays.copyOf(vertexIDs, numVertices * 2);
+			edgeOffsets = Arrays.copyOf(edgeOffsets, numVertices * 2 + 1);
+		}
+		if (numEdges + vertexNumEdges > destinationIDs.length) {
+			destinationIDs = Arrays.copyOf(destinationIDs, Math.max(
+					destinationIDs.length * 2, numEdges + vertexNumEdges));
+		}
+		vertexIDs[numVertices] = vertexID;
+		System.arraycopy(vertexDestinationIDs, 0, destinationIDs, numEdges,
+				vertexNumEdges);
+		numEdges += vertexNumEdges;
+		numVertices++;
+		edgeOffsets[numVertices] = numEdges;
+	}
+
+	/**
+	 * Partitions the vertices added.
+	 * 
+	 * @param numPartitions
+	 *            Represents the number of partitions
+	 * @return Returns the partitioning strategy mapping the vertices to their
+	 *         partitions
+	 */
+	public LocalityPartitioningStrategy partition(int numPartitions) {
+		numPartitions = Math.max(1, numPartitions);
+		int[][] neighbours = getNeighbours();
+		int capacity = (numVertices + numPartitions - 1) / numPartitions;
+		int[] partitionIDs = new int[numVertices];
+		int[] sizes = new int[numPartitions];
+		int[] counts = new int[numPartitions];
+		Arrays.fill(partitionIDs, -1);
+
+		// Linear deterministic greedy placement.
+		for (int v = 0; v < numVertices; v++) {
+			for (int w : neighbours[v]) {
+				if (partitionIDs[w] >= 0) {
+					counts[partitionIDs[w]]++;
+				}
+			}
+			int best = -1;
+			double bestScore = -1;
+			for (int p = 0; p < numPartitions; p++) {
+				if (sizes[p] >= capacity) {
+					continue;
+				}
+				double score = counts[p] * (1 - (double) sizes[p] / capacity);
+				if (score > bestScore
+						|| (score == bestScore && sizes[p] < sizes[best])) {
+					best = p;
+					bestScore = score;
+				}
+			}
+			partitionIDs[v] = best;
+			sizes[best]++;
+			for (int w : neighbours[v]) {
+				if (partitionIDs[w] >= 0) {
+					counts[partitionIDs[w]] = 0;
+				}
+			}
+		}
+		long greedyCut = getEdgeCut(neighbours, partitionIDs);
+
+		// Label propagation refinement.
+		int maxSize = (int) Math.ceil(capacity * (1 + MAX_IMBALANCE));
+		for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+			int moved = 0;
+			for (int v = 0; v < numVertices; v++) {
+				int current = partitionIDs[v];
+				for (int w : neighbours[v]) {
+					counts[partitionIDs[w]]++;
+				}
+				int best = current;
+				for (int w : neighbours[v]) {
+					int p = partitionIDs[w];
+					if (counts[p] > counts[best] && sizes[p] < maxSize) {
+						best = p;
+					}
+				}
+				for (int w : neighbours[v]) {
+					counts[partitionIDs[w]] = 0;
+				}
+				if (best != current) {
+					partitionIDs[v] = best;
+					sizes[current]--;
+					sizes[best]++;
+					moved++;
+				}
+			}
+			if (moved == 0) {
+				break;
+			}
+		}
+		long refinedCut = getEdgeCut(neighbours, partitionIDs);
+
+		// The partitions of the vertices taken in the order they were added,
+		// as range partitions would be.
+		int[] rangePartitionIDs = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			rangePartitionIDs[v] = v / capacity;
+		}
+		long rangeCut = getEdgeCut(neighbours, rangePartitionIDs);
+		long undirectedEdges = getNumEdges(neighbours);
+		System.out.println("LocalityPartitioner: Edge cut of "
+				+ undirectedEdges + " edges: " + formatRatio(rangeCut,
+						undirectedEdges) + " by ranges, "
+				+ formatRatio(greedyCut, undirectedEdges) + " greedy, "
+				+ formatRatio(refinedCut, undirectedEdges) + " refined");
+
+		// The identifiers have to be sorted to be looked up.
+		long[] sortedIDs = Arrays.copyOf(vertexIDs, numVertices);
+		int[] sortedPartitionIDs = partitionIDs;
+		if (!isSorted(sortedIDs)) {
+			Integer[] order = new Integer[numVertices];
+			for (int v = 0; v < numVertices; v++) {
+				order[v] = v;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer first, Integer second) {
+					return Long.compare(vertexIDs[first], vertexIDs[second]);
+				}
+			});
+			sortedPartitionIDs = new int[numVertices];
+			for (int i = 0; i < numVertices; i++) {
+				sortedIDs[i] = vertexIDs[order[i]];
+				sortedPartitionIDs[i] = partitionIDs[order[i]];
+			}
+		}
+		return new LocalityPartitioningStrategy(sortedIDs, sortedPartitionIDs,
+				numPartitions);
+	}
+
+	/**
+	 * Gets the undirected neighbours of every vertex, by the order the vertices
+	 * were added in. The edges to vertices that were not added and the edges
+	 * of a vertex to itself are left out.
+	 * 
+	 * @return Returns the neighbours of every vertex
+	 */
+	private int[][] getNeighbours() {
+		long[] sortedIDs = Arrays.copyOf(vertexIDs, numVertices);
+		int[] order = null;
+		if (!isSorted(sortedIDs)) {
+			Arrays.sort(sortedIDs);
+			order = new int[numVertices];
+			for (int v = 0; v < numVertices; v++) {
+				order[Arrays.binarySearch(sortedIDs, vertexIDs[v])] = v;
+			}
+		}
+		int[] destinations = new int[numEdges];
+		int[] degrees = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; e++) {
+				int w = Arrays.binarySearch(sortedIDs, destinationIDs[e]);
+				if (w >= 0 && order != null) {
+					w = order[w];
+				}
+				destinations[e] = w < 0 || w == v ? -1 : w;
+				if (destinations[e] >= 0) {
+					degrees[v]++;
+					degrees[destinations[e]]++;
+				}
+			}
+		}
+		int[][] neighbours = new int[numVertices][];
+		for (int v = 0; v < numVertices; v++) {
+			neighbours[v] = new int[degrees[v]];
+			degrees[v] = 0;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; e++) {
+				int w = destinations[e];
+				if (w >= 0) {
+					neighbours[v][degrees[v]++] = w;
+					neighbours[w][degrees[w]++] = v;
+				}
+			}
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Counts the edges between vertices of different partitions. Every edge is
+	 * in the neighbours of both its vertices and is counted once.
+	 * 
+	 * @param neighbours
+	 *            Represents the neighbours of every vertex
+	 * @param partitionIDs
+	 *            Represents the partition of every vertex
+	 * @return Returns the number of edges cut
+	 */
+	private static long getEdgeCut(int[][] neighbours, int[] partitionIDs) {
+		long cut = 0;
+		for (int v = 0; v < neighbours.length; v++) {
+			for (int w : neighbours[v]) {
+				if (partitionIDs[v] != partitionIDs[w]) {
+					cut++;
+				}
+			}
+		}
+		return cut / 2;
+	}
+
+	/**
+	 * Counts the edges. Every edge is in the neighbours of both its vertices
+	 * and is counted once.
+	 * 
+	 * @param neighbours
+	 *            Represents the neighbours of every vertex
+	 * @return Returns the number of edges
+	 */
+	private static long getNumEdges(int[][] neighbours) {
+		long numEdges = 0;
+		for (int[] vertexNeighbours : neighbours) {
+			numEdges += vertexNeighbours.length;
+		}
+		return numEdges / 2;
+	}
+
+	/**
+	 * Checks if the identifiers are in increasing order.
+	 * 
+	 * @param ids
+	 *            Represents the identifiers
+	 * @return Returns true, if the identifiers are sorted
+	 */
+	private static boolean isSorted(long[] ids) {
+		for (int i = 1; i < ids.length; i++) {
+			if (ids[i - 1] > ids[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Formats the ratio of the edges cut.
+	 * 
+	 * @param cut
+	 *            Represents the number of edges cut
+	 * @param total
+	 *            Represents the number of edges
+	 * @return Returns the ratio as a percentage
+	 */
+	private static String formatRatio(long cut, long total) {
+		return String.format("%d (%.1f%%)", cut, total == 0 ? 0.0
+				: 100.0 * cut / total);
+	}
+}
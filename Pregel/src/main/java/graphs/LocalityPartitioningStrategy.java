@@ -0,0 +1,69 @@
+package graphs;
+
+import java.util.Arrays;
+
+/**
+ * Maps every vertex to the partition chosen for it by the
+ * {@link graphs.LocalityPartitioner LocalityPartitioner}, which places
+ * neighbouring vertices in the same partition. A vertex that is not in the
+ * graph is mapped by a hash of its identifier.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class LocalityPartitioningStrategy implements PartitioningStrategy {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 4468253019374281542L;
+
+	/** The sorted vertex identifiers */
+	private long[] vertexIDs;
+
+	/** The partition of every vertex, in the order of their identifiers */
+	private int[] partitionIDs;
+
+	/** The number of partitions */
+	private int numPartitions;
+
+	/** Maps the vertices that are not in the graph */
+	private HashPartitioningStrategy fallback;
+
+	/**
+	 * Constructs the locality partitioning strategy
+	 * 
+	 * @param vertexIDs
+	 *            Represents the sorted vertex identifiers
+	 * @param partitionIDs
+	 *            Represents the partition of every vertex
+	 * @param numPartitions
+	 *            Represents the number of partitions
+	 */
+	public LocalityPartitioningStrategy(long[] vertexIDs, int[] partitionIDs,
+			int numPartitions) {
+		this.vertexIDs = vertexIDs;
+		this.partitionIDs = partitionIDs;
+		this.numPartitions = numPartitions;
+		this.fallback = new HashPartitioningStrategy(numPartitions);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see graphs.PartitioningStrategy#getPartitionID(long)
+	 */
+	@Override
+	public int getPartitionID(long vertexID) {
+		int index = Arrays.binarySearch(vertexIDs, vertexID);
+		return index < 0 ? fallback.getPartitionID(vertexID)
+				: partitionIDs[index];
+	}
+
+	/**
+	 * Overrides the java Object's toString() method
+	 */
+	@Override
+	public String toString() {
+		return "LOCALITY(" + numPartitions + ")";
+	}
+}
@@ -0,0 +1,30 @@
+package graphs;
+
+import java.io.Serializable;
+
+/**
+ * Maps every vertex of the input graph to a partition. The Master chooses the
+ * strategy when the graph is loaded and sends it to the Workers, so that the
+ * vertices are loaded into, and the messages are routed to, the same
+ * partitions everywhere. <br>
+ * A user-supplied strategy is configured by its class name in the
+ * PARTITIONING_STRATEGY property. It needs a public constructor taking the
+ * number of partitions, and every Worker must be able to load the class.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface PartitioningStrategy extends Serializable {
+
+	/**
+	 * Gets the partition of the vertex. Partition identifiers start from 0
+	 * and are smaller than the number of partitions the strategy was created
+	 * with.
+	 * 
+	 * @param vertexID
+	 *            Represents the vertex identifier
+	 * @return Returns the partition identifier
+	 */
+	public int getPartitionID(long vertexID);
+}
@@ -0,0 +1,101 @@
+package graphs;
+
+import java.util.Arrays;
+
+/**
+ * Maps contiguous ranges of vertex identifiers to the partitions, in
+ * increasing order. The ranges either have a fixed width, which fills the
+ * partitions evenly only if the identifiers are dense, or start at given
+ * identifiers, which are chosen so that every partition has the same number
+ * of vertices. <br>
+ * As the vertex lines of the input graph are sorted by identifier, the
+ * vertices of a partition are contiguous in the input graph and the Workers
+ * can load their partitions themselves.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class RangePartitioningStrategy implements PartitioningStrategy {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 6024751189360174923L;
+
+	/** The width of the ranges, or 0 if they start at given identifiers */
+	private long width;
+
+	/** The first vertex identifier of every partition but the first one */
+	private long[] firstVertexIDs;
+
+	/**
+	 * Constructs a range partitioning strategy with ranges of a fixed width
+	 * 
+	 * @param width
+	 *            Represents the number of identifiers in every range
+	 */
+	public RangePartitioningStrategy(long width) {
+		this.width = width;
+	}
+
+	/**
+	 * Constructs a range partitioning strategy with ranges starting at the
+	 * given identifiers
+	 * 
+	 * @param firstVertexIDs
+	 *            Represents the sorted first vertex identifier of every
+	 *            partition but the first one
+	 */
+	public RangePartitioningStrategy(long[] firstVertexIDs) {
+		this.firstVertexIDs = firstVertexIDs;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see graphs.PartitioningStrategy#getPartitionID(long)
+	 */
+	@Override
+	public int getPartitionID(long vertexID) {
+		if (width > 0) {
+			return (int) (vertexID / width);
+		}
+		int index = Arrays.binarySearch(firstVertexIDs, vertexID);
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	/**
+	 * Gets the first vertex identifier of the partition's range
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
+	 * @return Returns the first vertex identifier, which need not be the
+	 *         identifier of a vertex of the graph
+	 */
+	public long getFirstVertexID(int partitionID) {
+		if (width > 0) {
+			return partitionID * width;
+		}
+		return partitionID == 0 ? Long.MIN_VALUE
+				: firstVertexIDs[partitionID - 1];
+	}
+
+	/**
+	 * Gets the width of the ranges
+	 * 
+	 * @return Returns the width, or 0 if the ranges start at given identifiers
+	 */
+	public long getWidth() {
+		return width;
+	}
+
+	/**
+	 * Overrides the java Object's toString() method
+	 */
+	@Override
+	public String toString() {
+		if (width > 0) {
+			return "RANGE(" + width + ")";
+		}
+		return "BALANCED_RANGE(" + (firstVertexIDs.length + 1) + ")";
+	}
+}
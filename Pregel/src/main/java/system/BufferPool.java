@@ -0,0 +1,72 @@
+package system;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a pool of direct byte buffers of the same size. Direct buffers
+ * are expensive to allocate and are only released by the garbage collector,
+ * so the buffers used for socket reads and writes are reused instead.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class BufferPool {
+
+	/** The size of the buffers. */
+	private final int bufferSize;
+
+	/** The maximum number of buffers kept in the pool. */
+	private final int maxPooledBuffers;
+
+	/** The buffers that are not in use. */
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+	/** The number of buffers in the pool. */
+	private final AtomicInteger numPooledBuffers = new AtomicInteger();
+
+	/**
+	 * Constructs the buffer pool.
+	 * 
+	 * @param bufferSize
+	 *            Represents the size of the buffers
+	 * @param maxPooledBuffers
+	 *            Represents the maximum number of buffers kept in the pool
+	 */
+	public BufferPool(int bufferSize, int maxPooledBuffers) {
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	/**
+	 * Takes a cleared buffer from the pool, allocating it if the pool is
+	 * empty.
+	 * 
+	 * @return Returns the buffer
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		numPooledBuffers.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Gives a buffer back to the pool.
+	 * 
+	 * @param buffer
+	 *            Represents the buffer
+	 */
+	public void release(ByteBuffer buffer) {
+		if (numPooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+			buffers.offer(buffer);
+		} else {
+			numPooledBuffers.decrementAndGet();
+		}
+	}
+}
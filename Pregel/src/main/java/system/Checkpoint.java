@@ -0,0 +1,610 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the checkpoint of a Worker taken at the barrier before a
+ * superstep, which is written in the background while the superstep is
+ * computed.
+ * 
+ * The checkpoint holds on to the partitions and their incoming messages
+ * rather than copying them up front. A partition is copied only when a Worker
+ * thread is about to compute it before it has been written, so the writer
+ * always sees the partitions and messages as they were at the barrier.
+ * 
+ * Every partition is written to its own file, in parallel, in a directory
+ * next to the checkpoint file. The checkpoint file itself is a small manifest
+ * of the partition files, which is written under a temporary name and
+ * renamed once every partition file is synced to disk, so a checkpoint file
+ * that exists is complete. A partition can be read from a checkpoint without
+ * reading the others.
+ * 
+ * A checkpoint is either a base, which holds every partition in full, or a
+ * delta on top of the previous checkpoint file, which only holds the values
+ * of the vertices computed since that checkpoint and the active vertices.
+ * The topology of the graph never changes, so it is only written with the
+ * bases. A partition that is not in the previous checkpoint is written in
+ * full in a delta too. Both hold all the messages for the next superstep.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class Checkpoint {
+
+	/** A partition record holding the whole partition. */
+	private static final byte FULL = 0;
+
+	/** A partition record holding the changes since the previous checkpoint. */
+	private static final byte DELTA = 1;
+
+	/** The size of the buffers used to read the partition files. */
+	private static final int BUFFER_SIZE = 65536;
+
+	/** The superstep the checkpoint was taken before. */
+	private final long superstep;
+
+	/** The checkpoint file this is a delta on top of, or null for a base. */
+	private final String parentFilePath;
+
+	/** The checkpoint file, which is the manifest of the partition files. */
+	private final String filePath;
+
+	/** The directory of the partition files. */
+	private final File directory;
+
+	/** The partitions, in the order they are listed in the manifest. */
+	private final List<Partition> partitions;
+
+	/** The messages of the partitions, by partitionID. */
+	private final Map<Integer, Map<VertexID, List<Message>>> messages;
+
+	/** The double valued messages of the partitions, by partitionID. */
+	private final Map<Integer, DoubleMessageStore.PartitionMessages> doubleMessages;
+
+	/** The partitions that are neither written nor copied yet. */
+	private final Set<Partition> pendingPartitions;
+
+	/** The copies of the partitions made before they were computed. */
+	private final Map<Partition, byte[]> copies = new ConcurrentHashMap<>();
+
+	/**
+	 * The vertices computed since the previous checkpoint of the partitions
+	 * written or copied so far, which are given back to the partitions if
+	 * the checkpoint is not committed.
+	 */
+	private final Map<Partition, BitSet> changedVertices = Collections
+			.synchronizedMap(new HashMap<Partition, BitSet>());
+
+	/** The number of partitions written in full. */
+	private final AtomicInteger fullPartitions = new AtomicInteger();
+
+	/** The number of bytes written to the partition files. */
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	/** Counted down once the checkpoint has been written or cancelled. */
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	/** Whether the checkpoint was cancelled. */
+	private volatile boolean cancelled;
+
+	/**
+	 * Represents the manifest of the partition files of a checkpoint.
+	 */
+	private static class Manifest {
+
+		/** The checkpoint file the checkpoint is a delta on top of, or null. */
+		private String parentFilePath;
+
+		/** The directory of the partition files. */
+		private File directory;
+
+		/** The partition files, by partitionID. */
+		private Map<Integer, File> partitionFiles = new LinkedHashMap<>();
+
+		/**
+		 * Reads the manifest in a checkpoint file.
+		 * 
+		 * @param filePath
+		 *            Represents the checkpoint file
+		 * @return Returns the manifest
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private static Manifest read(String filePath) throws IOException {
+			Manifest manifest = new Manifest();
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(filePath)))) {
+				String parentFilePath = in.readUTF();
+				manifest.parentFilePath = parentFilePath.isEmpty() ? null
+						: parentFilePath;
+				manifest.directory = new File(in.readUTF());
+				int numPartitions = in.readInt();
+				for (int i = 0; i < numPartitions; i++) {
+					int partitionID = in.readInt();
+					manifest.partitionFiles.put(partitionID, new File(
+							manifest.directory, in.readUTF()));
+				}
+			}
+			return manifest;
+		}
+	}
+
+	/**
+	 * Takes the checkpoint of the partitions and the messages for the next
+	 * superstep. The messages must not be added to until the superstep is
+	 * started, which holds at the barrier.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep the checkpoint is taken before
+	 * @param filePath
+	 *            Represents the checkpoint file
+	 * @param parentFilePath
+	 *            Represents the checkpoint file this is a delta on top of, or
+	 *            null for a base
+	 * @param partitions
+	 *            Represents the partitions of the Worker
+	 * @param messages
+	 *            Represents the messages for the next superstep, by
+	 *            partitionID
+	 * @param doubleMessages
+	 *            Represents the double valued messages for the next superstep
+	 */
+	public Checkpoint(long superstep, String filePath, String parentFilePath,
+			Collection<Partition> partitions,
+			Map<Integer, Map<VertexID, List<Message>>> messages,
+			DoubleMessageStore doubleMessages) {
+		this.superstep = superstep;
+		this.filePath = filePath;
+		// A checkpoint taken again for the same superstep during recovery
+		// must not overwrite the partition files of the one it replaces.
+		this.directory = new File(filePath + ".partitions."
+				+ System.currentTimeMillis());
+		this.parentFilePath = parentFilePath;
+		this.partitions = new ArrayList<>(partitions);
+		this.messages = new HashMap<>(messages);
+		this.doubleMessages = new HashMap<>();
+		for (Integer partitionID : doubleMessages.getPartitionIDs()) {
+			this.doubleMessages.put(partitionID,
+					doubleMessages.getPartitionMessages(partitionID));
+		}
+		this.pendingPartitions = Collections
+				.newSetFromMap(new ConcurrentHashMap<Partition, Boolean>());
+		this.pendingPartitions.addAll(this.partitions);
+	}
+
+	/**
+	 * Gets the superstep the checkpoint was taken before.
+	 * 
+	 * @return the superstep
+	 */
+	public long getSuperstep() {
+		return superstep;
+	}
+
+	/**
+	 * Gets the checkpoint file.
+	 * 
+	 * @return the file path
+	 */
+	public String getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * Checks if the checkpoint holds every partition in full.
+	 * 
+	 * @return true, if the checkpoint is a base
+	 */
+	public boolean isBase() {
+		return parentFilePath == null;
+	}
+
+	/**
+	 * Describes what was written for the checkpoint.
+	 * 
+	 * @return the description
+	 */
+	public String getMetrics() {
+		return (isBase() ? "base" : "delta") + " of " + partitions.size()
+				+ " partitions (" + fullPartitions + " in full), "
+				+ bytesWritten + " bytes";
+	}
+
+	/**
+	 * Gives the vertices computed since the previous checkpoint back to the
+	 * partitions, for the next checkpoint to write them. Must be called if
+	 * the checkpoint was not committed.
+	 */
+	public void restoreChangedVertices() {
+		synchronized (changedVertices) {
+			for (Map.Entry<Partition, BitSet> entry : changedVertices
+					.entrySet()) {
+				entry.getKey().restoreChangedVertices(entry.getValue());
+			}
+			changedVertices.clear();
+		}
+	}
+
+	/**
+	 * Copies the partition and its messages if they have not been written
+	 * yet. Must be called before the partition or its messages are modified.
+	 * 
+	 * @param partition
+	 *            Represents the partition about to be computed
+	 * @throws IOException
+	 *             Signals that the partition could not be copied
+	 */
+	public void copyBeforeCompute(Partition partition) throws IOException {
+		if (cancelled || !pendingPartitions.contains(partition)) {
+			return;
+		}
+		synchronized (partition) {
+			if (pendingPartitions.remove(partition)) {
+				copies.put(partition, serialize(partition));
+			}
+		}
+	}
+
+	/**
+	 * Writes the partition files in parallel, then the manifest. Partitions
+	 * that were copied are written from their copies, the others from the
+	 * partitions themselves.
+	 * 
+	 * @param executor
+	 *            Represents the executor writing the partition files
+	 * @return true, if the checkpoint was written and synced to disk
+	 */
+	public boolean write(ExecutorService executor) {
+		boolean written = false;
+		try {
+			directory.mkdirs();
+			List<Future<Void>> writes = new ArrayList<>();
+			for (final Partition partition : partitions) {
+				writes.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						writePartition(partition);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> write : writes) {
+				write.get();
+			}
+			if (!cancelled) {
+				writeManifest();
+				written = true;
+			}
+		} catch (IOException | ExecutionException | InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			if (!written) {
+				deleteDirectory(directory);
+			}
+			copies.clear();
+			done.countDown();
+		}
+		return written;
+	}
+
+	/**
+	 * Writes the file of a partition and syncs it to disk.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writePartition(Partition partition) throws IOException {
+		if (cancelled) {
+			return;
+		}
+		byte[] bytes;
+		synchronized (partition) {
+			bytes = pendingPartitions.remove(partition) ? serialize(partition)
+					: copies.remove(partition);
+		}
+		try (FileOutputStream out = new FileOutputStream(new File(directory,
+				getPartitionFileName(partition.getPartitionID())))) {
+			out.write(bytes);
+			out.getFD().sync();
+		}
+		bytesWritten.addAndGet(bytes.length);
+	}
+
+	/**
+	 * Writes the manifest of the partition files, replacing the checkpoint
+	 * file that was taken for the same superstep, if any.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeManifest() throws IOException {
+		File file = new File(filePath);
+		File tmpFile = new File(filePath + ".tmp");
+		File replacedDirectory = file.exists() ? Manifest.read(filePath).directory
+				: null;
+		try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
+			DataOutputStream out = new DataOutputStream(fileOutputStream);
+			out.writeUTF(parentFilePath == null ? "" : parentFilePath);
+			out.writeUTF(directory.getPath());
+			out.writeInt(partitions.size());
+			for (Partition partition : partitions) {
+				out.writeInt(partition.getPartitionID());
+				out.writeUTF(getPartitionFileName(partition.getPartitionID()));
+			}
+			out.flush();
+			fileOutputStream.getFD().sync();
+		}
+		Files.move(tmpFile.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		if (replacedDirectory != null) {
+			deleteDirectory(replacedDirectory);
+		}
+	}
+
+	/**
+	 * Cancels the checkpoint and waits until it is no longer being written,
+	 * after which the partitions and messages can be modified freely.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public void cancel() throws InterruptedException {
+		cancelled = true;
+		done.await();
+	}
+
+	/**
+	 * Waits until the checkpoint has been written or cancelled.
+	 * 
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public void await() throws InterruptedException {
+		done.await();
+	}
+
+	/**
+	 * Deletes the checkpoint file, if it was written, and the partition
+	 * files. Must be called once the checkpoint is no longer being written.
+	 */
+	public void delete() {
+		if (new File(filePath).exists()) {
+			delete(filePath);
+		}
+		deleteDirectory(directory);
+	}
+
+	/**
+	 * Serializes a partition together with its messages, in full or as the
+	 * changes since the previous checkpoint. Must be called with the lock of
+	 * the partition held.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 * @return Returns the serialized partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private byte[] serialize(Partition partition) throws IOException {
+		int partitionID = partition.getPartitionID();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		BitSet changed = partition.takeChangedVertices();
+		changedVertices.put(partition, changed);
+		if (isBase() || changed == null) {
+			oos.writeByte(FULL);
+			oos.writeObject(partition);
+			fullPartitions.incrementAndGet();
+		} else {
+			oos.writeByte(DELTA);
+			oos.writeInt(partitionID);
+			partition.writeChanges(oos, changed);
+		}
+		oos.writeObject(messages.get(partitionID));
+		oos.writeObject(doubleMessages.get(partitionID));
+		oos.close();
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Gets the name of the file of a partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partitionID
+	 * @return Returns the file name
+	 */
+	private static String getPartitionFileName(int partitionID) {
+		return "partition_" + partitionID;
+	}
+
+	/**
+	 * Deletes a directory of partition files.
+	 * 
+	 * @param directory
+	 *            Represents the directory
+	 */
+	private static void deleteDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Deletes a checkpoint file and its partition files.
+	 * 
+	 * @param filePath
+	 *            Represents the checkpoint file
+	 */
+	public static void delete(String filePath) {
+		System.out.println("Checkpoint: delete " + filePath);
+		try {
+			deleteDirectory(Manifest.read(filePath).directory);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		new File(filePath).delete();
+	}
+
+	/**
+	 * Gets the partitions in a checkpoint file, without reading them.
+	 * 
+	 * @param filePath
+	 *            Represents the checkpoint file
+	 * @return Returns the partitionIDs, or null if the file could not be read
+	 */
+	public static List<Integer> getPartitionIDs(String filePath) {
+		try {
+			return new ArrayList<>(
+					Manifest.read(filePath).partitionFiles.keySet());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Reads some of the partitions of a checkpoint file in parallel, together
+	 * with the checkpoint files it is a delta on top of.
+	 * 
+	 * @param filePath
+	 *            Represents the checkpoint file
+	 * @param partitionIDs
+	 *            Represents the partitions to read, or null for all of them
+	 * @param executor
+	 *            Represents the executor reading the partition files
+	 * @return Returns the checkpointed data of the partitions, or null if they
+	 *         could not be read
+	 */
+	public static WorkerData read(final String filePath,
+			List<Integer> partitionIDs, ExecutorService executor) {
+		if (partitionIDs == null) {
+			partitionIDs = getPartitionIDs(filePath);
+			if (partitionIDs == null) {
+				return null;
+			}
+		}
+		final ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> messages = new ConcurrentHashMap<>();
+		final DoubleMessageStore doubleMessages = new DoubleMessageStore();
+		List<Future<Partition>> reads = new ArrayList<>();
+		for (final Integer partitionID : partitionIDs) {
+			reads.add(executor.submit(new Callable<Partition>() {
+				@Override
+				public Partition call() throws IOException,
+						ClassNotFoundException {
+					return readPartition(filePath, partitionID, messages,
+							doubleMessages);
+				}
+			}));
+		}
+		LinkedBlockingQueue<Partition> partitions = new LinkedBlockingQueue<>();
+		try {
+			for (Future<Partition> read : reads) {
+				partitions.add(read.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return new WorkerData(partitions, messages, doubleMessages);
+	}
+
+	/**
+	 * Reads a partition of a checkpoint file, applying the delta to the
+	 * partition of the checkpoint files it is on top of.
+	 * 
+	 * @param filePath
+	 *            Represents the checkpoint file
+	 * @param partitionID
+	 *            Represents the partitionID
+	 * @param messages
+	 *            Represents the map the messages are read into, or null if
+	 *            they are skipped
+	 * @param doubleMessages
+	 *            Represents the store the double valued messages are read
+	 *            into, or null if they are skipped
+	 * @return Returns the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	@SuppressWarnings("unchecked")
+	private static Partition readPartition(String filePath, int partitionID,
+			Map<Integer, Map<VertexID, List<Message>>> messages,
+			DoubleMessageStore doubleMessages) throws IOException,
+			ClassNotFoundException {
+		Manifest manifest = Manifest.read(filePath);
+		File partitionFile = manifest.partitionFiles.get(partitionID);
+		if (partitionFile == null) {
+			throw new IOException("Partition " + partitionID + " is not in "
+					+ filePath);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(partitionFile),
+						BUFFER_SIZE))) {
+			Partition partition;
+			if (in.readByte() == FULL) {
+				partition = (Partition) in.readObject();
+			} else {
+				in.readInt();
+				partition = readPartition(manifest.parentFilePath,
+						partitionID, null, null);
+				partition.readChanges(in);
+			}
+			if (messages == null) {
+				return partition;
+			}
+			Map<VertexID, List<Message>> partitionMessages = (Map<VertexID, List<Message>>) in
+					.readObject();
+			DoubleMessageStore.PartitionMessages partitionDoubleMessages = (DoubleMessageStore.PartitionMessages) in
+					.readObject();
+			if (partitionMessages != null) {
+				messages.put(partitionID, partitionMessages);
+			}
+			if (partitionDoubleMessages != null) {
+				doubleMessages.putPartitionMessages(partitionID,
+						partitionDoubleMessages);
+			}
+			return partition;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import utility.GeneralUtils;
+import api.Vertex;
+
+/**
+ * Represents the outgoing edges of all the vertices of a partition in
+ * compressed sparse row form. The edges of the vertex at index i are stored
+ * from offsets[i] (inclusive) to offsets[i + 1] (exclusive) of the destination
+ * and weight arrays, so an edge costs a long and a double.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class CompressedEdgeStore implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -5817166592358390215L;
+
+	/** The offset of the first edge of every vertex. */
+	private int[] offsets;
+
+	/** The destination vertex identifiers. */
+	private long[] destinationIDs;
+
+	/** The edge weights. */
+	private double[] weights;
+
+	/**
+	 * Constructs the edge store from the outgoing edge lists of the vertices.
+	 * Every vertex is then switched over to the edge store, so that its edge
+	 * list can be garbage collected.
+	 * 
+	 * @param vertices
+	 *            Represents the vertices of the partition
+	 */
+	public CompressedEdgeStore(Vertex[] vertices) {
+		int numEdges = 0;
+		for (Vertex vertex : vertices) {
+			numEdges += vertex.getNumOutgoingEdges();
+		}
+		offsets = new int[vertices.length + 1];
+		destinationIDs = new long[numEdges];
+		weights = new double[numEdges];
+		int edgeIndex = 0;
+		for (int i = 0; i < vertices.length; i++) {
+			offsets[i] = edgeIndex;
+			int numVertexEdges = vertices[i].getNumOutgoingEdges();
+			for (int j = 0; j < numVertexEdges; j++) {
+				destinationIDs[edgeIndex] = vertices[i]
+						.getOutgoingEdgeDestID(j);
+				weights[edgeIndex] = vertices[i].getOutgoingEdgeWeight(j);
+				edgeIndex++;
+			}
+			vertices[i].setEdgeStore(this, i);
+		}
+		offsets[vertices.length] = edgeIndex;
+	}
+
+	/**
+	 * Constructs the edge store from arrays already in compressed sparse row
+	 * form.
+	 * 
+	 * @param offsets
+	 *            Represents the offset of the first edge of every vertex,
+	 *            followed by the total number of edges
+	 * @param destinationIDs
+	 *            Represents the destination vertex identifiers
+	 * @param weights
+	 *            Represents the edge weights
+	 */
+	public CompressedEdgeStore(int[] offsets, long[] destinationIDs,
+			double[] weights) {
+		this.offsets = offsets;
+		this.destinationIDs = destinationIDs;
+		this.weights = weights;
+	}
+
+	/**
+	 * Gets the number of outgoing edges of the vertex.
+	 * 
+	 * @param vertexIndex
+	 *            Represents the index of the vertex in the partition
+	 * @return Returns the number of outgoing edges
+	 */
+	public int getNumEdges(int vertexIndex) {
+		return offsets[vertexIndex + 1] - offsets[vertexIndex];
+	}
+
+	/**
+	 * Gets the destination vertex identifier of an outgoing edge.
+	 * 
+	 * @param vertexIndex
+	 *            Represents the index of the vertex in the partition
+	 * @param edgeIndex
+	 *            Represents the index of the edge among the vertex's edges
+	 * @return Returns the destination vertex identifier
+	 */
+	public long getDestinationID(int vertexIndex, int edgeIndex) {
+		return destinationIDs[offsets[vertexIndex] + edgeIndex];
+	}
+
+	/**
+	 * Gets the weight of an outgoing edge.
+	 * 
+	 * @param vertexIndex
+	 *            Represents the index of the vertex in the partition
+	 * @param edgeIndex
+	 *            Represents the index of the edge among the vertex's edges
+	 * @return Returns the edge weight
+	 */
+	public double getWeight(int vertexIndex, int edgeIndex) {
+		return weights[offsets[vertexIndex] + edgeIndex];
+	}
+
+	/**
+	 * Gets a read-only list view of the outgoing edges of the vertex. The
+	 * {@link system.Edge Edge} objects are created on access.
+	 * 
+	 * @param vertexIndex
+	 *            Represents the index of the vertex in the partition
+	 * @param sourceID
+	 *            Represents the vertex identifier of the vertex
+	 * @return Returns the list view of the outgoing edges
+	 */
+	public List<Edge> getEdges(int vertexIndex, VertexID sourceID) {
+		return new EdgeList(vertexIndex, sourceID);
+	}
+
+	/**
+	 * Represents the read-only list view of the outgoing edges of a vertex.
+	 */
+	private class EdgeList extends AbstractList<Edge> implements RandomAccess {
+
+		/** The index of the vertex in the partition. */
+		private int vertexIndex;
+
+		/** The source vertex identifier. */
+		private VertexID sourceID;
+
+		/**
+		 * Constructs the edge list view.
+		 * 
+		 * @param vertexIndex
+		 *            Represents the index of the vertex in the partition
+		 * @param sourceID
+		 *            Represents the vertex identifier of the vertex
+		 */
+		EdgeList(int vertexIndex, VertexID sourceID) {
+			this.vertexIndex = vertexIndex;
+			this.sourceID = sourceID;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.AbstractList#get(int)
+		 */
+		@Override
+		public Edge get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Edge index: " + index);
+			}
+			long destinationID = getDestinationID(vertexIndex, index);
+			return new Edge(sourceID, new VertexID(
+					GeneralUtils.getPartitionID(destinationID), destinationID),
+					getWeight(vertexIndex, index));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.AbstractCollection#size()
+		 */
+		@Override
+		public int size() {
+			return getNumEdges(vertexIndex);
+		}
+	}
+}
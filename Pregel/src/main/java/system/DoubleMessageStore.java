@@ -0,0 +1,1002 @@
+package system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utility.Compression;
+import utility.Varint;
+import api.DoubleCombiner;
+import api.DoubleMessageIterator;
+
+/**
+ * Represents the store of double valued messages. For every partition, the
+ * destination vertex identifiers are kept in a long array and the message
+ * values in a double array, so no object is created per message.
+ * 
+ * A store can be given a memory budget and a spill directory. Once it holds
+ * more messages in memory than the budget, the messages of its partitions are
+ * combined, sorted and written to run files, and the runs of a partition are
+ * merged back with sequential reads when the partition is combined or sorted
+ * to be computed. Only one partition's messages are then in memory at a time.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class DoubleMessageStore implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = -1203587437436311896L;
+
+	/** partitionId to the messages sent to the vertices of the partition. */
+	private transient ConcurrentHashMap<Integer, PartitionMessages> partitionMessageMap = new ConcurrentHashMap<>();
+
+	/** The directory of the spilled runs, or null if the store never spills. */
+	private transient File spillDirectory;
+
+	/** The number of messages kept in memory before the store spills. */
+	private transient long memoryBudget;
+
+	/** The number of messages added since the memory use was checked. */
+	private transient AtomicLong addedMessages = new AtomicLong();
+
+	/**
+	 * The spill directory that the stores read from a stream are given, or
+	 * null if they never spill.
+	 */
+	private static volatile File defaultSpillDirectory;
+
+	/** The memory budget that the stores read from a stream are given. */
+	private static volatile long defaultMemoryBudget;
+
+	/**
+	 * Adds a message for the destination vertex.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition of the destination vertex
+	 * @param vertexID
+	 *            Represents the destination vertex identifier
+	 * @param value
+	 *            Represents the value of the message
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 */
+	public void addMessage(int partitionID, long vertexID, double value,
+			DoubleCombiner combiner) {
+		PartitionMessages messages = partitionMessageMap.get(partitionID);
+		if (messages == null) {
+			messages = new PartitionMessages();
+			PartitionMessages existingMessages = partitionMessageMap
+					.putIfAbsent(partitionID, messages);
+			if (existingMessages != null) {
+				messages = existingMessages;
+			}
+		}
+		messages.add(vertexID, value, combiner);
+		checkMemory(1, combiner);
+	}
+
+	/**
+	 * Adds all the messages of the other store to this store.
+	 * 
+	 * @param other
+	 *            Represents the other store
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 */
+	public void addAll(DoubleMessageStore other, DoubleCombiner combiner) {
+		for (Integer partitionID : other.getPartitionIDs()) {
+			PartitionMessages otherMessages = other
+					.getPartitionMessages(partitionID);
+			PartitionMessages messages = partitionMessageMap.putIfAbsent(
+					partitionID, otherMessages);
+			if (messages != null) {
+				messages.addAll(otherMessages, combiner);
+			}
+			checkMemory(otherMessages.memorySize(), combiner);
+		}
+	}
+
+	/**
+	 * Makes the store spill the messages of its partitions to run files in
+	 * the directory once it holds more messages in memory than the budget.
+	 * 
+	 * @param spillDirectory
+	 *            Represents the directory of the run files
+	 * @param memoryBudget
+	 *            Represents the number of messages kept in memory
+	 */
+	public void setSpillDirectory(File spillDirectory, long memoryBudget) {
+		this.spillDirectory = spillDirectory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Sets the spill directory and the memory budget that the stores read
+	 * from a stream, such as the messages received from other Workers or read
+	 * from a checkpoint, are given.
+	 * 
+	 * @param spillDirectory
+	 *            Represents the directory of the run files, or null if the
+	 *            stores never spill
+	 * @param memoryBudget
+	 *            Represents the number of messages kept in memory
+	 */
+	public static void setDefaultSpillDirectory(File spillDirectory,
+			long memoryBudget) {
+		defaultSpillDirectory = spillDirectory;
+		defaultMemoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Checks the memory use of the store once every sixteenth of the budget
+	 * of added messages.
+	 * 
+	 * @param numMessages
+	 *            Represents the number of messages added
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 */
+	private void checkMemory(long numMessages, DoubleCombiner combiner) {
+		if (spillDirectory != null
+				&& addedMessages.addAndGet(numMessages) >= Math.max(
+						memoryBudget / 16, 1)) {
+			addedMessages.set(0);
+			spillIfNeeded(combiner);
+		}
+	}
+
+	/**
+	 * Spills partitions until at most half of the budget of messages is left
+	 * in memory, if the store holds more messages in memory than the budget.
+	 * 
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 */
+	public synchronized void spillIfNeeded(DoubleCombiner combiner) {
+		if (spillDirectory == null) {
+			return;
+		}
+		long memorySize = 0;
+		for (PartitionMessages messages : partitionMessageMap.values()) {
+			memorySize += messages.memorySize();
+		}
+		if (memorySize <= memoryBudget) {
+			return;
+		}
+		long spilled = 0;
+		for (PartitionMessages messages : partitionMessageMap.values()) {
+			if (memorySize <= memoryBudget / 2) {
+				break;
+			}
+			int released = messages.spill(combiner, spillDirectory);
+			memorySize -= released;
+			spilled += released;
+		}
+		System.out.println("DoubleMessageStore: Spilled " + spilled
+				+ " messages to " + spillDirectory);
+	}
+
+	/**
+	 * Gets the messages sent to the vertices of the partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
+	 * @return Returns the messages of the partition, or null if there are none
+	 */
+	public PartitionMessages getPartitionMessages(int partitionID) {
+		return partitionMessageMap.get(partitionID);
+	}
+
+	/**
+	 * Sets the messages sent to the vertices of the partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
+	 * @param messages
+	 *            Represents the messages of the partition
+	 */
+	public void putPartitionMessages(int partitionID, PartitionMessages messages) {
+		partitionMessageMap.put(partitionID, messages);
+	}
+
+	/**
+	 * Removes the messages sent to the vertices of the partition.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition identifier
+	 * @return Returns the messages of the partition, or null if there are none
+	 */
+	public PartitionMessages removePartitionMessages(int partitionID) {
+		return partitionMessageMap.remove(partitionID);
+	}
+
+	/**
+	 * Gets the identifiers of the partitions that have messages.
+	 * 
+	 * @return Returns the partition identifiers
+	 */
+	public Set<Integer> getPartitionIDs() {
+		return partitionMessageMap.keySet();
+	}
+
+	/**
+	 * Combines the messages sent to the same vertex in every partition.
+	 * 
+	 * @param combiner
+	 *            Represents the combiner
+	 */
+	public void combine(DoubleCombiner combiner) {
+		for (PartitionMessages messages : partitionMessageMap.values()) {
+			messages.combine(combiner);
+		}
+	}
+
+	/**
+	 * Checks if the store has no messages.
+	 * 
+	 * @return true, if the store has no messages
+	 */
+	public boolean isEmpty() {
+		return partitionMessageMap.isEmpty();
+	}
+
+	/**
+	 * Gets the total number of messages in the store.
+	 * 
+	 * @return Returns the total number of messages
+	 */
+	public long size() {
+		long size = 0;
+		for (PartitionMessages messages : partitionMessageMap.values()) {
+			size += messages.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Removes all the messages from the store.
+	 */
+	public void clear() {
+		partitionMessageMap.clear();
+	}
+
+	/**
+	 * Removes all the messages from the store and deletes their spilled runs.
+	 * Unlike {@link #clear()}, this must not be used on a store whose
+	 * partition messages were moved to another store by
+	 * {@link #addAll(DoubleMessageStore, DoubleCombiner)}.
+	 */
+	public void discard() {
+		for (PartitionMessages messages : partitionMessageMap.values()) {
+			messages.deleteRuns();
+		}
+		partitionMessageMap.clear();
+	}
+
+	/**
+	 * Writes the messages of the partitions, compressed if compression is on.
+	 * 
+	 * @param out
+	 *            the object output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Compression.write(out, new Compression.BodyWriter() {
+			@Override
+			public void write(ObjectOutput out) throws IOException {
+				out.writeObject(partitionMessageMap);
+			}
+		});
+	}
+
+	/**
+	 * Reads the messages written by {@link #writeObject(ObjectOutputStream)}
+	 * 
+	 * @param in
+	 *            the object input stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		partitionMessageMap = (ConcurrentHashMap<Integer, PartitionMessages>) Compression
+				.read(in).readObject();
+		addedMessages = new AtomicLong();
+		spillDirectory = defaultSpillDirectory;
+		memoryBudget = defaultMemoryBudget;
+	}
+
+	/**
+	 * String representation of the store
+	 */
+	@Override
+	public String toString() {
+		return partitionMessageMap.toString();
+	}
+
+	/**
+	 * Represents the double valued messages sent to the vertices of a single
+	 * partition.
+	 */
+	public static class PartitionMessages implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 3260420683862102470L;
+
+		/** The initial capacity of the arrays. */
+		private static final int INITIAL_CAPACITY = 16;
+
+		/** The arrays shorter than this are sorted by insertion sort. */
+		private static final int INSERTION_SORT_THRESHOLD = 16;
+
+		/** The size of the buffers used to write and read the runs. */
+		private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+		/** Orders the runs being merged by their current vertex. */
+		private static final Comparator<RunReader> RUN_ORDER = new Comparator<RunReader>() {
+			@Override
+			public int compare(RunReader first, RunReader second) {
+				return Long.compare(first.vertexID, second.vertexID);
+			}
+		};
+
+		/** The destination vertex identifiers. */
+		private transient long[] vertexIDs;
+
+		/** The message values. */
+		private transient double[] values;
+
+		/** The number of messages in memory. */
+		private transient int size;
+
+		/** The run files of the spilled messages, or null if none spilled. */
+		private transient List<File> runs;
+
+		/** The number of spilled messages. */
+		private transient int spilledSize;
+
+		/**
+		 * Constructs the partition messages.
+		 */
+		public PartitionMessages() {
+			vertexIDs = new long[INITIAL_CAPACITY];
+			values = new double[INITIAL_CAPACITY];
+		}
+
+		/**
+		 * Adds a message. When the arrays are full and a combiner is given,
+		 * the messages are combined before the arrays are grown.
+		 * 
+		 * @param vertexID
+		 *            Represents the destination vertex identifier
+		 * @param value
+		 *            Represents the value of the message
+		 * @param combiner
+		 *            Represents the combiner, or null if the messages must not
+		 *            be combined
+		 */
+		public synchronized void add(long vertexID, double value,
+				DoubleCombiner combiner) {
+			if (size == vertexIDs.length) {
+				if (combiner != null) {
+					combineInMemory(combiner);
+				}
+				if (size > vertexIDs.length / 2) {
+					grow(vertexIDs.length * 2);
+				}
+			}
+			vertexIDs[size] = vertexID;
+			values[size] = value;
+			size++;
+		}
+
+		/**
+		 * Adds all the messages of the other partition messages. The spilled
+		 * runs of the other partition messages are moved to this one.
+		 * 
+		 * @param other
+		 *            Represents the other partition messages
+		 * @param combiner
+		 *            Represents the combiner, or null if the messages must not
+		 *            be combined
+		 */
+		public synchronized void addAll(PartitionMessages other,
+				DoubleCombiner combiner) {
+			synchronized (other) {
+				if (size + other.size > vertexIDs.length) {
+					grow(Math.max(vertexIDs.length * 2, size + other.size));
+				}
+				System.arraycopy(other.vertexIDs, 0, vertexIDs, size,
+						other.size);
+				System.arraycopy(other.values, 0, values, size, other.size);
+				size += other.size;
+				if (other.runs != null) {
+					if (runs == null) {
+						runs = new ArrayList<>();
+					}
+					runs.addAll(other.runs);
+					spilledSize += other.spilledSize;
+					other.runs = null;
+					other.spilledSize = 0;
+				}
+			}
+			if (combiner != null) {
+				combineInMemory(combiner);
+			}
+		}
+
+		/**
+		 * Sorts the messages by destination vertex and folds the messages sent
+		 * to the same vertex into a single message. The spilled runs are
+		 * merged back into memory.
+		 * 
+		 * @param combiner
+		 *            Represents the combiner
+		 */
+		public synchronized void combine(DoubleCombiner combiner) {
+			if (runs != null) {
+				merge(combiner);
+			} else {
+				combineInMemory(combiner);
+			}
+		}
+
+		/**
+		 * Combines the messages in memory.
+		 * 
+		 * @param combiner
+		 *            Represents the combiner
+		 */
+		private void combineInMemory(DoubleCombiner combiner) {
+			quickSort(0, size - 1);
+			if (size == 0) {
+				return;
+			}
+			int last = 0;
+			for (int i = 1; i < size; i++) {
+				if (vertexIDs[i] == vertexIDs[last]) {
+					values[last] = combiner.combine(values[last], values[i]);
+				} else {
+					last++;
+					vertexIDs[last] = vertexIDs[i];
+					values[last] = values[i];
+				}
+			}
+			size = last + 1;
+		}
+
+		/**
+		 * Sorts the messages by destination vertex, so that the messages of a
+		 * vertex are adjacent. The spilled runs are merged back into memory.
+		 */
+		public synchronized void sort() {
+			if (runs != null) {
+				merge(null);
+			} else {
+				quickSort(0, size - 1);
+			}
+		}
+
+		/**
+		 * Gets the number of messages, including the spilled messages.
+		 * 
+		 * @return Returns the number of messages
+		 */
+		public synchronized int size() {
+			return size + spilledSize;
+		}
+
+		/**
+		 * Gets the number of messages in memory.
+		 * 
+		 * @return Returns the number of messages in memory
+		 */
+		public synchronized int memorySize() {
+			return size;
+		}
+
+		/**
+		 * Writes the messages in memory to a sorted run file and releases
+		 * their memory. The messages are combined first if a combiner is
+		 * given.
+		 * 
+		 * @param combiner
+		 *            Represents the combiner, or null if the messages must not
+		 *            be combined
+		 * @param directory
+		 *            Represents the directory of the run file
+		 * @return Returns the number of messages released from memory
+		 */
+		public synchronized int spill(DoubleCombiner combiner, File directory) {
+			int released = size;
+			if (size == 0) {
+				return 0;
+			}
+			if (combiner != null) {
+				combineInMemory(combiner);
+			} else {
+				quickSort(0, size - 1);
+			}
+			File run = null;
+			try {
+				run = File.createTempFile("messages", ".run", directory);
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(run),
+								RUN_BUFFER_SIZE));
+				try {
+					out.writeInt(size);
+					writeMessages(out, 0);
+				} finally {
+					out.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				if (run != null) {
+					run.delete();
+				}
+				return 0;
+			}
+			if (runs == null) {
+				runs = new ArrayList<>();
+			}
+			runs.add(run);
+			spilledSize += size;
+			size = 0;
+			vertexIDs = new long[INITIAL_CAPACITY];
+			values = new double[INITIAL_CAPACITY];
+			return released;
+		}
+
+		/**
+		 * Merges the sorted runs and the messages in memory into memory,
+		 * folding the messages sent to the same vertex if a combiner is given,
+		 * and deletes the runs.
+		 * 
+		 * @param combiner
+		 *            Represents the combiner, or null if the messages must not
+		 *            be combined
+		 */
+		private void merge(DoubleCombiner combiner) {
+			if (combiner != null) {
+				combineInMemory(combiner);
+			} else {
+				quickSort(0, size - 1);
+			}
+			PriorityQueue<RunReader> readers = new PriorityQueue<>(
+					runs.size() + 1, RUN_ORDER);
+			try {
+				RunReader memoryReader = new RunReader(vertexIDs, values, size);
+				if (memoryReader.next()) {
+					readers.add(memoryReader);
+				}
+				for (File run : runs) {
+					RunReader reader = new RunReader(run);
+					if (reader.next()) {
+						readers.add(reader);
+					} else {
+						reader.close();
+					}
+				}
+				int capacity = combiner != null ? size : size + spilledSize;
+				vertexIDs = new long[Math.max(capacity, INITIAL_CAPACITY)];
+				values = new double[vertexIDs.length];
+				size = 0;
+				while (!readers.isEmpty()) {
+					RunReader reader = readers.poll();
+					if (combiner != null && size > 0
+							&& vertexIDs[size - 1] == reader.vertexID) {
+						values[size - 1] = combiner.combine(values[size - 1],
+								reader.value);
+					} else {
+						if (size == vertexIDs.length) {
+							grow(vertexIDs.length * 2);
+						}
+						vertexIDs[size] = reader.vertexID;
+						values[size] = reader.value;
+						size++;
+					}
+					if (reader.next()) {
+						readers.add(reader);
+					} else {
+						reader.close();
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Can't read the spilled messages", e);
+			} finally {
+				for (RunReader reader : readers) {
+					reader.close();
+				}
+				deleteRuns();
+			}
+		}
+
+		/**
+		 * Deletes the spilled runs and forgets their messages.
+		 */
+		public synchronized void deleteRuns() {
+			if (runs != null) {
+				for (File run : runs) {
+					run.delete();
+				}
+				runs = null;
+				spilledSize = 0;
+			}
+		}
+
+		/**
+		 * Writes the messages in memory, with the vertex identifiers as
+		 * variable length deltas.
+		 * 
+		 * @param out
+		 *            Represents the output
+		 * @param previousID
+		 *            Represents the vertex identifier of the message written
+		 *            before
+		 * @return Returns the vertex identifier of the last message written
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private long writeMessages(DataOutput out, long previousID)
+				throws IOException {
+			for (int i = 0; i < size; i++) {
+				Varint.writeSignedVarLong(out, vertexIDs[i] - previousID);
+				previousID = vertexIDs[i];
+				out.writeDouble(values[i]);
+			}
+			return previousID;
+		}
+
+		/**
+		 * Gets the destination vertex identifier of the message at the index.
+		 * 
+		 * @param index
+		 *            Represents the index of the message
+		 * @return Returns the destination vertex identifier
+		 */
+		public long getVertexID(int index) {
+			return vertexIDs[index];
+		}
+
+		/**
+		 * Gets the value of the message at the index.
+		 * 
+		 * @param index
+		 *            Represents the index of the message
+		 * @return Returns the value of the message
+		 */
+		public double getValue(int index) {
+			return values[index];
+		}
+
+		/**
+		 * Grows the arrays to the given capacity.
+		 * 
+		 * @param capacity
+		 *            Represents the new capacity
+		 */
+		private void grow(int capacity) {
+			long[] newVertexIDs = new long[capacity];
+			double[] newValues = new double[capacity];
+			System.arraycopy(vertexIDs, 0, newVertexIDs, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			vertexIDs = newVertexIDs;
+			values = newValues;
+		}
+
+		/**
+		 * Sorts the range of messages by destination vertex.
+		 * 
+		 * @param low
+		 *            Represents the first index of the range
+		 * @param high
+		 *            Represents the last index of the range
+		 */
+		private void quickSort(int low, int high) {
+			while (high - low >= INSERTION_SORT_THRESHOLD) {
+				long pivot = vertexIDs[(low + high) >>> 1];
+				int i = low;
+				int j = high;
+				while (i <= j) {
+					while (vertexIDs[i] < pivot) {
+						i++;
+					}
+					while (vertexIDs[j] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						swap(i, j);
+						i++;
+						j--;
+					}
+				}
+				// Recurse into the smaller half to bound the stack depth.
+				if (j - low < high - i) {
+					quickSort(low, j);
+					low = i;
+				} else {
+					quickSort(i, high);
+					high = j;
+				}
+			}
+			for (int i = low + 1; i <= high; i++) {
+				long vertexID = vertexIDs[i];
+				double value = values[i];
+				int j = i - 1;
+				while (j >= low && vertexIDs[j] > vertexID) {
+					vertexIDs[j + 1] = vertexIDs[j];
+					values[j + 1] = values[j];
+					j--;
+				}
+				vertexIDs[j + 1] = vertexID;
+				values[j + 1] = value;
+			}
+		}
+
+		/**
+		 * Swaps the messages at the two indices.
+		 * 
+		 * @param i
+		 *            Represents the first index
+		 * @param j
+		 *            Represents the second index
+		 */
+		private void swap(int i, int j) {
+			long vertexID = vertexIDs[i];
+			vertexIDs[i] = vertexIDs[j];
+			vertexIDs[j] = vertexID;
+			double value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+
+		/**
+		 * Writes only the used part of the arrays, followed by the spilled
+		 * messages. The vertex identifiers are written as variable length
+		 * deltas, which are short as the messages are mostly sorted by the
+		 * time they are sent.
+		 * 
+		 * @param out
+		 *            the object output stream
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private synchronized void writeObject(ObjectOutputStream out)
+				throws IOException {
+			out.defaultWriteObject();
+			out.writeInt(size + spilledSize);
+			long previousID = writeMessages(out, 0);
+			if (runs != null) {
+				for (File run : runs) {
+					RunReader reader = new RunReader(run);
+					try {
+						while (reader.next()) {
+							Varint.writeSignedVarLong(out, reader.vertexID
+									- previousID);
+							previousID = reader.vertexID;
+							out.writeDouble(reader.value);
+						}
+					} finally {
+						reader.close();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Reads the arrays written by {@link #writeObject(ObjectOutputStream)}
+		 * 
+		 * @param in
+		 *            the object input stream
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 * @throws ClassNotFoundException
+		 *             the class not found exception
+		 */
+		private void readObject(ObjectInputStream in) throws IOException,
+				ClassNotFoundException {
+			in.defaultReadObject();
+			size = in.readInt();
+			vertexIDs = new long[Math.max(size, INITIAL_CAPACITY)];
+			values = new double[vertexIDs.length];
+			long vertexID = 0;
+			for (int i = 0; i < size; i++) {
+				vertexID += Varint.readSignedVarLong(in);
+				vertexIDs[i] = vertexID;
+				values[i] = in.readDouble();
+			}
+		}
+
+		/**
+		 * String representation of the partition messages
+		 */
+		@Override
+		public synchronized String toString() {
+			StringBuilder result = new StringBuilder("[");
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					result.append(", ");
+				}
+				result.append(vertexIDs[i]).append("=").append(values[i]);
+			}
+			return result.append("]").toString();
+		}
+	}
+
+	/**
+	 * Represents a reader of the sorted messages of a run file, or of the
+	 * arrays of messages in memory, one message at a time.
+	 */
+	private static class RunReader {
+
+		/** The input of the run file, or null if the messages are in memory. */
+		private DataInputStream in;
+
+		/** The vertex identifiers of the messages in memory. */
+		private long[] vertexIDs;
+
+		/** The values of the messages in memory. */
+		private double[] values;
+
+		/** The index of the next message in memory. */
+		private int index;
+
+		/** The number of messages left to read. */
+		private int remaining;
+
+		/** The vertex identifier of the current message. */
+		private long vertexID;
+
+		/** The value of the current message. */
+		private double value;
+
+		/**
+		 * Constructs the reader of the messages in memory.
+		 * 
+		 * @param vertexIDs
+		 *            Represents the vertex identifiers of the messages
+		 * @param values
+		 *            Represents the values of the messages
+		 * @param size
+		 *            Represents the number of messages
+		 */
+		private RunReader(long[] vertexIDs, double[] values, int size) {
+			this.vertexIDs = vertexIDs;
+			this.values = values;
+			this.remaining = size;
+		}
+
+		/**
+		 * Constructs the reader of the run file.
+		 * 
+		 * @param run
+		 *            Represents the run file
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private RunReader(File run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(run), PartitionMessages.RUN_BUFFER_SIZE));
+			this.remaining = in.readInt();
+		}
+
+		/**
+		 * Moves to the next message.
+		 * 
+		 * @return true, if there was a next message
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			if (in == null) {
+				vertexID = vertexIDs[index];
+				value = values[index];
+				index++;
+			} else {
+				vertexID += Varint.readSignedVarLong(in);
+				value = in.readDouble();
+			}
+			return true;
+		}
+
+		/**
+		 * Closes the run file.
+		 */
+		private void close() {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				in = null;
+			}
+		}
+	}
+
+	/**
+	 * Represents an iterator over the values of the messages sent to a single
+	 * vertex. The iterator is reused for every vertex of a partition.
+	 */
+	public static class ValueIterator implements DoubleMessageIterator {
+
+		/** The messages being iterated. */
+		private PartitionMessages messages;
+
+		/** The index of the next message. */
+		private int index;
+
+		/** The index after the last message. */
+		private int end;
+
+		/**
+		 * Resets the iterator to the given range of messages.
+		 * 
+		 * @param messages
+		 *            Represents the partition messages
+		 * @param start
+		 *            Represents the index of the first message
+		 * @param end
+		 *            Represents the index after the last message
+		 */
+		public void reset(PartitionMessages messages, int start, int end) {
+			this.messages = messages;
+			this.index = start;
+			this.end = end;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see api.DoubleMessageIterator#hasNext()
+		 */
+		@Override
+		public boolean hasNext() {
+			return index < end;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see api.DoubleMessageIterator#next()
+		 */
+		@Override
+		public double next() {
+			return messages.getValue(index++);
+		}
+	}
+}
@@ -1,12 +1,16 @@
 package system;
 
 import java.io.File;
+import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import utility.GeneralUtils;
 import utility.Props;
@@ -37,6 +41,12 @@ public class HealthManager implements Runnable {
 
 	private Thread t;
 
+	/**
+	 * Whether only the partitions of the failed Workers are recovered and
+	 * replayed, instead of rolling every Worker back to the last checkpoint.
+	 */
+	private boolean confinedRecovery;
+
 	/**
 	 * Instantiates a new health manager.
 	 * 
@@ -50,6 +60,13 @@ public class HealthManager implements Runnable {
 		Props properties = Props.getInstance();
 		pingInterval = properties.getLongProperty("PING_INTERVAL");
 		checkpointDir = properties.getStringProperty("CHECKPOINT_DIR");
+		try {
+			confinedRecovery = Boolean.parseBoolean(properties
+					.getStringProperty("CONFINED_RECOVERY"));
+		} catch (PropertyNotFoundException e) {
+			/** confine the recovery to the failed Workers by default **/
+			confinedRecovery = true;
+		}
 		failedWorkers = new HashSet<>();
 		t = new Thread(this);
 		t.start();
@@ -112,23 +129,172 @@ public class HealthManager implements Runnable {
 	}
 
 	/**
-	 * Represents the process of recovery
+	 * Represents the process of recovery. Only the partitions of the failed
+	 * Workers are recovered if possible, otherwise every Worker is rolled back
+	 * to the last checkpoint.
 	 */
 	private void recover() {
 		System.out.println("HealthManager: recover");
+		// A checkpoint still being written is not recovered from.
+		master.abandonCheckpoint();
+		long failedSuperstep = master.beginRecovery();
+		if (confinedRecovery && recoverConfined(failedSuperstep)) {
+			failedWorkers.clear();
+			return;
+		}
+		recoverFromCheckpoint();
+	}
+
+	/**
+	 * Recovers only the partitions of the failed Workers. The Workers that are
+	 * alive roll back the superstep that failed, the partitions of the failed
+	 * Workers are read from their checkpoint files by the Workers they are
+	 * assigned to, and the supersteps since the checkpoint are replayed for
+	 * those partitions alone, with the messages that the other partitions
+	 * sent to them replayed from the message logs of the Workers.
+	 * 
+	 * @param failedSuperstep
+	 *            the superstep that was in progress
+	 * @return true, if the partitions were recovered; otherwise every Worker
+	 *         has to be rolled back to the checkpoint
+	 */
+	private boolean recoverConfined(long failedSuperstep) {
+		if (!master.isCheckpointCommitted()) {
+			return false;
+		}
+		// The checkpoint files only tell where the partitions were before
+		// partitions were migrated.
+		if (!master.isPartitionWorkerMapCommitted()) {
+			return false;
+		}
+		long checkpointSuperstep = master.getLastCheckpointedSuperstep();
+		for (long s = checkpointSuperstep; s < failedSuperstep; s++) {
+			if (master.getAggregatedValues(s) == null) {
+				return false;
+			}
+		}
+		// Reads which partitions the failed nodes had from their checkpoint
+		// files.
+		Map<String, List<Integer>> failedPartitions = new HashMap<>();
+		Set<Integer> replayedPartitions = new HashSet<>();
+		for (String workerID : failedWorkers) {
+			String workerStateFile = checkpointDir + File.separator + workerID
+					+ "_" + checkpointSuperstep;
+			List<Integer> partitionIDs = Checkpoint
+					.getPartitionIDs(workerStateFile);
+			if (partitionIDs == null) {
+				return false;
+			}
+			failedPartitions.put(workerID, partitionIDs);
+			replayedPartitions.addAll(partitionIDs);
+		}
+		System.out.println("HealthManager: Replaying partitions "
+				+ replayedPartitions + " from superstep " + checkpointSuperstep
+				+ " to " + failedSuperstep);
+		Map<String, WorkerProxy> workerProxyMap = master.getWorkerProxyMap();
+		try {
+			for (WorkerProxy workerProxy : workerProxyMap.values()) {
+				workerProxy.rollbackSuperStep(failedSuperstep);
+			}
+			for (WorkerProxy workerProxy : workerProxyMap.values()) {
+				workerProxy.startReplay(checkpointSuperstep, replayedPartitions);
+			}
+			// The healthy nodes the partitions are assigned to read them
+			// themselves.
+			Set<String> hosts = new HashSet<>();
+			for (Map.Entry<String, List<Integer>> entry : failedPartitions
+					.entrySet()) {
+				Map<WorkerProxy, List<Integer>> assignments = assignRecoveredPartitions(
+						entry.getKey(), entry.getValue());
+				if (!recoverPartitions(checkpointDir + File.separator
+						+ entry.getKey() + "_" + checkpointSuperstep,
+						assignments)) {
+					return false;
+				}
+				for (WorkerProxy workerProxy : assignments.keySet()) {
+					hosts.add(workerProxy.getWorkerID());
+				}
+			}
+			master.sendWorkerPartitionInfo();
+			for (long s = checkpointSuperstep; s < failedSuperstep; s++) {
+				if (s > checkpointSuperstep) {
+					replayMessages(s - 1);
+				}
+				master.replaySuperStep(s, hosts);
+				while (!master.awaitReplay(pingInterval)) {
+					// Another Worker failed during the replay.
+					int numFailedWorkers = failedWorkers.size();
+					if (!checkHealth()
+							&& failedWorkers.size() > numFailedWorkers) {
+						return false;
+					}
+				}
+			}
+			if (failedSuperstep > checkpointSuperstep) {
+				replayMessages(failedSuperstep - 1);
+			}
+			for (WorkerProxy workerProxy : workerProxyMap.values()) {
+				workerProxy.finishReplay(failedSuperstep);
+			}
+		} catch (RemoteException | InterruptedException e) {
+			System.out.println("HealthManager: Replay failed");
+			e.printStackTrace();
+			checkHealth();
+			return false;
+		}
+		master.commitReplayCheckpoint();
+		try {
+			System.out.println("Calling start superstep");
+			master.endRecovery();
+		} catch (RemoteException e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
+	/**
+	 * Makes every Worker send the messages it logged in the superstep to the
+	 * replayed partitions again.
+	 * 
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	private void replayMessages(long superstep) throws RemoteException {
+		for (WorkerProxy workerProxy : master.getWorkerProxyMap().values()) {
+			workerProxy.replayMessages(superstep);
+		}
+	}
+
+	/**
+	 * Rolls every Worker back to the last checkpoint.
+	 */
+	private void recoverFromCheckpoint() {
+		System.out.println("HealthManager: recoverFromCheckpoint");
+		master.abandonCheckpoint();
+		// Every Worker gets back the partitions of its checkpoint.
+		master.restoreCommittedPartitionWorkerMap();
 		startRecovery();
 		recoverActiveWorkerSet();
+		recoverAggregatedValues();
 		Iterator<String> iter = failedWorkers.iterator();
 		String workerID;
 		String workerStateFile;
-		WorkerData workerData;
-		// Reads the persisted partition info of all the failed nodes and
-		// assigns it to healthy nodes
+		List<Integer> partitionIDs;
+		// Reads which partitions the failed nodes had from their checkpoint
+		// files and assigns them to healthy nodes, which read the partitions
+		// themselves.
 		while (iter.hasNext()) {
 			workerID = iter.next();
 			workerStateFile = checkpointDir + File.separator + workerID + "_" + this.master.getLastCheckpointedSuperstep();	
-			workerData = (WorkerData) GeneralUtils.deserialize(workerStateFile);
-			assignRecoveredPartitions(workerID, workerData);
+			partitionIDs = Checkpoint.getPartitionIDs(workerStateFile);
+			if (partitionIDs == null) {
+				System.out.println("HealthManager: No checkpoint of " + workerID);
+				continue;
+			}
+			recoverPartitions(workerStateFile,
+					assignRecoveredPartitions(workerID, partitionIDs));
 		}
 		
 		// Send the modified maps to all the workers.
@@ -176,6 +342,18 @@ public class HealthManager implements Runnable {
 		master.setActiveWorkerSet(set);
 	}
 
+	/**
+	 * Recover the serialized values of the aggregators.
+	 */
+	private void recoverAggregatedValues() {
+		System.out.println("HealthManager: recoverAggregatedValues");
+		String filePath = checkpointDir + File.separator + "aggregatedvalues";
+		@SuppressWarnings("unchecked")
+		Map<String, Serializable> values = (Map<String, Serializable>) GeneralUtils
+				.deserialize(filePath);
+		master.setAggregatedValues(values);
+	}
+
 	/**
 	 * Finishes the recovery process.
 	 */
@@ -200,18 +378,19 @@ public class HealthManager implements Runnable {
 			}
 		}
 		if (failureDuringRecovery){
-			recover();
+			recoverFromCheckpoint();
 		}
 		else {
 			try {
 				// Update the checkpoint file for all the workers. This will set the current checkpoint file to the one which was done during this recovery.
 				this.master.updateCheckpointFile();
+				this.master.commitPartitionWorkerMap();
 				// Serialize the active worker set.
 				this.master.serializeActiveWorkerSet();
 				// Reset the superstep to the most recent superstep at which checkpointing was done.
 				this.master.resetCheckpointSuperstep();
 				System.out.println("Calling start superstep");
-				this.master.startSuperStep();
+				this.master.endRecovery();
 			} catch (RemoteException e) {
 				e.printStackTrace();
 			}
@@ -219,16 +398,20 @@ public class HealthManager implements Runnable {
 	}
 
 	/**
-	 * Assign the recovered partitions from the dead Worker to other random
-	 * Workers.
+	 * Assign the recovered partitions from the dead Worker to the other
+	 * Workers by their load. A Worker's load is the time it takes to compute
+	 * its partitions, estimated from the number of partitions it has, the
+	 * average time it took to compute a partition and its number of threads.
+	 * Every partition goes to the Worker whose load grows the least with it.
 	 * 
 	 * @param workerID
 	 *            the dead worker's id
-	 * @param workerData
-	 *            the dead Worker's data
+	 * @param partitionIDs
+	 *            the dead Worker's partitions
+	 * @return the partitions assigned to each Worker
 	 */
-	private void assignRecoveredPartitions(String workerID,
-			WorkerData workerData) {
+	private Map<WorkerProxy, List<Integer>> assignRecoveredPartitions(
+			String workerID, List<Integer> partitionIDs) {
 		System.out.println("HealthManager: Assigning recovered partitions");
 		Map<Integer, String> partitionWorkerMap = this.master
 				.getPartitionWorkerMap();
@@ -236,42 +419,132 @@ public class HealthManager implements Runnable {
 				.getWorkerProxyMap();
 		Set<String> activeWorkerSet = this.master.getActiveWorkerSet();
 
-		Object[] workerProxyCollection = workerProxyMap.values().toArray();
 		// Remove the dead worker from the active worker set if at all it was
 		// present during checkpointing.
 		boolean wasDeadWorkerActive = activeWorkerSet.contains(workerID);
 		if (wasDeadWorkerActive) {
 			activeWorkerSet.remove(workerID);
 		}
-		// System.out.println("WorkerData Partitions " + workerData);
-		Random rand = new Random();
-		for (Iterator<Partition> iter = workerData.getPartitions().iterator(); iter
-				.hasNext();) {
-
-			Partition partition = iter.next();
-
-			int index = (rand.nextInt(workerProxyCollection.length));
-			// Choose a random worker from the map and assign the partition to
-			// it.
-			WorkerProxy workerProxy = (WorkerProxy) workerProxyCollection[index];
-			System.out.println("Assigning " + partition.getPartitionID() + " to " + workerProxy.getWorkerID() );
-			partitionWorkerMap.put(partition.getPartitionID(),
-					workerProxy.getWorkerID());
+		Map<String, Integer> partitionCounts = new HashMap<>();
+		for (String partitionWorkerID : partitionWorkerMap.values()) {
+			Integer count = partitionCounts.get(partitionWorkerID);
+			partitionCounts.put(partitionWorkerID, count == null ? 1
+					: count + 1);
+		}
+		List<WorkerProxy> workerProxies = new ArrayList<>(
+				workerProxyMap.values());
+		long[] computeTimes = getPartitionComputeTimes(workerProxies);
+		double[] loads = new double[workerProxies.size()];
+		double[] partitionLoads = new double[workerProxies.size()];
+		for (int i = 0; i < workerProxies.size(); i++) {
+			WorkerProxy workerProxy = workerProxies.get(i);
+			Integer count = partitionCounts.get(workerProxy.getWorkerID());
+			partitionLoads[i] = (double) computeTimes[i]
+					/ Math.max(1, workerProxy.getNumThreads());
+			loads[i] = (count == null ? 0 : count) * partitionLoads[i];
+		}
+		Map<WorkerProxy, List<Integer>> assignments = new HashMap<>();
+		for (Integer partitionID : partitionIDs) {
+			int index = 0;
+			for (int i = 1; i < loads.length; i++) {
+				if (loads[i] + partitionLoads[i] < loads[index]
+						+ partitionLoads[index]) {
+					index = i;
+				}
+			}
+			loads[index] += partitionLoads[index];
+			WorkerProxy workerProxy = workerProxies.get(index);
+			System.out.println("Assigning " + partitionID + " to " + workerProxy.getWorkerID() );
+			partitionWorkerMap.put(partitionID, workerProxy.getWorkerID());
 			// If the dead worker was active during checkpointing, add the
 			// worker to which the dead worker's partition is assigned.
 			if (wasDeadWorkerActive) {
 				activeWorkerSet.add(workerProxy.getWorkerID());
 			}
-			try {
-				// send this partition and the messages that were sent to this
-				// partition to the Worker.
-				workerProxy.addRecoveredData(partition, workerData
-						.getMessages().get(partition.getPartitionID()));
+			List<Integer> assigned = assignments.get(workerProxy);
+			if (assigned == null) {
+				assigned = new ArrayList<>();
+				assignments.put(workerProxy, assigned);
+			}
+			assigned.add(partitionID);
+		}
+		return assignments;
+	}
 
+	/**
+	 * Gets the average time each Worker took to compute a partition. A Worker
+	 * that has not computed a partition yet, or that can't be asked, is taken
+	 * to be as fast as the average Worker.
+	 * 
+	 * @param workerProxies
+	 *            the Workers
+	 * @return the times in nanoseconds, in the order of the Workers
+	 */
+	private long[] getPartitionComputeTimes(List<WorkerProxy> workerProxies) {
+		long[] computeTimes = new long[workerProxies.size()];
+		long totalTime = 0;
+		int measured = 0;
+		for (int i = 0; i < workerProxies.size(); i++) {
+			try {
+				computeTimes[i] = workerProxies.get(i).getPartitionComputeTime();
 			} catch (RemoteException e) {
 				e.printStackTrace();
 			}
+			if (computeTimes[i] > 0) {
+				totalTime += computeTimes[i];
+				measured++;
+			}
+		}
+		long averageTime = measured == 0 ? 1 : totalTime / measured;
+		for (int i = 0; i < computeTimes.length; i++) {
+			if (computeTimes[i] <= 0) {
+				computeTimes[i] = averageTime;
+			}
 		}
+		return computeTimes;
+	}
 
+	/**
+	 * Makes the Workers read the partitions assigned to them from the
+	 * checkpoint file of the dead Worker, all at the same time.
+	 * 
+	 * @param workerStateFile
+	 *            the checkpoint file of the dead Worker
+	 * @param assignments
+	 *            the partitions assigned to each Worker
+	 * @return true, if every Worker read its partitions
+	 */
+	private boolean recoverPartitions(final String workerStateFile,
+			Map<WorkerProxy, List<Integer>> assignments) {
+		final AtomicBoolean recovered = new AtomicBoolean(true);
+		List<Thread> threads = new ArrayList<>();
+		for (final Map.Entry<WorkerProxy, List<Integer>> entry : assignments
+				.entrySet()) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// The Worker reads the partitions and the messages
+						// that were sent to them.
+						entry.getKey().recoverPartitions(workerStateFile,
+								entry.getValue());
+					} catch (RemoteException e) {
+						e.printStackTrace();
+						recovered.set(false);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				recovered.set(false);
+			}
+		}
+		return recovered.get();
 	}
 }
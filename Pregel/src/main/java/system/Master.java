@@ -1,7 +1,12 @@
 package system;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
 import java.rmi.RMISecurityManager;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
@@ -9,22 +14,39 @@ import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import utility.Compression;
 import utility.GeneralUtils;
 import utility.Props;
+import utility.VertexFactory;
+import api.Aggregator;
 import api.Client2Master;
 import api.Data;
+import api.Vertex;
 import exceptions.PropertyNotFoundException;
 import graphs.GraphPartitioner;
+import graphs.InputSplit;
+import graphs.PartitioningStrategy;
 import graphs.VertexID;
 
 /**
@@ -67,11 +89,54 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	/** The partitionID to workerID map. **/
 	private Map<Integer, String> partitionWorkerMap;
 
-	/** Set of Workers maintained for acknowledgment. */
-	private Set<String> workerAcknowledgementSet = new HashSet<>();
+	/**
+	 * The Workers that have not yet acknowledged the superstep, with the epoch
+	 * of the superstep they are expected to acknowledge.
+	 */
+	private Map<String, Long> workerAcknowledgementMap = new ConcurrentHashMap<>();
+
+	/** The number of Workers that have not yet acknowledged the superstep. */
+	private AtomicInteger pendingAcknowledgements = new AtomicInteger();
+
+	/**
+	 * The number of times a superstep has been started or replayed, which
+	 * tells the acknowledgments and barriers of a superstep from those of a
+	 * superstep started again after a recovery. It is sent to the Workers with
+	 * the superstep and returned with their acknowledgments.
+	 */
+	private volatile long barrierEpoch = 0;
+
+	/**
+	 * The epochs of the supersteps that every Worker has acknowledged, taken
+	 * by the superstep coordinator.
+	 */
+	private BlockingQueue<Long> completedBarriers = new LinkedBlockingQueue<>();
+
+	/**
+	 * The thread that starts the next superstep, or halts, once every Worker
+	 * has acknowledged a superstep, so that the Workers' acknowledgments only
+	 * record their results and never wait for each other.
+	 */
+	private Thread superstepCoordinator;
 
 	/** Set of workers who will be active in the next superstep. */
-	private Set<String> activeWorkerSet = new HashSet<>();
+	private Set<String> activeWorkerSet = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/** The aggregators of the application, by name. */
+	private Map<String, Aggregator<?>> aggregators;
+
+	/**
+	 * The values of the aggregators reduced in the previous superstep, which
+	 * are sent to the workers with the current superstep.
+	 */
+	private Map<String, Serializable> aggregatedValues = new HashMap<>();
+
+	/**
+	 * The values of the aggregators sent by the workers that completed the
+	 * current superstep, by worker. They are reduced when the superstep ends.
+	 */
+	private Map<String, Map<String, Serializable>> workerAggregatedValues = new ConcurrentHashMap<>();
 
 	/** The start time. */
 	long startTime;
@@ -79,9 +144,107 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	/** The last checkpointed superstep. */
 	private long lastCheckpointedSuperstep = 0;
 
+	/** Whether a checkpoint has been committed in the current run. */
+	private boolean checkpointCommitted = false;
+
+	/** Guards the checkpoint being written by the Workers. */
+	private final Object checkpointLock = new Object();
+
+	/** The superstep of the checkpoint being written, or -1 if none. */
+	private long pendingCheckpointSuperstep = -1;
+
+	/** The Workers that have not yet written the pending checkpoint. */
+	private Set<String> pendingCheckpointWorkers = new HashSet<>();
+
+	/**
+	 * Whether the Workers are being told that the pending checkpoint is
+	 * committed. It can't be abandoned until they have been.
+	 */
+	private boolean committingCheckpoint = false;
+
+	/** The active worker set that the pending checkpoint starts with. */
+	private Set<String> checkpointActiveWorkerSet;
+
+	/** The aggregated values that the pending checkpoint starts with. */
+	private Map<String, Serializable> checkpointAggregatedValues;
+
+	/**
+	 * The interval in milliseconds at which the Workers of the pending
+	 * checkpoint are checked to be alive while it is waited for.
+	 */
+	private static final long CHECKPOINT_WAIT_INTERVAL = 100;
+
+	/**
+	 * Whether the Workers are being recovered. The acknowledgments of the
+	 * superstep that failed are ignored until the recovery ends.
+	 */
+	private volatile boolean recovering = false;
+
+	/**
+	 * The Workers that have not yet completed the superstep being replayed,
+	 * with the epoch of the replay they are expected to acknowledge.
+	 */
+	private Map<String, Long> replayAcknowledgementMap = new ConcurrentHashMap<>();
+
+	/** Signals the completion of the superstep being replayed. */
+	private final Object replayLock = new Object();
+
+	/**
+	 * The values of the aggregators that the supersteps since the last
+	 * checkpoint started with, by superstep, to replay the supersteps with.
+	 */
+	private Map<Long, Map<String, Serializable>> superstepAggregatedValues = new ConcurrentHashMap<>();
+
 	/** The CHECKPOINTIN g_ directory. */
 	private static String CHECKPOINTING_DIRECTORY;
 
+	/**
+	 * Whether the Workers parse their own partitions from the input graph
+	 * file instead of receiving them from the Master.
+	 */
+	private static boolean WORKER_SIDE_LOADING = false;
+
+	/**
+	 * The time in milliseconds that a control call to a Worker is waited for
+	 * before it is reported as timed out, or 0 to wait until it returns.
+	 */
+	private static long CONTROL_CALL_TIMEOUT;
+
+	/**
+	 * The ratio of the load of the most loaded Worker to the average load of
+	 * the Workers in a superstep above which partitions are migrated at the
+	 * barrier, or 0 to never migrate partitions.
+	 */
+	private static double MIGRATION_SKEW_THRESHOLD;
+
+	/**
+	 * The load in milliseconds of the most loaded Worker in a superstep below
+	 * which the superstep is too short for migrating partitions to pay off.
+	 */
+	private static long MIGRATION_MIN_COMPUTE_TIME;
+
+	/** The maximum number of partitions migrated at a barrier. */
+	private static final int MAX_MIGRATIONS_PER_SUPERSTEP = 4;
+
+	/**
+	 * The work each partition took in the current superstep, reported by the
+	 * workers that completed it, by worker.
+	 */
+	private Map<String, Map<Integer, PartitionStats>> workerPartitionStats = new ConcurrentHashMap<>();
+
+	/** The partitionID to workerID map that the pending checkpoint has. */
+	private Map<Integer, String> checkpointPartitionWorkerMap;
+
+	/**
+	 * The partitionID to workerID map of the last committed checkpoint, which
+	 * differs from the current one once partitions have been migrated since.
+	 */
+	private Map<Integer, String> committedPartitionWorkerMap;
+
+	/** The executor making the control calls to the Workers concurrently. */
+	private ExecutorService controlCallExecutor = Executors
+			.newCachedThreadPool();
+
 	/** The result queue. */
 	private BlockingQueue<String> resultQueue = new LinkedBlockingDeque<>();
 
@@ -96,6 +259,30 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 			CHECKPOINT_FREQUENCY = 5;
 			e.printStackTrace();
 		}
+		try {
+			WORKER_SIDE_LOADING = Boolean.parseBoolean(Props.getInstance()
+					.getStringProperty("WORKER_SIDE_LOADING"));
+		} catch (PropertyNotFoundException e) {
+			/** the Master builds the partitions by default **/
+			WORKER_SIDE_LOADING = false;
+		}
+		try {
+			CONTROL_CALL_TIMEOUT = Props.getInstance().getLongProperty(
+					"CONTROL_CALL_TIMEOUT");
+		} catch (PropertyNotFoundException e) {
+			/** set to default control call timeout **/
+			CONTROL_CALL_TIMEOUT = 60000;
+		}
+		try {
+			MIGRATION_SKEW_THRESHOLD = Props.getInstance().getDoubleProperty(
+					"MIGRATION_SKEW_THRESHOLD");
+			MIGRATION_MIN_COMPUTE_TIME = Props.getInstance().getLongProperty(
+					"MIGRATION_MIN_COMPUTE_TIME");
+		} catch (PropertyNotFoundException e) {
+			/** set to default migration thresholds **/
+			MIGRATION_SKEW_THRESHOLD = 2.0;
+			MIGRATION_MIN_COMPUTE_TIME = 100;
+		}
 	}
 
 	/**
@@ -109,6 +296,14 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	public Master() throws RemoteException, PropertyNotFoundException {
 		super();
 		superstep = 0;
+		superstepCoordinator = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				coordinateSupersteps();
+			}
+		}, "SuperstepCoordinator");
+		superstepCoordinator.setDaemon(true);
+		superstepCoordinator.start();
 	}
 
 	/**
@@ -127,7 +322,8 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 *            the new active worker set
 	 */
 	public void setActiveWorkerSet(Set<String> activeWorkerSet) {
-		this.activeWorkerSet = activeWorkerSet;
+		this.activeWorkerSet.clear();
+		this.activeWorkerSet.addAll(activeWorkerSet);
 	}
 
 	/**
@@ -170,7 +366,20 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 			startTime = System.currentTimeMillis();
 			GraphPartitioner graphPartitioner = new GraphPartitioner(
 					graphFileName, vertexClassName);
-			assignPartitions(graphPartitioner, sourceVertexID, initData);
+			registerAggregators(vertexClassName);
+			sendPartitioningStrategy(graphPartitioner.getPartitioningStrategy());
+			if (WORKER_SIDE_LOADING && graphPartitioner.hasInputSplits()) {
+				assignInputSplits(graphPartitioner, graphFileName,
+						vertexClassName, sourceVertexID, initData);
+			} else {
+				if (WORKER_SIDE_LOADING) {
+					System.out.println("Master: The partitions of "
+							+ graphPartitioner.getPartitioningStrategy()
+							+ " are not contiguous in " + graphFileName
+							+ ", the Master builds them");
+				}
+				assignPartitions(graphPartitioner, sourceVertexID, initData);
+			}
 			sendWorkerPartitionInfo();
 			healthManager = new HealthManager(this);
 			startSuperStep();
@@ -181,6 +390,65 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 		}
 	}
 
+	/**
+	 * Sends the strategy mapping the vertices to the partitions to all the
+	 * workers, before they get any partition.
+	 * 
+	 * @param partitioningStrategy
+	 *            the partitioning strategy
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	private void sendPartitioningStrategy(
+			final PartitioningStrategy partitioningStrategy)
+			throws RemoteException {
+		throwFirstFailure(broadcast("setPartitioningStrategy",
+				workerProxyMap.keySet(), new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy)
+							throws RemoteException {
+						workerProxy.setPartitioningStrategy(partitioningStrategy);
+					}
+				}, CONTROL_CALL_TIMEOUT));
+	}
+
+	/**
+	 * Registers the aggregators of the application's vertex class, using a
+	 * vertex created for that purpose.
+	 * 
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 */
+	private void registerAggregators(String vertexClassName) {
+		VertexFactory vertexFactory = VertexFactory
+				.getInstance(vertexClassName);
+		Vertex vertex = vertexFactory == null ? null : vertexFactory
+				.newVertex(new VertexID(0, 0), Collections.<Edge> emptyList());
+		this.aggregators = vertex == null ? null : vertex.getAggregators();
+	}
+
+	/**
+	 * Gets the values of the aggregators reduced in the previous superstep.
+	 * 
+	 * @return the aggregated values
+	 */
+	public Map<String, Serializable> getAggregatedValues() {
+		return aggregatedValues;
+	}
+
+	/**
+	 * Sets the values of the aggregators reduced in the previous superstep,
+	 * discarding the values reduced so far in the current superstep.
+	 * 
+	 * @param aggregatedValues
+	 *            the aggregated values
+	 */
+	public synchronized void setAggregatedValues(
+			Map<String, Serializable> aggregatedValues) {
+		this.aggregatedValues = aggregatedValues;
+		this.workerAggregatedValues.clear();
+	}
+
 	/**
 	 * Gets the worker proxy map info.
 	 * 
@@ -224,15 +492,67 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 */
 	public void sendWorkerPartitionInfo() throws RemoteException {
 		System.out.println("Master: sendWorkerPartitionInfo");
+		throwFirstFailure(broadcast("setWorkerPartitionInfo",
+				workerProxyMap.keySet(), new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy)
+							throws RemoteException {
+						workerProxy.setWorkerPartitionInfo(partitionWorkerMap,
+								workerMap);
+					}
+				}, CONTROL_CALL_TIMEOUT));
+	}
+
+	/**
+	 * Maps the partitions to workers based on the number of processors
+	 * (threads) that each worker has, and adds every worker having a partition
+	 * to the active worker set.
+	 * 
+	 * @param totalPartitions
+	 *            the total number of partitions
+	 */
+	private void mapPartitionsToWorkers(int totalPartitions) {
+		partitionWorkerMap = new HashMap<>();
+		int partitionID = 0;
+
+		// Assign partitions to workers in the ratio of the number of worker
+		// threads that each worker has.
 		for (Map.Entry<String, WorkerProxy> entry : workerProxyMap.entrySet()) {
 			WorkerProxy workerProxy = entry.getValue();
-			workerProxy.setWorkerPartitionInfo(partitionWorkerMap, workerMap);
+			int numThreads = workerProxy.getNumThreads();
+			double ratio = ((double) (numThreads)) / totalWorkerThreads.get();
+			System.out.println("Worker " + workerProxy.getWorkerID());
+			System.out.println("Ratio: " + ratio);
+			int numPartitionsToAssign = (int) (ratio * totalPartitions);
+			System.out.println("numPartitionsToAssign: "
+					+ numPartitionsToAssign);
+			for (int i = 0; i < numPartitionsToAssign; i++) {
+				partitionWorkerMap.put(partitionID++, workerProxy.getWorkerID());
+			}
+		}
+
+		// Add the remaining partitions (if any) in a round-robin fashion.
+		Iterator<Map.Entry<String, WorkerProxy>> workerMapIter = workerProxyMap
+				.entrySet().iterator();
+		while (partitionID < totalPartitions) {
+			// If the remaining partitions is greater than the number of the
+			// workers, start iterating from the beginning again.
+			if (!workerMapIter.hasNext()) {
+				workerMapIter = workerProxyMap.entrySet().iterator();
+			}
+			partitionWorkerMap.put(partitionID++, workerMapIter.next()
+					.getKey());
 		}
+
+		// Every vertex is active in the first superstep, so acknowledgments
+		// will be received from every worker that has a partition.
+		activeWorkerSet.addAll(partitionWorkerMap.values());
 	}
 
 	/**
 	 * Assign partitions to workers based on the number of processors (threads)
-	 * that each worker has.
+	 * that each worker has. The partitions are built by the Master and sent to
+	 * the workers in batches.
 	 * 
 	 * @param <T>
 	 *            the generic type
@@ -250,69 +570,126 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	private <T> void assignPartitions(GraphPartitioner graphPartitioner,
 			long sourceVertexID, Data<T> initData)
 			throws PropertyNotFoundException, RemoteException {
-		int totalPartitions = graphPartitioner.getNumPartitions();
-		Iterator<Partition> iter = graphPartitioner.iterator();
-		Partition partition = null;
-		partitionWorkerMap = new HashMap<>();
-
 		int sourceVertex_partitionID = GeneralUtils
 				.getPartitionID(sourceVertexID);
+		mapPartitionsToWorkers(graphPartitioner.getNumPartitions());
 
-		// Assign partitions to workers in the ratio of the number of worker
-		// threads that each worker has.
-		for (Map.Entry<String, WorkerProxy> entry : workerProxyMap.entrySet()) {
-			WorkerProxy workerProxy = entry.getValue();
-			int numThreads = workerProxy.getNumThreads();
-			double ratio = ((double) (numThreads)) / totalWorkerThreads.get();
-			System.out.println("Worker " + workerProxy.getWorkerID());
-			System.out.println("Ratio: " + ratio);
-			int numPartitionsToAssign = (int) (ratio * totalPartitions);
-			System.out.println("numPartitionsToAssign: "
-					+ numPartitionsToAssign);
-			List<Partition> workerPartitions = new ArrayList<>();
-			for (int i = 0; i < numPartitionsToAssign; i++) {
-				partition = iter.next();
-				// Get the partition that has the sourceVertex, and add the
-				// worker that has the partition to the worker set from which
-				// acknowledgments will be received.
-				if (partition.getPartitionID() == sourceVertex_partitionID) {
-					activeWorkerSet.add(entry.getKey());
+		// Send the partitions of a worker once it has one per thread, so that
+		// the Master never holds much more than a batch per worker.
+		Map<String, List<Partition>> workerPartitionsMap = new HashMap<>();
+		long[] edgeCut = new long[3];
+		for (Partition partition : graphPartitioner) {
+			String workerID = partitionWorkerMap.get(partition
+					.getPartitionID());
+			WorkerProxy workerProxy = workerProxyMap.get(workerID);
+			System.out.println("Adding partition  "
+					+ partition.getPartitionID() + " to worker " + workerID);
+			countEdgeCut(partition, workerID, edgeCut);
+			List<Partition> workerPartitions = workerPartitionsMap
+					.get(workerID);
+			if (workerPartitions == null) {
+				workerPartitions = new ArrayList<>();
+				workerPartitionsMap.put(workerID, workerPartitions);
+			}
+			workerPartitions.add(partition);
+			if (workerPartitions.size() >= workerProxy.getNumThreads()) {
+				workerProxy.addPartitionList(workerPartitions);
+				workerPartitionsMap.remove(workerID);
+			}
+		}
+		for (Map.Entry<String, List<Partition>> entry : workerPartitionsMap
+				.entrySet()) {
+			workerProxyMap.get(entry.getKey()).addPartitionList(
+					entry.getValue());
+		}
+		System.out.println(String.format(
+				"Master: Edge cut: %d of %d edges (%.1f%%) cross partitions, "
+						+ "%d (%.1f%%) cross workers", edgeCut[1], edgeCut[0],
+				edgeCut[0] == 0 ? 0.0 : 100.0 * edgeCut[1] / edgeCut[0],
+				edgeCut[2], edgeCut[0] == 0 ? 0.0 : 100.0 * edgeCut[2]
+						/ edgeCut[0]));
+
+		setInitialMessage(sourceVertex_partitionID, sourceVertexID, initData);
+	}
 
+	/**
+	 * Counts the outgoing edges of the partition's vertices, and those whose
+	 * destination is in another partition or on another worker, whose
+	 * messages are sent to another partition or over the network.
+	 * 
+	 * @param partition
+	 *            the partition
+	 * @param workerID
+	 *            the worker the partition is assigned to
+	 * @param edgeCut
+	 *            the number of edges, of edges crossing partitions and of
+	 *            edges crossing workers, which are added to
+	 */
+	private void countEdgeCut(Partition partition, String workerID,
+			long[] edgeCut) {
+		int partitionID = partition.getPartitionID();
+		for (Vertex vertex : partition.getVertices()) {
+			int numEdges = vertex.getNumOutgoingEdges();
+			for (int i = 0; i < numEdges; i++) {
+				int destinationPartitionID = GeneralUtils
+						.getPartitionID(vertex.getOutgoingEdgeDestID(i));
+				edgeCut[0]++;
+				if (destinationPartitionID != partitionID) {
+					edgeCut[1]++;
+					if (!workerID.equals(partitionWorkerMap
+							.get(destinationPartitionID))) {
+						edgeCut[2]++;
+					}
 				}
-				System.out.println("Adding partition  "
-						+ partition.getPartitionID() + " to worker "
-						+ workerProxy.getWorkerID());
-				workerPartitions.add(partition);
-				partitionWorkerMap.put(partition.getPartitionID(),
-						workerProxy.getWorkerID());
 			}
-			workerProxy.addPartitionList(workerPartitions);
 		}
+	}
 
-		// Add the remaining partitions (if any) in a round-robin fashion.
-		Iterator<Map.Entry<String, WorkerProxy>> workerMapIter = workerProxyMap
-				.entrySet().iterator();
-		while (iter.hasNext()) {
-			// If the remaining partitions is greater than the number of the
-			// workers, start iterating from the beginning again.
-			if (!workerMapIter.hasNext()) {
-				workerMapIter = workerProxyMap.entrySet().iterator();
-			}
-			partition = iter.next();
+	/**
+	 * Assign partitions to workers based on the number of processors (threads)
+	 * that each worker has. Only the byte ranges of the partitions in the
+	 * input graph file are sent; the workers parse their partitions in
+	 * parallel.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param graphPartitioner
+	 *            the graph partitioner
+	 * @param graphFileName
+	 *            the graph file name
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 * @param sourceVertexID
+	 *            the source vertex id
+	 * @param initData
+	 *            the data
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private <T> void assignInputSplits(GraphPartitioner graphPartitioner,
+			String graphFileName, String vertexClassName, long sourceVertexID,
+			Data<T> initData) throws IOException {
+		int sourceVertex_partitionID = GeneralUtils
+				.getPartitionID(sourceVertexID);
+		mapPartitionsToWorkers(graphPartitioner.getNumPartitions());
 
-			WorkerProxy workerProxy = workerMapIter.next().getValue();
-			// Get the partition that has the sourceVertex, and add the worker
-			// that has the partition to the worker set from which
-			// acknowledgments will be received.
-			if (partition.getPartitionID() == sourceVertex_partitionID) {
-				activeWorkerSet.add(workerProxy.getWorkerID());
-			}
-			System.out.println("Adding partition  "
-					+ partition.getPartitionID() + " to worker "
-					+ workerProxy.getWorkerID());
-			workerProxy.addPartition(partition);
-			partitionWorkerMap.put(partition.getPartitionID(),
-					workerProxy.getWorkerID());
+		List<InputSplit> inputSplits = graphPartitioner.getInputSplits();
+		graphPartitioner.close();
+		Map<String, List<InputSplit>> workerInputSplitsMap = new HashMap<>();
+		for (String workerID : workerProxyMap.keySet()) {
+			workerInputSplitsMap.put(workerID, new ArrayList<InputSplit>());
+		}
+		for (InputSplit inputSplit : inputSplits) {
+			workerInputSplitsMap.get(
+					partitionWorkerMap.get(inputSplit.getPartitionID())).add(
+					inputSplit);
+		}
+		for (Map.Entry<String, List<InputSplit>> entry : workerInputSplitsMap
+				.entrySet()) {
+			System.out.println("Assigning input splits " + entry.getValue()
+					+ " to worker " + entry.getKey());
+			workerProxyMap.get(entry.getKey()).loadPartitions(graphFileName,
+					vertexClassName, entry.getValue());
 		}
 
 		setInitialMessage(sourceVertex_partitionID, sourceVertexID, initData);
@@ -343,8 +720,8 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 		map.put(sourceVertex, messageList);
 		ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> initialMessage = new ConcurrentHashMap<>();
 		initialMessage.put(sourceVertex_partitionID, map);
-		workerProxyMap.get(activeWorkerSet.toArray()[0]).setInitialMessage(
-				initialMessage);
+		workerProxyMap.get(partitionWorkerMap.get(sourceVertex_partitionID))
+				.setInitialMessage(initialMessage);
 
 	}
 
@@ -391,17 +768,33 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 		if (!file.exists()) {
 			file.mkdirs();
 		}
-		String outputFilePath = outputDir + File.separator
+		final String outputFilePath = outputDir + File.separator
 				+ System.currentTimeMillis() + ".txt";
-		for (Map.Entry<String, WorkerProxy> entry : workerProxyMap.entrySet()) {
-			WorkerProxy workerProxy = entry.getValue();
-			workerProxy.writeOutput(outputFilePath);
-			workerProxy.halt();
-		}
+		// Every Worker writes its part of the output to a file of its own,
+		// and the parts are appended to the output file in Worker order. The
+		// output is waited for however long it takes to write.
+		List<String> workerIDs = new ArrayList<>(workerProxyMap.keySet());
+		broadcast("writeOutput", workerIDs, new WorkerCall() {
+			@Override
+			public void call(WorkerProxy workerProxy) throws RemoteException {
+				workerProxy.writeOutput(getOutputPartFilePath(outputFilePath,
+						workerProxy.getWorkerID()));
+			}
+		}, 0);
+		mergeOutputParts(outputFilePath, workerIDs);
+		broadcast("halt", workerIDs, new WorkerCall() {
+			@Override
+			public void call(WorkerProxy workerProxy) throws RemoteException {
+				workerProxy.halt();
+			}
+		}, CONTROL_CALL_TIMEOUT);
 
 		healthManager.exit();
 		long endTime = System.currentTimeMillis();
 		System.out.println("Time taken: " + (endTime - startTime) + " ms");
+		if (Compression.isEnabled()) {
+			System.out.println("Master: " + Compression.getMetrics());
+		}
 		// Restore the system back to its initial state
 		restoreInitialState();
 		// Inform the client about the result.
@@ -414,9 +807,17 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 */
 	private void restoreInitialState() {
 		this.activeWorkerSet.clear();
-		this.workerAcknowledgementSet.clear();
+		this.workerAcknowledgementMap.clear();
 		this.partitionWorkerMap.clear();
+		this.aggregators = null;
+		this.aggregatedValues = new HashMap<>();
+		this.workerAggregatedValues.clear();
+		this.workerPartitionStats.clear();
 		this.superstep = 0;
+		this.abandonCheckpoint();
+		this.checkpointCommitted = false;
+		this.committedPartitionWorkerMap = null;
+		this.superstepAggregatedValues.clear();
 	}
 
 	/*
@@ -439,29 +840,211 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see system.Worker2Master#superStepCompleted(java.lang.String,
-	 * java.util.Set)
+	 * @see system.Worker2Master#superStepCompleted(java.lang.String, long,
+	 * java.util.Set, java.util.Map, java.util.Map)
 	 */
 	@Override
-	public synchronized void superStepCompleted(String workerID,
-			Set<String> activeWorkerSet) throws RemoteException {
+	public void superStepCompleted(String workerID, long epoch,
+			Set<String> activeWorkerSet,
+			Map<String, Serializable> aggregatedValues,
+			Map<Integer, PartitionStats> partitionStats) throws RemoteException {
 		// System.out.println("Master: superStepCompleted");
 		// System.out.println("Acknowledgment from Worker: " + workerID +
 		// " - activeWorkerSet " + activeWorkerSet);
+		if (this.recovering) {
+			// Only the supersteps being replayed are acknowledged.
+			if (this.replayAcknowledgementMap.remove(workerID, epoch)) {
+				synchronized (replayLock) {
+					replayLock.notifyAll();
+				}
+			}
+			return;
+		}
+		// An acknowledgment of a superstep abandoned by a recovery carries an
+		// earlier epoch than the one the Worker is expected with, even if the
+		// same superstep has been started again.
+		if (!this.workerAcknowledgementMap.remove(workerID, epoch)) {
+			return;
+		}
 		this.activeWorkerSet.addAll(activeWorkerSet);
-		this.workerAcknowledgementSet.remove(workerID);
+		this.workerAggregatedValues.put(workerID, aggregatedValues);
+		this.workerPartitionStats.put(workerID, partitionStats);
 		// System.out.println("WorkerAcknowledgmentSet: " +
-		// this.workerAcknowledgementSet);
-		// If the acknowledgment has been received from all the workers, start
-		// the next superstep
-		if (this.workerAcknowledgementSet.size() == 0) {
-			// System.out.println("Acknowledgment received from all workers " +
-			// activeWorkerSet);
-			superstep++;
-			if (activeWorkerSet.size() != 0)
-				startSuperStep();
-			else
-				halt();
+		// this.workerAcknowledgementMap);
+		// If the acknowledgment has been received from all the workers, the
+		// coordinator starts the next superstep
+		if (this.pendingAcknowledgements.decrementAndGet() == 0) {
+			this.completedBarriers.add(epoch);
+		}
+	}
+
+	/**
+	 * Runs the superstep coordinator. Every time all the Workers have
+	 * acknowledged a superstep, the aggregated values are reduced, partitions
+	 * are migrated if the Workers were unevenly loaded, and the next superstep
+	 * is started, or the Workers are halted if none of them is active. A
+	 * barrier is ignored if a recovery has abandoned its superstep in the
+	 * meantime.
+	 */
+	private void coordinateSupersteps() {
+		while (true) {
+			long epoch;
+			try {
+				epoch = this.completedBarriers.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				synchronized (this) {
+					if (this.recovering || epoch != this.barrierEpoch
+							|| this.pendingAcknowledgements.get() != 0) {
+						continue;
+					}
+					// System.out.println("Acknowledgment received from all workers "
+					// + activeWorkerSet);
+					superstep++;
+					Map<String, Serializable> values = new HashMap<>();
+					for (Map<String, Serializable> workerValues : this.workerAggregatedValues
+							.values()) {
+						for (Map.Entry<String, Serializable> entry : workerValues
+								.entrySet()) {
+							GeneralUtils.aggregate(aggregators, values,
+									entry.getKey(), entry.getValue());
+						}
+					}
+					this.workerAggregatedValues.clear();
+					this.aggregatedValues = values;
+					if (!this.aggregatedValues.isEmpty()) {
+						System.out.println("Master: Aggregated values "
+								+ this.aggregatedValues);
+					}
+					if (this.activeWorkerSet.size() != 0) {
+						balancePartitions();
+						startSuperStep();
+					} else {
+						halt();
+					}
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Migrates partitions from the most loaded Workers to the least loaded
+	 * ones at the barrier, if the most loaded Worker took more than
+	 * MIGRATION_SKEW_THRESHOLD times the average load in the superstep that
+	 * just completed. The load of a Worker is the time its partitions were
+	 * computed in, spread over its threads. Every migration moves the partition
+	 * of the most loaded Worker that brings it closest to the least loaded one
+	 * without making that one the more loaded, and of two such partitions the
+	 * one with fewer messages. The Workers are then sent the new partition
+	 * assignment. Must be called with the lock of the Master held.
+	 * 
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	private void balancePartitions() throws RemoteException {
+		if (MIGRATION_SKEW_THRESHOLD <= 0 || workerProxyMap.size() < 2) {
+			return;
+		}
+		Map<String, Double> workerLoads = new HashMap<>();
+		Map<Integer, PartitionStats> partitionStats = new HashMap<>();
+		double totalLoad = 0;
+		for (WorkerProxy workerProxy : workerProxyMap.values()) {
+			String workerID = workerProxy.getWorkerID();
+			Map<Integer, PartitionStats> stats = workerPartitionStats
+					.get(workerID);
+			long computeTime = 0;
+			if (stats != null) {
+				for (Map.Entry<Integer, PartitionStats> entry : stats
+						.entrySet()) {
+					partitionStats.put(entry.getKey(), entry.getValue());
+					computeTime += entry.getValue().getComputeTime();
+				}
+			}
+			double load = (double) computeTime / workerProxy.getNumThreads();
+			workerLoads.put(workerID, load);
+			totalLoad += load;
+		}
+		double averageLoad = totalLoad / workerLoads.size();
+		int migrations = 0;
+		while (migrations < MAX_MIGRATIONS_PER_SUPERSTEP) {
+			String slowestWorkerID = null;
+			String fastestWorkerID = null;
+			for (Map.Entry<String, Double> entry : workerLoads.entrySet()) {
+				if (slowestWorkerID == null
+						|| entry.getValue() > workerLoads.get(slowestWorkerID)) {
+					slowestWorkerID = entry.getKey();
+				}
+				if (fastestWorkerID == null
+						|| entry.getValue() < workerLoads.get(fastestWorkerID)) {
+					fastestWorkerID = entry.getKey();
+				}
+			}
+			double maxLoad = workerLoads.get(slowestWorkerID);
+			if (maxLoad < MIGRATION_MIN_COMPUTE_TIME * 1e6
+					|| maxLoad <= MIGRATION_SKEW_THRESHOLD * averageLoad) {
+				break;
+			}
+			double loadGap = maxLoad - workerLoads.get(fastestWorkerID);
+			int slowestThreads = workerProxyMap.get(slowestWorkerID)
+					.getNumThreads();
+			int fastestThreads = workerProxyMap.get(fastestWorkerID)
+					.getNumThreads();
+			Integer partitionID = null;
+			PartitionStats migratedStats = null;
+			for (Map.Entry<Integer, PartitionStats> entry : partitionStats
+					.entrySet()) {
+				if (!slowestWorkerID.equals(partitionWorkerMap.get(entry
+						.getKey()))) {
+					continue;
+				}
+				PartitionStats stats = entry.getValue();
+				long computeTime = stats.getComputeTime();
+				if (computeTime == 0
+						|| (double) computeTime / slowestThreads
+								+ (double) computeTime / fastestThreads > loadGap) {
+					continue;
+				}
+				if (migratedStats == null
+						|| computeTime > migratedStats.getComputeTime()
+						|| (computeTime == migratedStats.getComputeTime() && stats
+								.getReceivedMessages() + stats.getSentMessages() < migratedStats
+								.getReceivedMessages()
+								+ migratedStats.getSentMessages())) {
+					partitionID = entry.getKey();
+					migratedStats = stats;
+				}
+			}
+			if (partitionID == null) {
+				break;
+			}
+			System.out.println("Master: Migrating partition " + partitionID
+					+ " (" + migratedStats + ") from " + slowestWorkerID
+					+ " to " + fastestWorkerID);
+			try {
+				workerProxyMap.get(slowestWorkerID).migratePartition(
+						partitionID, workerMap.get(fastestWorkerID));
+			} catch (RemoteException e) {
+				System.out.println("Master: Migration of partition "
+						+ partitionID + " failed");
+				e.printStackTrace();
+				break;
+			}
+			partitionWorkerMap.put(partitionID, fastestWorkerID);
+			partitionStats.remove(partitionID);
+			// The partition may have active vertices or messages.
+			activeWorkerSet.add(fastestWorkerID);
+			workerLoads.put(slowestWorkerID, maxLoad
+					- (double) migratedStats.getComputeTime() / slowestThreads);
+			workerLoads.put(fastestWorkerID, workerLoads.get(fastestWorkerID)
+					+ (double) migratedStats.getComputeTime() / fastestThreads);
+			migrations++;
+		}
+		if (migrations > 0) {
+			sendWorkerPartitionInfo();
 		}
 	}
 
@@ -471,7 +1054,7 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
-	public void startSuperStep() throws RemoteException {
+	public synchronized void startSuperStep() throws RemoteException {
 		if ((superstep % CHECKPOINT_FREQUENCY) == 0) {
 			if (superstep == 0 || superstep != lastCheckpointedSuperstep) {
 				checkPoint();
@@ -479,17 +1062,47 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 		}
 		System.out.println("Master: Starting Superstep " + superstep);
 		// System.out.println("Active worker set: " + this.activeWorkerSet);
-		this.workerAcknowledgementSet.clear();
-		this.workerAcknowledgementSet.addAll(this.activeWorkerSet);
-
-		for (String workerID : this.activeWorkerSet) {
-			this.workerProxyMap.get(workerID).startSuperStep(superstep);
-		}
+		this.superstepAggregatedValues.put(superstep, this.aggregatedValues);
+		final long startedSuperstep = superstep;
+		final Map<String, Serializable> startedAggregatedValues = this.aggregatedValues;
+		List<String> workerIDs = new ArrayList<>(this.activeWorkerSet);
 		this.activeWorkerSet.clear();
+		this.workerAggregatedValues.clear();
+		this.workerPartitionStats.clear();
+		// The acknowledgments are expected before the superstep is started on
+		// the first Worker, since it can complete before the others start.
+		final long epoch = ++this.barrierEpoch;
+		this.workerAcknowledgementMap.clear();
+		for (String workerID : workerIDs) {
+			this.workerAcknowledgementMap.put(workerID, epoch);
+		}
+		this.pendingAcknowledgements.set(workerIDs.size());
+		Map<String, Exception> failures = broadcast("startSuperStep",
+				workerIDs, new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy)
+							throws RemoteException {
+						workerProxy.startSuperStep(startedSuperstep, epoch,
+								startedAggregatedValues);
+					}
+				}, CONTROL_CALL_TIMEOUT);
+		// A Worker that is slow to start the superstep still completes it.
+		Iterator<Exception> iter = failures.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next() instanceof TimeoutException) {
+				iter.remove();
+			}
+		}
+		throwFirstFailure(failures);
 	}
 
 	/**
-	 * start checkpointing in master.
+	 * start checkpointing in master. The Workers capture their partitions and
+	 * messages and write them in the background while the superstep is
+	 * computed. The checkpoint is committed once every Worker has reported it
+	 * written, and only one checkpoint is written at a time. The first
+	 * checkpoint is waited for, since there is nothing to recover from
+	 * before it.
 	 */
 	public void checkPoint() {
 		System.out.println("Master: checkpointing!");
@@ -497,37 +1110,316 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 		if (!f.exists()) {
 			f.mkdirs();
 		}
-		boolean isCheckpointingSuccess = true;
-		for (Map.Entry<String, WorkerProxy> entry : workerProxyMap.entrySet()) {
-			WorkerProxy workerProxy = entry.getValue();
-			// System.out.println("Checkpointing for Worker: " +
-			// workerProxy.getWorkerID());
-			try {
-				workerProxy.checkPoint(superstep);
-			} catch (Exception e) {
-				System.out.println("Exception while checkpointing at Worker "
-						+ workerProxy.getWorkerID());
-				e.printStackTrace();
-				isCheckpointingSuccess = false;
-				continue;
-			}
+		awaitCheckpoint();
+		synchronized (checkpointLock) {
+			this.pendingCheckpointSuperstep = superstep;
+			this.pendingCheckpointWorkers = new HashSet<>(
+					workerProxyMap.keySet());
+			this.checkpointActiveWorkerSet = new HashSet<>(activeWorkerSet);
+			this.checkpointAggregatedValues = new HashMap<>(aggregatedValues);
+			this.checkpointPartitionWorkerMap = new HashMap<>(
+					partitionWorkerMap);
 		}
+		final long checkpointSuperstep = superstep;
+		boolean isCheckpointingSuccess = broadcast("checkPoint",
+				workerProxyMap.keySet(), new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy) throws Exception {
+						workerProxy.checkPoint(checkpointSuperstep);
+					}
+				}, CONTROL_CALL_TIMEOUT).isEmpty();
 		/*
-		 * If the checkpointing succeeds in all Workers, update the checkpoint
-		 * file. Otherwise, the Workers that are alive will point to an previous
-		 * checkpoint file. This is done to make fault tolerance work even when
-		 * a Worker is killed during checkpointing.
+		 * If the checkpointing fails in one of the Workers, the checkpoint is
+		 * never committed and the Workers that are alive will point to an
+		 * previous checkpoint file. This is done to make fault tolerance work
+		 * even when a Worker is killed during checkpointing.
 		 */
-		if (isCheckpointingSuccess) {
-			updateCheckpointFile();
-			this.serializeActiveWorkerSet();
-			this.lastCheckpointedSuperstep = superstep;
-		} else { // One of the Workers failed while checkpointing! Don't update
-					// the checkpoint file
+		if (!isCheckpointingSuccess) {
 			System.out
 					.println("One of the Workers failed while checkpointing!");
+			abandonCheckpoint();
+		} else if (!checkpointCommitted) {
+			awaitCheckpoint();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker2Master#checkpointCompleted(java.lang.String, long,
+	 * boolean)
+	 */
+	@Override
+	public void checkpointCompleted(String workerID, long checkpointSuperstep,
+			boolean success) throws RemoteException {
+		Set<String> activeWorkers;
+		Map<String, Serializable> values;
+		Map<Integer, String> partitionWorkers;
+		synchronized (checkpointLock) {
+			if (checkpointSuperstep != pendingCheckpointSuperstep
+					|| !pendingCheckpointWorkers.remove(workerID)) {
+				return;
+			}
+			if (!success) {
+				System.out.println("Worker " + workerID
+						+ " failed to write the checkpoint of superstep "
+						+ checkpointSuperstep);
+				abandonCheckpoint();
+				return;
+			}
+			if (!pendingCheckpointWorkers.isEmpty()) {
+				return;
+			}
+			// Every Worker has written the checkpoint, so it replaces the
+			// previous one. The Workers are told without the lock held, so
+			// that a slow Worker doesn't hold up the acknowledgments of the
+			// others.
+			this.committingCheckpoint = true;
+			activeWorkers = checkpointActiveWorkerSet;
+			values = checkpointAggregatedValues;
+			partitionWorkers = checkpointPartitionWorkerMap;
+		}
+		updateCheckpointFile();
+		synchronized (checkpointLock) {
+			serializeActiveWorkerSet(activeWorkers);
+			serializeAggregatedValues(values);
+			this.committedPartitionWorkerMap = partitionWorkers;
+			this.lastCheckpointedSuperstep = checkpointSuperstep;
+			this.checkpointCommitted = true;
+			forgetAggregatedValuesBefore(checkpointSuperstep);
+			System.out.println("Master: Checkpoint of superstep "
+					+ checkpointSuperstep + " committed");
+			this.committingCheckpoint = false;
+			abandonCheckpoint();
+		}
+	}
+
+	/**
+	 * Waits until the pending checkpoint, if any, is committed or abandoned.
+	 * The checkpoint is abandoned if one of its Workers is removed.
+	 */
+	private void awaitCheckpoint() {
+		synchronized (checkpointLock) {
+			while (pendingCheckpointSuperstep >= 0) {
+				if (!workerProxyMap.keySet().containsAll(
+						pendingCheckpointWorkers)) {
+					System.out
+							.println("One of the Workers failed while checkpointing!");
+					abandonCheckpoint();
+					break;
+				}
+				try {
+					checkpointLock.wait(CHECKPOINT_WAIT_INTERVAL);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets the pending checkpoint, if any, so that it is never committed.
+	 * The last committed checkpoint stays the one to recover from. A
+	 * checkpoint the Workers are being told is committed is waited for, and
+	 * is then the one to recover from.
+	 */
+	public void abandonCheckpoint() {
+		synchronized (checkpointLock) {
+			while (committingCheckpoint) {
+				try {
+					checkpointLock.wait();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+					break;
+				}
+			}
+			this.pendingCheckpointSuperstep = -1;
+			this.pendingCheckpointWorkers.clear();
+			this.checkpointActiveWorkerSet = null;
+			this.checkpointAggregatedValues = null;
+			this.checkpointPartitionWorkerMap = null;
+			checkpointLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Starts the recovery of failed Workers. The superstep in progress is
+	 * abandoned and its acknowledgments are ignored until the recovery ends.
+	 * 
+	 * @return the superstep that was in progress
+	 */
+	public synchronized long beginRecovery() {
+		this.recovering = true;
+		this.barrierEpoch++;
+		this.workerAcknowledgementMap.clear();
+		this.pendingAcknowledgements.set(0);
+		this.replayAcknowledgementMap.clear();
+		this.workerAggregatedValues.clear();
+		this.workerPartitionStats.clear();
+		return superstep;
+	}
+
+	/**
+	 * Ends the recovery of failed Workers and starts the superstep again. The
+	 * acknowledgments of the superstep wait until it has been started on
+	 * every Worker.
+	 * 
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public synchronized void endRecovery() throws RemoteException {
+		this.recovering = false;
+		this.replayAcknowledgementMap.clear();
+		startSuperStep();
+	}
+
+	/**
+	 * Checks if a checkpoint has been committed in the current run.
+	 * 
+	 * @return true, if a checkpoint has been committed
+	 */
+	public boolean isCheckpointCommitted() {
+		return checkpointCommitted;
+	}
+
+	/**
+	 * Gets the values of the aggregators that a superstep since the last
+	 * checkpoint started with.
+	 * 
+	 * @param startedSuperstep
+	 *            the superstep
+	 * @return the aggregated values, or null if they are not known
+	 */
+	public Map<String, Serializable> getAggregatedValues(long startedSuperstep) {
+		return superstepAggregatedValues.get(startedSuperstep);
+	}
+
+	/**
+	 * Replays a superstep on the Workers that have recovered partitions, which
+	 * compute only those partitions with the aggregated values the superstep
+	 * started with. The replay is waited for by {@link #awaitReplay(long)}.
+	 * 
+	 * @param replayedSuperstep
+	 *            the superstep to be replayed
+	 * @param workerIDs
+	 *            the Workers that have recovered partitions
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void replaySuperStep(long replayedSuperstep, Set<String> workerIDs)
+			throws RemoteException {
+		System.out.println("Master: Replaying Superstep " + replayedSuperstep);
+		// Every replay has an epoch of its own, so that a late acknowledgment
+		// of an earlier replay is not taken for this one.
+		final long epoch;
+		synchronized (this) {
+			epoch = ++this.barrierEpoch;
+			this.replayAcknowledgementMap.clear();
+			for (String workerID : workerIDs) {
+				this.replayAcknowledgementMap.put(workerID, epoch);
+			}
+		}
+		final long startedSuperstep = replayedSuperstep;
+		final Map<String, Serializable> startedAggregatedValues = this.superstepAggregatedValues
+				.get(replayedSuperstep);
+		throwFirstFailure(broadcast("startSuperStep", workerIDs,
+				new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy)
+							throws RemoteException {
+						workerProxy.startSuperStep(startedSuperstep, epoch,
+								startedAggregatedValues);
+					}
+				}, CONTROL_CALL_TIMEOUT));
+	}
+
+	/**
+	 * Waits until every Worker has completed the superstep being replayed.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds
+	 * @return true, if the superstep has been completed
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public boolean awaitReplay(long timeout) throws InterruptedException {
+		synchronized (replayLock) {
+			if (!this.replayAcknowledgementMap.isEmpty()) {
+				replayLock.wait(timeout);
+			}
+			return this.replayAcknowledgementMap.isEmpty();
+		}
+	}
+
+	/**
+	 * Commits the checkpoint that the Workers wrote at the end of a replay, and
+	 * makes every Worker active in the superstep that is started again from
+	 * it.
+	 */
+	public void commitReplayCheckpoint() {
+		updateCheckpointFile();
+		this.activeWorkerSet.clear();
+		this.activeWorkerSet.addAll(this.workerProxyMap.keySet());
+		serializeActiveWorkerSet(this.activeWorkerSet);
+		serializeAggregatedValues(this.aggregatedValues);
+		commitPartitionWorkerMap();
+		this.lastCheckpointedSuperstep = superstep;
+		this.checkpointCommitted = true;
+		forgetAggregatedValuesBefore(superstep);
+		System.out.println("Master: Checkpoint of superstep " + superstep
+				+ " committed after replay");
+	}
+
+	/**
+	 * Records the current partitionID to workerID map as the one of the
+	 * checkpoint committed during a recovery.
+	 */
+	public void commitPartitionWorkerMap() {
+		this.committedPartitionWorkerMap = new HashMap<>(partitionWorkerMap);
+	}
+
+	/**
+	 * Checks if the partitions are on the Workers that have them in the last
+	 * committed checkpoint, which is not the case once partitions have been
+	 * migrated since.
+	 * 
+	 * @return true, if no partition has been migrated since the checkpoint
+	 */
+	public boolean isPartitionWorkerMapCommitted() {
+		return partitionWorkerMap.equals(committedPartitionWorkerMap);
+	}
+
+	/**
+	 * Gives the partitions back to the Workers that have them in the last
+	 * committed checkpoint, before every Worker is rolled back to it.
+	 */
+	public void restoreCommittedPartitionWorkerMap() {
+		if (committedPartitionWorkerMap == null
+				|| isPartitionWorkerMapCommitted()) {
+			return;
 		}
+		System.out.println("Master: Restoring the partition assignment of the"
+				+ " checkpoint of superstep " + lastCheckpointedSuperstep);
+		partitionWorkerMap.clear();
+		partitionWorkerMap.putAll(committedPartitionWorkerMap);
+	}
 
+	/**
+	 * Forgets the aggregated values of the supersteps before a committed
+	 * checkpoint, which are never replayed.
+	 * 
+	 * @param checkpointSuperstep
+	 *            the superstep of the checkpoint
+	 */
+	private void forgetAggregatedValuesBefore(long checkpointSuperstep) {
+		Iterator<Long> iter = this.superstepAggregatedValues.keySet()
+				.iterator();
+		while (iter.hasNext()) {
+			if (iter.next() < checkpointSuperstep) {
+				iter.remove();
+			}
+		}
 	}
 
 	/**
@@ -535,17 +1427,160 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 */
 	public void updateCheckpointFile() {
 		System.out.println("Updating checkpoint file for all Workers.");
-		for (Map.Entry<String, WorkerProxy> entry : workerProxyMap.entrySet()) {
-			WorkerProxy workerProxy = entry.getValue();
-			try {
-				workerProxy.updateCheckpointFile();
-			} catch (Exception e) {
-				System.out
-						.println("Exception while updating checkpoint file at Worker "
-								+ workerProxy.getWorkerID());
-				e.printStackTrace();
+		broadcast("updateCheckpointFile", workerProxyMap.keySet(),
+				new WorkerCall() {
+					@Override
+					public void call(WorkerProxy workerProxy)
+							throws RemoteException {
+						workerProxy.updateCheckpointFile();
+					}
+				}, CONTROL_CALL_TIMEOUT);
+	}
+
+	/**
+	 * Represents a control call made to a Worker by
+	 * {@link Master#broadcast(String, Collection, WorkerCall, long)}.
+	 */
+	private interface WorkerCall {
+
+		/**
+		 * Makes the call to the Worker.
+		 * 
+		 * @param workerProxy
+		 *            the Worker
+		 * @throws Exception
+		 *             the exception
+		 */
+		void call(WorkerProxy workerProxy) throws Exception;
+	}
+
+	/**
+	 * Makes a control call to the given Workers concurrently, so that it costs
+	 * about one round trip however many Workers there are, and waits until
+	 * every call has returned, failed or timed out.
+	 * 
+	 * @param name
+	 *            the name of the call, for the log
+	 * @param workerIDs
+	 *            the Workers
+	 * @param call
+	 *            the call
+	 * @param timeout
+	 *            the time in milliseconds the calls are waited for, or 0 to
+	 *            wait until they return
+	 * @return the exceptions of the calls that failed, by Worker. A call that
+	 *         timed out has a TimeoutException.
+	 */
+	private Map<String, Exception> broadcast(String name,
+			Collection<String> workerIDs, final WorkerCall call, long timeout) {
+		Map<String, Future<?>> calls = new LinkedHashMap<>();
+		Map<String, Exception> failures = new LinkedHashMap<>();
+		for (String workerID : workerIDs) {
+			final WorkerProxy workerProxy = workerProxyMap.get(workerID);
+			if (workerProxy == null) {
+				failures.put(workerID, new RemoteException("Worker " + workerID
+						+ " is down"));
 				continue;
 			}
+			calls.put(workerID, controlCallExecutor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					call.call(workerProxy);
+					return null;
+				}
+			}));
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		for (Map.Entry<String, Future<?>> entry : calls.entrySet()) {
+			try {
+				if (timeout > 0) {
+					entry.getValue().get(
+							Math.max(0, deadline - System.currentTimeMillis()),
+							TimeUnit.MILLISECONDS);
+				} else {
+					entry.getValue().get();
+				}
+			} catch (ExecutionException e) {
+				failures.put(entry.getKey(),
+						e.getCause() instanceof Exception ? (Exception) e
+								.getCause() : e);
+			} catch (TimeoutException e) {
+				failures.put(entry.getKey(), e);
+			} catch (InterruptedException e) {
+				entry.getValue().cancel(true);
+				failures.put(entry.getKey(), e);
+			}
+		}
+		for (Map.Entry<String, Exception> entry : failures.entrySet()) {
+			if (entry.getValue() instanceof TimeoutException) {
+				System.out.println("Master: " + name + " at Worker "
+						+ entry.getKey() + " timed out after " + timeout
+						+ " ms");
+			} else {
+				System.out.println("Exception while calling " + name
+						+ " at Worker " + entry.getKey());
+				entry.getValue().printStackTrace();
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Throws the first exception of the failed control calls, if any.
+	 * 
+	 * @param failures
+	 *            the exceptions of the failed calls, by Worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	private static void throwFirstFailure(Map<String, Exception> failures)
+			throws RemoteException {
+		for (Map.Entry<String, Exception> entry : failures.entrySet()) {
+			if (entry.getValue() instanceof RemoteException) {
+				throw (RemoteException) entry.getValue();
+			}
+			throw new RemoteException("Call at Worker " + entry.getKey()
+					+ " failed", entry.getValue());
+		}
+	}
+
+	/**
+	 * Gets the file that a Worker writes its part of the output to.
+	 * 
+	 * @param outputFilePath
+	 *            the output file path
+	 * @param workerID
+	 *            the worker id
+	 * @return the file path of the Worker's part of the output
+	 */
+	private static String getOutputPartFilePath(String outputFilePath,
+			String workerID) {
+		return outputFilePath + "." + workerID;
+	}
+
+	/**
+	 * Appends the parts of the output written by the Workers to the output
+	 * file, in the order of the Workers, and deletes them.
+	 * 
+	 * @param outputFilePath
+	 *            the output file path
+	 * @param workerIDs
+	 *            the Workers
+	 */
+	private static void mergeOutputParts(String outputFilePath,
+			List<String> workerIDs) {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(
+				outputFilePath, true))) {
+			for (String workerID : workerIDs) {
+				File part = new File(getOutputPartFilePath(outputFilePath,
+						workerID));
+				if (part.exists()) {
+					Files.copy(part.toPath(), out);
+					part.delete();
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -553,12 +1588,43 @@ public class Master extends UnicastRemoteObject implements Worker2Master,
 	 * Serialize active worker set.
 	 */
 	public void serializeActiveWorkerSet() {
+		serializeActiveWorkerSet(activeWorkerSet);
+	}
+
+	/**
+	 * Serialize the given active worker set.
+	 * 
+	 * @param activeWorkerSet
+	 *            the active worker set
+	 */
+	private void serializeActiveWorkerSet(Set<String> activeWorkerSet) {
 		// Serialize the active worker set
 		String filePath = CHECKPOINTING_DIRECTORY + File.separator
 				+ "activeworkers";
 		GeneralUtils.serialize(filePath, activeWorkerSet);
 	}
 
+	/**
+	 * Serialize the values of the aggregators that the checkpointed superstep
+	 * starts with.
+	 */
+	public void serializeAggregatedValues() {
+		serializeAggregatedValues(aggregatedValues);
+	}
+
+	/**
+	 * Serialize the given values of the aggregators.
+	 * 
+	 * @param aggregatedValues
+	 *            the aggregated values
+	 */
+	private void serializeAggregatedValues(
+			Map<String, Serializable> aggregatedValues) {
+		String filePath = CHECKPOINTING_DIRECTORY + File.separator
+				+ "aggregatedvalues";
+		GeneralUtils.serialize(filePath, aggregatedValues);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
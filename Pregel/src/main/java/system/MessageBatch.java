@@ -0,0 +1,276 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import utility.Compression;
+import utility.Varint;
+import api.Data;
+import api.DataCodec;
+import api.DataCodecs;
+
+/**
+ * Represents the messages sent by a Worker to the vertices of another Worker,
+ * written in a compact form instead of with Java serialization. <br>
+ * The messages are grouped by partition, and the vertex identifiers of a
+ * partition are sorted and written as variable length deltas. The data of a
+ * message is written by the {@link api.DataCodec DataCodec} registered for its
+ * class; the class names are written once per batch, and a message refers to
+ * its codec by index. Data without a codec is written with Java serialization.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class MessageBatch implements Externalizable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 6129473392048216475L;
+
+	/** The codec index of data written with Java serialization. */
+	private static final int SERIALIZED = 0;
+
+	/** Orders the messages of a partition by destination vertex. */
+	private static final Comparator<Entry<VertexID, List<Message>>> VERTEX_ORDER = new Comparator<Entry<VertexID, List<Message>>>() {
+		@Override
+		public int compare(Entry<VertexID, List<Message>> first,
+				Entry<VertexID, List<Message>> second) {
+			return Long.compare(first.getKey().getVertexID(), second.getKey()
+					.getVertexID());
+		}
+	};
+
+	/** The messages, by destination vertex. */
+	private Map<VertexID, List<Message>> messages;
+
+	/**
+	 * Constructs an empty batch, to be read with
+	 * {@link #readExternal(ObjectInput)}.
+	 */
+	public MessageBatch() {
+	}
+
+	/**
+	 * Constructs the batch of messages.
+	 * 
+	 * @param messages
+	 *            Represents the messages, by destination vertex
+	 */
+	public MessageBatch(Map<VertexID, List<Message>> messages) {
+		this.messages = messages;
+	}
+
+	/**
+	 * Gets the messages
+	 * 
+	 * @return Returns the messages, by destination vertex
+	 */
+	public Map<VertexID, List<Message>> getMessages() {
+		return messages;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Externalizable#writeExternal(java.io.ObjectOutput)
+	 */
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		Compression.write(out, new Compression.BodyWriter() {
+			@Override
+			public void write(ObjectOutput out) throws IOException {
+				writeBody(out);
+			}
+		});
+	}
+
+	/**
+	 * Writes the codec table followed by the messages, grouped by partition
+	 * and sorted by vertex.
+	 * 
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeBody(ObjectOutput out) throws IOException {
+		// Group the messages by partition and collect the codecs.
+		Map<Integer, List<Entry<VertexID, List<Message>>>> partitionMessages = new HashMap<>();
+		for (Entry<VertexID, List<Message>> entry : messages.entrySet()) {
+			List<Entry<VertexID, List<Message>>> entries = partitionMessages
+					.get(entry.getKey().getPartitionID());
+			if (entries == null) {
+				entries = new ArrayList<>();
+				partitionMessages.put(entry.getKey().getPartitionID(), entries);
+			}
+			entries.add(entry);
+		}
+		List<String> codecNames = new ArrayList<>();
+		Map<Class<?>, Integer> codecIndices = new HashMap<>();
+		for (List<Message> vertexMessages : messages.values()) {
+			for (Message message : vertexMessages) {
+				Data<?> data = message.getData();
+				if (data != null && !codecIndices.containsKey(data.getClass())) {
+					if (DataCodecs.getCodec(data.getClass()) == null) {
+						codecIndices.put(data.getClass(), SERIALIZED);
+					} else {
+						codecNames.add(data.getClass().getName());
+						codecIndices.put(data.getClass(), codecNames.size());
+					}
+				}
+			}
+		}
+
+		Varint.writeUnsignedVarInt(out, codecNames.size());
+		for (String codecName : codecNames) {
+			out.writeUTF(codecName);
+		}
+		Varint.writeUnsignedVarInt(out, partitionMessages.size());
+		for (Entry<Integer, List<Entry<VertexID, List<Message>>>> partitionEntry : partitionMessages
+				.entrySet()) {
+			List<Entry<VertexID, List<Message>>> entries = partitionEntry
+					.getValue();
+			Collections.sort(entries, VERTEX_ORDER);
+			Varint.writeUnsignedVarInt(out, partitionEntry.getKey());
+			Varint.writeUnsignedVarInt(out, entries.size());
+			long previousID = 0;
+			for (Entry<VertexID, List<Message>> entry : entries) {
+				long vertexID = entry.getKey().getVertexID();
+				Varint.writeSignedVarLong(out, vertexID - previousID);
+				previousID = vertexID;
+				Varint.writeUnsignedVarInt(out, entry.getValue().size());
+				for (Message message : entry.getValue()) {
+					writeMessage(out, message, codecIndices);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a message: its codec index and whether it has a source vertex,
+	 * the source vertex and the data.
+	 * 
+	 * @param out
+	 *            the output
+	 * @param message
+	 *            the message
+	 * @param codecIndices
+	 *            the codec index of every data class of the batch
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void writeMessage(ObjectOutput out, Message message,
+			Map<Class<?>, Integer> codecIndices) throws IOException {
+		Data<?> data = message.getData();
+		int codecIndex = data == null ? SERIALIZED : codecIndices.get(data
+				.getClass());
+		VertexID sourceID = message.getSourceID();
+		Varint.writeUnsignedVarInt(out, codecIndex << 1
+				| (sourceID == null ? 0 : 1));
+		if (sourceID != null) {
+			Varint.writeUnsignedVarInt(out, sourceID.getPartitionID());
+			Varint.writeSignedVarLong(out, sourceID.getVertexID());
+		}
+		if (codecIndex == SERIALIZED) {
+			out.writeObject(data);
+		} else {
+			((DataCodec<Data<?>>) DataCodecs.getCodec(data.getClass())).write(
+					out, data);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
+	 */
+	@Override
+	public void readExternal(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		readBody(Compression.read(in));
+	}
+
+	/**
+	 * Reads the body written by {@link #writeBody(ObjectOutput)}.
+	 * 
+	 * @param in
+	 *            the input
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	private void readBody(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		int numCodecs = Varint.readUnsignedVarInt(in);
+		DataCodec<?>[] codecs = new DataCodec<?>[numCodecs + 1];
+		for (int i = 1; i <= numCodecs; i++) {
+			String codecName = in.readUTF();
+			codecs[i] = DataCodecs.getCodec(codecName);
+			if (codecs[i] == null) {
+				throw new IOException("No codec is registered for "
+						+ codecName);
+			}
+		}
+		messages = new HashMap<>();
+		int numPartitions = Varint.readUnsignedVarInt(in);
+		for (int p = 0; p < numPartitions; p++) {
+			int partitionID = Varint.readUnsignedVarInt(in);
+			int size = Varint.readUnsignedVarInt(in);
+			long vertexID = 0;
+			for (int i = 0; i < size; i++) {
+				vertexID += Varint.readSignedVarLong(in);
+				int numMessages = Varint.readUnsignedVarInt(in);
+				List<Message> vertexMessages = new ArrayList<>(numMessages);
+				for (int m = 0; m < numMessages; m++) {
+					vertexMessages.add(readMessage(in, codecs));
+				}
+				messages.put(new VertexID(partitionID, vertexID),
+						vertexMessages);
+			}
+		}
+	}
+
+	/**
+	 * Reads a message written by
+	 * {@link #writeMessage(ObjectOutput, Message, Map)}.
+	 * 
+	 * @param in
+	 *            the input
+	 * @param codecs
+	 *            the codecs of the batch, by codec index
+	 * @return Returns the message
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	private static Message readMessage(ObjectInput in, DataCodec<?>[] codecs)
+			throws IOException, ClassNotFoundException {
+		int header = Varint.readUnsignedVarInt(in);
+		int codecIndex = header >>> 1;
+		VertexID sourceID = null;
+		if ((header & 1) != 0) {
+			int partitionID = Varint.readUnsignedVarInt(in);
+			sourceID = new VertexID(partitionID, Varint.readSignedVarLong(in));
+		}
+		if (codecIndex >= codecs.length) {
+			throw new IOException("Invalid codec index " + codecIndex);
+		}
+		Data<?> data = codecIndex == SERIALIZED ? (Data<?>) in.readObject()
+				: codecs[codecIndex].read(in);
+		return new Message(sourceID, data);
+	}
+}
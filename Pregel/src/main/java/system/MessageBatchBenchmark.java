@@ -0,0 +1,150 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import utility.GeneralUtils;
+import api.Data;
+import api.DataCodecs;
+import api.DoubleDataCodec;
+
+/**
+ * Compares the size and the cost of sending messages as a
+ * {@link system.MessageBatch MessageBatch} with sending the map of messages
+ * with Java serialization. It registers a codec for its own data class, so it
+ * is run on its own and never in a Worker.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class MessageBatchBenchmark {
+
+	/**
+	 * Compares the size and the cost of sending messages as a batch with
+	 * sending the map of messages with Java serialization, for the same
+	 * messages.
+	 * 
+	 * @param args
+	 *            the number of messages and the number of rounds (optional)
+	 * @throws Exception
+	 *             the exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int numMessages = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		DataCodecs.register(BenchmarkData.class,
+				new DoubleDataCodec<BenchmarkData>() {
+					@Override
+					protected BenchmarkData createData(double value) {
+						return new BenchmarkData(value);
+					}
+				});
+		Map<VertexID, List<Message>> messages = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < numMessages; i++) {
+			long vertexID = random.nextInt(numMessages * 4);
+			long sourceID = random.nextInt(numMessages * 4);
+			VertexID destination = new VertexID(
+					GeneralUtils.getPartitionID(vertexID), vertexID);
+			List<Message> vertexMessages = messages.get(destination);
+			if (vertexMessages == null) {
+				vertexMessages = new ArrayList<>(1);
+				messages.put(destination, vertexMessages);
+			}
+			vertexMessages.add(new Message(new VertexID(GeneralUtils
+					.getPartitionID(sourceID), sourceID),
+					new BenchmarkData(random.nextInt(1000) * 1.0)));
+		}
+
+		long[] serializedResult = null;
+		long[] batchResult = null;
+		for (int round = 0; round < rounds; round++) {
+			serializedResult = measure(messages, false);
+			batchResult = measure(messages, true);
+		}
+		System.out.println("Messages: " + numMessages);
+		System.out.println("Java serialization: " + serializedResult[0]
+				/ (double) numMessages + " bytes/message, "
+				+ serializedResult[1] / numMessages + " ns/message");
+		System.out.println("MessageBatch: " + batchResult[0]
+				/ (double) numMessages + " bytes/message, " + batchResult[1]
+				/ numMessages + " ns/message");
+	}
+
+	/**
+	 * Writes and reads the messages once.
+	 * 
+	 * @param messages
+	 *            the messages
+	 * @param batch
+	 *            whether the messages are written as a batch
+	 * @return Returns the number of bytes and the nanoseconds taken
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static long[] measure(Map<VertexID, List<Message>> messages,
+			boolean batch) throws Exception {
+		long startTime = System.nanoTime();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(batch ? new MessageBatch(messages) : messages);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			Object result = in.readObject();
+			int size = batch ? ((MessageBatch) result).getMessages().size()
+					: ((Map<?, ?>) result).size();
+			if (size != messages.size()) {
+				throw new IllegalStateException("Messages were lost");
+			}
+		}
+		return new long[] { bytes.size(), System.nanoTime() - startTime };
+	}
+
+	/**
+	 * Represents the data of the messages of the benchmark.
+	 */
+	private static class BenchmarkData implements Data<Double> {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = -2285720383462271541L;
+
+		/** The value. */
+		private Double value;
+
+		/**
+		 * Constructs the data.
+		 * 
+		 * @param value
+		 *            the value
+		 */
+		BenchmarkData(Double value) {
+			this.value = value;
+		}
+
+		@Override
+		public int compareTo(Data<Double> other) {
+			return value.compareTo(other.getValue());
+		}
+
+		@Override
+		public Double getValue() {
+			return value;
+		}
+
+		@Override
+		public void setValue(Double value) {
+			this.value = value;
+		}
+	}
+}
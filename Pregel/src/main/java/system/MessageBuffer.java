@@ -0,0 +1,152 @@
+package system;
+
+import graphs.VertexID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import api.Combiner;
+import api.DoubleCombiner;
+
+/**
+ * Represents the messages that a Worker thread queued for the vertices of
+ * another Worker in the current superstep. The buffer is owned by a single
+ * thread, and its messages are taken out to be sent as soon as it holds the
+ * configured number of messages, so that the messages are sent while the
+ * thread keeps computing.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class MessageBuffer {
+
+	/** The messages, by destination vertex. */
+	private Map<VertexID, List<Message>> messages = new HashMap<>();
+
+	/** The double valued messages. */
+	private DoubleMessageStore doubleMessages = new DoubleMessageStore();
+
+	/** The number of messages. */
+	private int numMessages;
+
+	/** The number of double valued messages. */
+	private int numDoubleMessages;
+
+	/**
+	 * Queues the message for the destination vertex. If a combiner is given,
+	 * the message is folded into the single message already queued for the
+	 * vertex instead of being appended.
+	 * 
+	 * @param vertexID
+	 *            Represents the destination vertex
+	 * @param message
+	 *            Represents the message for the destination vertex
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 * @return Returns the number of messages in the buffer
+	 */
+	public int add(VertexID vertexID, Message message, Combiner combiner) {
+		List<Message> messageList = messages.get(vertexID);
+		if (messageList == null) {
+			messageList = new ArrayList<Message>(1);
+			messageList.add(message);
+			messages.put(vertexID, messageList);
+			numMessages++;
+		} else if (combiner != null) {
+			messageList.set(0, combiner.combine(messageList.get(0), message));
+		} else {
+			messageList.add(message);
+			numMessages++;
+		}
+		return numMessages + numDoubleMessages;
+	}
+
+	/**
+	 * Queues a double valued message for the destination vertex.
+	 * 
+	 * @param partitionID
+	 *            Represents the partition of the destination vertex
+	 * @param vertexID
+	 *            Represents the destination vertex identifier
+	 * @param value
+	 *            Represents the value of the message
+	 * @param combiner
+	 *            Represents the combiner, or null if the messages must not be
+	 *            combined
+	 * @return Returns the number of messages in the buffer
+	 */
+	public int addDouble(int partitionID, long vertexID, double value,
+			DoubleCombiner combiner) {
+		doubleMessages.addMessage(partitionID, vertexID, value, combiner);
+		numDoubleMessages++;
+		return numMessages + numDoubleMessages;
+	}
+
+	/**
+	 * Combines the double valued messages sent to the same vertex, so that a
+	 * full buffer only needs to be sent if combining does not shrink it.
+	 * 
+	 * @param combiner
+	 *            Represents the combiner
+	 * @return Returns the number of messages in the buffer
+	 */
+	public int combine(DoubleCombiner combiner) {
+		doubleMessages.combine(combiner);
+		numDoubleMessages = (int) doubleMessages.size();
+		return numMessages + numDoubleMessages;
+	}
+
+	/**
+	 * Checks if the buffer has no messages.
+	 * 
+	 * @return true, if the buffer has no messages
+	 */
+	public boolean isEmpty() {
+		return numMessages == 0 && numDoubleMessages == 0;
+	}
+
+	/**
+	 * Takes the messages out of the buffer.
+	 * 
+	 * @return Returns the messages, by destination vertex, or null if there
+	 *         are none
+	 */
+	public Map<VertexID, List<Message>> takeMessages() {
+		if (numMessages == 0) {
+			return null;
+		}
+		Map<VertexID, List<Message>> result = messages;
+		messages = new HashMap<>();
+		numMessages = 0;
+		return result;
+	}
+
+	/**
+	 * Takes the double valued messages out of the buffer.
+	 * 
+	 * @return Returns the double valued messages, or null if there are none
+	 */
+	public DoubleMessageStore takeDoubleMessages() {
+		if (numDoubleMessages == 0) {
+			return null;
+		}
+		DoubleMessageStore result = doubleMessages;
+		doubleMessages = new DoubleMessageStore();
+		numDoubleMessages = 0;
+		return result;
+	}
+
+	/**
+	 * Removes all the messages from the buffer.
+	 */
+	public void clear() {
+		messages.clear();
+		doubleMessages.clear();
+		numMessages = 0;
+		numDoubleMessages = 0;
+	}
+}
@@ -0,0 +1,319 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import api.Combiner;
+import api.DoubleCombiner;
+
+/**
+ * Represents the log of the messages a Worker sent to the other Workers since
+ * the last checkpoint, kept in one file per superstep. When a Worker fails,
+ * the partitions it had are restored from its checkpoint and the logged
+ * messages that were sent to them are sent again, so the other partitions
+ * don't have to compute the supersteps since the checkpoint again.
+ * 
+ * The log is not synced to disk: it is only read while the Worker that wrote
+ * it is alive.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class MessageLog {
+
+	/** The prefix of the log files. */
+	private static final String FILE_PREFIX = "superstep_";
+
+	/** The size of the file buffers. */
+	private static final int BUFFER_SIZE = 65536;
+
+	/** The directory of the log files. */
+	private final File directory;
+
+	/** The file being appended to, or null. */
+	private DataOutputStream out;
+
+	/** The superstep of the file being appended to. */
+	private long outSuperstep = -1;
+
+	/** The supersteps of which some messages could not be logged. */
+	private final Set<Long> incompleteSupersteps = new HashSet<>();
+
+	/**
+	 * Constructs the message log.
+	 * 
+	 * @param directory
+	 *            Represents the directory of the log files
+	 */
+	public MessageLog(File directory) {
+		this.directory = directory;
+		directory.mkdirs();
+		clear();
+	}
+
+	/**
+	 * Appends the messages sent to another Worker to the log of the
+	 * superstep.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep in which the messages were sent
+	 * @param messages
+	 *            Represents the messages, or null
+	 * @param doubleMessages
+	 *            Represents the double valued messages, or null
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void log(long superstep,
+			Map<VertexID, List<Message>> messages,
+			DoubleMessageStore doubleMessages) throws IOException {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeObject(messages);
+			oos.writeObject(doubleMessages);
+			oos.close();
+			if (superstep != outSuperstep) {
+				closeFile();
+				out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(getFile(superstep), true),
+						BUFFER_SIZE));
+				outSuperstep = superstep;
+			}
+			out.writeInt(bos.size());
+			bos.writeTo(out);
+		} catch (IOException e) {
+			incompleteSupersteps.add(superstep);
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the messages logged in the superstep that were sent to the given
+	 * partitions, grouped by the Worker each partition is assigned to.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep in which the messages were sent
+	 * @param partitionIDs
+	 *            Represents the destination partitions
+	 * @param partitionWorkerMap
+	 *            Represents the Worker of every partition
+	 * @param combiner
+	 *            Represents the combiner, or null
+	 * @param doubleCombiner
+	 *            Represents the double combiner, or null
+	 * @return Returns the messages, by destination Worker
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred, or that some
+	 *             messages of the superstep were not logged.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized Map<String, MessageBuffer> read(long superstep,
+			Set<Integer> partitionIDs, Map<Integer, String> partitionWorkerMap,
+			Combiner combiner, DoubleCombiner doubleCombiner)
+			throws IOException, ClassNotFoundException {
+		if (incompleteSupersteps.contains(superstep)) {
+			throw new IOException("Messages of superstep " + superstep
+					+ " were not logged");
+		}
+		if (superstep == outSuperstep) {
+			out.flush();
+		}
+		Map<String, MessageBuffer> buffers = new HashMap<>();
+		File file = getFile(superstep);
+		if (!file.exists()) {
+			return buffers;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), BUFFER_SIZE))) {
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+				ObjectInputStream ois = new ObjectInputStream(
+						new ByteArrayInputStream(record));
+				Map<VertexID, List<Message>> messages = (Map<VertexID, List<Message>>) ois
+						.readObject();
+				DoubleMessageStore doubleMessages = (DoubleMessageStore) ois
+						.readObject();
+				if (messages != null) {
+					for (Entry<VertexID, List<Message>> entry : messages
+							.entrySet()) {
+						VertexID vertexID = entry.getKey();
+						if (!partitionIDs.contains(vertexID.getPartitionID())) {
+							continue;
+						}
+						MessageBuffer buffer = getBuffer(buffers,
+								partitionWorkerMap.get(vertexID.getPartitionID()));
+						for (Message message : entry.getValue()) {
+							buffer.add(vertexID, message, combiner);
+						}
+					}
+				}
+				if (doubleMessages != null) {
+					for (Integer partitionID : doubleMessages.getPartitionIDs()) {
+						if (!partitionIDs.contains(partitionID)) {
+							continue;
+						}
+						MessageBuffer buffer = getBuffer(buffers,
+								partitionWorkerMap.get(partitionID));
+						DoubleMessageStore.PartitionMessages partitionMessages = doubleMessages
+								.getPartitionMessages(partitionID);
+						for (int i = 0; i < partitionMessages.size(); i++) {
+							buffer.addDouble(partitionID,
+									partitionMessages.getVertexID(i),
+									partitionMessages.getValue(i),
+									doubleCombiner);
+						}
+					}
+				}
+			}
+		}
+		return buffers;
+	}
+
+	/**
+	 * Deletes the logs of the supersteps before the given superstep, which
+	 * are not needed once a checkpoint of the superstep is committed.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep
+	 */
+	public synchronized void discardBefore(long superstep) {
+		for (long loggedSuperstep : getLoggedSupersteps()) {
+			if (loggedSuperstep < superstep) {
+				delete(loggedSuperstep);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the logs of the given superstep and the later supersteps, whose
+	 * messages are sent again when the superstep is rolled back.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep
+	 */
+	public synchronized void discardFrom(long superstep) {
+		for (long loggedSuperstep : getLoggedSupersteps()) {
+			if (loggedSuperstep >= superstep) {
+				delete(loggedSuperstep);
+			}
+		}
+	}
+
+	/**
+	 * Deletes all the logs.
+	 */
+	public synchronized void clear() {
+		for (long loggedSuperstep : getLoggedSupersteps()) {
+			delete(loggedSuperstep);
+		}
+		incompleteSupersteps.clear();
+	}
+
+	/**
+	 * Deletes the log of the superstep.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep
+	 */
+	private void delete(long superstep) {
+		if (superstep == outSuperstep) {
+			closeFile();
+		}
+		incompleteSupersteps.remove(superstep);
+		getFile(superstep).delete();
+	}
+
+	/**
+	 * Closes the file being appended to.
+	 */
+	private void closeFile() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			out = null;
+		}
+		outSuperstep = -1;
+	}
+
+	/**
+	 * Gets the supersteps that have a log file.
+	 * 
+	 * @return Returns the logged supersteps
+	 */
+	private Set<Long> getLoggedSupersteps() {
+		Set<Long> supersteps = new HashSet<>(incompleteSupersteps);
+		String[] fileNames = directory.list();
+		if (fileNames != null) {
+			for (String fileName : fileNames) {
+				if (fileName.startsWith(FILE_PREFIX)) {
+					supersteps.add(Long.parseLong(fileName
+							.substring(FILE_PREFIX.length())));
+				}
+			}
+		}
+		return supersteps;
+	}
+
+	/**
+	 * Gets the log file of the superstep.
+	 * 
+	 * @param superstep
+	 *            Represents the superstep
+	 * @return Returns the log file
+	 */
+	private File getFile(long superstep) {
+		return new File(directory, FILE_PREFIX + superstep);
+	}
+
+	/**
+	 * Gets the buffer of the messages for the Worker.
+	 * 
+	 * @param buffers
+	 *            Represents the buffers, by Worker
+	 * @param workerID
+	 *            Represents the Worker
+	 * @return Returns the buffer
+	 */
+	private static MessageBuffer getBuffer(Map<String, MessageBuffer> buffers,
+			String workerID) {
+		MessageBuffer buffer = buffers.get(workerID);
+		if (buffer == null) {
+			buffer = new MessageBuffer();
+			buffers.put(workerID, buffer);
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,610 @@
+package system;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the message plane of a Worker built on non-blocking socket
+ * channels. A single selector thread accepts the connections of the other
+ * Workers, reads and writes length-prefixed frames through pooled direct
+ * buffers, and hands the received messages to the local Worker on a delivery
+ * thread. Every message frame is acknowledged once it has been delivered, and
+ * a sender blocks until its frame is acknowledged, so the superstep barrier
+ * still waits for the messages to reach their destination.
+ * 
+ * A frame is laid out as [int length][byte type][long sequence], followed by
+ * [long superstep][serialized messages] for the message frames, where the
+ * length covers everything after itself.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class NioTransport implements Runnable {
+
+	/** The frame type of a batch of messages. */
+	private static final byte MESSAGES = 1;
+
+	/** The frame type of a store of double valued messages. */
+	private static final byte DOUBLE_MESSAGES = 2;
+
+	/** The frame type of a successful delivery acknowledgement. */
+	private static final byte ACK = 3;
+
+	/** The frame type of a failed delivery acknowledgement. */
+	private static final byte NACK = 4;
+
+	/** The size of the length prefix of a frame. */
+	private static final int LENGTH_SIZE = 4;
+
+	/** The size of an acknowledgement frame, excluding the length prefix. */
+	private static final int ACK_SIZE = 1 + 8;
+
+	/** The size of a message frame header, including the length prefix. */
+	private static final int MESSAGE_HEADER_SIZE = LENGTH_SIZE + 1 + 8 + 8;
+
+	/** The size of the pooled buffers. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The maximum number of pooled buffers. */
+	private static final int MAX_POOLED_BUFFERS = 64;
+
+	/** The local Worker that the received messages are delivered to. */
+	private final Worker worker;
+
+	/** The selector of the channels. */
+	private final Selector selector;
+
+	/** The channel accepting the connections of the other Workers. */
+	private final ServerSocketChannel serverChannel;
+
+	/** The address that the other Workers connect to. */
+	private final InetSocketAddress address;
+
+	/** The pool of the read and write buffers. */
+	private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE,
+			MAX_POOLED_BUFFERS);
+
+	/** The threads delivering the received messages to the local Worker. */
+	private final ExecutorService deliveryExecutor;
+
+	/** The outgoing connections, by destination Worker. */
+	private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+	/** The connections waiting to be registered with the selector. */
+	private final Queue<Connection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+	/** The connections having frames waiting to be written. */
+	private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+	/** The sends waiting for their acknowledgement, by sequence number. */
+	private final Map<Long, PendingSend> pendingSends = new ConcurrentHashMap<>();
+
+	/** The sequence number of the next frame sent. */
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	/**
+	 * Constructs the transport and starts the selector thread.
+	 * 
+	 * @param worker
+	 *            Represents the local Worker that the received messages are
+	 *            delivered to
+	 * @param numThreads
+	 *            Represents the number of delivery threads
+	 * @throws IOException
+	 *             Signals that the server channel could not be opened
+	 */
+	public NioTransport(Worker worker, int numThreads) throws IOException {
+		this.worker = worker;
+		this.deliveryExecutor = Executors.newFixedThreadPool(numThreads);
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(new InetSocketAddress(0));
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		this.address = new InetSocketAddress(InetAddress.getLocalHost(),
+				serverChannel.socket().getLocalPort());
+		Thread selectorThread = new Thread(this, "NioTransport");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		System.out.println("NioTransport: Listening for messages on "
+				+ address);
+	}
+
+	/**
+	 * Gets the address that the other Workers connect to.
+	 * 
+	 * @return the address
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Sends a batch of messages to another Worker and waits until they are
+	 * delivered.
+	 * 
+	 * @param workerID
+	 *            Represents the destination Worker
+	 * @param workerAddress
+	 *            Represents the message address of the destination Worker
+	 * @param messages
+	 *            Represents the batch of messages
+	 * @param superstep
+	 *            Represents the superstep in which the messages were sent
+	 * @throws IOException
+	 *             Signals that the messages could not be delivered
+	 */
+	public void sendMessages(String workerID, InetSocketAddress workerAddress,
+			MessageBatch messages, long superstep) throws IOException {
+		send(workerID, workerAddress, MESSAGES, messages, superstep);
+	}
+
+	/**
+	 * Sends a store of double valued messages to another Worker and waits
+	 * until they are delivered.
+	 * 
+	 * @param workerID
+	 *            Represents the destination Worker
+	 * @param workerAddress
+	 *            Represents the message address of the destination Worker
+	 * @param messages
+	 *            Represents the store of messages
+	 * @param superstep
+	 *            Represents the superstep in which the messages were sent
+	 * @throws IOException
+	 *             Signals that the messages could not be delivered
+	 */
+	public void sendDoubleMessages(String workerID,
+			InetSocketAddress workerAddress, DoubleMessageStore messages,
+			long superstep) throws IOException {
+		send(workerID, workerAddress, DOUBLE_MESSAGES, messages, superstep);
+	}
+
+	/**
+	 * Frames the messages, queues the frame on the connection to the
+	 * destination Worker and waits for its acknowledgement.
+	 * 
+	 * @param workerID
+	 *            Represents the destination Worker
+	 * @param workerAddress
+	 *            Represents the message address of the destination Worker
+	 * @param type
+	 *            Represents the frame type
+	 * @param messages
+	 *            Represents the messages
+	 * @param superstep
+	 *            Represents the superstep in which the messages were sent
+	 * @throws IOException
+	 *             Signals that the messages could not be delivered
+	 */
+	private void send(String workerID, InetSocketAddress workerAddress,
+			byte type, Serializable messages, long superstep)
+			throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		bos.write(new byte[MESSAGE_HEADER_SIZE]);
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(messages);
+		oos.close();
+		byte[] frame = bos.toByteArray();
+		long sequence = nextSequence.incrementAndGet();
+		ByteBuffer.wrap(frame).putInt(frame.length - LENGTH_SIZE).put(type)
+				.putLong(sequence).putLong(superstep);
+
+		Connection connection = getConnection(workerID, workerAddress);
+		PendingSend pendingSend = new PendingSend(connection);
+		pendingSends.put(sequence, pendingSend);
+		if (!connection.isOpen()) {
+			pendingSends.remove(sequence);
+			throw new ClosedChannelException();
+		}
+		connection.enqueue(frame);
+		try {
+			pendingSend.latch.await();
+		} catch (InterruptedException e) {
+			pendingSends.remove(sequence);
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while sending to " + workerID);
+		}
+		if (!pendingSend.delivered) {
+			throw new IOException("Messages were not delivered to "
+					+ workerID);
+		}
+	}
+
+	/**
+	 * Gets the connection to the destination Worker, connecting to it if
+	 * there is no open connection.
+	 * 
+	 * @param workerID
+	 *            Represents the destination Worker
+	 * @param workerAddress
+	 *            Represents the message address of the destination Worker
+	 * @return Returns the connection
+	 * @throws IOException
+	 *             Signals that the Worker could not be connected to
+	 */
+	private Connection getConnection(String workerID,
+			InetSocketAddress workerAddress) throws IOException {
+		Connection connection = connections.get(workerID);
+		if (connection != null && connection.isOpen()) {
+			return connection;
+		}
+		synchronized (connections) {
+			connection = connections.get(workerID);
+			if (connection == null || !connection.isOpen()) {
+				SocketChannel channel = SocketChannel.open(workerAddress);
+				channel.socket().setTcpNoDelay(true);
+				channel.configureBlocking(false);
+				connection = new Connection(channel);
+				connections.put(workerID, connection);
+				pendingRegistrations.add(connection);
+				selector.wakeup();
+			}
+		}
+		return connection;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				selector.select();
+				Connection connection;
+				while ((connection = pendingRegistrations.poll()) != null) {
+					connection.register();
+				}
+				while ((connection = pendingWrites.poll()) != null) {
+					connection.enableWrites();
+				}
+				Iterator<SelectionKey> iter = selector.selectedKeys()
+						.iterator();
+				while (iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException e) {
+						connection.close();
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Accepts the connection of another Worker.
+	 * 
+	 * @throws IOException
+	 *             Signals that the connection could not be accepted
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.socket().setTcpNoDelay(true);
+		channel.configureBlocking(false);
+		new Connection(channel).register();
+	}
+
+	/**
+	 * Handles a complete frame received on a connection.
+	 * 
+	 * @param connection
+	 *            Represents the connection
+	 * @param frame
+	 *            Represents the frame, without its length prefix
+	 */
+	private void onFrame(final Connection connection, byte[] frame) {
+		final ByteBuffer buffer = ByteBuffer.wrap(frame);
+		final byte type = buffer.get();
+		final long sequence = buffer.getLong();
+		if (type == ACK || type == NACK) {
+			PendingSend pendingSend = pendingSends.remove(sequence);
+			if (pendingSend != null) {
+				pendingSend.complete(type == ACK);
+			}
+			return;
+		}
+		final long superstep = buffer.getLong();
+		deliveryExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean delivered = false;
+				try {
+					ObjectInputStream ois = new ObjectInputStream(
+							new ByteArrayInputStream(buffer.array(), buffer
+									.position(), buffer.remaining()));
+					Object messages = ois.readObject();
+					ois.close();
+					if (type == MESSAGES) {
+						worker.receiveMessage((MessageBatch) messages,
+								superstep);
+					} else {
+						worker.receiveDoubleMessages(
+								(DoubleMessageStore) messages, superstep);
+					}
+					delivered = true;
+				} catch (IOException | ClassNotFoundException e) {
+					e.printStackTrace();
+				}
+				byte[] ack = new byte[LENGTH_SIZE + ACK_SIZE];
+				ByteBuffer.wrap(ack).putInt(ACK_SIZE)
+						.put(delivered ? ACK : NACK).putLong(sequence);
+				connection.enqueue(ack);
+			}
+		});
+	}
+
+	/**
+	 * Represents a send waiting for its acknowledgement.
+	 */
+	private static class PendingSend {
+
+		/** The connection that the frame was sent on. */
+		private final Connection connection;
+
+		/** Released when the acknowledgement arrives or the connection fails. */
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		/** Whether the messages were delivered. */
+		private volatile boolean delivered;
+
+		/**
+		 * Constructs the pending send.
+		 * 
+		 * @param connection
+		 *            Represents the connection that the frame was sent on
+		 */
+		private PendingSend(Connection connection) {
+			this.connection = connection;
+		}
+
+		/**
+		 * Completes the send.
+		 * 
+		 * @param delivered
+		 *            Represents whether the messages were delivered
+		 */
+		private void complete(boolean delivered) {
+			this.delivered = delivered;
+			latch.countDown();
+		}
+	}
+
+	/**
+	 * Represents a connection between two Workers. The reads and writes of a
+	 * connection only happen on the selector thread, while any thread may
+	 * queue frames to be written.
+	 */
+	private class Connection {
+
+		/** The channel. */
+		private final SocketChannel channel;
+
+		/** The frames waiting to be written. */
+		private final Queue<byte[]> writeQueue = new ConcurrentLinkedQueue<>();
+
+		/** The selection key of the channel. */
+		private SelectionKey key;
+
+		/** The buffer the channel is read into. */
+		private ByteBuffer readBuffer;
+
+		/** The buffer the channel is written from, ready to be drained. */
+		private ByteBuffer writeBuffer;
+
+		/** The frame being received, or null if its length is unknown. */
+		private byte[] frame;
+
+		/** The number of bytes of the frame being received. */
+		private int frameFilled;
+
+		/** The frame being written. */
+		private byte[] writeFrame;
+
+		/** The number of bytes of the frame being written. */
+		private int writeFrameOffset;
+
+		/** Whether the connection is open. */
+		private volatile boolean open = true;
+
+		/**
+		 * Constructs the connection.
+		 * 
+		 * @param channel
+		 *            Represents the channel
+		 */
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Checks if the connection is open.
+		 * 
+		 * @return true, if the connection is open
+		 */
+		private boolean isOpen() {
+			return open;
+		}
+
+		/**
+		 * Registers the channel with the selector. Must be called on the
+		 * selector thread.
+		 */
+		private void register() {
+			try {
+				readBuffer = bufferPool.acquire();
+				writeBuffer = bufferPool.acquire();
+				writeBuffer.flip();
+				key = channel.register(selector, SelectionKey.OP_READ, this);
+				if (!writeQueue.isEmpty()) {
+					enableWrites();
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Queues a frame to be written by the selector thread.
+		 * 
+		 * @param frame
+		 *            Represents the frame, including its length prefix
+		 */
+		private void enqueue(byte[] frame) {
+			writeQueue.add(frame);
+			pendingWrites.add(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * Makes the selector report when the channel is writable. Must be
+		 * called on the selector thread.
+		 */
+		private void enableWrites() {
+			if (key != null && key.isValid()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+
+		/**
+		 * Reads the available bytes and handles the complete frames. Must be
+		 * called on the selector thread.
+		 * 
+		 * @throws IOException
+		 *             Signals that the channel failed or was closed by the
+		 *             other Worker
+		 */
+		private void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				throw new ClosedChannelException();
+			}
+			readBuffer.flip();
+			while (true) {
+				if (frame == null) {
+					if (readBuffer.remaining() < LENGTH_SIZE) {
+						break;
+					}
+					frame = new byte[readBuffer.getInt()];
+					frameFilled = 0;
+				}
+				int length = Math.min(readBuffer.remaining(), frame.length
+						- frameFilled);
+				readBuffer.get(frame, frameFilled, length);
+				frameFilled += length;
+				if (frameFilled < frame.length) {
+					break;
+				}
+				byte[] complete = frame;
+				frame = null;
+				onFrame(this, complete);
+			}
+			readBuffer.compact();
+		}
+
+		/**
+		 * Writes the queued frames until the channel would block. Must be
+		 * called on the selector thread.
+		 * 
+		 * @throws IOException
+		 *             Signals that the channel failed
+		 */
+		private void write() throws IOException {
+			while (true) {
+				if (!writeBuffer.hasRemaining()) {
+					if (writeFrame == null) {
+						writeFrame = writeQueue.poll();
+						writeFrameOffset = 0;
+						if (writeFrame == null) {
+							key.interestOps(SelectionKey.OP_READ);
+							return;
+						}
+					}
+					writeBuffer.clear();
+					int length = Math.min(writeBuffer.remaining(),
+							writeFrame.length - writeFrameOffset);
+					writeBuffer.put(writeFrame, writeFrameOffset, length);
+					writeBuffer.flip();
+					writeFrameOffset += length;
+					if (writeFrameOffset == writeFrame.length) {
+						writeFrame = null;
+					}
+				}
+				channel.write(writeBuffer);
+				if (writeBuffer.hasRemaining()) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Closes the connection and fails the sends waiting for an
+		 * acknowledgement on it.
+		 */
+		private void close() {
+			open = false;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (readBuffer != null) {
+				bufferPool.release(readBuffer);
+				bufferPool.release(writeBuffer);
+				readBuffer = null;
+				writeBuffer = null;
+			}
+			for (Iterator<PendingSend> iter = pendingSends.values().iterator(); iter
+					.hasNext();) {
+				PendingSend pendingSend = iter.next();
+				if (pendingSend.connection == this) {
+					iter.remove();
+					pendingSend.complete(false);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package system;
+
+import graphs.VertexID;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents a medium through which workers send messages to other workers
+ * over the socket channels of the NIO transport. The message address of a
+ * worker is looked up over RMI the first time that the worker is sent a
+ * message.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class NioWorker2WorkerProxy implements Worker2Worker {
+	/** The transport of the local worker. **/
+	private NioTransport transport;
+
+	/** The workerID to Worker map. **/
+	private Map<String, Worker> mapWorkerIdToWorker;
+
+	/** The workerID to message address map. **/
+	private Map<String, InetSocketAddress> mapWorkerIdToAddress = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs the NIO worker2worker proxy
+	 * 
+	 * @param transport
+	 *            Represents the transport of the local worker
+	 * @param mapWorkerIdToWorker
+	 *            Represents the WorkerID to worker map
+	 */
+	public NioWorker2WorkerProxy(NioTransport transport,
+			Map<String, Worker> mapWorkerIdToWorker) {
+		this.transport = transport;
+		this.mapWorkerIdToWorker = mapWorkerIdToWorker;
+	}
+
+	/**
+	 * Gets the message address of a worker.
+	 * 
+	 * @param workerID
+	 *            the worker
+	 * @return the message address of the worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	private InetSocketAddress getAddress(String workerID)
+			throws RemoteException {
+		InetSocketAddress address = mapWorkerIdToAddress.get(workerID);
+		if (address == null) {
+			address = mapWorkerIdToWorker.get(workerID).getMessageAddress();
+			if (address == null) {
+				throw new RemoteException("Worker " + workerID
+						+ " does not use the NIO transport");
+			}
+			mapWorkerIdToAddress.put(workerID, address);
+		}
+		return address;
+	}
+
+	/**
+	 * Method to send message to another worker
+	 * 
+	 * @param receiverWorkerID
+	 *            the receiver worker
+	 * @param outgoingMessages
+	 *            set of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 */
+	public void sendMessage(String receiverWorkerID,
+			Map<VertexID, List<Message>> outgoingMessages, long superstep)
+			throws RemoteException {
+		try {
+			transport.sendMessages(receiverWorkerID,
+					getAddress(receiverWorkerID), new MessageBatch(
+							outgoingMessages), superstep);
+		} catch (IOException e) {
+			throw new RemoteException("Can't send message to Worker "
+					+ receiverWorkerID, e);
+		}
+	}
+
+	/**
+	 * Method to send double valued messages to another worker
+	 * 
+	 * @param receiverWorkerID
+	 *            the receiver worker
+	 * @param outgoingMessages
+	 *            store of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 */
+	public void sendDoubleMessages(String receiverWorkerID,
+			DoubleMessageStore outgoingMessages, long superstep)
+			throws RemoteException {
+		try {
+			transport.sendDoubleMessages(receiverWorkerID,
+					getAddress(receiverWorkerID), outgoingMessages, superstep);
+		} catch (IOException e) {
+			throw new RemoteException("Can't send message to Worker "
+					+ receiverWorkerID, e);
+		}
+	}
+}
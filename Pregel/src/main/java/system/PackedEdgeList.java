@@ -0,0 +1,93 @@
+package system;
+
+import graphs.VertexID;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import utility.GeneralUtils;
+
+/**
+ * Represents the read-only list of outgoing edges of a single vertex, backed
+ * by an array of destination vertex identifiers and an array of weights. It is
+ * built by the vertex line parser, so that loading a vertex does not create an
+ * {@link system.Edge Edge} and two {@link graphs.VertexID VertexID} objects per
+ * edge.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class PackedEdgeList extends AbstractList<Edge> implements RandomAccess {
+
+	/** The source vertex identifier. */
+	private VertexID sourceID;
+
+	/** The destination vertex identifiers. */
+	private long[] destinationIDs;
+
+	/** The edge weights. */
+	private double[] weights;
+
+	/**
+	 * Constructs the packed edge list.
+	 * 
+	 * @param sourceID
+	 *            Represents the source vertex
+	 * @param destinationIDs
+	 *            Represents the destination vertex identifiers
+	 * @param weights
+	 *            Represents the edge weights
+	 */
+	public PackedEdgeList(VertexID sourceID, long[] destinationIDs,
+			double[] weights) {
+		this.sourceID = sourceID;
+		this.destinationIDs = destinationIDs;
+		this.weights = weights;
+	}
+
+	/**
+	 * Gets the destination vertex identifier of the edge.
+	 * 
+	 * @param index
+	 *            Represents the index of the edge
+	 * @return Returns the destination vertex identifier
+	 */
+	public long getDestinationID(int index) {
+		return destinationIDs[index];
+	}
+
+	/**
+	 * Gets the weight of the edge.
+	 * 
+	 * @param index
+	 *            Represents the index of the edge
+	 * @return Returns the edge weight
+	 */
+	public double getWeight(int index) {
+		return weights[index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public Edge get(int index) {
+		long destinationID = destinationIDs[index];
+		return new Edge(sourceID, new VertexID(
+				GeneralUtils.getPartitionID(destinationID), destinationID),
+				weights[index]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return destinationIDs.length;
+	}
+}
@@ -2,16 +2,38 @@ package system;
 
 import graphs.VertexID;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.Map.Entry;
 
+import utility.Compression;
+import utility.Varint;
+import api.Data;
+import api.DataCodec;
+import api.DataCodecs;
 import api.Vertex;
 
 /**
  * Represents the partition of a graph consisting of set of vertices and their
- * outgoing edges
+ * outgoing edges. The vertices are kept sorted by their identifier and their
+ * outgoing edges are kept in a {@link system.CompressedEdgeStore
+ * CompressedEdgeStore}. The vertices and their edges can be swapped out to a
+ * file while the partition is not computed; the active vertices and the
+ * identifier of the partition always stay in memory.
  * 
  * @author Prakash Chandrasekaran
  * @author Gautham Narayanasamy
@@ -22,8 +44,24 @@ import api.Vertex;
 public class Partition implements Serializable {
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = -7212204736364464061L;
-	private Map<VertexID, Vertex> vertexMap;
+	/** The sorted vertex identifiers, used to look up the vertices */
+	private transient long[] vertexIDs = new long[0];
+	/** The vertices, in the order of their identifiers */
+	private transient Vertex[] vertices = new Vertex[0];
+	/** The outgoing edges of the vertices */
+	private transient CompressedEdgeStore edgeStore;
+	/** The active vertices, indexed by their position in the partition */
+	private transient BitSet activeVertices = new BitSet();
 	private int partitionID;
+	/** The file the vertices were swapped out to, or null if they are in memory */
+	private transient File swapFile;
+	/**
+	 * The vertices computed since the partition was last checkpointed, or null
+	 * if the partition has to be checkpointed in full
+	 */
+	private transient BitSet changedVertices;
+	/** The size of the buffers used to swap the vertices */
+	private static final int SWAP_BUFFER_SIZE = 64 * 1024;
 
 	public Partition() throws RemoteException {
 
@@ -41,7 +79,47 @@ public class Partition implements Serializable {
 	public Partition(int partitionID, Map<VertexID, Vertex> vertexMap)
 			throws RemoteException {
 		this.partitionID = partitionID;
-		this.vertexMap = vertexMap;
+		this.vertices = vertexMap.values().toArray(
+				new Vertex[vertexMap.size()]);
+		Arrays.sort(this.vertices, new Comparator<Vertex>() {
+			@Override
+			public int compare(Vertex first, Vertex second) {
+				return Long.compare(first.getID().getVertexID(), second
+						.getID().getVertexID());
+			}
+		});
+		this.vertexIDs = new long[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			this.vertexIDs[i] = vertices[i].getID().getVertexID();
+		}
+		this.edgeStore = new CompressedEdgeStore(vertices);
+		this.activeVertices.set(0, vertices.length);
+	}
+
+	/**
+	 * Constructs a partition whose vertices are already sorted and whose edges
+	 * are already in an edge store. Every vertex is switched over to the edge
+	 * store.
+	 * 
+	 * @param partitionID
+	 *            Represents the unique id of the partition
+	 * @param vertexIDs
+	 *            Represents the sorted vertex identifiers
+	 * @param vertices
+	 *            Represents the vertices, in the order of their identifiers
+	 * @param edgeStore
+	 *            Represents the outgoing edges of the vertices
+	 */
+	public Partition(int partitionID, long[] vertexIDs, Vertex[] vertices,
+			CompressedEdgeStore edgeStore) {
+		this.partitionID = partitionID;
+		this.vertexIDs = vertexIDs;
+		this.vertices = vertices;
+		this.edgeStore = edgeStore;
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i].setEdgeStore(edgeStore, i);
+		}
+		this.activeVertices.set(0, vertices.length);
 	}
 
 	/**
@@ -73,16 +151,368 @@ public class Partition implements Serializable {
 	 * @throws RemoteException
 	 */
 	public Vertex getVertex(VertexID vertexID) throws RemoteException {
-		return vertexMap.get(vertexID);
+		return getVertex(vertexID.getVertexID());
+	}
+
+	/**
+	 * Gets the vertex
+	 * 
+	 * @param vertexID
+	 *            Represents the unique vertex identifier
+	 * @return Returns the vertex, or null if the partition does not have it
+	 */
+	public Vertex getVertex(long vertexID) {
+		int index = Arrays.binarySearch(vertexIDs, vertexID);
+		return index < 0 ? null : vertices[index];
+	}
+
+	/**
+	 * Gets the position of the vertex in the partition
+	 * 
+	 * @param vertexID
+	 *            Represents the unique vertex identifier
+	 * @return Returns the position of the vertex, or a negative value if the
+	 *         partition does not have it
+	 */
+	public int getVertexIndex(long vertexID) {
+		return Arrays.binarySearch(vertexIDs, vertexID);
+	}
+
+	/**
+	 * Gets the vertex at a position in the partition
+	 * 
+	 * @param index
+	 *            Represents the position of the vertex
+	 * @return Returns the vertex
+	 */
+	public Vertex getVertexAt(int index) {
+		return vertices[index];
+	}
+
+	/**
+	 * Gets the active vertices of the partition. Bit i is set if the vertex
+	 * at position i is active.
+	 * 
+	 * @return Returns the active vertices
+	 */
+	public BitSet getActiveVertices() {
+		return activeVertices;
+	}
+
+	/**
+	 * Gets the vertices of the partition
+	 * 
+	 * @return Returns the vertices of the partition
+	 */
+	public Collection<Vertex> getVertices() {
+		return Arrays.asList(vertices);
+	}
+
+	/**
+	 * Gets the number of vertices of the partition
+	 * 
+	 * @return Returns the number of vertices
+	 */
+	public int getNumVertices() {
+		return vertices.length;
+	}
+
+	/**
+	 * Checks if the vertices are swapped out.
+	 * 
+	 * @return true, if the vertices are swapped out
+	 */
+	public synchronized boolean isSwapped() {
+		return swapFile != null;
+	}
+
+	/**
+	 * Writes the vertices and their edges to the file and releases them from
+	 * memory, compressed if compression is on.
+	 * 
+	 * @param file
+	 *            the file the vertices are swapped out to
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void swapOut(File file) throws IOException {
+		if (swapFile != null) {
+			return;
+		}
+		ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file),
+						SWAP_BUFFER_SIZE));
+		try {
+			Compression.write(out, new Compression.BodyWriter() {
+				@Override
+				public void write(ObjectOutput out) throws IOException {
+					out.writeObject(vertexIDs);
+					out.writeObject(vertices);
+					out.writeObject(edgeStore);
+				}
+			});
+		} finally {
+			out.close();
+		}
+		releaseVertices(file);
+	}
+
+	/**
+	 * Reads the vertices and their edges back from the file they were swapped
+	 * out to. The file is kept, and is overwritten by the next swap out.
+	 * 
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void swapIn() throws IOException {
+		if (swapFile == null) {
+			return;
+		}
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+				new FileInputStream(swapFile), SWAP_BUFFER_SIZE));
+		try {
+			ObjectInput body = Compression.read(in);
+			vertexIDs = (long[]) body.readObject();
+			vertices = (Vertex[]) body.readObject();
+			edgeStore = (CompressedEdgeStore) body.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Can't read the swapped partition "
+					+ partitionID, e);
+		} finally {
+			in.close();
+		}
+		swapFile = null;
+	}
+
+	/**
+	 * Releases the vertices and their edges from memory, once they are in the
+	 * file.
+	 * 
+	 * @param file
+	 *            the file the vertices are swapped out to
+	 */
+	private void releaseVertices(File file) {
+		swapFile = file;
+		vertexIDs = null;
+		vertices = null;
+		edgeStore = null;
+	}
+
+	/**
+	 * Marks vertices as computed since the partition was last checkpointed.
+	 * 
+	 * @param vertices
+	 *            the indices of the vertices
+	 */
+	public synchronized void markChanged(BitSet vertices) {
+		if (changedVertices != null) {
+			changedVertices.or(vertices);
+		}
+	}
+
+	/**
+	 * Takes the vertices computed since the partition was last checkpointed,
+	 * and starts tracking the vertices computed from now on.
+	 * 
+	 * @return the indices of the vertices, or null if the partition has to be
+	 *         checkpointed in full
+	 */
+	public synchronized BitSet takeChangedVertices() {
+		BitSet changed = changedVertices;
+		changedVertices = new BitSet();
+		return changed;
+	}
+
+	/**
+	 * Gives back vertices taken by {@link #takeChangedVertices()} for a
+	 * checkpoint that was not committed.
+	 * 
+	 * @param changed
+	 *            the indices of the vertices, or null if the partition has to
+	 *            be checkpointed in full
+	 */
+	public synchronized void restoreChangedVertices(BitSet changed) {
+		if (changed == null) {
+			changedVertices = null;
+		} else {
+			markChanged(changed);
+		}
+	}
+
+	/**
+	 * Writes the values of the given vertices and the active vertices, which
+	 * are all that a computation changes in a partition, compressed if
+	 * compression is on. Values of the data class of the first vertex are
+	 * written with its {@link api.DataCodec DataCodec}, if it has one, and
+	 * the other values with Java serialization.
+	 * 
+	 * @param out
+	 *            the output
+	 * @param changed
+	 *            the indices of the vertices whose values are written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void writeChanges(ObjectOutput out,
+			final BitSet changed) throws IOException {
+		File file = swapFile;
+		swapIn();
+		try {
+			Compression.write(out, new Compression.BodyWriter() {
+				@Override
+				public void write(ObjectOutput out) throws IOException {
+					out.writeObject(activeVertices);
+					Class<?> dataClass = null;
+					DataCodec<Data<?>> codec = null;
+					int first = changed.nextSetBit(0);
+					if (first >= 0 && vertices[first].getData() != null) {
+						dataClass = vertices[first].getData().getClass();
+						codec = (DataCodec<Data<?>>) DataCodecs
+								.getCodec(dataClass);
+					}
+					out.writeUTF(codec == null ? "" : dataClass.getName());
+					Varint.writeUnsignedVarInt(out, changed.cardinality());
+					int previous = 0;
+					for (int index = first; index >= 0; index = changed
+							.nextSetBit(index + 1)) {
+						Varint.writeUnsignedVarInt(out, index - previous);
+						previous = index;
+						Vertex vertex = vertices[index];
+						Data<?> data = vertex.getData();
+						boolean encoded = codec != null && data != null
+								&& data.getClass() == dataClass;
+						out.writeByte((encoded ? 2 : 0)
+								| (vertex.hasVotedToHalt() ? 1 : 0));
+						Varint.writeUnsignedVarLong(out, vertex.getSuperstep());
+						if (encoded) {
+							codec.write(out, data);
+						} else {
+							out.writeObject(data);
+						}
+					}
+				}
+			});
+		} finally {
+			if (file != null) {
+				releaseVertices(file);
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes written by
+	 * {@link #writeChanges(ObjectOutput, BitSet)} to the vertices.
+	 * 
+	 * @param in
+	 *            the input
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	public synchronized void readChanges(ObjectInput in) throws IOException,
+			ClassNotFoundException {
+		swapIn();
+		ObjectInput body = Compression.read(in);
+		activeVertices = (BitSet) body.readObject();
+		String dataClassName = body.readUTF();
+		DataCodec<?> codec = dataClassName.isEmpty() ? null : DataCodecs
+				.getCodec(dataClassName);
+		if (codec == null && !dataClassName.isEmpty()) {
+			throw new IOException("No codec is registered for "
+					+ dataClassName);
+		}
+		int numChanged = Varint.readUnsignedVarInt(body);
+		int index = 0;
+		for (int i = 0; i < numChanged; i++) {
+			index += Varint.readUnsignedVarInt(body);
+			Vertex vertex = vertices[index];
+			int flags = body.readByte();
+			vertex.setSuperstep(Varint.readUnsignedVarLong(body));
+			vertex.setData((flags & 2) != 0 ? codec.read(body) : (Data<?>) body
+					.readObject());
+			if ((flags & 1) != 0) {
+				vertex.voteToHalt();
+			} else {
+				vertex.activate();
+			}
+		}
+	}
+
+	/**
+	 * Writes the vertices and their edges, compressed if compression is on.
+	 * Swapped out vertices are read back for the duration of the write.
+	 * 
+	 * @param out
+	 *            the object output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private synchronized void writeObject(ObjectOutputStream out)
+			throws IOException {
+		File file = swapFile;
+		swapIn();
+		try {
+			out.defaultWriteObject();
+			Compression.write(out, new Compression.BodyWriter() {
+				@Override
+				public void write(ObjectOutput out) throws IOException {
+					out.writeObject(vertexIDs);
+					out.writeObject(vertices);
+					out.writeObject(edgeStore);
+					out.writeObject(activeVertices);
+				}
+			});
+		} finally {
+			if (file != null) {
+				releaseVertices(file);
+			}
+		}
+	}
+
+	/**
+	 * Reads the vertices written by {@link #writeObject(ObjectOutputStream)}
+	 * 
+	 * @param in
+	 *            the object input stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *             the class not found exception
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		ObjectInput body = Compression.read(in);
+		vertexIDs = (long[]) body.readObject();
+		vertices = (Vertex[]) body.readObject();
+		edgeStore = (CompressedEdgeStore) body.readObject();
+		activeVertices = (BitSet) body.readObject();
 	}
 
 	/**
-	 * String Representation of the object
+	 * String Representation of the object. Swapped out vertices are read back
+	 * for the duration of the call.
 	 */
-	public String toString() {
-		String result = "Partition ID :" + this.partitionID + "\n";
-		for (Entry<VertexID, Vertex> entry : vertexMap.entrySet())
-			result += entry.getValue().toString() + "\n";
-		return result;
+	public synchronized String toString() {
+		File file = swapFile;
+		try {
+			swapIn();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "Partition ID :" + this.partitionID + " (unreadable)\n";
+		}
+		try {
+			StringBuilder result = new StringBuilder("Partition ID :"
+					+ this.partitionID + "\n");
+			for (Vertex vertex : vertices)
+				result.append(vertex.toString()).append("\n");
+			return result.toString();
+		} finally {
+			if (file != null) {
+				releaseVertices(file);
+			}
+		}
 	}
 }
@@ -0,0 +1,82 @@
+package system;
+
+import java.io.Serializable;
+
+/**
+ * Represents the work a partition took in a superstep: the time its vertices
+ * were computed in and the number of messages they received and sent. The
+ * Workers report it with the completion of the superstep, and the Master
+ * moves partitions from the Workers that took the longest to the others.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class PartitionStats implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 2815763301848127502L;
+
+	/** The time the partition was computed in, in nanoseconds. */
+	private long computeTime;
+
+	/** The number of messages received by the vertices of the partition. */
+	private long receivedMessages;
+
+	/** The number of messages sent by the vertices of the partition. */
+	private long sentMessages;
+
+	/**
+	 * Constructs the statistics of a partition.
+	 * 
+	 * @param computeTime
+	 *            Represents the time the partition was computed in, in
+	 *            nanoseconds
+	 * @param receivedMessages
+	 *            Represents the number of messages received by its vertices
+	 * @param sentMessages
+	 *            Represents the number of messages sent by its vertices
+	 */
+	public PartitionStats(long computeTime, long receivedMessages,
+			long sentMessages) {
+		this.computeTime = computeTime;
+		this.receivedMessages = receivedMessages;
+		this.sentMessages = sentMessages;
+	}
+
+	/**
+	 * Gets the time the partition was computed in
+	 * 
+	 * @return Returns the compute time in nanoseconds
+	 */
+	public long getComputeTime() {
+		return computeTime;
+	}
+
+	/**
+	 * Gets the number of messages received by the vertices of the partition
+	 * 
+	 * @return Returns the number of messages received
+	 */
+	public long getReceivedMessages() {
+		return receivedMessages;
+	}
+
+	/**
+	 * Gets the number of messages sent by the vertices of the partition
+	 * 
+	 * @return Returns the number of messages sent
+	 */
+	public long getSentMessages() {
+		return sentMessages;
+	}
+
+	/**
+	 * Overrides the java Object's toString() method
+	 */
+	@Override
+	public String toString() {
+		return String.format("%.1f ms, %d messages received, %d sent",
+				computeTime / 1e6, receivedMessages, sentMessages);
+	}
+}
@@ -0,0 +1,214 @@
+package system;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents the partitions of a Worker of which only a configured number are
+ * kept in memory. When more partitions are resident, the least recently used
+ * partitions that are not being computed have their vertices and edges
+ * swapped out to a file in the swap directory, and a partition is swapped
+ * back in when a Worker thread takes it to compute it.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class PartitionStore {
+
+	/** The directory of the swapped out partitions. */
+	private final File directory;
+
+	/** The maximum number of resident partitions, or 0 for no limit. */
+	private final int maxResidentPartitions;
+
+	/** The resident partitions, from the least to the most recently used. */
+	private final LinkedHashSet<Partition> residentPartitions = new LinkedHashSet<>();
+
+	/** The partitions being computed, which are never swapped out. */
+	private final Set<Partition> partitionsInUse = new HashSet<>();
+
+	/** The partitions being swapped out. */
+	private final Set<Partition> swappingPartitions = new HashSet<>();
+
+	/**
+	 * Constructs the partition store.
+	 * 
+	 * @param directory
+	 *            Represents the directory of the swapped out partitions
+	 * @param maxResidentPartitions
+	 *            Represents the maximum number of resident partitions, or 0
+	 *            for no limit
+	 */
+	public PartitionStore(File directory, int maxResidentPartitions) {
+		this.directory = directory;
+		this.maxResidentPartitions = maxResidentPartitions;
+		if (isEnabled()) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	 * Checks if the number of resident partitions is limited.
+	 * 
+	 * @return true, if partitions are swapped out
+	 */
+	public boolean isEnabled() {
+		return maxResidentPartitions > 0;
+	}
+
+	/**
+	 * Adds a partition whose vertices are in memory, swapping out other
+	 * partitions if there are too many resident partitions.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 */
+	public void add(Partition partition) {
+		if (!isEnabled()) {
+			return;
+		}
+		List<Partition> victims;
+		synchronized (this) {
+			residentPartitions.add(partition);
+			victims = selectVictims();
+		}
+		swapOut(victims);
+	}
+
+	/**
+	 * Makes the vertices of a partition resident for it to be computed. The
+	 * partition is not swapped out until it is released.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 * @throws IOException
+	 *             Signals that the partition could not be swapped in
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public void acquire(Partition partition) throws IOException,
+			InterruptedException {
+		if (!isEnabled()) {
+			return;
+		}
+		List<Partition> victims;
+		synchronized (this) {
+			while (swappingPartitions.contains(partition)) {
+				wait();
+			}
+			partitionsInUse.add(partition);
+			residentPartitions.remove(partition);
+			residentPartitions.add(partition);
+			victims = selectVictims();
+		}
+		swapOut(victims);
+		partition.swapIn();
+	}
+
+	/**
+	 * Releases a partition that was computed, swapping out partitions if
+	 * there are too many resident partitions.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 */
+	public void release(Partition partition) {
+		if (!isEnabled()) {
+			return;
+		}
+		List<Partition> victims;
+		synchronized (this) {
+			partitionsInUse.remove(partition);
+			victims = selectVictims();
+		}
+		swapOut(victims);
+	}
+
+	/**
+	 * Forgets a partition that was moved to another Worker. Its swap file, if
+	 * any, is left to be overwritten or deleted with the others.
+	 * 
+	 * @param partition
+	 *            Represents the partition
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public synchronized void remove(Partition partition)
+			throws InterruptedException {
+		while (swappingPartitions.contains(partition)) {
+			wait();
+		}
+		residentPartitions.remove(partition);
+		partitionsInUse.remove(partition);
+	}
+
+	/**
+	 * Forgets all the partitions and deletes their swap files.
+	 */
+	public synchronized void clear() {
+		residentPartitions.clear();
+		partitionsInUse.clear();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Selects the least recently used partitions that are not in use until
+	 * few enough partitions are resident. Must be called with the lock held.
+	 * 
+	 * @return Returns the partitions to swap out
+	 */
+	private List<Partition> selectVictims() {
+		List<Partition> victims = new ArrayList<>();
+		Iterator<Partition> iter = residentPartitions.iterator();
+		while (residentPartitions.size() > maxResidentPartitions
+				&& iter.hasNext()) {
+			Partition partition = iter.next();
+			if (!partitionsInUse.contains(partition)) {
+				iter.remove();
+				swappingPartitions.add(partition);
+				victims.add(partition);
+			}
+		}
+		return victims;
+	}
+
+	/**
+	 * Swaps out the partitions. A partition that could not be written stays
+	 * resident.
+	 * 
+	 * @param victims
+	 *            Represents the partitions to swap out
+	 */
+	private void swapOut(List<Partition> victims) {
+		for (Partition partition : victims) {
+			boolean swapped = false;
+			try {
+				partition.swapOut(new File(directory, "partition_"
+						+ partition.getPartitionID() + ".bin"));
+				swapped = true;
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				synchronized (this) {
+					swappingPartitions.remove(partition);
+					if (!swapped) {
+						residentPartitions.add(partition);
+					}
+					notifyAll();
+				}
+			}
+		}
+	}
+}
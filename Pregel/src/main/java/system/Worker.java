@@ -1,11 +1,16 @@
 package system;
 
+import graphs.InputSplit;
+import graphs.PartitioningStrategy;
 import graphs.VertexID;
 
+import java.io.Serializable;
+import java.net.InetSocketAddress;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -35,6 +40,26 @@ public interface Worker extends Remote {
 	 */
 	public int getNumThreads() throws RemoteException;
 
+	/**
+	 * Gets the average time the Worker took to compute a partition in the
+	 * current run.
+	 * 
+	 * @return the time in nanoseconds, or 0 if no partition has been computed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public long getPartitionComputeTime() throws RemoteException;
+
+	/**
+	 * Gets the address that the other workers send messages to when the NIO
+	 * transport is used.
+	 * 
+	 * @return the message address, or null if the messages are sent over RMI
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public InetSocketAddress getMessageAddress() throws RemoteException;
+
 	/**
 	 * Sets the master proxy.
 	 * 
@@ -67,6 +92,23 @@ public interface Worker extends Remote {
 	public void addPartitionList(List<Partition> workerPartitions)
 			throws RemoteException;
 
+	/**
+	 * Loads the partitions from the byte ranges of the input graph file. The
+	 * partitions are parsed in the background by the Worker's threads and are
+	 * guaranteed to be loaded before the first superstep starts.
+	 * 
+	 * @param graphFileName
+	 *            the graph file name
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 * @param inputSplits
+	 *            the byte ranges of the partitions assigned to the Worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void loadPartitions(String graphFileName, String vertexClassName,
+			List<InputSplit> inputSplits) throws RemoteException;
+
 	/**
 	 * Sets the worker partition info.
 	 * 
@@ -83,6 +125,34 @@ public interface Worker extends Remote {
 			Map<Integer, String> mapPartitionIdToWorkerId,
 			Map<String, Worker> mapWorkerIdToWorker) throws RemoteException;
 
+	/**
+	 * Sets the strategy mapping the vertices to the partitions, which the
+	 * Worker uses to load its partitions and to route its messages.
+	 * 
+	 * @param partitioningStrategy
+	 *            the partitioning strategy
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void setPartitioningStrategy(
+			PartitioningStrategy partitioningStrategy) throws RemoteException;
+
+	/**
+	 * Migrates a partition, with the messages sent to it for the next
+	 * superstep, to another Worker. Called at the barrier between two
+	 * supersteps, before the Master sends the new partition assignment to
+	 * the Workers.
+	 * 
+	 * @param partitionID
+	 *            the partition id
+	 * @param destination
+	 *            the Worker the partition is migrated to
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void migratePartition(int partitionID, Worker destination)
+			throws RemoteException;
+
 	/**
 	 * Halt.
 	 * 
@@ -96,10 +166,16 @@ public interface Worker extends Remote {
 	 * 
 	 * @param superStepCounter
 	 *            the super step counter
+	 * @param epoch
+	 *            the epoch of the superstep, returned with its acknowledgment
+	 * @param aggregatedValues
+	 *            the values of the aggregators reduced in the previous
+	 *            superstep
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
-	public void startSuperStep(long superStepCounter) throws RemoteException;
+	public void startSuperStep(long superStepCounter, long epoch,
+			Map<String, Serializable> aggregatedValues) throws RemoteException;
 
 	/**
 	 * Sets the initial message.
@@ -117,13 +193,28 @@ public interface Worker extends Remote {
 	 * Receive message.
 	 * 
 	 * @param incomingMessages
-	 *            the incoming messages
+	 *            the incoming messages, written in the compact batch form
+	 * @param superstep
+	 *            the superstep in which the messages were sent
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
-	public void receiveMessage(Map<VertexID, List<Message>> incomingMessages)
+	public void receiveMessage(MessageBatch incomingMessages, long superstep)
 			throws RemoteException;
 
+	/**
+	 * Receive double valued messages.
+	 * 
+	 * @param incomingMessages
+	 *            the incoming messages
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void receiveDoubleMessages(DoubleMessageStore incomingMessages,
+			long superstep) throws RemoteException;
+
 	/**
 	 * Send heartbeat to Worker to check its health.
 	 * 
@@ -133,7 +224,9 @@ public interface Worker extends Remote {
 	public void sendHeartBeat() throws RemoteException;
 
 	/**
-	 * Check point.
+	 * Check point. The partitions and messages are captured before returning
+	 * and written in the background; the Worker reports the outcome through
+	 * {@link system.Worker2Master#checkpointCompleted(String, long, boolean)}.
 	 * 
 	 * @param superstep the superstep
 	 * @throws Exception the exception
@@ -163,11 +256,78 @@ public interface Worker extends Remote {
 	 *            the partition
 	 * @param messages
 	 *            the messages
+	 * @param doubleMessages
+	 *            the double valued messages
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
 	public void addRecoveredData(Partition partition,
-			Map<VertexID, List<Message>> messages) throws RemoteException;
+			Map<VertexID, List<Message>> messages,
+			DoubleMessageStore.PartitionMessages doubleMessages)
+			throws RemoteException;
+
+	/**
+	 * Reads partitions of a failed Worker from its checkpoint file and adds
+	 * them, together with their messages, as recovered data.
+	 * 
+	 * @param checkpointFile
+	 *            the checkpoint file of the failed Worker
+	 * @param partitionIDs
+	 *            the partitions assigned to this Worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void recoverPartitions(String checkpointFile,
+			List<Integer> partitionIDs) throws RemoteException;
+
+	/**
+	 * Rolls back the superstep that was in progress when a Worker failed. The
+	 * partitions computed in the superstep are restored to their state from
+	 * before it, and the messages sent in it are discarded.
+	 * 
+	 * @param superstep
+	 *            the superstep that failed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void rollbackSuperStep(long superstep) throws RemoteException;
+
+	/**
+	 * Starts the replay of the partitions of the failed Workers. The partitions
+	 * of this Worker are set aside until the replay finishes, and only the
+	 * messages sent to the replayed partitions are delivered.
+	 * 
+	 * @param superstep
+	 *            the superstep of the checkpoint the replay starts from
+	 * @param partitionIDs
+	 *            the replayed partitions
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void startReplay(long superstep, Set<Integer> partitionIDs)
+			throws RemoteException;
+
+	/**
+	 * Sends the messages that this Worker logged in a superstep to the
+	 * replayed partitions again.
+	 * 
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void replayMessages(long superstep) throws RemoteException;
+
+	/**
+	 * Finishes the replay, puts back the partitions set aside and writes a
+	 * checkpoint of the superstep that failed.
+	 * 
+	 * @param superstep
+	 *            the superstep that failed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void finishReplay(long superstep) throws RemoteException;
 
 	/**
 	 * Method to shutdown the worker machine
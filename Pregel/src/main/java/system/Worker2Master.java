@@ -2,6 +2,7 @@ package system;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -41,9 +42,35 @@ public interface Worker2Master extends java.rmi.Remote, Serializable {
 	 * 
 	 * @param workerID
 	 *            the worker id
+	 * @param epoch
+	 *            the epoch the Master started the superstep with, which tells
+	 *            it from the same superstep started again after a recovery
+	 * @param activeWorkerIDs
+	 *            the workers which will be active in the next superstep
+	 * @param aggregatedValues
+	 *            the values of the aggregators reduced by the worker
+	 * @param partitionStats
+	 *            the work each partition computed by the worker took, by
+	 *            partitionID
 	 */
-	public void superStepCompleted(String workerID, Set<String> activeWorkerIDs)
-			throws RemoteException;
+	public void superStepCompleted(String workerID, long epoch,
+			Set<String> activeWorkerIDs,
+			Map<String, Serializable> aggregatedValues,
+			Map<Integer, PartitionStats> partitionStats) throws RemoteException;
+
+	/**
+	 * Send a message to the Master saying that the checkpoint taken before a
+	 * superstep has been written, or that it could not be written.
+	 * 
+	 * @param workerID
+	 *            the worker id
+	 * @param superstep
+	 *            the superstep the checkpoint was taken before
+	 * @param success
+	 *            whether the checkpoint file was written and synced to disk
+	 */
+	public void checkpointCompleted(String workerID, long superstep,
+			boolean success) throws RemoteException;
 
 	/**
 	 * Defines a deployment convenience to stop each registered
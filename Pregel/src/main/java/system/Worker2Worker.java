@@ -20,8 +20,24 @@ public interface Worker2Worker extends java.rmi.Remote {
 	 *            the receiver worker
 	 * @param outgoingMessages
 	 *            set of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
 	 */
 	public void sendMessage(String receiverWorkerID,
-			Map<VertexID, List<Message>> outgoingMessages)
+			Map<VertexID, List<Message>> outgoingMessages, long superstep)
+			throws RemoteException;
+
+	/**
+	 * Method to send double valued messages to another worker
+	 * 
+	 * @param receiverWorkerID
+	 *            the receiver worker
+	 * @param outgoingMessages
+	 *            store of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 */
+	public void sendDoubleMessages(String receiverWorkerID,
+			DoubleMessageStore outgoingMessages, long superstep)
 			throws RemoteException;
 }
\ No newline at end of file
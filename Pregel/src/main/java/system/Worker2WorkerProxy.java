@@ -36,11 +36,30 @@ public class Worker2WorkerProxy implements Worker2Worker, Remote {
 	 *            the receiver worker
 	 * @param outgoingMessages
 	 *            set of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
 	 */
 	public void sendMessage(String receiverWorkerID,
-			Map<VertexID, List<Message>> outgoingMessages)
+			Map<VertexID, List<Message>> outgoingMessages, long superstep)
 			throws RemoteException {
 		mapWorkerIdToWorker.get(receiverWorkerID).receiveMessage(
-				outgoingMessages);
+				new MessageBatch(outgoingMessages), superstep);
+	}
+
+	/**
+	 * Method to send double valued messages to another worker
+	 * 
+	 * @param receiverWorkerID
+	 *            the receiver worker
+	 * @param outgoingMessages
+	 *            store of messages to be sent to the worker
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 */
+	public void sendDoubleMessages(String receiverWorkerID,
+			DoubleMessageStore outgoingMessages, long superstep)
+			throws RemoteException {
+		mapWorkerIdToWorker.get(receiverWorkerID).receiveDoubleMessages(
+				outgoingMessages, superstep);
 	}
 }
@@ -25,6 +25,8 @@ public class WorkerData implements Serializable {
 	 * messages
 	 */
 	private Map<Integer, Map<VertexID, List<Message>>> messages;
+	/** Store of the double valued messages */
+	private DoubleMessageStore doubleMessages;
 
 	/**
 	 * Constructs the worker data
@@ -33,11 +35,15 @@ public class WorkerData implements Serializable {
 	 *            Represents the set of vertices
 	 * @param messages
 	 *            Represents the message
+	 * @param doubleMessages
+	 *            Represents the double valued messages
 	 */
 	public WorkerData(Queue<Partition> partitions,
-			Map<Integer, Map<VertexID, List<Message>>> messages) {
+			Map<Integer, Map<VertexID, List<Message>>> messages,
+			DoubleMessageStore doubleMessages) {
 		this.partitions = partitions;
 		this.messages = messages;
+		this.doubleMessages = doubleMessages;
 	}
 
 	/**
@@ -81,10 +87,29 @@ public class WorkerData implements Serializable {
 		this.messages = messages;
 	}
 
+	/**
+	 * Gets the store of the double valued messages
+	 * 
+	 * @return Returns the store of the double valued messages
+	 */
+	public DoubleMessageStore getDoubleMessages() {
+		return doubleMessages;
+	}
+
+	/**
+	 * Sets the store of the double valued messages
+	 * 
+	 * @param doubleMessages
+	 *            Represents the store of the double valued messages
+	 */
+	public void setDoubleMessages(DoubleMessageStore doubleMessages) {
+		this.doubleMessages = doubleMessages;
+	}
+
 	/** String representation of the object */
 	@Override
 	public String toString() {
 		return "Partitions:  " + partitions.toString() + "\n" + "Messages: "
-				+ messages;
+				+ messages + "\n" + "Double Messages: " + doubleMessages;
 	}
 }
@@ -1,10 +1,24 @@
 package system;
 
+import exceptions.InvalidVertexLineException;
 import exceptions.PropertyNotFoundException;
+import graphs.BinaryGraphReader;
+import graphs.InputSplit;
+import graphs.PartitioningStrategy;
 import graphs.VertexID;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
@@ -12,6 +26,8 @@ import java.rmi.server.UnicastRemoteObject;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,12 +37,32 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import utility.Compression;
 import utility.GeneralUtils;
 import utility.Props;
+import utility.VertexFactory;
+import utility.VertexLineParser;
+import api.Aggregator;
+import api.AggregatorContext;
+import api.Combiner;
+import api.DoubleCombiner;
+import api.DoubleMessageSender;
+import api.DoubleMessageVertex;
 import api.Vertex;
 
 /**
@@ -49,11 +85,53 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	private int totalPartitionsAssigned;
 
 	/**
-	 * boolean variable to determine if a Worker can send messages to other
-	 * Workers and to Master. It is set to true when a Worker is sending
-	 * messages to other Workers.
+	 * Latch counting down the partitions still to be computed in the current
+	 * superstep. It is replaced by a new latch at the start of every
+	 * superstep.
 	 */
-	private boolean stopSendingMessage;
+	private volatile CountDownLatch superstepLatch;
+
+	/**
+	 * Queue of the superstep latches that the superstep barrier has to wait
+	 * on before reporting the completion of the superstep to the Master.
+	 */
+	private BlockingQueue<SuperstepLatch> superstepLatchQueue;
+
+	/** The time at which the Master started the current superstep. */
+	private volatile long superstepStartTime;
+
+	/**
+	 * boolean variable indicating whether a Worker thread has already started
+	 * computing in the current superstep.
+	 */
+	private AtomicBoolean computeStarted;
+
+	/** The number of vertices left active by the current superstep. */
+	private AtomicLong activeVertexCount;
+
+	/** The time in nanoseconds spent computing partitions. */
+	private AtomicLong partitionComputeNanos;
+
+	/** The number of partitions computed. */
+	private AtomicLong computedPartitions;
+
+	/**
+	 * The work each partition computed in the current superstep took, by
+	 * partitionID, which is reported to the Master with its completion.
+	 */
+	private volatile Map<Integer, PartitionStats> partitionStats = new ConcurrentHashMap<>();
+
+	/**
+	 * The executor parsing the partitions assigned through input splits, or
+	 * null if no partitions are being loaded.
+	 */
+	private ExecutorService partitionLoader;
+
+	/** The time at which the partition loading started. */
+	private long loadStartTime;
+
+	/** The store that swaps out the partitions that do not fit in memory. */
+	private PartitionStore partitionStore;
 
 	/** The queue of partitions in the current superstep. */
 	private BlockingQueue<Partition> currentPartitionQueue;
@@ -71,10 +149,10 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	private Map<Integer, String> mapPartitionIdToWorkerId;
 
 	/** Worker2WorkerProxy Object. */
-	private Worker2WorkerProxy worker2WorkerProxy;
+	private Worker2Worker worker2WorkerProxy;
 
-	/** Worker to Outgoing Messages Map. */
-	private ConcurrentHashMap<String, Map<VertexID, List<Message>>> outgoingMessages;
+	/** The NIO transport of the message plane, or null if RMI is used. */
+	private NioTransport nioTransport;
 
 	/** partitionId to Previous Incoming messages - Used in current Super Step. */
 	private ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> previousIncomingMessages;
@@ -82,18 +160,158 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	/** partitionId to Current Incoming messages - used in next Super Step. */
 	private ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> currentIncomingMessages;
 
+	/** The Worker threads, whose message buffers are flushed at the barrier. */
+	private List<WorkerThread> workerThreads;
+
+	/** The executor sending the full message buffers to the other Workers. */
+	private ExecutorService messageSender;
+
+	/** The sends of message buffers submitted in the current superstep. */
+	private ConcurrentLinkedQueue<Future<?>> pendingSends;
+
+	/** The Workers that were sent messages in the current superstep. */
+	private Set<String> messageDestinations;
+
+	/** Previous incoming double valued messages - Used in current Super Step. */
+	private volatile DoubleMessageStore previousIncomingDoubleMessages;
+
+	/** Current incoming double valued messages - used in next Super Step. */
+	private volatile DoubleMessageStore currentIncomingDoubleMessages;
+
 	/**
-	 * boolean variable indicating whether the partitions can be worked upon by
-	 * the workers in each superstep.
-	 **/
-	private boolean startSuperStep = false;
+	 * Messages sent by Workers that are already past the last superstep this
+	 * Worker started, by the superstep they were sent in. They are moved to
+	 * the incoming messages when the Worker starts that superstep.
+	 */
+	private ConcurrentHashMap<Long, ConcurrentHashMap<Integer, Map<VertexID, List<Message>>>> pendingIncomingMessages;
+
+	/**
+	 * Pending incoming double valued messages, by the superstep they were
+	 * sent in.
+	 */
+	private ConcurrentHashMap<Long, DoubleMessageStore> pendingIncomingDoubleMessages;
+
+	/**
+	 * Lock ordering the delivery of incoming messages (read lock) against the
+	 * start of a superstep (write lock).
+	 */
+	private ReentrantReadWriteLock superstepLock;
+
+	/** The last superstep this Worker started, or -1 if none. */
+	private long startedSuperstep = -1;
+
+	/**
+	 * The messages sent in this superstep or later are discarded, because the
+	 * superstep was rolled back. It is Long.MAX_VALUE outside of a recovery.
+	 */
+	private volatile long discardedSuperstep = Long.MAX_VALUE;
+
+	/**
+	 * Lock held by a Worker thread while it computes a partition and by the
+	 * superstep barrier while it completes a superstep (read lock), and by a
+	 * rollback waiting for both to stop (write lock).
+	 */
+	private ReentrantReadWriteLock computeLock;
+
+	/** The partitions handed to the Worker threads in the current superstep. */
+	private List<Partition> superstepPartitions;
+
+	/**
+	 * The files holding the vertices of the partitions computed in the
+	 * current superstep, as they were before the partitions were computed, so
+	 * that the superstep can be rolled back.
+	 */
+	private Map<Partition, File> superstepUndo;
+
+	/**
+	 * The directory that the vertices are saved to before they are computed,
+	 * or null if recovery is not confined.
+	 */
+	private File undoDirectory;
+
+	/**
+	 * The log of the messages sent to the other Workers since the last
+	 * checkpoint, or null if recovery is not confined.
+	 */
+	private MessageLog messageLog;
+
+	/**
+	 * The partitions of failed Workers being replayed, or null outside of a
+	 * replay. The messages to the other partitions are not sent while they
+	 * are replayed.
+	 */
+	private volatile Set<Integer> replayedPartitions;
+
+	/** The partitions of this Worker set aside during a replay. */
+	private List<Partition> stashedPartitions;
+
+	/** The incoming messages of this Worker set aside during a replay. */
+	private ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> stashedMessages;
+
+	/**
+	 * The incoming double valued messages of this Worker set aside during a
+	 * replay.
+	 */
+	private DoubleMessageStore stashedDoubleMessages;
 
 	/** The super step counter. */
 	private long superstep = 0;
 
+	/**
+	 * The number of supersteps started by this Worker, which tells the message
+	 * buffers of different supersteps apart even when supersteps are run
+	 * again after recovery.
+	 */
+	private long superstepGeneration = 0;
+
+	/**
+	 * The combiner supplied by the application's vertex class, or null if the
+	 * messages to a vertex must be delivered individually.
+	 */
+	private Combiner combiner;
+
+	/**
+	 * The combiner for double valued messages, set when the application's
+	 * combiner also implements {@link api.DoubleCombiner DoubleCombiner}.
+	 */
+	private DoubleCombiner doubleCombiner;
+
+	/**
+	 * The aggregators supplied by the application's vertex class, or null if
+	 * the application has none.
+	 */
+	private Map<String, Aggregator<?>> aggregators;
+
+	/** The values of the aggregators reduced by the Master last superstep. */
+	private volatile Map<String, Serializable> aggregatedValues;
+
+	/**
+	 * The values of the aggregators reduced by the Worker threads in the
+	 * current superstep, guarded by itself.
+	 */
+	private Map<String, Serializable> workerAggregatedValues;
+
 	/** The checkpoint file that points to the latest checkpoint */
 	private String nextCheckpointFile;
 
+	/** The checkpoint being written in the background, or null if none. */
+	private volatile Checkpoint checkpoint;
+
+	/** The last checkpoint taken, committed or not, or null if none. */
+	private Checkpoint lastCheckpoint;
+
+	/**
+	 * The committed checkpoint files that the current checkpoint file needs,
+	 * starting with its base and ending with itself.
+	 */
+	private List<String> checkpointChain = new ArrayList<>();
+
+	/** The executor writing the checkpoints in the background. */
+	private ExecutorService checkpointWriter;
+
+	/** The executor writing and reading the partition files of checkpoints. */
+	private ExecutorService checkpointIO;
+
 	/**
 	 * The checkpoint file that points to the last successful checkpoint (among
 	 * all Workers).
@@ -103,6 +321,56 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	/** The CHECKPOINT directory. */
 	private static String CHECKPOINTING_DIRECTORY;
 
+	/**
+	 * The number of delta checkpoints written on top of a base checkpoint
+	 * before the next checkpoint is a base again.
+	 */
+	private static int CHECKPOINT_COMPACTION_INTERVAL;
+
+	/**
+	 * The number of messages for another Worker that a Worker thread buffers
+	 * before they are sent while the thread keeps computing.
+	 */
+	private static int MESSAGE_BUFFER_SIZE;
+
+	/**
+	 * The transport of the messages between Workers, either "rmi" or "nio".
+	 * The control calls between the Master and the Workers always use RMI.
+	 */
+	private static String MESSAGE_TRANSPORT;
+
+	/**
+	 * The memory in megabytes that a store of incoming double valued messages
+	 * may use before it spills its messages to disk, or 0 if it never spills.
+	 */
+	private static int MESSAGE_MEMORY_BUDGET;
+
+	/**
+	 * The directory that the incoming messages are spilled to, the partitions
+	 * are swapped out to and the vertices are saved to before they are
+	 * computed.
+	 */
+	private static String SPILL_DIR;
+
+	/**
+	 * The number of partitions that a Worker keeps in memory, or 0 if every
+	 * partition stays in memory.
+	 */
+	private static int MAX_RESIDENT_PARTITIONS;
+
+	/**
+	 * Whether only the partitions of a failed Worker are recovered from its
+	 * checkpoint and replayed with the logged messages, instead of rolling
+	 * every Worker back to the last checkpoint.
+	 */
+	private static boolean CONFINED_RECOVERY;
+
+	/** The memory taken by a double valued message in a message store. */
+	private static final int DOUBLE_MESSAGE_SIZE = 16;
+
+	/** The buffer size of the files the vertices are saved to. */
+	private static final int UNDO_BUFFER_SIZE = 64 * 1024;
+
 	static {
 		try {
 			CHECKPOINTING_DIRECTORY = Props.getInstance().getStringProperty(
@@ -110,6 +378,54 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 		} catch (PropertyNotFoundException e) {
 			e.printStackTrace();
 		}
+		try {
+			CHECKPOINT_COMPACTION_INTERVAL = Props.getInstance()
+					.getIntProperty("CHECKPOINT_COMPACTION_INTERVAL");
+		} catch (PropertyNotFoundException e) {
+			/** set to default compaction interval **/
+			CHECKPOINT_COMPACTION_INTERVAL = 5;
+		}
+		try {
+			MESSAGE_BUFFER_SIZE = Props.getInstance().getIntProperty(
+					"MESSAGE_BUFFER_SIZE");
+		} catch (PropertyNotFoundException e) {
+			/** set to default buffer size **/
+			MESSAGE_BUFFER_SIZE = 10000;
+		}
+		try {
+			MESSAGE_TRANSPORT = Props.getInstance().getStringProperty(
+					"MESSAGE_TRANSPORT");
+		} catch (PropertyNotFoundException e) {
+			/** send the messages over RMI by default **/
+			MESSAGE_TRANSPORT = "rmi";
+		}
+		try {
+			MESSAGE_MEMORY_BUDGET = Props.getInstance().getIntProperty(
+					"MESSAGE_MEMORY_BUDGET");
+		} catch (PropertyNotFoundException e) {
+			/** keep the messages in memory by default **/
+			MESSAGE_MEMORY_BUDGET = 0;
+		}
+		try {
+			SPILL_DIR = Props.getInstance().getStringProperty("SPILL_DIR");
+		} catch (PropertyNotFoundException e) {
+			/** set to default spill directory **/
+			SPILL_DIR = "spill";
+		}
+		try {
+			MAX_RESIDENT_PARTITIONS = Props.getInstance().getIntProperty(
+					"MAX_RESIDENT_PARTITIONS");
+		} catch (PropertyNotFoundException e) {
+			/** keep every partition in memory by default **/
+			MAX_RESIDENT_PARTITIONS = 0;
+		}
+		try {
+			CONFINED_RECOVERY = Boolean.parseBoolean(Props.getInstance()
+					.getStringProperty("CONFINED_RECOVERY"));
+		} catch (PropertyNotFoundException e) {
+			/** confine the recovery to the failed Workers by default **/
+			CONFINED_RECOVERY = true;
+		}
 	}
 
 	/**
@@ -138,14 +454,60 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 		this.nextPartitionQueue = new LinkedBlockingQueue<>();
 		this.currentIncomingMessages = new ConcurrentHashMap<>();
 		this.previousIncomingMessages = new ConcurrentHashMap<>();
-		this.outgoingMessages = new ConcurrentHashMap<>();
+		this.currentIncomingDoubleMessages = new DoubleMessageStore();
+		this.previousIncomingDoubleMessages = new DoubleMessageStore();
+		this.pendingIncomingMessages = new ConcurrentHashMap<>();
+		this.pendingIncomingDoubleMessages = new ConcurrentHashMap<>();
+		enableSpilling(this.currentIncomingDoubleMessages);
+		enableSpilling(this.previousIncomingDoubleMessages);
+		// The stores received from other Workers or read from a checkpoint
+		// spill to the same directory.
+		if (MESSAGE_MEMORY_BUDGET > 0) {
+			DoubleMessageStore.setDefaultSpillDirectory(new File(SPILL_DIR,
+					workerID), getDoubleMessageBudget());
+		}
+		this.partitionStore = new PartitionStore(new File(new File(SPILL_DIR,
+				workerID), "partitions"), MAX_RESIDENT_PARTITIONS);
+		this.superstepLock = new ReentrantReadWriteLock();
+		this.computeLock = new ReentrantReadWriteLock();
+		this.superstepPartitions = new ArrayList<>();
+		this.superstepUndo = new ConcurrentHashMap<>();
+		if (CONFINED_RECOVERY) {
+			this.messageLog = new MessageLog(new File(new File(SPILL_DIR,
+					workerID), "messages"));
+			this.undoDirectory = new File(new File(SPILL_DIR, workerID),
+					"undo");
+			this.undoDirectory.mkdirs();
+		}
 		this.numThreads = Runtime.getRuntime().availableProcessors();
-		this.stopSendingMessage = false;
+		this.superstepLatchQueue = new LinkedBlockingQueue<>();
+		this.computeStarted = new AtomicBoolean(true);
+		this.activeVertexCount = new AtomicLong();
+		this.partitionComputeNanos = new AtomicLong();
+		this.computedPartitions = new AtomicLong();
+		this.aggregatedValues = Collections.emptyMap();
+		this.workerAggregatedValues = new HashMap<>();
+		this.messageSender = Executors.newFixedThreadPool(numThreads);
+		this.checkpointWriter = Executors.newSingleThreadExecutor();
+		this.checkpointIO = Executors.newFixedThreadPool(numThreads);
+		this.pendingSends = new ConcurrentLinkedQueue<>();
+		this.messageDestinations = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.workerThreads = new ArrayList<>();
 		for (int i = 0; i < numThreads; i++) {
 			System.out.println("Starting thread " + (i + 1));
 			WorkerThread workerThread = new WorkerThread();
+			workerThreads.add(workerThread);
 			workerThread.start();
 		}
+		new SuperstepBarrier().start();
+		if ("nio".equalsIgnoreCase(MESSAGE_TRANSPORT)) {
+			try {
+				this.nioTransport = new NioTransport(this, numThreads);
+			} catch (IOException e) {
+				throw new RemoteException("Can't start the NIO transport", e);
+			}
+		}
 	}
 
 	/**
@@ -157,7 +519,9 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 *             the remote exception
 	 */
 	public void addPartition(Partition partition) throws RemoteException {
+		registerCombiner(partition);
 		this.nextPartitionQueue.add(partition);
+		this.partitionStore.add(partition);
 	}
 
 	/**
@@ -170,7 +534,132 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 */
 	public void addPartitionList(List<Partition> workerPartitions)
 			throws RemoteException {
+		for (Partition partition : workerPartitions) {
+			registerCombiner(partition);
+		}
 		this.nextPartitionQueue.addAll(workerPartitions);
+		for (Partition partition : workerPartitions) {
+			this.partitionStore.add(partition);
+		}
+	}
+
+	/**
+	 * Registers the combiner and the aggregators of the application's vertex
+	 * class, using any vertex of the given partition.
+	 * 
+	 * @param partition
+	 *            the partition assigned to this worker
+	 */
+	private synchronized void registerCombiner(Partition partition) {
+		if (this.combiner == null) {
+			for (Vertex vertex : partition.getVertices()) {
+				this.combiner = vertex.getCombiner();
+				if (this.combiner instanceof DoubleCombiner) {
+					this.doubleCombiner = (DoubleCombiner) this.combiner;
+				}
+				this.aggregators = vertex.getAggregators();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Loads the partitions from the byte ranges of the input graph file. Every
+	 * input split is parsed by one of the Worker's threads in the background.
+	 * 
+	 * @param graphFileName
+	 *            the graph file name
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 * @param inputSplits
+	 *            the byte ranges of the partitions assigned to the Worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public synchronized void loadPartitions(final String graphFileName,
+			final String vertexClassName, List<InputSplit> inputSplits)
+			throws RemoteException {
+		System.out.println("WorkerImpl: loadPartitions " + inputSplits);
+		if (this.partitionLoader == null) {
+			this.partitionLoader = Executors.newFixedThreadPool(numThreads);
+			this.loadStartTime = System.currentTimeMillis();
+		}
+		for (final InputSplit inputSplit : inputSplits) {
+			this.partitionLoader.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Partition partition = loadPartition(graphFileName,
+								vertexClassName, inputSplit);
+						registerCombiner(partition);
+						nextPartitionQueue.add(partition);
+						partitionStore.add(partition);
+					} catch (IOException | InvalidVertexLineException e) {
+						System.out.println("Failed to load partition "
+								+ inputSplit);
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Parses the vertex lines of an input split into a partition, or reads the
+	 * partition directly if the input graph is in the binary graph format.
+	 * 
+	 * @param graphFileName
+	 *            the graph file name
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 * @param inputSplit
+	 *            the byte range of the partition
+	 * @return the partition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	private Partition loadPartition(String graphFileName,
+			String vertexClassName, InputSplit inputSplit) throws IOException,
+			InvalidVertexLineException {
+		if (BinaryGraphReader.isBinaryGraph(graphFileName)) {
+			return BinaryGraphReader.readPartition(graphFileName, inputSplit,
+					VertexFactory.getInstance(vertexClassName));
+		}
+		byte[] buffer = new byte[(int) inputSplit.getLength()];
+		try (RandomAccessFile file = new RandomAccessFile(graphFileName, "r")) {
+			file.seek(inputSplit.getStart());
+			file.readFully(buffer);
+		}
+		Map<VertexID, Vertex> vertexMap = new HashMap<>();
+		new VertexLineParser(vertexClassName).parseLines(buffer, 0,
+				buffer.length, vertexMap);
+		return new Partition(inputSplit.getPartitionID(), vertexMap);
+	}
+
+	/**
+	 * Waits until all the partitions assigned through input splits have been
+	 * loaded.
+	 */
+	private void awaitPartitionLoading() {
+		ExecutorService loader;
+		synchronized (this) {
+			loader = this.partitionLoader;
+			this.partitionLoader = null;
+		}
+		if (loader == null) {
+			return;
+		}
+		loader.shutdown();
+		try {
+			loader.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		System.out.println("WorkerImpl: Loaded " + nextPartitionQueue.size()
+				+ " partitions in "
+				+ (System.currentTimeMillis() - loadStartTime) + " ms");
 	}
 
 	/**
@@ -182,6 +671,17 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 		return numThreads;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#getPartitionComputeTime()
+	 */
+	@Override
+	public long getPartitionComputeTime() {
+		long partitions = computedPartitions.get();
+		return partitions == 0 ? 0 : partitionComputeNanos.get() / partitions;
+	}
+
 	/**
 	 * Gets the worker id.
 	 * 
@@ -191,10 +691,47 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 		return workerID;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#getMessageAddress()
+	 */
+	@Override
+	public InetSocketAddress getMessageAddress() {
+		return nioTransport == null ? null : nioTransport.getAddress();
+	}
+
 	/**
-	 * The Class WorkerThread.
+	 * The Class WorkerThread. Worker threads block on the partition queue,
+	 * which is only filled when the Master starts a superstep, so computation
+	 * begins as soon as the superstep is started.
 	 */
-	private class WorkerThread extends Thread {
+	private class WorkerThread extends Thread implements DoubleMessageSender,
+			AggregatorContext {
+
+		/** The iterator over the double valued messages of a vertex. */
+		private DoubleMessageStore.ValueIterator valueIterator = new DoubleMessageStore.ValueIterator();
+
+		/** The double valued messages of a partition that received none. */
+		private DoubleMessageStore.PartitionMessages noDoubleMessages = new DoubleMessageStore.PartitionMessages();
+
+		/**
+		 * The values of the aggregators reduced by this thread while
+		 * computing a partition.
+		 */
+		private Map<String, Serializable> threadAggregatedValues = new HashMap<>();
+
+		/**
+		 * The messages this thread queued for the other Workers in the
+		 * superstep they were buffered in, by destination Worker.
+		 */
+		private Map<String, MessageBuffer> messageBuffers = new HashMap<>();
+
+		/** The superstep generation in which the message buffers were filled. */
+		private long bufferedGeneration = -1;
+
+		/** The number of messages this thread has sent. */
+		private long sentMessages = 0;
 
 		/*
 		 * (non-Javadoc)
@@ -205,182 +742,837 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 		public void run() {
 			while (true) {
 				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e1) {
-					e1.printStackTrace();
-				}
-				// System.out.println(this + "startSuperStep: " + startSuperStep
-				// );
-				while (startSuperStep) {
-					// System.out.println(this +
-					// "Superstep loop started for superstep " + superstep);
+					Partition partition = currentPartitionQueue.take();
+					computeLock.readLock().lock();
 					try {
-						Partition partition = currentPartitionQueue.take();
-						// System.out.println(this +
-						// " - Partition taken from queue. superstep:" +
-						// superstep);
-						// System.out.println(this +
-						// "previousIncomingMessages size: " +
-						// previousIncomingMessages.size());
-						Map<VertexID, List<Message>> messageForThisPartition = previousIncomingMessages
-								.get(partition.getPartitionID());
-						if (messageForThisPartition != null) {
-							Map<VertexID, Message> messagesFromCompute = null;
-							for (Entry<VertexID, List<Message>> entry : messageForThisPartition
-									.entrySet()) {
-								Vertex vertex = partition.getVertex(entry
-										.getKey());
-
-								vertex.setSuperstep(superstep);
-								messagesFromCompute = vertex.compute(entry
-										.getValue().iterator());
-								updateOutgoingMessages(messagesFromCompute);
+						CountDownLatch latch = superstepLatch;
+						// The superstep was abandoned after the partition was
+						// taken.
+						if (latch == null) {
+							continue;
+						}
+						// The partition is handed back and counted down even if it
+						// fails to be computed, so that the superstep completes.
+						try {
+							if (computeStarted.compareAndSet(false, true)) {
+								System.out.println("WorkerImpl: Superstep " + superstep
+										+ " compute started "
+										+ (System.nanoTime() - superstepStartTime)
+										/ 1000 + " us after startSuperStep");
+							}
+							int partitionID = partition.getPartitionID();
+							Map<VertexID, List<Message>> messageForThisPartition = previousIncomingMessages
+									.get(partitionID);
+							DoubleMessageStore.PartitionMessages doubleMessagesForThisPartition = previousIncomingDoubleMessages
+									.getPartitionMessages(partitionID);
+							BitSet activeVertices = partition.getActiveVertices();
+							// A swapped out partition without messages or active
+							// vertices has nothing to compute, so it is not read back.
+							if (partition.isSwapped() && messageForThisPartition == null
+									&& doubleMessagesForThisPartition == null
+									&& activeVertices.isEmpty()) {
+								continue;
 							}
+							long computeStartTime = System.nanoTime();
+							partitionStore.acquire(partition);
+							// The checkpoint must see the partition and its messages
+							// as they were before this superstep.
+							Checkpoint checkpoint = WorkerImpl.this.checkpoint;
+							if (checkpoint != null) {
+								checkpoint.copyBeforeCompute(partition);
+							}
+							if (messageForThisPartition != null) {
+								Iterator<Entry<VertexID, List<Message>>> iter = messageForThisPartition
+										.entrySet().iterator();
+								while (iter.hasNext()) {
+									Entry<VertexID, List<Message>> entry = iter.next();
+									int index = partition.getVertexIndex(entry.getKey()
+											.getVertexID());
+									if (index < 0) {
+										continue;
+									}
+									// Messages reactivate halted vertices.
+									activeVertices.set(index);
+									// Messages to double valued vertices (such as the
+									// initial message) join the primitive path.
+									if (partition.getVertexAt(index) instanceof DoubleMessageVertex) {
+										if (doubleMessagesForThisPartition == null) {
+											doubleMessagesForThisPartition = new DoubleMessageStore.PartitionMessages();
+											// Kept with the incoming messages so
+											// that a rollback gives them back.
+											previousIncomingDoubleMessages
+													.putPartitionMessages(
+															partitionID,
+															doubleMessagesForThisPartition);
+										}
+										for (Message message : entry.getValue()) {
+											doubleMessagesForThisPartition.add(entry
+													.getKey().getVertexID(),
+													((Number) message.getData()
+															.getValue()).doubleValue(),
+													null);
+										}
+										iter.remove();
+									}
+								}
+							}
+							if (doubleMessagesForThisPartition == null) {
+								doubleMessagesForThisPartition = noDoubleMessages;
+							} else if (doubleCombiner != null) {
+								doubleMessagesForThisPartition.combine(doubleCombiner);
+							} else {
+								doubleMessagesForThisPartition.sort();
+							}
+							long receivedMessages = doubleMessagesForThisPartition
+									.size();
+							if (messageForThisPartition != null) {
+								for (List<Message> messages : messageForThisPartition
+										.values()) {
+									receivedMessages += messages.size();
+								}
+							}
+							long sentMessagesBefore = sentMessages;
+							computeActiveVertices(partition, messageForThisPartition,
+									doubleMessagesForThisPartition);
+							long computeTime = System.nanoTime() - computeStartTime;
+							partitionComputeNanos.addAndGet(computeTime);
+							computedPartitions.incrementAndGet();
+							partitionStats.put(partitionID, new PartitionStats(
+									computeTime, receivedMessages, sentMessages
+											- sentMessagesBefore));
+							if (!threadAggregatedValues.isEmpty()) {
+								synchronized (workerAggregatedValues) {
+									for (Entry<String, Serializable> entry : threadAggregatedValues
+											.entrySet()) {
+										GeneralUtils.aggregate(aggregators,
+												workerAggregatedValues, entry.getKey(),
+												entry.getValue());
+									}
+								}
+								threadAggregatedValues.clear();
+							}
+							activeVertexCount.addAndGet(activeVertices.cardinality());
+						} finally {
+							partitionStore.release(partition);
+							nextPartitionQueue.add(partition);
+							latch.countDown();
 						}
-						nextPartitionQueue.add(partition);
-						checkAndSendMessage();
+					} finally {
+						computeLock.readLock().unlock();
+					}
+				} catch (InterruptedException | RemoteException e) {
+					e.printStackTrace();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
 
-					} catch (InterruptedException | RemoteException e) {
-						e.printStackTrace();
-					} catch (Exception e) {
-						e.printStackTrace();
+		/**
+		 * Computes the active vertices of the partition, after reactivating
+		 * the vertices that received double valued messages. A vertex that
+		 * votes to halt is deactivated.
+		 * 
+		 * @param partition
+		 *            the partition
+		 * @param messages
+		 *            the messages sent to the partition, or null
+		 * @param doubleMessages
+		 *            the double valued messages sent to the partition, sorted
+		 *            by vertex identifier
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void computeActiveVertices(Partition partition,
+				Map<VertexID, List<Message>> messages,
+				DoubleMessageStore.PartitionMessages doubleMessages)
+				throws IOException {
+			BitSet activeVertices = partition.getActiveVertices();
+			int numDoubleMessages = doubleMessages.size();
+			for (int i = 0; i < numDoubleMessages; i++) {
+				int index = partition.getVertexIndex(doubleMessages
+						.getVertexID(i));
+				if (index >= 0) {
+					activeVertices.set(index);
+				}
+			}
+
+			// The vertices are saved before they are computed, so that the
+			// superstep can be rolled back if another Worker fails.
+			if (messageLog != null && replayedPartitions == null) {
+				saveUndo(partition, activeVertices);
+			}
+			partition.markChanged(activeVertices);
+
+			int next = 0;
+			for (int index = activeVertices.nextSetBit(0); index >= 0; index = activeVertices
+					.nextSetBit(index + 1)) {
+				Vertex vertex = partition.getVertexAt(index);
+				vertex.setSuperstep(superstep);
+				vertex.setAggregatorContext(this);
+				vertex.activate();
+				if (vertex instanceof DoubleMessageVertex) {
+					long vertexID = vertex.getID().getVertexID();
+					while (next < numDoubleMessages
+							&& doubleMessages.getVertexID(next) < vertexID) {
+						next++;
 					}
+					int start = next;
+					while (next < numDoubleMessages
+							&& doubleMessages.getVertexID(next) == vertexID) {
+						next++;
+					}
+					valueIterator.reset(doubleMessages, start, next);
+					((DoubleMessageVertex) vertex).compute(valueIterator, this);
+				} else {
+					List<Message> vertexMessages = messages == null ? null
+							: messages.get(vertex.getID());
+					Iterator<Message> iterator = vertexMessages == null ? Collections
+							.<Message> emptyIterator() : vertexMessages
+							.iterator();
+					updateOutgoingMessages(vertex.compute(iterator));
+				}
+				if (vertex.hasVotedToHalt()) {
+					activeVertices.clear(index);
 				}
 			}
-			// System.out.println(this + " stopped.");
 		}
 
 		/**
-		 * Check and send message. <<<<<<< HEAD
+		 * Routes a double valued message either to the incoming messages of
+		 * this Worker or to the outgoing messages of the destination Worker.
 		 * 
-		 * @throws RemoteException
-		 *             =======
+		 * @param destinationVertexID
+		 *            the destination vertex identifier
+		 * @param value
+		 *            the value of the message
+		 */
+		@Override
+		public void sendMessage(long destinationVertexID, double value) {
+			int partitionID = GeneralUtils.getPartitionID(destinationVertexID);
+			if (!isReplayed(partitionID)) {
+				return;
+			}
+			sentMessages++;
+			String destinationWorkerID = mapPartitionIdToWorkerId
+					.get(partitionID);
+			if (destinationWorkerID.equals(workerID)) {
+				currentIncomingDoubleMessages.addMessage(partitionID,
+						destinationVertexID, value, doubleCombiner);
+			} else {
+				MessageBuffer buffer = getMessageBuffer(destinationWorkerID);
+				if (buffer.addDouble(partitionID, destinationVertexID, value,
+						doubleCombiner) >= MESSAGE_BUFFER_SIZE
+						&& (doubleCombiner == null || buffer
+								.combine(doubleCombiner) >= MESSAGE_BUFFER_SIZE / 2)) {
+					sendMessageBuffer(destinationWorkerID, buffer);
+				}
+			}
+		}
+
+		/**
+		 * Updates the outgoing messages for every superstep.
 		 * 
-		 *             >>>>>>> 42b91fb45356bdb8ce40222761cb75525693696a
+		 * @param messagesFromCompute
+		 *            Represents the map of destination vertex and its
+		 *            associated message to be send
 		 */
-		private synchronized void checkAndSendMessage() {
-			// System.out.println(this + "sendingMessage: " + sendingMessage +
-			// " - completedPartitions: " + completedPartitions.size() +
-			// " - totalPartitionsAssigned: " + totalPartitionsAssigned);
-			if (!stopSendingMessage
-					&& (nextPartitionQueue.size() == totalPartitionsAssigned)) {
-				stopSendingMessage = true;
-				System.out.println(this + " WorkerImpl: Superstep " + superstep
-						+ " completed.");
-				startSuperStep = false;
-				for (Entry<String, Map<VertexID, List<Message>>> entry : outgoingMessages
-						.entrySet()) {
-					try {
-						worker2WorkerProxy.sendMessage(entry.getKey(),
-								entry.getValue());
-					} catch (RemoteException e) {
-						System.out.println("Can't send message to Worker "
-								+ entry.getKey() + " which is down");
+		private void updateOutgoingMessages(
+				Map<VertexID, Message> messagesFromCompute) {
+			String destinationWorkerID = null;
+			VertexID vertexID = null;
+			for (Entry<VertexID, Message> entry : messagesFromCompute
+					.entrySet()) {
+				vertexID = entry.getKey();
+				if (!isReplayed(vertexID.getPartitionID())) {
+					continue;
+				}
+				sentMessages++;
+				destinationWorkerID = mapPartitionIdToWorkerId.get(vertexID
+						.getPartitionID());
+				if (destinationWorkerID.equals(workerID)) {
+					updateIncomingMessages(vertexID, entry.getValue());
+				} else {
+					MessageBuffer buffer = getMessageBuffer(destinationWorkerID);
+					if (buffer.add(vertexID, entry.getValue(), combiner) >= MESSAGE_BUFFER_SIZE) {
+						sendMessageBuffer(destinationWorkerID, buffer);
 					}
 				}
+			}
+		}
 
-				// This worker will be active only if it has some messages
-				// queued up in the next superstep.
-				// activeWorkerSet will have all the workers who will be active
-				// in the next superstep.
-				Set<String> activeWorkerSet = new HashSet<String>();
-				activeWorkerSet.addAll(outgoingMessages.keySet());
-				if (currentIncomingMessages.size() > 0) {
-					activeWorkerSet.add(workerID);
+		/**
+		 * Gets the message buffer of the destination Worker in the current
+		 * superstep. The buffers of an earlier superstep are left to the
+		 * superstep barrier, which may still be flushing them.
+		 * 
+		 * @param destinationWorkerID
+		 *            the destination worker id
+		 * @return Returns the message buffer
+		 */
+		private MessageBuffer getMessageBuffer(String destinationWorkerID) {
+			if (bufferedGeneration != superstepGeneration) {
+				messageBuffers = new HashMap<>();
+				bufferedGeneration = superstepGeneration;
+			}
+			MessageBuffer buffer = messageBuffers.get(destinationWorkerID);
+			if (buffer == null) {
+				buffer = new MessageBuffer();
+				messageBuffers.put(destinationWorkerID, buffer);
+			}
+			return buffer;
+		}
+
+		/**
+		 * Sends the messages left in the message buffers of the current
+		 * superstep. Called by the superstep barrier once every partition has
+		 * been computed.
+		 */
+		private void flushMessageBuffers() {
+			if (bufferedGeneration != superstepGeneration) {
+				return;
+			}
+			for (Entry<String, MessageBuffer> entry : messageBuffers.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					if (doubleCombiner != null) {
+						entry.getValue().combine(doubleCombiner);
+					}
+					sendMessageBuffer(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see api.AggregatorContext#aggregate(java.lang.String,
+		 * java.io.Serializable)
+		 */
+		@Override
+		public void aggregate(String name, Serializable value) {
+			GeneralUtils.aggregate(aggregators, threadAggregatedValues, name,
+					value);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see api.AggregatorContext#getAggregatedValue(java.lang.String)
+		 */
+		@Override
+		public Serializable getAggregatedValue(String name) {
+			Serializable value = aggregatedValues.get(name);
+			if (value == null) {
+				Aggregator<?> aggregator = aggregators == null ? null
+						: aggregators.get(name);
+				if (aggregator == null) {
+					throw new IllegalArgumentException("Unknown aggregator "
+							+ name);
 				}
-				// Send a message to the Master saying that this superstep has
-				// been completed.
+				value = aggregator.createInitialValue();
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Represents the superstep barrier of the Worker. It waits until all the
+	 * partitions of the current superstep have been computed, sends the
+	 * messages left in the message buffers to the other Workers and reports
+	 * the completion of the superstep to the Master.
+	 */
+	private class SuperstepBarrier extends Thread {
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			while (true) {
 				try {
-					masterProxy.superStepCompleted(workerID, activeWorkerSet);
-				} catch (RemoteException e) {
+					SuperstepLatch latch = superstepLatchQueue.take();
+					latch.await();
+					computeLock.readLock().lock();
+					try {
+						// The superstep was abandoned due to halt or recovery.
+						if (latch != superstepLatch) {
+							continue;
+						}
+						completeSuperStep(latch.getEpoch());
+					} finally {
+						computeLock.readLock().unlock();
+					}
+				} catch (InterruptedException e) {
 					e.printStackTrace();
 				}
+			}
+		}
+
+		/**
+		 * Sends the messages left in the message buffers, waits until every
+		 * message of the superstep has been delivered and informs the Master
+		 * that the superstep has been completed.
+		 * 
+		 * @param epoch
+		 *            the epoch the Master started the superstep with
+		 */
+		private void completeSuperStep(long epoch) {
+			System.out.println("WorkerImpl: Superstep " + superstep
+					+ " completed in "
+					+ (System.nanoTime() - superstepStartTime) / 1000000
+					+ " ms, " + activeVertexCount.get()
+					+ " vertices active.");
+			for (WorkerThread workerThread : workerThreads) {
+				workerThread.flushMessageBuffers();
+			}
+			// The messages must be delivered before the Master can start the
+			// next superstep.
+			Future<?> send;
+			while ((send = pendingSends.poll()) != null) {
+				try {
+					send.get();
+				} catch (InterruptedException | ExecutionException
+						| CancellationException e) {
+					e.printStackTrace();
+				}
+			}
+
+			// This worker will be active only if it has some messages
+			// queued up in the next superstep.
+			// activeWorkerSet will have all the workers who will be active
+			// in the next superstep.
+			Set<String> activeWorkerSet = new HashSet<String>();
+			activeWorkerSet.addAll(messageDestinations);
+			if (currentIncomingMessages.size() > 0
+					|| !currentIncomingDoubleMessages.isEmpty()
+					|| activeVertexCount.get() > 0) {
+				activeWorkerSet.add(workerID);
+			}
+			// The values aggregated by the Worker threads are reduced by the
+			// Master.
+			Map<String, Serializable> values;
+			synchronized (workerAggregatedValues) {
+				values = new HashMap<>(workerAggregatedValues);
+				workerAggregatedValues.clear();
+			}
+			if (Compression.isEnabled()) {
+				System.out.println("WorkerImpl: " + Compression.getMetrics());
+			}
+			// Send a message to the Master saying that this superstep has
+			// been completed.
+			try {
+				masterProxy.superStepCompleted(workerID, epoch,
+						activeWorkerSet, values, new HashMap<>(partitionStats));
+			} catch (RemoteException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Represents the latch of a superstep, which also holds the epoch the
+	 * Master started the superstep with. The superstep barrier returns the
+	 * epoch with the acknowledgment, so that the Master can tell it from that
+	 * of the same superstep started again after a recovery.
+	 */
+	private static class SuperstepLatch extends CountDownLatch {
+
+		/** The epoch the Master started the superstep with. */
+		private final long epoch;
+
+		/**
+		 * Instantiates a new superstep latch.
+		 * 
+		 * @param count
+		 *            the number of partitions to be computed in the superstep
+		 * @param epoch
+		 *            the epoch the Master started the superstep with
+		 */
+		public SuperstepLatch(int count, long epoch) {
+			super(count);
+			this.epoch = epoch;
+		}
+
+		/**
+		 * Gets the epoch the Master started the superstep with.
+		 * 
+		 * @return the epoch
+		 */
+		public long getEpoch() {
+			return epoch;
+		}
+	}
+
+	/**
+	 * Abandons the superstep in progress, if any, so that the superstep
+	 * barrier does not report it to the Master.
+	 */
+	private void abandonSuperStep() {
+		disarmSuperStep();
+		Future<?> send;
+		while ((send = this.pendingSends.poll()) != null) {
+			send.cancel(false);
+		}
+		this.messageDestinations.clear();
+	}
+
+	/**
+	 * Stops the superstep in progress, if any, and waits until no partition is
+	 * being computed, the superstep barrier is idle and every message sent so
+	 * far has been delivered or has failed to be.
+	 */
+	private void stopSuperStep() {
+		disarmSuperStep();
+		computeLock.writeLock().lock();
+		computeLock.writeLock().unlock();
+		Future<?> send;
+		while ((send = this.pendingSends.poll()) != null) {
+			try {
+				send.get();
+			} catch (InterruptedException | ExecutionException
+					| CancellationException e) {
+				e.printStackTrace();
+			}
+		}
+		this.messageDestinations.clear();
+	}
+
+	/**
+	 * Takes the partitions not yet computed away from the Worker threads and
+	 * releases the superstep barrier without it reporting the superstep.
+	 */
+	private void disarmSuperStep() {
+		CountDownLatch latch = this.superstepLatch;
+		this.superstepLatch = null;
+		this.currentPartitionQueue.clear();
+		if (latch != null) {
+			while (latch.getCount() > 0) {
+				latch.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Halts the run for this application and prints the output in a file.
+	 * 
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void halt() throws RemoteException {
+		System.out.println("Worker Machine " + workerID + " halts");
+		this.restoreInitialState();
+	}
+
+	/**
+	 * Makes the store of incoming messages spill to the spill directory of
+	 * the worker once it holds more messages than the memory budget allows,
+	 * if a budget is configured.
+	 * 
+	 * @param store
+	 *            the store of incoming messages
+	 */
+	private void enableSpilling(DoubleMessageStore store) {
+		if (MESSAGE_MEMORY_BUDGET > 0) {
+			File spillDirectory = new File(SPILL_DIR, workerID);
+			spillDirectory.mkdirs();
+			store.setSpillDirectory(spillDirectory, getDoubleMessageBudget());
+		}
+	}
+
+	/**
+	 * Gets the number of double valued messages a store keeps in memory
+	 * before it spills.
+	 * 
+	 * @return the memory budget in messages
+	 */
+	private static long getDoubleMessageBudget() {
+		return (long) MESSAGE_MEMORY_BUDGET * 1024 * 1024 / DOUBLE_MESSAGE_SIZE;
+	}
+
+	/**
+	 * Restore the worker to the initial state
+	 */
+	private void restoreInitialState() {
+		synchronized (this) {
+			if (this.partitionLoader != null) {
+				this.partitionLoader.shutdownNow();
+				this.partitionLoader = null;
+			}
+		}
+		this.abandonSuperStep();
+		this.cancelCheckpoint();
+		this.lastCheckpoint = null;
+		this.checkpointChain.clear();
+		this.nextPartitionQueue.clear();
+		this.partitionStore.clear();
+		this.currentIncomingMessages.clear();
+		this.currentIncomingDoubleMessages.discard();
+		this.previousIncomingDoubleMessages.discard();
+		this.mapPartitionIdToWorkerId.clear();
+		this.previousIncomingMessages.clear();
+		this.discardPendingMessages(0);
+		this.startedSuperstep = -1;
+		this.resetReplay();
+		if (this.messageLog != null) {
+			this.messageLog.clear();
+		}
+		this.totalPartitionsAssigned = 0;
+		this.combiner = null;
+		this.doubleCombiner = null;
+		this.aggregators = null;
+		this.aggregatedValues = Collections.emptyMap();
+		synchronized (this.workerAggregatedValues) {
+			this.workerAggregatedValues.clear();
+		}
+		this.partitionComputeNanos.set(0);
+		this.computedPartitions.set(0);
+	}
+
+	/**
+	 * Gets the map of vertex messages stored under the given key, creating it
+	 * if it does not exist yet.
+	 * 
+	 * @param messages
+	 *            Represents the messages keyed by workerID or partitionID
+	 * @param key
+	 *            Represents the workerID or partitionID
+	 * @return Returns the map of destination vertex and its messages
+	 */
+	private static <K> Map<VertexID, List<Message>> getMessageMap(
+			ConcurrentHashMap<K, Map<VertexID, List<Message>>> messages, K key) {
+		Map<VertexID, List<Message>> vertexMessageMap = messages.get(key);
+		if (vertexMessageMap == null) {
+			vertexMessageMap = new HashMap<>();
+			Map<VertexID, List<Message>> existingMap = messages.putIfAbsent(
+					key, vertexMessageMap);
+			if (existingMap != null) {
+				vertexMessageMap = existingMap;
+			}
+		}
+		return vertexMessageMap;
+	}
+
+	/**
+	 * Gets the pending messages sent in the given superstep, creating them if
+	 * they do not exist yet.
+	 * 
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @return Returns the pending messages, by partition
+	 */
+	private ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> getPendingMessages(
+			long superstep) {
+		ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> messages = pendingIncomingMessages
+				.get(superstep);
+		if (messages == null) {
+			messages = new ConcurrentHashMap<>();
+			ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> existingMessages = pendingIncomingMessages
+					.putIfAbsent(superstep, messages);
+			if (existingMessages != null) {
+				messages = existingMessages;
+			}
+		}
+		return messages;
+	}
 
+	/**
+	 * Gets the pending double valued messages sent in the given superstep,
+	 * creating them if they do not exist yet.
+	 * 
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @return Returns the pending double valued messages
+	 */
+	private DoubleMessageStore getPendingDoubleMessages(long superstep) {
+		DoubleMessageStore messages = pendingIncomingDoubleMessages
+				.get(superstep);
+		if (messages == null) {
+			messages = new DoubleMessageStore();
+			enableSpilling(messages);
+			DoubleMessageStore existingMessages = pendingIncomingDoubleMessages
+					.putIfAbsent(superstep, messages);
+			if (existingMessages != null) {
+				messages = existingMessages;
 			}
-			// System.out.println(this + " after sendMessage check " +
-			// sendingMessage);
+		}
+		return messages;
+	}
 
+	/**
+	 * Moves the pending messages sent before the given superstep to the
+	 * incoming messages. The messages sent in the superstep right before are
+	 * for the given superstep, the ones sent earlier are for the superstep
+	 * before, which this Worker then skipped. Must be called with the
+	 * superstep lock held for writing.
+	 * 
+	 * @param superstep
+	 *            the superstep being started
+	 * @param previousMessages
+	 *            the incoming messages of the superstep before, or null if
+	 *            every pending message is for the given superstep
+	 * @param previousDoubleMessages
+	 *            the incoming double valued messages of the superstep before,
+	 *            or null if every pending message is for the given superstep
+	 */
+	private void movePendingMessages(
+			long superstep,
+			ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> previousMessages,
+			DoubleMessageStore previousDoubleMessages) {
+		Iterator<Entry<Long, ConcurrentHashMap<Integer, Map<VertexID, List<Message>>>>> iter = this.pendingIncomingMessages
+				.entrySet().iterator();
+		while (iter.hasNext()) {
+			Entry<Long, ConcurrentHashMap<Integer, Map<VertexID, List<Message>>>> entry = iter
+					.next();
+			if (entry.getKey() >= superstep) {
+				continue;
+			}
+			mergeMessages(previousMessages != null
+					&& entry.getKey() < superstep - 1 ? previousMessages
+					: this.currentIncomingMessages, entry.getValue());
+			iter.remove();
+		}
+		Iterator<Entry<Long, DoubleMessageStore>> doubleIter = this.pendingIncomingDoubleMessages
+				.entrySet().iterator();
+		while (doubleIter.hasNext()) {
+			Entry<Long, DoubleMessageStore> entry = doubleIter.next();
+			if (entry.getKey() >= superstep) {
+				continue;
+			}
+			(previousDoubleMessages != null && entry.getKey() < superstep - 1 ? previousDoubleMessages
+					: this.currentIncomingDoubleMessages).addAll(
+					entry.getValue(), doubleCombiner);
+			doubleIter.remove();
 		}
 	}
 
 	/**
-	 * Halts the run for this application and prints the output in a file.
+	 * Discards the pending messages sent in the given superstep or later.
 	 * 
-	 * @throws RemoteException
-	 *             the remote exception
+	 * @param superstep
+	 *            the superstep
 	 */
-	public void halt() throws RemoteException {
-		System.out.println("Worker Machine " + workerID + " halts");
-		this.restoreInitialState();
+	private void discardPendingMessages(long superstep) {
+		Iterator<Long> iter = this.pendingIncomingMessages.keySet().iterator();
+		while (iter.hasNext()) {
+			if (iter.next() >= superstep) {
+				iter.remove();
+			}
+		}
+		Iterator<Entry<Long, DoubleMessageStore>> doubleIter = this.pendingIncomingDoubleMessages
+				.entrySet().iterator();
+		while (doubleIter.hasNext()) {
+			Entry<Long, DoubleMessageStore> entry = doubleIter.next();
+			if (entry.getKey() >= superstep) {
+				entry.getValue().discard();
+				doubleIter.remove();
+			}
+		}
 	}
 
 	/**
-	 * Restore the worker to the initial state
+	 * Adds the messages of the source to the target.
+	 * 
+	 * @param target
+	 *            the messages added to, by partition
+	 * @param source
+	 *            the messages added, by partition
 	 */
-	private void restoreInitialState() {
-		this.nextPartitionQueue.clear();
-		this.currentIncomingMessages.clear();
-		this.outgoingMessages.clear();
-		this.mapPartitionIdToWorkerId.clear();
-		this.currentPartitionQueue.clear();
-		this.previousIncomingMessages.clear();
-		this.stopSendingMessage = false;
-		this.startSuperStep = false;
-		this.totalPartitionsAssigned = 0;
+	private void mergeMessages(
+			ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> target,
+			Map<Integer, Map<VertexID, List<Message>>> source) {
+		for (Entry<Integer, Map<VertexID, List<Message>>> entry : source
+				.entrySet()) {
+			Map<VertexID, List<Message>> partitionMessages = getMessageMap(
+					target, entry.getKey());
+			for (Entry<VertexID, List<Message>> vertexEntry : entry.getValue()
+					.entrySet()) {
+				for (Message message : vertexEntry.getValue()) {
+					addMessage(partitionMessages, vertexEntry.getKey(), message);
+				}
+			}
+		}
 	}
 
 	/**
-	 * Updates the outgoing messages for every superstep.
+	 * Takes the messages out of the message buffer and sends them to the
+	 * destination Worker in the background. The superstep barrier waits for
+	 * the sends before reporting the superstep as completed. The messages are
+	 * logged first, unless they are replayed.
 	 * 
-	 * @param messagesFromCompute
-	 *            Represents the map of destination vertex and its associated
-	 *            message to be send
+	 * @param destinationWorkerID
+	 *            the destination worker id
+	 * @param buffer
+	 *            the message buffer
 	 */
-	private void updateOutgoingMessages(
-			Map<VertexID, Message> messagesFromCompute) {
-		String workerID = null;
-		VertexID vertexID = null;
-		Message message = null;
-		Map<VertexID, List<Message>> workerMessages = null;
-		List<Message> messageList = null;
-		for (Entry<VertexID, Message> entry : messagesFromCompute.entrySet()) {
-			vertexID = entry.getKey();
-			message = entry.getValue();
-			workerID = mapPartitionIdToWorkerId.get(vertexID.getPartitionID());
-			if (workerID.equals(this.workerID)) {
-				updateIncomingMessages(vertexID, message);
-			} else {
-				if (outgoingMessages.containsKey(workerID)) {
-					workerMessages = outgoingMessages.get(workerID);
-					if (workerMessages.containsKey(vertexID)) {
-						workerMessages.get(vertexID).add(message);
-					} else {
-						messageList = new ArrayList<Message>();
-						messageList.add(message);
-						workerMessages.put(vertexID, messageList);
+	private void sendMessageBuffer(final String destinationWorkerID,
+			MessageBuffer buffer) {
+		final Map<VertexID, List<Message>> messages = buffer.takeMessages();
+		final DoubleMessageStore doubleMessages = buffer.takeDoubleMessages();
+		final long superstep = this.superstep;
+		final MessageLog messageLog = this.replayedPartitions == null ? this.messageLog
+				: null;
+		messageDestinations.add(destinationWorkerID);
+		pendingSends.add(messageSender.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (messageLog != null) {
+					try {
+						messageLog.log(superstep, messages, doubleMessages);
+					} catch (IOException e) {
+						System.out.println("Can't log the messages to Worker "
+								+ destinationWorkerID);
+						e.printStackTrace();
 					}
-				} else {
-					messageList = new ArrayList<Message>();
-					messageList.add(message);
-					workerMessages = new HashMap<>();
-					workerMessages.put(vertexID, messageList);
-					outgoingMessages.put(workerID, workerMessages);
+				}
+				try {
+					if (messages != null) {
+						worker2WorkerProxy.sendMessage(destinationWorkerID,
+								messages, superstep);
+					}
+					if (doubleMessages != null) {
+						worker2WorkerProxy.sendDoubleMessages(
+								destinationWorkerID, doubleMessages, superstep);
+					}
+				} catch (RemoteException e) {
+					System.out.println("Can't send message to Worker "
+							+ destinationWorkerID + " which is down");
 				}
 			}
-		}
+		}));
 	}
 
 	/**
-	 * Sets the worker partition info. <<<<<<< HEAD
+	 * Queues the message for the destination vertex. If the application
+	 * supplied a combiner, the message is folded into the single message
+	 * already queued for the vertex instead of being appended.
 	 * 
-	 * @param totalPartitionsAssigned
-	 *            the total partitions assigned
-	 * @param mapPartitionIdToWorkerId
-	 *            the map partition id to worker id
-	 * @param mapWorkerIdToWorker
-	 *            the map worker id to worker
-	 * @throws RemoteException
-	 *             =======
+	 * @param vertexMessageMap
+	 *            Represents the map of destination vertex and its messages
+	 * @param vertexID
+	 *            Represents the destination vertex
+	 * @param message
+	 *            Represents the message for the destination vertex
+	 */
+	private void addMessage(Map<VertexID, List<Message>> vertexMessageMap,
+			VertexID vertexID, Message message) {
+		synchronized (vertexMessageMap) {
+			List<Message> messageList = vertexMessageMap.get(vertexID);
+			if (messageList == null) {
+				messageList = new ArrayList<Message>(1);
+				messageList.add(message);
+				vertexMessageMap.put(vertexID, messageList);
+			} else if (combiner != null) {
+				messageList.set(0, combiner.combine(messageList.get(0), message));
+			} else {
+				messageList.add(message);
+			}
+		}
+	}
+
+	/**
+	 * Sets the worker partition info.
 	 * 
 	 * @param totalPartitionsAssigned
 	 *            the total partitions assigned
@@ -389,8 +1581,7 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 * @param mapWorkerIdToWorker
 	 *            the map worker id to worker
 	 * @throws RemoteException
-	 *             the remote exception >>>>>>>
-	 *             42b91fb45356bdb8ce40222761cb75525693696a
+	 *             the remote exception
 	 */
 	public void setWorkerPartitionInfo(int totalPartitionsAssigned,
 			Map<Integer, String> mapPartitionIdToWorkerId,
@@ -400,11 +1591,26 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 				+ " mapPartitionIdToWorkerId: " + mapPartitionIdToWorkerId);
 		this.totalPartitionsAssigned = totalPartitionsAssigned;
 		this.mapPartitionIdToWorkerId = mapPartitionIdToWorkerId;
-		this.worker2WorkerProxy = new Worker2WorkerProxy(mapWorkerIdToWorker);
-		/*
-		 * 
-		 */
-		// startSuperStep = true;
+		if (nioTransport != null) {
+			this.worker2WorkerProxy = new NioWorker2WorkerProxy(nioTransport,
+					mapWorkerIdToWorker);
+		} else {
+			this.worker2WorkerProxy = new Worker2WorkerProxy(
+					mapWorkerIdToWorker);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#setPartitioningStrategy(graphs.PartitioningStrategy)
+	 */
+	@Override
+	public void setPartitioningStrategy(
+			PartitioningStrategy partitioningStrategy) throws RemoteException {
+		System.out.println("WorkerImpl: setPartitioningStrategy "
+				+ partitioningStrategy);
+		GeneralUtils.setPartitioningStrategy(partitioningStrategy);
 	}
 
 	/**
@@ -457,41 +1663,69 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	}
 
 	/**
-	 * Receive message. <<<<<<< HEAD
-	 * 
-	 * @param incomingMessages
-	 *            the incoming messages =======
+	 * Receive message.
 	 * 
 	 * @param incomingMessages
 	 *            the incoming messages
+	 * @param superstep
+	 *            the superstep in which the messages were sent
 	 * @throws RemoteException
-	 *             the remote exception >>>>>>>
-	 *             42b91fb45356bdb8ce40222761cb75525693696a
+	 *             the remote exception
 	 */
-	public void receiveMessage(Map<VertexID, List<Message>> incomingMessages)
+	public void receiveMessage(MessageBatch incomingMessages, long superstep)
 			throws RemoteException {
-		Map<VertexID, List<Message>> partitionMessages = null;
-		int partitionID = 0;
-		VertexID vertexID = null;
-		List<Message> messageList = null;
-		Map<VertexID, List<Message>> vertexMessageMap = null;
-		for (Entry<VertexID, List<Message>> entry : incomingMessages.entrySet()) {
-			vertexID = entry.getKey();
-			messageList = entry.getValue();
-			partitionID = vertexID.getPartitionID();
-			if (currentIncomingMessages.containsKey(partitionID)) {
-				partitionMessages = currentIncomingMessages.get(partitionID);
-				if (partitionMessages.containsKey(vertexID)) {
-					partitionMessages.get(vertexID).addAll(messageList);
-				} else {
-					partitionMessages.put(vertexID, messageList);
+		superstepLock.readLock().lock();
+		try {
+			// The messages of a superstep that was rolled back are stale.
+			if (superstep >= discardedSuperstep) {
+				return;
+			}
+			// The sender may complete a superstep before the Master starts it
+			// on this Worker; its messages then wait for that start.
+			ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> messages = superstep > startedSuperstep ? getPendingMessages(superstep)
+					: currentIncomingMessages;
+			Map<VertexID, List<Message>> partitionMessages = null;
+			VertexID vertexID = null;
+			for (Entry<VertexID, List<Message>> entry : incomingMessages
+					.getMessages().entrySet()) {
+				vertexID = entry.getKey();
+				partitionMessages = getMessageMap(messages,
+						vertexID.getPartitionID());
+				for (Message message : entry.getValue()) {
+					addMessage(partitionMessages, vertexID, message);
 				}
-			} else {
-				vertexMessageMap = new HashMap<>();
-				vertexMessageMap.put(vertexID, messageList);
-				currentIncomingMessages.put(partitionID, vertexMessageMap);
 			}
+		} finally {
+			superstepLock.readLock().unlock();
+		}
+	}
 
+	/**
+	 * Receive double valued messages from another Worker.
+	 * 
+	 * @param incomingMessages
+	 *            the incoming messages
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void receiveDoubleMessages(DoubleMessageStore incomingMessages,
+			long superstep) throws RemoteException {
+		superstepLock.readLock().lock();
+		try {
+			if (superstep >= discardedSuperstep) {
+				return;
+			}
+			if (superstep > startedSuperstep) {
+				getPendingDoubleMessages(superstep).addAll(incomingMessages,
+						doubleCombiner);
+			} else {
+				currentIncomingDoubleMessages.addAll(incomingMessages,
+						doubleCombiner);
+			}
+		} finally {
+			superstepLock.readLock().unlock();
 		}
 	}
 
@@ -507,77 +1741,115 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 */
 	public void updateIncomingMessages(VertexID destinationVertex,
 			Message incomingMessage) {
-		Map<VertexID, List<Message>> partitionMessages = null;
-		List<Message> newMessageList = null;
-		int partitionID = destinationVertex.getPartitionID();
-		// partitionMessages = currentIncomingMessages.get(partitionID);
-		if (currentIncomingMessages.containsKey(partitionID)) {
-			partitionMessages = currentIncomingMessages.get(partitionID);
-			if (partitionMessages.containsKey(destinationVertex)) {
-				partitionMessages.get(destinationVertex).add(incomingMessage);
-			} else {
-				newMessageList = new ArrayList<Message>();
-				newMessageList.add(incomingMessage);
-				partitionMessages.put(destinationVertex, newMessageList);
-			}
-		} else {
-			partitionMessages = new HashMap<>();
-			newMessageList = new ArrayList<>();
-			newMessageList.add(incomingMessage);
-			partitionMessages.put(destinationVertex, newMessageList);
-			currentIncomingMessages.put(partitionID, partitionMessages);
-		}
+		addMessage(
+				getMessageMap(currentIncomingMessages,
+						destinationVertex.getPartitionID()), destinationVertex,
+				incomingMessage);
 	}
 
 	/**
 	 * The worker receives the command to start the next superstep from the
-	 * master. Set startSuperStep to true; assign previousIncomingMessages to
-	 * currentIncomingMessages; reset currentIncomingMessages;
+	 * master. Assign previousIncomingMessages to currentIncomingMessages; reset
+	 * currentIncomingMessages; arm the superstep barrier and hand the
+	 * partitions to the Worker threads.
 	 * 
 	 * @param superStepCounter
 	 *            the super step counter
+	 * @param epoch
+	 *            the epoch of the superstep, returned with its acknowledgment
+	 * @param aggregatedValues
+	 *            the values of the aggregators reduced in the previous
+	 *            superstep
 	 */
-	public void startSuperStep(long superStepCounter) {
-		// System.out.println("WorkerImpl: startSuperStep - superStepCounter: "
-		// + superStepCounter);
+	public void startSuperStep(long superStepCounter, long epoch,
+			Map<String, Serializable> aggregatedValues) {
+		awaitPartitionLoading();
+		this.superstepStartTime = System.nanoTime();
 		this.superstep = superStepCounter;
+		this.superstepGeneration++;
+		this.aggregatedValues = aggregatedValues;
 		// Put all elements in current incoming queue to previous incoming queue
 		// and clear the current incoming queue.
-		this.previousIncomingMessages.clear();
-		this.previousIncomingMessages.putAll(this.currentIncomingMessages);
-		this.currentIncomingMessages.clear();
-
-		this.stopSendingMessage = false;
-		this.startSuperStep = true;
+		superstepLock.writeLock().lock();
+		try {
+			this.startedSuperstep = superStepCounter;
+			this.previousIncomingMessages.clear();
+			this.previousIncomingMessages.putAll(this.currentIncomingMessages);
+			this.currentIncomingMessages.clear();
+			DoubleMessageStore doubleMessages = this.previousIncomingDoubleMessages;
+			doubleMessages.clear();
+			this.previousIncomingDoubleMessages = this.currentIncomingDoubleMessages;
+			this.currentIncomingDoubleMessages = doubleMessages;
+			// Messages that arrived before this superstep was started are for
+			// the next superstep, or for this one if they were sent before the
+			// previous superstep, which this Worker skipped.
+			movePendingMessages(superStepCounter + 1,
+					this.previousIncomingMessages,
+					this.previousIncomingDoubleMessages);
+		} finally {
+			superstepLock.writeLock().unlock();
+		}
+		this.messageDestinations.clear();
+		this.partitionStats = new ConcurrentHashMap<>();
 
-		this.outgoingMessages.clear();
 		// Put all elements in completed partitions back to partition queue and
 		// clear the completed partitions.
 		// Note: To avoid concurrency issues, it is very important that
-		// completed partitions is cleared before the Worker threads start to
-		// operate on the partition queue in the next superstep
-		BlockingQueue<Partition> temp = new LinkedBlockingDeque<>(
-				nextPartitionQueue);
+		// completed partitions is cleared and the superstep latch is armed
+		// before the Worker threads start to operate on the partition queue in
+		// the next superstep
+		List<Partition> partitions = new ArrayList<>(nextPartitionQueue);
 		this.nextPartitionQueue.clear();
-		this.currentPartitionQueue.addAll(temp);
-
-		// System.out.println("Partition queue: " + partitionQueue.size());
+		if (partitionStore.isEnabled()) {
+			partitions = prioritizePartitions(partitions);
+		}
+		this.superstepPartitions = partitions;
+		this.superstepUndo.clear();
+		SuperstepLatch latch = new SuperstepLatch(partitions.size(), epoch);
+		this.superstepLatch = latch;
+		this.computeStarted.set(false);
+		this.activeVertexCount.set(0);
+		this.superstepLatchQueue.add(latch);
+		this.currentPartitionQueue.addAll(partitions);
 	}
 
 	/**
-	 * <<<<<<< HEAD
+	 * Orders the partitions to be computed so that the resident partitions
+	 * come first, then the swapped out partitions that have messages, and
+	 * last the swapped out partitions that only may have active vertices.
 	 * 
+	 * @param partitions
+	 *            the partitions to be computed
+	 * @return the partitions, in the order they are to be computed
+	 */
+	private List<Partition> prioritizePartitions(List<Partition> partitions) {
+		List<Partition> resident = new ArrayList<>();
+		List<Partition> swappedWithMessages = new ArrayList<>();
+		List<Partition> swapped = new ArrayList<>();
+		for (Partition partition : partitions) {
+			int partitionID = partition.getPartitionID();
+			if (!partition.isSwapped()) {
+				resident.add(partition);
+			} else if (previousIncomingMessages.containsKey(partitionID)
+					|| previousIncomingDoubleMessages
+							.getPartitionMessages(partitionID) != null) {
+				swappedWithMessages.add(partition);
+			} else {
+				swapped.add(partition);
+			}
+		}
+		resident.addAll(swappedWithMessages);
+		resident.addAll(swapped);
+		return resident;
+	}
+
+	/**
 	 * Sets the initial message for the Worker that has the source vertex.
 	 * 
 	 * @param initialMessage
-	 *            the initial message ======= Sets the initial message for the
-	 *            Worker that has the source vertex.
-	 * 
-	 * @param initialMessage
 	 *            the initial message
 	 * @throws RemoteException
-	 *             the remote exception >>>>>>>
-	 *             42b91fb45356bdb8ce40222761cb75525693696a
+	 *             the remote exception
 	 */
 	public void setInitialMessage(
 			ConcurrentHashMap<Integer, Map<VertexID, List<Message>>> initialMessage)
@@ -591,22 +1863,96 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 * @see system.Worker#checkPoint(long)
 	 */
 	@Override
-	public void checkPoint(long superstep) throws Exception {
+	public void checkPoint(final long superstep) throws Exception {
 		System.out.println("WorkerImpl: checkPoint " + superstep);
-		this.superstep = superstep;
-		WorkerData wd = new WorkerData(this.nextPartitionQueue,
-				this.currentIncomingMessages);
-		// Serialization
+		final Checkpoint checkpoint = takeCheckpoint(superstep, false);
+		this.checkpoint = checkpoint;
+		checkpointWriter.execute(new Runnable() {
+			@Override
+			public void run() {
+				long startTime = System.currentTimeMillis();
+				boolean written = checkpoint.write(checkpointIO);
+				if (WorkerImpl.this.checkpoint == checkpoint) {
+					WorkerImpl.this.checkpoint = null;
+				}
+				System.out.println("WorkerImpl: Checkpoint " + superstep
+						+ (written ? " written in " : " failed after ")
+						+ (System.currentTimeMillis() - startTime) + " ms: "
+						+ checkpoint.getMetrics());
+				try {
+					masterProxy.checkpointCompleted(workerID, superstep,
+							written);
+				} catch (RemoteException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
 
+	/**
+	 * Takes the checkpoint of the partitions and messages for the given
+	 * superstep, after the checkpoint before it has been written. The
+	 * checkpoint is a delta on top of the current checkpoint file, unless a
+	 * base is asked for, there is no current checkpoint file, or enough
+	 * deltas were written on top of its base.
+	 * 
+	 * @param superstep
+	 *            the superstep
+	 * @param base
+	 *            whether the checkpoint must be a base
+	 * @return the checkpoint, to be written
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	private Checkpoint takeCheckpoint(long superstep, boolean base)
+			throws InterruptedException {
+		awaitPartitionLoading();
+		Checkpoint previousCheckpoint = this.lastCheckpoint;
+		if (previousCheckpoint != null) {
+			previousCheckpoint.await();
+			// The next checkpoint is on top of the last committed one, so it
+			// also writes what an uncommitted checkpoint wrote.
+			if (!checkpointChain.contains(previousCheckpoint.getFilePath())) {
+				previousCheckpoint.restoreChangedVertices();
+				previousCheckpoint.delete();
+			}
+		}
+		this.superstep = superstep;
 		// Don't update the currentCheckpointFile until the Master confirms that
 		// the checkpointing had succeeded in all the Workers.
 		this.nextCheckpointFile = CHECKPOINTING_DIRECTORY + File.separator
 				+ workerID + "_" + superstep;
-		// String newFilePath = CHECKPOINTING_DIRECTORY + File.separator +
-		// workerID;
-		GeneralUtils.serialize(this.nextCheckpointFile, wd);
-		// nextCheckpointFile = tmpFilePath;
-		// GeneralUtils.renameFile(tmpFilePath, newFilePath);
+		String parentFile = null;
+		if (!base && !checkpointChain.isEmpty()
+				&& checkpointChain.size() <= CHECKPOINT_COMPACTION_INTERVAL) {
+			parentFile = checkpointChain.get(checkpointChain.size() - 1);
+		}
+		// A checkpoint taken again for the same superstep replaces its file,
+		// so it can't be on top of it.
+		if (this.nextCheckpointFile.equals(parentFile)) {
+			parentFile = null;
+		}
+		this.lastCheckpoint = new Checkpoint(superstep,
+				this.nextCheckpointFile, parentFile, this.nextPartitionQueue,
+				this.currentIncomingMessages,
+				this.currentIncomingDoubleMessages);
+		return this.lastCheckpoint;
+	}
+
+	/**
+	 * Cancels the checkpoint being written, if any, so that the partitions
+	 * and messages can be replaced.
+	 */
+	private void cancelCheckpoint() {
+		Checkpoint checkpoint = this.checkpoint;
+		this.checkpoint = null;
+		if (checkpoint != null) {
+			try {
+				checkpoint.cancel();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	/**
@@ -628,18 +1974,41 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	@Override
 	public void startRecovery() throws RemoteException {
 		System.out.println("WorkerImpl: startRecovery");
-		this.stopSendingMessage = false;
-		this.startSuperStep = false;
-		this.currentPartitionQueue.clear();
+		this.abandonSuperStep();
+		this.cancelCheckpoint();
 		this.previousIncomingMessages.clear();
-		this.outgoingMessages.clear();
+		this.previousIncomingDoubleMessages.discard();
+		synchronized (this.workerAggregatedValues) {
+			this.workerAggregatedValues.clear();
+		}
+		superstepLock.writeLock().lock();
+		try {
+			this.discardPendingMessages(0);
+			this.startedSuperstep = -1;
+			this.discardedSuperstep = Long.MAX_VALUE;
+		} finally {
+			superstepLock.writeLock().unlock();
+		}
+		this.resetReplay();
+		if (this.messageLog != null) {
+			this.messageLog.clear();
+		}
 
-		WorkerData workerData = (WorkerData) GeneralUtils
-				.deserialize(this.currentCheckpointFile);
+		WorkerData workerData = Checkpoint.read(this.currentCheckpointFile,
+				null, checkpointIO);
 		this.currentIncomingMessages = (ConcurrentHashMap<Integer, Map<VertexID, List<Message>>>) workerData
 				.getMessages();
 		this.nextPartitionQueue = (BlockingQueue<Partition>) workerData
 				.getPartitions();
+		this.currentIncomingDoubleMessages.discard();
+		this.currentIncomingDoubleMessages = workerData.getDoubleMessages();
+		this.partitionStore.clear();
+		for (Partition partition : this.nextPartitionQueue) {
+			registerCombiner(partition);
+			this.partitionStore.add(partition);
+		}
+		enableSpilling(this.currentIncomingDoubleMessages);
+		this.currentIncomingDoubleMessages.spillIfNeeded(doubleCombiner);
 
 	}
 
@@ -652,8 +2021,13 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	public void finishRecovery() throws RemoteException {
 		System.out.println("WorkerImpl: finishRecovery");
 		try {
-			// Do checkpointing after assigning recovered partitions.
-			checkPoint(this.superstep);
+			// Do checkpointing after assigning recovered partitions. The
+			// Master commits it as soon as every Worker returns, so it is
+			// written before returning. It is a base, since it replaces the
+			// checkpoint file that was recovered from.
+			if (!takeCheckpoint(this.superstep, true).write(checkpointIO)) {
+				throw new IOException("Checkpoint not written");
+			}
 		} catch (Exception e) {
 			System.out.println("checkpoint failure");
 			throw new RemoteException();
@@ -663,18 +2037,314 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see system.Worker#addRecoveredData(system.Partition, java.util.Map)
+	 * @see system.Worker#addRecoveredData(system.Partition, java.util.Map,
+	 * system.DoubleMessageStore.PartitionMessages)
 	 */
 	public void addRecoveredData(Partition partition,
-			Map<VertexID, List<Message>> messages) throws RemoteException {
+			Map<VertexID, List<Message>> messages,
+			DoubleMessageStore.PartitionMessages doubleMessages)
+			throws RemoteException {
 		System.out.println("WorkerImpl: addRecoveredData");
+		registerCombiner(partition);
 		// System.out.println("Partition " + partition.getPartitionID());
 		// System.out.println("Messages: " + messages);
 		if (messages != null) {
 			this.currentIncomingMessages.put(partition.getPartitionID(),
 					messages);
 		}
+		if (doubleMessages != null) {
+			this.currentIncomingDoubleMessages.putPartitionMessages(
+					partition.getPartitionID(), doubleMessages);
+		}
 		this.nextPartitionQueue.add(partition);
+		this.partitionStore.add(partition);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#migratePartition(int, system.Worker)
+	 */
+	@Override
+	public void migratePartition(int partitionID, Worker destination)
+			throws RemoteException {
+		System.out.println("WorkerImpl: migratePartition " + partitionID);
+		Partition partition = null;
+		for (Partition nextPartition : this.nextPartitionQueue) {
+			if (nextPartition.getPartitionID() == partitionID) {
+				partition = nextPartition;
+				break;
+			}
+		}
+		if (partition == null) {
+			throw new RemoteException("Partition " + partitionID
+					+ " is not on Worker " + workerID);
+		}
+		// Every message sent to the partition in the superstep that just
+		// completed has been received, so it moves with all its messages.
+		// The partition stays here if the destination fails to take it.
+		destination.addRecoveredData(partition,
+				this.currentIncomingMessages.get(partitionID),
+				this.currentIncomingDoubleMessages
+						.getPartitionMessages(partitionID));
+		this.nextPartitionQueue.remove(partition);
+		this.currentIncomingMessages.remove(partitionID);
+		DoubleMessageStore.PartitionMessages doubleMessages = this.currentIncomingDoubleMessages
+				.removePartitionMessages(partitionID);
+		if (doubleMessages != null) {
+			doubleMessages.deleteRuns();
+		}
+		try {
+			this.partitionStore.remove(partition);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#recoverPartitions(java.lang.String, java.util.List)
+	 */
+	@Override
+	public void recoverPartitions(String checkpointFile,
+			List<Integer> partitionIDs) throws RemoteException {
+		System.out.println("WorkerImpl: recoverPartitions " + partitionIDs
+				+ " from " + checkpointFile);
+		WorkerData workerData = Checkpoint.read(checkpointFile, partitionIDs,
+				checkpointIO);
+		if (workerData == null) {
+			throw new RemoteException("Partitions not read from "
+					+ checkpointFile);
+		}
+		for (Partition partition : workerData.getPartitions()) {
+			int partitionID = partition.getPartitionID();
+			addRecoveredData(partition,
+					workerData.getMessages().get(partitionID), workerData
+							.getDoubleMessages().getPartitionMessages(
+									partitionID));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#rollbackSuperStep(long)
+	 */
+	@Override
+	public void rollbackSuperStep(long superstep) throws RemoteException {
+		System.out.println("WorkerImpl: rollbackSuperStep " + superstep);
+		if (this.messageLog == null) {
+			throw new RemoteException("Messages are not logged");
+		}
+		this.stopSuperStep();
+		this.cancelCheckpoint();
+		boolean started = this.startedSuperstep >= superstep;
+		superstepLock.writeLock().lock();
+		try {
+			if (started) {
+				// The messages sent in the superstep are discarded and the
+				// messages it started with are given back.
+				this.currentIncomingMessages.clear();
+				this.currentIncomingMessages
+						.putAll(this.previousIncomingMessages);
+				this.previousIncomingMessages.clear();
+				DoubleMessageStore doubleMessages = this.currentIncomingDoubleMessages;
+				this.currentIncomingDoubleMessages = this.previousIncomingDoubleMessages;
+				this.previousIncomingDoubleMessages = doubleMessages;
+				doubleMessages.discard();
+			}
+			// Messages that Workers ahead of this one sent before the superstep
+			// are for the superstep.
+			movePendingMessages(superstep, null, null);
+			discardPendingMessages(superstep);
+			this.startedSuperstep = superstep - 1;
+			this.discardedSuperstep = superstep;
+		} finally {
+			superstepLock.writeLock().unlock();
+		}
+		if (started) {
+			try {
+				for (Entry<Partition, File> entry : this.superstepUndo
+						.entrySet()) {
+					ObjectInputStream in = new ObjectInputStream(
+							new BufferedInputStream(new FileInputStream(
+									entry.getValue()), UNDO_BUFFER_SIZE));
+					try {
+						entry.getKey().readChanges(in);
+					} finally {
+						in.close();
+					}
+				}
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RemoteException("Superstep " + superstep
+						+ " not rolled back", e);
+			}
+			this.nextPartitionQueue.clear();
+			this.nextPartitionQueue.addAll(this.superstepPartitions);
+		}
+		this.superstepUndo.clear();
+		synchronized (this.workerAggregatedValues) {
+			this.workerAggregatedValues.clear();
+		}
+		this.messageLog.discardFrom(superstep);
+		this.superstep = superstep;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#startReplay(long, java.util.Set)
+	 */
+	@Override
+	public void startReplay(long superstep, Set<Integer> partitionIDs)
+			throws RemoteException {
+		System.out.println("WorkerImpl: startReplay " + partitionIDs
+				+ " from superstep " + superstep);
+		superstepLock.writeLock().lock();
+		try {
+			this.stashedMessages = this.currentIncomingMessages;
+			this.currentIncomingMessages = new ConcurrentHashMap<>();
+			this.stashedDoubleMessages = this.currentIncomingDoubleMessages;
+			this.currentIncomingDoubleMessages = new DoubleMessageStore();
+			enableSpilling(this.currentIncomingDoubleMessages);
+			this.startedSuperstep = superstep - 1;
+		} finally {
+			superstepLock.writeLock().unlock();
+		}
+		this.stashedPartitions = new ArrayList<>(this.nextPartitionQueue);
+		this.nextPartitionQueue.clear();
+		this.replayedPartitions = partitionIDs;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#replayMessages(long)
+	 */
+	@Override
+	public void replayMessages(long superstep) throws RemoteException {
+		Map<String, MessageBuffer> buffers;
+		try {
+			buffers = this.messageLog.read(superstep, this.replayedPartitions,
+					this.mapPartitionIdToWorkerId, combiner, doubleCombiner);
+		} catch (IOException | ClassNotFoundException e) {
+			throw new RemoteException("Messages of superstep " + superstep
+					+ " not replayed", e);
+		}
+		System.out.println("WorkerImpl: replayMessages " + superstep + " to "
+				+ buffers.keySet());
+		for (Entry<String, MessageBuffer> entry : buffers.entrySet()) {
+			Map<VertexID, List<Message>> messages = entry.getValue()
+					.takeMessages();
+			DoubleMessageStore doubleMessages = entry.getValue()
+					.takeDoubleMessages();
+			if (entry.getKey().equals(workerID)) {
+				if (messages != null) {
+					receiveMessage(new MessageBatch(messages), superstep);
+				}
+				if (doubleMessages != null) {
+					receiveDoubleMessages(doubleMessages, superstep);
+				}
+			} else {
+				if (messages != null) {
+					worker2WorkerProxy.sendMessage(entry.getKey(), messages,
+							superstep);
+				}
+				if (doubleMessages != null) {
+					worker2WorkerProxy.sendDoubleMessages(entry.getKey(),
+							doubleMessages, superstep);
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker#finishReplay(long)
+	 */
+	@Override
+	public void finishReplay(long superstep) throws RemoteException {
+		System.out.println("WorkerImpl: finishReplay " + superstep);
+		superstepLock.writeLock().lock();
+		try {
+			mergeMessages(this.currentIncomingMessages, this.stashedMessages);
+			this.currentIncomingDoubleMessages.addAll(
+					this.stashedDoubleMessages, doubleCombiner);
+			this.startedSuperstep = superstep - 1;
+			this.discardedSuperstep = Long.MAX_VALUE;
+		} finally {
+			superstepLock.writeLock().unlock();
+		}
+		this.nextPartitionQueue.addAll(this.stashedPartitions);
+		this.resetReplay();
+		this.superstepUndo.clear();
+		try {
+			// The recovered partitions are in no checkpoint file of this
+			// Worker yet, so the superstep is checkpointed before it is run
+			// again. The Master commits it as soon as every Worker returns.
+			if (!takeCheckpoint(superstep, false).write(checkpointIO)) {
+				throw new IOException("Checkpoint not written");
+			}
+		} catch (Exception e) {
+			System.out.println("checkpoint failure");
+			throw new RemoteException("Checkpoint of superstep " + superstep
+					+ " not written", e);
+		}
+	}
+
+	/**
+	 * Forgets the partitions being replayed and what was set aside for them.
+	 */
+	private void resetReplay() {
+		this.replayedPartitions = null;
+		this.stashedPartitions = null;
+		this.stashedMessages = null;
+		this.stashedDoubleMessages = null;
+	}
+
+	/**
+	 * Checks if messages to the partition are sent. During a replay, only the
+	 * replayed partitions are sent messages, since the other partitions
+	 * already received them.
+	 * 
+	 * @param partitionID
+	 *            the partition id
+	 * @return true, if messages to the partition are sent
+	 */
+	private boolean isReplayed(int partitionID) {
+		Set<Integer> partitionIDs = this.replayedPartitions;
+		return partitionIDs == null || partitionIDs.contains(partitionID);
+	}
+
+	/**
+	 * Saves the given vertices of the partition before they are computed, so
+	 * that the superstep can be rolled back. They are written to a file, since
+	 * a copy of every partition computed in the superstep would not fit in the
+	 * memory that the partition store and the message stores keep to. The
+	 * file is overwritten when the partition is computed again.
+	 * 
+	 * @param partition
+	 *            the partition
+	 * @param vertices
+	 *            the indices of the vertices to be computed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void saveUndo(Partition partition, BitSet vertices)
+			throws IOException {
+		File file = new File(this.undoDirectory, "partition_"
+				+ partition.getPartitionID());
+		ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file),
+						UNDO_BUFFER_SIZE));
+		try {
+			partition.writeChanges(out, (BitSet) vertices.clone());
+		} finally {
+			out.close();
+		}
+		this.superstepUndo.put(partition, file);
 	}
 
 	/** shutdown the worker */
@@ -694,6 +2364,7 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 */
 	public void writeOutput(String outputFilePath) throws RemoteException {
 		System.out.println("Printing the final state of the partitions");
+		awaitPartitionLoading();
 		Iterator<Partition> iter = nextPartitionQueue.iterator();
 		// Append the appropriate content to the output file.
 		StringBuilder contents = new StringBuilder();
@@ -710,11 +2381,32 @@ public class WorkerImpl extends UnicastRemoteObject implements Worker {
 	 */
 	@Override
 	public void updateCheckpointFile() throws RemoteException {
-		if (this.currentCheckpointFile != null) {
-			GeneralUtils.removeFile(this.currentCheckpointFile);
+		// A base replaces the checkpoint files before it, including the
+		// checkpoint file that the checkpoint taken during recovery was
+		// recovered from.
+		if (this.lastCheckpoint == null || this.lastCheckpoint.isBase()) {
+			for (String file : this.checkpointChain) {
+				if (!file.equals(this.nextCheckpointFile)) {
+					Checkpoint.delete(file);
+				}
+			}
+			if (this.currentCheckpointFile != null
+					&& !this.checkpointChain
+							.contains(this.currentCheckpointFile)
+					&& !this.currentCheckpointFile
+							.equals(this.nextCheckpointFile)) {
+				Checkpoint.delete(this.currentCheckpointFile);
+			}
+			this.checkpointChain.clear();
 		}
+		this.checkpointChain.add(this.nextCheckpointFile);
 		this.currentCheckpointFile = this.nextCheckpointFile;
+		// The messages sent before the checkpoint are never replayed.
+		if (this.messageLog != null && this.lastCheckpoint != null) {
+			this.messageLog.discardBefore(this.lastCheckpoint.getSuperstep());
+		}
 		System.out.println("WorkerImpl: Updating checkpoint file: "
 				+ this.currentCheckpointFile);
 	}
+
 }
\ No newline at end of file
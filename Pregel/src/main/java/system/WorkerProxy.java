@@ -1,7 +1,10 @@
 package system;
 
+import graphs.InputSplit;
+import graphs.PartitioningStrategy;
 import graphs.VertexID;
 
+import java.io.Serializable;
 import java.rmi.AccessException;
 import java.rmi.RemoteException;
 import java.util.List;
@@ -140,6 +143,17 @@ public class WorkerProxy implements Runnable, Worker2Master {
 		return numWorkerThreads;
 	}
 
+	/**
+	 * Gets the average time the Worker took to compute a partition.
+	 * 
+	 * @return the time in nanoseconds, or 0 if no partition has been computed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public long getPartitionComputeTime() throws RemoteException {
+		return worker.getPartitionComputeTime();
+	}
+
 	/**
 	 * Halts the worker and prints the final solution.
 	 * 
@@ -172,6 +186,29 @@ public class WorkerProxy implements Runnable, Worker2Master {
 		}
 	}
 
+	/**
+	 * Loads the partitions from the byte ranges of the input graph file.
+	 * 
+	 * @param graphFileName
+	 *            the graph file name
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 * @param inputSplits
+	 *            the byte ranges of the partitions assigned to the Worker
+	 */
+	public void loadPartitions(String graphFileName, String vertexClassName,
+			List<InputSplit> inputSplits) {
+		System.out.println("WorkerProxy: loadPartitions");
+		try {
+			totalPartitions += inputSplits.size();
+			worker.loadPartitions(graphFileName, vertexClassName, inputSplits);
+		} catch (RemoteException e) {
+			e.printStackTrace();
+			System.out.println("Remote Exception received from the Worker");
+			master.removeWorker(workerID);
+		}
+	}
+
 	/**
 	 * Sets the worker partition info.
 	 * 
@@ -189,6 +226,34 @@ public class WorkerProxy implements Runnable, Worker2Master {
 				mapPartitionIdToWorkerId, mapWorkerIdToWorker);
 	}
 
+	/**
+	 * Sets the strategy mapping the vertices to the partitions.
+	 * 
+	 * @param partitioningStrategy
+	 *            the partitioning strategy
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void setPartitioningStrategy(
+			PartitioningStrategy partitioningStrategy) throws RemoteException {
+		worker.setPartitioningStrategy(partitioningStrategy);
+	}
+
+	/**
+	 * Migrates a partition to another Worker.
+	 * 
+	 * @param partitionID
+	 *            the partition id
+	 * @param destination
+	 *            the Worker the partition is migrated to
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void migratePartition(int partitionID, Worker destination)
+			throws RemoteException {
+		worker.migratePartition(partitionID, destination);
+	}
+
 	/**
 	 * Gets the worker id.
 	 * 
@@ -213,13 +278,28 @@ public class WorkerProxy implements Runnable, Worker2Master {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see system.Worker2Master#superStepCompleted(java.lang.String,
-	 * java.util.Set)
+	 * @see system.Worker2Master#superStepCompleted(java.lang.String, long,
+	 * java.util.Set, java.util.Map, java.util.Map)
 	 */
 	@Override
-	public void superStepCompleted(String workerID, Set<String> activeWorkerSet)
-			throws RemoteException {
-		master.superStepCompleted(workerID, activeWorkerSet);
+	public void superStepCompleted(String workerID, long epoch,
+			Set<String> activeWorkerSet,
+			Map<String, Serializable> aggregatedValues,
+			Map<Integer, PartitionStats> partitionStats) throws RemoteException {
+		master.superStepCompleted(workerID, epoch, activeWorkerSet,
+				aggregatedValues, partitionStats);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see system.Worker2Master#checkpointCompleted(java.lang.String, long,
+	 * boolean)
+	 */
+	@Override
+	public void checkpointCompleted(String workerID, long superstep,
+			boolean success) throws RemoteException {
+		master.checkpointCompleted(workerID, superstep, success);
 	}
 
 	/**
@@ -227,11 +307,17 @@ public class WorkerProxy implements Runnable, Worker2Master {
 	 * 
 	 * @param superStepCounter
 	 *            the super step counter
+	 * @param epoch
+	 *            the epoch of the superstep, returned with its acknowledgment
+	 * @param aggregatedValues
+	 *            the values of the aggregators reduced in the previous
+	 *            superstep
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
-	public void startSuperStep(long superStepCounter) throws RemoteException {
-		this.worker.startSuperStep(superStepCounter);
+	public void startSuperStep(long superStepCounter, long epoch,
+			Map<String, Serializable> aggregatedValues) throws RemoteException {
+		this.worker.startSuperStep(superStepCounter, epoch, aggregatedValues);
 	}
 
 	/**
@@ -302,13 +388,85 @@ public class WorkerProxy implements Runnable, Worker2Master {
 	 *            the partition
 	 * @param messages
 	 *            the messages
+	 * @param doubleMessages
+	 *            the double valued messages
 	 * @throws RemoteException
 	 *             the remote exception
 	 */
 	public void addRecoveredData(Partition partition,
-			Map<VertexID, List<Message>> messages) throws RemoteException {
+			Map<VertexID, List<Message>> messages,
+			DoubleMessageStore.PartitionMessages doubleMessages)
+			throws RemoteException {
 		this.totalPartitions += 1;
-		this.worker.addRecoveredData(partition, messages);
+		this.worker.addRecoveredData(partition, messages, doubleMessages);
+	}
+
+	/**
+	 * Makes the worker read partitions of a failed Worker from its checkpoint
+	 * file.
+	 * 
+	 * @param checkpointFile
+	 *            the checkpoint file of the failed Worker
+	 * @param partitionIDs
+	 *            the partitions assigned to the worker
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void recoverPartitions(String checkpointFile,
+			List<Integer> partitionIDs) throws RemoteException {
+		this.totalPartitions += partitionIDs.size();
+		this.worker.recoverPartitions(checkpointFile, partitionIDs);
+	}
+
+	/**
+	 * Rolls back the superstep that failed.
+	 * 
+	 * @param superstep
+	 *            the superstep that failed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void rollbackSuperStep(long superstep) throws RemoteException {
+		this.worker.rollbackSuperStep(superstep);
+	}
+
+	/**
+	 * Starts the replay of the partitions of the failed Workers.
+	 * 
+	 * @param superstep
+	 *            the superstep of the checkpoint the replay starts from
+	 * @param partitionIDs
+	 *            the replayed partitions
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void startReplay(long superstep, Set<Integer> partitionIDs)
+			throws RemoteException {
+		this.worker.startReplay(superstep, partitionIDs);
+	}
+
+	/**
+	 * Sends the messages logged in a superstep to the replayed partitions.
+	 * 
+	 * @param superstep
+	 *            the superstep in which the messages were sent
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void replayMessages(long superstep) throws RemoteException {
+		this.worker.replayMessages(superstep);
+	}
+
+	/**
+	 * Finishes the replay.
+	 * 
+	 * @param superstep
+	 *            the superstep that failed
+	 * @throws RemoteException
+	 *             the remote exception
+	 */
+	public void finishReplay(long superstep) throws RemoteException {
+		this.worker.finishReplay(superstep);
 	}
 
 	/**
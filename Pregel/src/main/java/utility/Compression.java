@@ -0,0 +1,335 @@
+package utility;
+
+import exceptions.PropertyNotFoundException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compresses the serialized form of the messages and partitions sent between
+ * the Master and the Workers. The codec is chosen by the COMPRESSION property:
+ * none, deflate, lz, or the class name of a {@link Compressor}. The bodies
+ * smaller than COMPRESSION_THRESHOLD bytes, and the bodies that the codec
+ * does not shrink, are sent as they are. Every body records how it was
+ * written, so the receiver does not need the same configuration.
+ * 
+ * The sizes and the CPU time of the compression are kept per process, for the
+ * Master and the Workers to report.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class Compression {
+
+	/** The body follows directly in the stream. */
+	private static final byte INLINE = 0;
+
+	/** The body follows as an uncompressed block of bytes. */
+	private static final byte RAW = 1;
+
+	/** The body follows as a compressed block of bytes. */
+	private static final byte COMPRESSED = 2;
+
+	/** The name of the configured codec, or null if compression is off. */
+	private static String COMPRESSION;
+
+	/** The size in bytes from which the bodies are compressed. */
+	private static int COMPRESSION_THRESHOLD;
+
+	/** The codecs, keyed by name. */
+	private static ConcurrentHashMap<String, Compressor> compressors = new ConcurrentHashMap<>();
+
+	/** The thread bean used to measure the CPU time of the codecs. */
+	private static ThreadMXBean threadBean = ManagementFactory
+			.getThreadMXBean();
+
+	/** The size of the compressed bodies before compression. */
+	private static AtomicLong rawBytes = new AtomicLong();
+
+	/** The size of the compressed bodies after compression. */
+	private static AtomicLong compressedBytes = new AtomicLong();
+
+	/** The size of the bodies sent uncompressed. */
+	private static AtomicLong uncompressedBytes = new AtomicLong();
+
+	/** The CPU time spent compressing, in nanoseconds. */
+	private static AtomicLong compressionTime = new AtomicLong();
+
+	/** The CPU time spent decompressing, in nanoseconds. */
+	private static AtomicLong decompressionTime = new AtomicLong();
+
+	static {
+		try {
+			COMPRESSION = Props.getInstance()
+					.getStringProperty("COMPRESSION");
+			if (COMPRESSION.equalsIgnoreCase("none")) {
+				COMPRESSION = null;
+			}
+		} catch (PropertyNotFoundException e) {
+			/** do not compress by default **/
+			COMPRESSION = null;
+		}
+		try {
+			COMPRESSION_THRESHOLD = Props.getInstance().getIntProperty(
+					"COMPRESSION_THRESHOLD");
+		} catch (PropertyNotFoundException e) {
+			/** set to default threshold **/
+			COMPRESSION_THRESHOLD = 4096;
+		}
+		if (COMPRESSION != null && getCompressor(COMPRESSION) == null) {
+			COMPRESSION = null;
+		}
+	}
+
+	/**
+	 * Represents the writer of the body of a serialized object.
+	 */
+	public interface BodyWriter {
+
+		/**
+		 * Writes the body.
+		 * 
+		 * @param out
+		 *            Represents the output
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		public void write(ObjectOutput out) throws IOException;
+	}
+
+	/**
+	 * Represents a byte array output stream whose buffer can be read without
+	 * being copied.
+	 */
+	private static class BodyOutputStream extends ByteArrayOutputStream {
+
+		/**
+		 * Constructs the stream.
+		 */
+		private BodyOutputStream() {
+			super(8192);
+		}
+
+		/**
+		 * Gets the buffer, of which the first {@link #size()} bytes are
+		 * written.
+		 * 
+		 * @return the buffer
+		 */
+		private byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	/**
+	 * Gets the codec with the name.
+	 * 
+	 * @param name
+	 *            Represents deflate, lz, or the class name of the codec
+	 * @return Returns the codec, or null if the class could not be created
+	 */
+	public static Compressor getCompressor(String name) {
+		Compressor compressor = compressors.get(name);
+		if (compressor == null) {
+			if (name.equalsIgnoreCase("deflate")) {
+				compressor = new DeflateCompressor();
+			} else if (name.equalsIgnoreCase("lz")) {
+				compressor = new LZCompressor();
+			} else {
+				try {
+					compressor = Class.forName(name)
+							.asSubclass(Compressor.class)
+							.getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException | ClassCastException e) {
+					e.printStackTrace();
+					return null;
+				}
+			}
+			compressors.put(name, compressor);
+		}
+		return compressor;
+	}
+
+	/**
+	 * Writes the body of a serialized object, compressed if compression is on
+	 * and the body is large enough.
+	 * 
+	 * @param out
+	 *            Represents the output
+	 * @param writer
+	 *            Represents the writer of the body
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void write(ObjectOutput out, BodyWriter writer)
+			throws IOException {
+		if (COMPRESSION == null) {
+			out.writeByte(INLINE);
+			writer.write(out);
+			return;
+		}
+		BodyOutputStream bos = new BodyOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		writer.write(oos);
+		oos.close();
+		byte[] body = bos.getBuffer();
+		int length = bos.size();
+		if (length >= COMPRESSION_THRESHOLD) {
+			long startTime = getCpuTime();
+			byte[] compressed = getCompressor(COMPRESSION).compress(body,
+					length);
+			compressionTime.addAndGet(getCpuTime() - startTime);
+			if (compressed.length < length) {
+				rawBytes.addAndGet(length);
+				compressedBytes.addAndGet(compressed.length);
+				out.writeByte(COMPRESSED);
+				out.writeUTF(COMPRESSION);
+				Varint.writeUnsignedVarInt(out, length);
+				Varint.writeUnsignedVarInt(out, compressed.length);
+				out.write(compressed);
+				return;
+			}
+		}
+		uncompressedBytes.addAndGet(length);
+		out.writeByte(RAW);
+		Varint.writeUnsignedVarInt(out, length);
+		out.write(body, 0, length);
+	}
+
+	/**
+	 * Opens the body written by {@link #write(ObjectOutput, BodyWriter)}.
+	 * 
+	 * @param in
+	 *            Represents the input
+	 * @return Returns the input to read the body from
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ObjectInput read(ObjectInput in) throws IOException {
+		byte mode = in.readByte();
+		if (mode == INLINE) {
+			return in;
+		}
+		byte[] body;
+		if (mode == RAW) {
+			body = new byte[Varint.readUnsignedVarInt(in)];
+			in.readFully(body);
+		} else if (mode == COMPRESSED) {
+			String name = in.readUTF();
+			int length = Varint.readUnsignedVarInt(in);
+			byte[] compressed = new byte[Varint.readUnsignedVarInt(in)];
+			in.readFully(compressed);
+			Compressor compressor = getCompressor(name);
+			if (compressor == null) {
+				throw new IOException("Unknown compression " + name);
+			}
+			long startTime = getCpuTime();
+			body = compressor.decompress(compressed, length);
+			decompressionTime.addAndGet(getCpuTime() - startTime);
+		} else {
+			throw new IOException("Invalid compression mode " + mode);
+		}
+		return new ObjectInputStream(new ByteArrayInputStream(body));
+	}
+
+	/**
+	 * Gets the CPU time of the current thread, or the wall clock time if the
+	 * JVM does not measure it.
+	 * 
+	 * @return the time in nanoseconds
+	 */
+	private static long getCpuTime() {
+		return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean
+				.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	/**
+	 * Checks if compression is on.
+	 * 
+	 * @return true, if compression is on
+	 */
+	public static boolean isEnabled() {
+		return COMPRESSION != null;
+	}
+
+	/**
+	 * Gets the size of the compressed bodies before compression.
+	 * 
+	 * @return the size in bytes
+	 */
+	public static long getRawBytes() {
+		return rawBytes.get();
+	}
+
+	/**
+	 * Gets the size of the compressed bodies after compression.
+	 * 
+	 * @return the size in bytes
+	 */
+	public static long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * Gets the size of the bodies sent uncompressed, because they were below
+	 * the threshold or did not shrink.
+	 * 
+	 * @return the size in bytes
+	 */
+	public static long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * Gets the compression ratio of the compressed bodies.
+	 * 
+	 * @return the size before compression divided by the size after it, or 1
+	 *         if nothing was compressed
+	 */
+	public static double getCompressionRatio() {
+		long compressed = compressedBytes.get();
+		return compressed == 0 ? 1 : (double) rawBytes.get() / compressed;
+	}
+
+	/**
+	 * Gets the CPU time spent compressing.
+	 * 
+	 * @return the time in nanoseconds
+	 */
+	public static long getCompressionTime() {
+		return compressionTime.get();
+	}
+
+	/**
+	 * Gets the CPU time spent decompressing.
+	 * 
+	 * @return the time in nanoseconds
+	 */
+	public static long getDecompressionTime() {
+		return decompressionTime.get();
+	}
+
+	/**
+	 * Describes the compression metrics of the process.
+	 * 
+	 * @return the description
+	 */
+	public static String getMetrics() {
+		return String.format("compression %s: %d bytes compressed to %d "
+				+ "(ratio %.2f), %d bytes uncompressed, compression CPU %d "
+				+ "ms, decompression CPU %d ms", COMPRESSION, rawBytes.get(),
+				compressedBytes.get(), getCompressionRatio(),
+				uncompressedBytes.get(), compressionTime.get() / 1000000,
+				decompressionTime.get() / 1000000);
+	}
+}
@@ -0,0 +1,41 @@
+package utility;
+
+import java.io.IOException;
+
+/**
+ * Represents a codec that compresses the serialized form of the messages and
+ * partitions sent between the Master and the Workers. Implementations must be
+ * thread safe and have a public no argument constructor, so that they can be
+ * named by class in the configuration.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public interface Compressor {
+
+	/**
+	 * Compresses the data.
+	 * 
+	 * @param data
+	 *            Represents the buffer holding the data
+	 * @param length
+	 *            Represents the length of the data in the buffer
+	 * @return Returns the compressed data
+	 */
+	public byte[] compress(byte[] data, int length);
+
+	/**
+	 * Decompresses the data.
+	 * 
+	 * @param data
+	 *            Represents the compressed data
+	 * @param originalLength
+	 *            Represents the length of the data before it was compressed
+	 * @return Returns the data
+	 * @throws IOException
+	 *             Signals that the compressed data is corrupt
+	 */
+	public byte[] decompress(byte[] data, int originalLength)
+			throws IOException;
+}
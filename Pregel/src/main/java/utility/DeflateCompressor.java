@@ -0,0 +1,75 @@
+package utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses with the JDK deflate implementation at its fastest level, which
+ * gets most of the size reduction of the higher levels for the numeric data
+ * of the messages at a fraction of the CPU time.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class DeflateCompressor implements Compressor {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see utility.Compressor#compress(byte[], int)
+	 */
+	@Override
+	public byte[] compress(byte[] data, int length) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(
+					length / 2 + 64);
+			byte[] buffer = new byte[Math.min(Math.max(length, 64), 65536)];
+			while (!deflater.finished()) {
+				bos.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return bos.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see utility.Compressor#decompress(byte[], int)
+	 */
+	@Override
+	public byte[] decompress(byte[] data, int originalLength)
+			throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			byte[] result = new byte[originalLength];
+			int length = 0;
+			while (length < originalLength) {
+				int inflated = inflater.inflate(result, length, originalLength
+						- length);
+				if (inflated == 0
+						&& (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != originalLength) {
+				throw new IOException("Truncated deflate data");
+			}
+			return result;
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt deflate data", e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -8,14 +8,17 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.LinkedList;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import system.Edge;
+import api.Aggregator;
 import api.Vertex;
 import exceptions.InvalidVertexLineException;
 import exceptions.PropertyNotFoundException;
+import graphs.PartitioningStrategy;
+import graphs.RangePartitioningStrategy;
 import graphs.VertexID;
 
 /**
@@ -42,6 +45,9 @@ public class GeneralUtils {
 	/** The max vertices per partition. */
 	private static long maxVerticesPerPartition;
 
+	/** The strategy mapping the vertices to the partitions. */
+	private static volatile PartitioningStrategy partitioningStrategy;
+
 	static {
 		try {
 			sourceVertexDelimiter = props
@@ -54,12 +60,16 @@ public class GeneralUtils {
 		} catch (PropertyNotFoundException e) {
 			e.printStackTrace();
 		}
+		partitioningStrategy = new RangePartitioningStrategy(
+				maxVerticesPerPartition);
 	}
 
 	/**
 	 * generate vertex object from vertexLine <br>
 	 * vertexLine is of the form sourceVertex-Vertex1:Weight1,Vertex2:Weight2 <br>
-	 * Example : 1-2:10,3:15,4:12.
+	 * Example : 1-2:10,3:15,4:12. <br>
+	 * Bulk loaders should keep a {@link utility.VertexLineParser
+	 * VertexLineParser} and feed it bytes instead.
 	 * 
 	 * @param vertexLine
 	 *            the vertex line
@@ -71,24 +81,40 @@ public class GeneralUtils {
 	 */
 	public static Vertex generateVertex(String vertexLine,
 			String vertexClassName) throws InvalidVertexLineException {
+		return new VertexLineParser(vertexClassName).parse(vertexLine);
+	}
+
+	/**
+	 * generate vertex object from vertexLine by splitting it with the
+	 * configured delimiters, which may be regular expressions.
+	 * 
+	 * @param vertexLine
+	 *            the vertex line
+	 * @param vertexFactory
+	 *            the factory of the vertex class
+	 * @return vertex
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	static Vertex splitVertexLine(String vertexLine,
+			VertexFactory vertexFactory) throws InvalidVertexLineException {
 		if (vertexLine == null || vertexLine.length() == 0)
 			throw new InvalidVertexLineException(vertexLine,
 					"Vertex Line is Null");
 
-		Vertex vertex = null;
 		String[] vertexSplit = vertexLine.split(sourceVertexDelimiter);
 
 		// Source Vertex
 		long vertexIdentifier = Long.parseLong(vertexSplit[0]);
-		VertexID sourceVertex = new VertexID(
-				(int) (vertexIdentifier / maxVerticesPerPartition),
+		VertexID sourceVertex = new VertexID(getPartitionID(vertexIdentifier),
 				vertexIdentifier);
 
-		List<Edge> outGoingEdges = new LinkedList<Edge>();
+		List<Edge> outGoingEdges = new ArrayList<Edge>(0);
 		// A vertex may not have any outgoing edges.
 		if (vertexSplit.length > 1) {
 			// List of Edges
 			String[] edges = vertexSplit[1].split(edgesDelimiter);
+			outGoingEdges = new ArrayList<Edge>(edges.length);
 
 			String[] edgeData = null;
 			VertexID destVertex = null;
@@ -105,33 +131,41 @@ public class GeneralUtils {
 		}
 		// Create a new instance of the vertex class that the application
 		// programmer passes.
-		try {
-			Class<?> c = Class.forName(vertexClassName);
-			Constructor<?> constructor = c.getConstructor(VertexID.class,
-					List.class);
-			vertex = (Vertex) constructor.newInstance(new Object[] {
-					sourceVertex, outGoingEdges });
-
-		} catch (ClassNotFoundException | NoSuchMethodException
-				| SecurityException | InstantiationException
-				| IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			e.printStackTrace();
-		}
-		return vertex;
+		if (vertexFactory == null)
+			return null;
+		return vertexFactory.newVertex(sourceVertex, outGoingEdges);
 	}
 
 	/**
-	 * for a given vertexId, partitionId is computed and returned, partitionId
-	 * starts from 0.
+	 * for a given vertexId, partitionId is computed and returned by the
+	 * partitioning strategy, partitionId starts from 0.
 	 * 
 	 * @param vertexId
 	 *            , input vertedId for which PatitionId is computed
 	 * @return respective partition Id
 	 */
 	public static int getPartitionID(long vertexId) {
-		int partitionId = (int) (vertexId / maxVerticesPerPartition);
-		return partitionId;
+		return partitioningStrategy.getPartitionID(vertexId);
+	}
+
+	/**
+	 * Gets the strategy mapping the vertices to the partitions.
+	 * 
+	 * @return the partitioning strategy
+	 */
+	public static PartitioningStrategy getPartitioningStrategy() {
+		return partitioningStrategy;
+	}
+
+	/**
+	 * Sets the strategy mapping the vertices to the partitions. It has to be
+	 * the same in the Master and in every Worker.
+	 * 
+	 * @param strategy
+	 *            the partitioning strategy
+	 */
+	public static void setPartitioningStrategy(PartitioningStrategy strategy) {
+		partitioningStrategy = strategy;
 	}
 
 	/**
@@ -256,6 +290,32 @@ public class GeneralUtils {
 		f.delete();
 	}
 
+	/**
+	 * Aggregates a value into the values aggregated so far.
+	 * 
+	 * @param aggregators
+	 *            the aggregators of the application, by name
+	 * @param aggregatedValues
+	 *            the values aggregated so far, by aggregator name
+	 * @param name
+	 *            the name of the aggregator
+	 * @param value
+	 *            the value to aggregate
+	 */
+	@SuppressWarnings("unchecked")
+	public static void aggregate(Map<String, Aggregator<?>> aggregators,
+			Map<String, Serializable> aggregatedValues, String name,
+			Serializable value) {
+		Aggregator<Serializable> aggregator = aggregators == null ? null
+				: (Aggregator<Serializable>) aggregators.get(name);
+		if (aggregator == null) {
+			throw new IllegalArgumentException("Unknown aggregator " + name);
+		}
+		Serializable aggregatedValue = aggregatedValues.get(name);
+		aggregatedValues.put(name, aggregatedValue == null ? value
+				: aggregator.aggregate(aggregatedValue, value));
+	}
+
 	/**
 	 * The main method.
 	 * 
@@ -0,0 +1,215 @@
+package utility;
+
+import java.io.IOException;
+
+/**
+ * Compresses with a byte oriented LZ77 codec in the style of LZ4, which
+ * trades some compression ratio for compressing several times faster than
+ * deflate. Repeated sequences of at least four bytes are found through a hash
+ * table of the positions of the previous four byte sequences.
+ * 
+ * The compressed data is a series of sequences. A sequence starts with a token
+ * whose high four bits are the number of literals and whose low four bits are
+ * the match length minus four; a value of 15 is continued in the following
+ * bytes, each adding up to 255. The literals follow, then the two byte little
+ * endian offset of the match and the rest of the match length. The last
+ * sequence only has literals.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class LZCompressor implements Compressor {
+
+	/** The minimum length of a match. */
+	private static final int MIN_MATCH = 4;
+
+	/** The maximum distance of a match. */
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	/** The number of bits of the hash of a four byte sequence. */
+	private static final int HASH_BITS = 14;
+
+	/** The largest value kept in the four bits of a token. */
+	private static final int RUN_MASK = 15;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see utility.Compressor#compress(byte[], int)
+	 */
+	@Override
+	public byte[] compress(byte[] data, int length) {
+		byte[] result = new byte[length + length / 255 + 16];
+		// Positions plus one of the last sequence with each hash.
+		int[] table = new int[1 << HASH_BITS];
+		int resultLength = 0;
+		int anchor = 0;
+		int position = 0;
+		while (position <= length - MIN_MATCH) {
+			int sequence = readInt(data, position);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+			int match = table[hash] - 1;
+			table[hash] = position + 1;
+			if (match < 0 || position - match > MAX_OFFSET
+					|| readInt(data, match) != sequence) {
+				position++;
+				continue;
+			}
+			int matchLength = MIN_MATCH;
+			while (position + matchLength < length
+					&& data[match + matchLength] == data[position
+							+ matchLength]) {
+				matchLength++;
+			}
+			resultLength = writeSequence(result, resultLength, data, anchor,
+					position - anchor, position - match, matchLength);
+			position += matchLength;
+			anchor = position;
+		}
+		resultLength = writeSequence(result, resultLength, data, anchor,
+				length - anchor, 0, 0);
+		byte[] trimmed = new byte[resultLength];
+		System.arraycopy(result, 0, trimmed, 0, resultLength);
+		return trimmed;
+	}
+
+	/**
+	 * Writes a sequence of literals followed by a match.
+	 * 
+	 * @param result
+	 *            Represents the compressed data
+	 * @param resultLength
+	 *            Represents the length of the compressed data
+	 * @param data
+	 *            Represents the data
+	 * @param literalStart
+	 *            Represents the position of the literals in the data
+	 * @param literalLength
+	 *            Represents the number of literals
+	 * @param offset
+	 *            Represents the distance of the match
+	 * @param matchLength
+	 *            Represents the length of the match, or 0 for the last
+	 *            sequence
+	 * @return Returns the length of the compressed data
+	 */
+	private static int writeSequence(byte[] result, int resultLength,
+			byte[] data, int literalStart, int literalLength, int offset,
+			int matchLength) {
+		int tokenPosition = resultLength++;
+		int token = Math.min(literalLength, RUN_MASK) << 4;
+		if (literalLength >= RUN_MASK) {
+			resultLength = writeLength(result, resultLength, literalLength
+					- RUN_MASK);
+		}
+		System.arraycopy(data, literalStart, result, resultLength,
+				literalLength);
+		resultLength += literalLength;
+		if (matchLength > 0) {
+			result[resultLength++] = (byte) offset;
+			result[resultLength++] = (byte) (offset >>> 8);
+			int length = matchLength - MIN_MATCH;
+			token |= Math.min(length, RUN_MASK);
+			if (length >= RUN_MASK) {
+				resultLength = writeLength(result, resultLength, length
+						- RUN_MASK);
+			}
+		}
+		result[tokenPosition] = (byte) token;
+		return resultLength;
+	}
+
+	/**
+	 * Writes the continuation of a length that did not fit in its token.
+	 * 
+	 * @param result
+	 *            Represents the compressed data
+	 * @param resultLength
+	 *            Represents the length of the compressed data
+	 * @param length
+	 *            Represents the rest of the length
+	 * @return Returns the length of the compressed data
+	 */
+	private static int writeLength(byte[] result, int resultLength, int length) {
+		while (length >= 255) {
+			result[resultLength++] = (byte) 255;
+			length -= 255;
+		}
+		result[resultLength++] = (byte) length;
+		return resultLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see utility.Compressor#decompress(byte[], int)
+	 */
+	@Override
+	public byte[] decompress(byte[] data, int originalLength)
+			throws IOException {
+		byte[] result = new byte[originalLength];
+		int position = 0;
+		int resultLength = 0;
+		try {
+			while (true) {
+				int token = data[position++] & 0xFF;
+				int literalLength = token >>> 4;
+				if (literalLength == RUN_MASK) {
+					int b;
+					do {
+						b = data[position++] & 0xFF;
+						literalLength += b;
+					} while (b == 255);
+				}
+				System.arraycopy(data, position, result, resultLength,
+						literalLength);
+				position += literalLength;
+				resultLength += literalLength;
+				if (position == data.length) {
+					break;
+				}
+				int offset = (data[position++] & 0xFF)
+						| (data[position++] & 0xFF) << 8;
+				int matchLength = token & RUN_MASK;
+				if (matchLength == RUN_MASK) {
+					int b;
+					do {
+						b = data[position++] & 0xFF;
+						matchLength += b;
+					} while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+				int match = resultLength - offset;
+				if (offset == 0 || match < 0) {
+					throw new IOException("Corrupt LZ data");
+				}
+				// The match may overlap the bytes it produces.
+				for (int i = 0; i < matchLength; i++) {
+					result[resultLength++] = result[match + i];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ data", e);
+		}
+		if (resultLength != originalLength) {
+			throw new IOException("Truncated LZ data");
+		}
+		return result;
+	}
+
+	/**
+	 * Reads four bytes as an integer.
+	 * 
+	 * @param data
+	 *            Represents the data
+	 * @param position
+	 *            Represents the position of the bytes
+	 * @return Returns the integer
+	 */
+	private static int readInt(byte[] data, int position) {
+		return (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8
+				| (data[position + 2] & 0xFF) << 16
+				| (data[position + 3] & 0xFF) << 24;
+	}
+}
@@ -0,0 +1,119 @@
+package utility;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads integers in the variable length encoding, which stores
+ * seven bits per byte and uses the high bit of a byte to mark that more bytes
+ * follow. Small values, such as vertex identifiers delta encoded against the
+ * previous identifier, take one or two bytes instead of eight. Signed values
+ * are zigzag encoded first, so that small negative values stay short as well.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class Varint {
+
+	/**
+	 * Writes an unsigned value.
+	 * 
+	 * @param out
+	 *            Represents the output
+	 * @param value
+	 *            Represents the value, treated as unsigned
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void writeUnsignedVarLong(DataOutput out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads an unsigned value.
+	 * 
+	 * @param in
+	 *            Represents the input
+	 * @return Returns the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long readUnsignedVarLong(DataInput in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 63) {
+				throw new IOException("Malformed variable length integer");
+			}
+			b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Writes a signed value.
+	 * 
+	 * @param out
+	 *            Represents the output
+	 * @param value
+	 *            Represents the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void writeSignedVarLong(DataOutput out, long value)
+			throws IOException {
+		writeUnsignedVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads a signed value.
+	 * 
+	 * @param in
+	 *            Represents the input
+	 * @return Returns the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static long readSignedVarLong(DataInput in) throws IOException {
+		long value = readUnsignedVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes an unsigned int value.
+	 * 
+	 * @param out
+	 *            Represents the output
+	 * @param value
+	 *            Represents the value, treated as unsigned
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void writeUnsignedVarInt(DataOutput out, int value)
+			throws IOException {
+		writeUnsignedVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Reads an unsigned int value.
+	 * 
+	 * @param in
+	 *            Represents the input
+	 * @return Returns the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static int readUnsignedVarInt(DataInput in) throws IOException {
+		return (int) readUnsignedVarLong(in);
+	}
+}
@@ -0,0 +1,88 @@
+package utility;
+
+import graphs.VertexID;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import system.Edge;
+import api.Vertex;
+
+/**
+ * Creates the vertices of an application specific vertex class. The
+ * constructor of the class is resolved once and kept as a method handle, so
+ * no reflective lookup happens per vertex.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class VertexFactory {
+
+	/** The factories, keyed by vertex class name. */
+	private static ConcurrentHashMap<String, VertexFactory> factories = new ConcurrentHashMap<>();
+
+	/** The constructor of the vertex class. */
+	private final MethodHandle constructor;
+
+	/**
+	 * Constructs the vertex factory.
+	 * 
+	 * @param constructor
+	 *            the constructor of the vertex class
+	 */
+	private VertexFactory(MethodHandle constructor) {
+		this.constructor = constructor;
+	}
+
+	/**
+	 * Gets the factory of the vertex class.
+	 * 
+	 * @param vertexClassName
+	 *            the vertex class name
+	 * @return the vertex factory, or null if the class does not have a public
+	 *         (VertexID, List) constructor
+	 */
+	public static VertexFactory getInstance(String vertexClassName) {
+		VertexFactory factory = factories.get(vertexClassName);
+		if (factory == null) {
+			try {
+				Class<?> c = Class.forName(vertexClassName);
+				MethodHandle constructor = MethodHandles
+						.publicLookup()
+						.findConstructor(c,
+								MethodType.methodType(void.class,
+										VertexID.class, List.class))
+						.asType(MethodType.methodType(Vertex.class,
+								VertexID.class, List.class));
+				factory = new VertexFactory(constructor);
+				factories.put(vertexClassName, factory);
+			} catch (ClassNotFoundException | NoSuchMethodException
+					| IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		return factory;
+	}
+
+	/**
+	 * Creates a new vertex.
+	 * 
+	 * @param vertexID
+	 *            the vertex id
+	 * @param outgoingEdges
+	 *            the outgoing edges
+	 * @return the vertex, or null if the constructor failed
+	 */
+	public Vertex newVertex(VertexID vertexID, List<Edge> outgoingEdges) {
+		try {
+			return (Vertex) constructor.invokeExact(vertexID, outgoingEdges);
+		} catch (Throwable e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,580 @@
+package utility;
+
+import graphs.VertexID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import system.PackedEdgeList;
+import api.Vertex;
+import exceptions.InvalidVertexLineException;
+import exceptions.PropertyNotFoundException;
+
+/**
+ * Parses vertex lines of the form
+ * sourceVertex-Vertex1:Weight1,Vertex2:Weight2 directly from bytes. The
+ * identifiers and weights are decoded in place, without creating intermediate
+ * strings, and the vertex is created through a {@link utility.VertexFactory
+ * VertexFactory}, so the vertex constructor is resolved only once. <br>
+ * A parser reuses its buffers between lines and must not be shared between
+ * threads.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class VertexLineParser {
+
+	/** The props. */
+	private static Props props = Props.getInstance();
+
+	/** The source vertex delimiter, as a regular expression. */
+	private static String sourceVertexRegex;
+
+	/** The edges delimiter, as a regular expression. */
+	private static String edgesRegex;
+
+	/** The vertex weight delimiter, as a regular expression. */
+	private static String vertexWeightRegex;
+
+	/** The source vertex delimiter. */
+	private static byte sourceVertexDelimiter;
+
+	/** The edges delimiter. */
+	private static byte edgesDelimiter;
+
+	/** The vertex weight delimiter. */
+	private static byte vertexWeightDelimiter;
+
+	/**
+	 * Indicates whether all the delimiters are single ASCII characters. If not,
+	 * the lines are split with the regular expressions instead.
+	 */
+	private static boolean byteDelimited;
+
+	/** The powers of ten that are exactly representable as a double. */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/** The largest integer whose every value is exactly a double. */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	static {
+		try {
+			sourceVertexRegex = props
+					.getStringProperty("VERTEX_LIST_SEPARATOR");
+			edgesRegex = props.getStringProperty("LIST_VERTEX_SEPARATOR");
+			vertexWeightRegex = props
+					.getStringProperty("LIST_VERTEX_WEIGHT_SEPARATOR");
+			byteDelimited = isSingleByte(sourceVertexRegex)
+					&& isSingleByte(edgesRegex)
+					&& isSingleByte(vertexWeightRegex);
+			if (byteDelimited) {
+				sourceVertexDelimiter = (byte) sourceVertexRegex.charAt(0);
+				edgesDelimiter = (byte) edgesRegex.charAt(0);
+				vertexWeightDelimiter = (byte) vertexWeightRegex.charAt(0);
+			}
+		} catch (PropertyNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** The vertex class name. */
+	private String vertexClassName;
+
+	/** The vertex factory. */
+	private VertexFactory vertexFactory;
+
+	/** The destination vertex identifiers of the current line. */
+	private long[] destinationIDs = new long[16];
+
+	/** The edge weights of the current line. */
+	private double[] weights = new double[16];
+
+	/** The bytes of the line read by {@link #readVertex(InputStream)}. */
+	private byte[] line = new byte[256];
+
+	/** The source vertex identifier of the current line. */
+	private long sourceID;
+
+	/** The number of edges of the current line. */
+	private int numEdges;
+
+	/** The current position while parsing a line. */
+	private int position;
+
+	/**
+	 * Constructs a vertex line parser that only scans lines, through
+	 * {@link #scan(byte[], int, int)} and {@link #scanNext(InputStream)}.
+	 */
+	public VertexLineParser() {
+	}
+
+	/**
+	 * Constructs the vertex line parser.
+	 * 
+	 * @param vertexClassName
+	 *            the application specific vertex class name
+	 */
+	public VertexLineParser(String vertexClassName) {
+		this.vertexClassName = vertexClassName;
+		this.vertexFactory = VertexFactory.getInstance(vertexClassName);
+	}
+
+	/**
+	 * Checks whether the delimiter is a single ASCII character.
+	 * 
+	 * @param delimiter
+	 *            the delimiter
+	 * @return true, if the delimiter is a single ASCII character
+	 */
+	private static boolean isSingleByte(String delimiter) {
+		return delimiter.length() == 1 && delimiter.charAt(0) < 0x80;
+	}
+
+	/**
+	 * Parses the vertex line.
+	 * 
+	 * @param vertexLine
+	 *            the vertex line
+	 * @return the vertex
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public Vertex parse(String vertexLine) throws InvalidVertexLineException {
+		if (vertexLine == null || vertexLine.length() == 0)
+			throw new InvalidVertexLineException(vertexLine,
+					"Vertex Line is Null");
+		byte[] bytes = vertexLine.getBytes(StandardCharsets.US_ASCII);
+		return parse(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Parses the vertex line stored in buffer[start] to buffer[end - 1]. A
+	 * trailing carriage return is ignored.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the index of the first byte of the line
+	 * @param end
+	 *            the index after the last byte of the line
+	 * @return the vertex
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public Vertex parse(byte[] buffer, int start, int end)
+			throws InvalidVertexLineException {
+		scan(buffer, start, end);
+		return createVertex();
+	}
+
+	/**
+	 * Scans the vertex line stored in buffer[start] to buffer[end - 1] without
+	 * creating a vertex. The source vertex and its edges are then available
+	 * through {@link #getSourceID()}, {@link #getNumEdges()},
+	 * {@link #getDestinationID(int)} and {@link #getWeight(int)} until the next
+	 * line is scanned.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the index of the first byte of the line
+	 * @param end
+	 *            the index after the last byte of the line
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public void scan(byte[] buffer, int start, int end)
+			throws InvalidVertexLineException {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		if (start >= end)
+			throw new InvalidVertexLineException("", "Vertex Line is Null");
+		numEdges = 0;
+		if (!byteDelimited) {
+			scanSplit(new String(buffer, start, end - start,
+					StandardCharsets.US_ASCII));
+			return;
+		}
+
+		// Source Vertex
+		position = start;
+		sourceID = parseLong(buffer, start, end);
+
+		// A vertex may not have any outgoing edges.
+		if (position < end) {
+			if (buffer[position] != sourceVertexDelimiter)
+				throw invalidLine(buffer, start, end);
+			position++;
+			while (position < end) {
+				long destinationID = parseLong(buffer, start, end);
+				if (position == end
+						|| buffer[position] != vertexWeightDelimiter)
+					throw invalidLine(buffer, start, end);
+				position++;
+				addEdge(destinationID, parseDouble(buffer, start, end));
+				if (position < end) {
+					if (buffer[position] != edgesDelimiter)
+						throw invalidLine(buffer, start, end);
+					position++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads and scans the next non-empty vertex line of the input stream. The
+	 * stream should be buffered.
+	 * 
+	 * @param in
+	 *            the input stream
+	 * @return true, if a line was scanned, or false at the end of the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 * @see #scan(byte[], int, int)
+	 */
+	public boolean scanNext(InputStream in) throws IOException,
+			InvalidVertexLineException {
+		int length;
+		do {
+			length = readLine(in);
+			if (length < 0) {
+				return false;
+			}
+		} while (length == 0 || (length == 1 && line[0] == '\r'));
+		scan(line, 0, length);
+		return true;
+	}
+
+	/**
+	 * Gets the source vertex identifier of the last scanned line.
+	 * 
+	 * @return the source vertex identifier
+	 */
+	public long getSourceID() {
+		return sourceID;
+	}
+
+	/**
+	 * Gets the number of edges of the last scanned line.
+	 * 
+	 * @return the number of edges
+	 */
+	public int getNumEdges() {
+		return numEdges;
+	}
+
+	/**
+	 * Gets the destination vertex identifier of an edge of the last scanned
+	 * line.
+	 * 
+	 * @param index
+	 *            the index of the edge
+	 * @return the destination vertex identifier
+	 */
+	public long getDestinationID(int index) {
+		return destinationIDs[index];
+	}
+
+	/**
+	 * Gets the weight of an edge of the last scanned line.
+	 * 
+	 * @param index
+	 *            the index of the edge
+	 * @return the edge weight
+	 */
+	public double getWeight(int index) {
+		return weights[index];
+	}
+
+	/**
+	 * Scans the vertex line by splitting it with the configured delimiters,
+	 * which may be regular expressions.
+	 * 
+	 * @param vertexLine
+	 *            the vertex line
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	private void scanSplit(String vertexLine) throws InvalidVertexLineException {
+		try {
+			String[] vertexSplit = vertexLine.split(sourceVertexRegex);
+			sourceID = Long.parseLong(vertexSplit[0]);
+			if (vertexSplit.length > 1) {
+				for (String edge : vertexSplit[1].split(edgesRegex)) {
+					String[] edgeData = edge.split(vertexWeightRegex);
+					addEdge(Long.parseLong(edgeData[0]),
+							Double.parseDouble(edgeData[1]));
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new InvalidVertexLineException(vertexLine,
+					"Invalid Vertex Line");
+		}
+	}
+
+	/**
+	 * Adds an edge to the edges of the current line.
+	 * 
+	 * @param destinationID
+	 *            the destination vertex identifier
+	 * @param weight
+	 *            the edge weight
+	 */
+	private void addEdge(long destinationID, double weight) {
+		if (numEdges == destinationIDs.length) {
+			destinationIDs = Arrays.copyOf(destinationIDs, numEdges * 2);
+			weights = Arrays.copyOf(weights, numEdges * 2);
+		}
+		destinationIDs[numEdges] = destinationID;
+		weights[numEdges] = weight;
+		numEdges++;
+	}
+
+	/**
+	 * Creates the vertex of the last scanned line.
+	 * 
+	 * @return the vertex
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	private Vertex createVertex() throws InvalidVertexLineException {
+		if (vertexFactory == null)
+			throw new InvalidVertexLineException(vertexClassName,
+					"Vertex class cannot be instantiated");
+		VertexID sourceVertex = new VertexID(
+				GeneralUtils.getPartitionID(sourceID), sourceID);
+		Vertex vertex = vertexFactory.newVertex(sourceVertex,
+				new PackedEdgeList(sourceVertex, Arrays.copyOf(
+						destinationIDs, numEdges), Arrays.copyOf(weights,
+						numEdges)));
+		if (vertex == null)
+			throw new InvalidVertexLineException(vertexClassName,
+					"Vertex class cannot be instantiated");
+		return vertex;
+	}
+
+	/**
+	 * Parses all the vertex lines stored in buffer[start] to buffer[end - 1].
+	 * Empty lines are skipped.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the index of the first byte
+	 * @param end
+	 *            the index after the last byte
+	 * @param vertexMap
+	 *            the map the parsed vertices are added to
+	 * @return the number of vertices parsed
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public int parseLines(byte[] buffer, int start, int end,
+			Map<VertexID, Vertex> vertexMap) throws InvalidVertexLineException {
+		int numVertices = 0;
+		int lineStart = start;
+		while (lineStart < end) {
+			int lineEnd = lineStart;
+			while (lineEnd < end && buffer[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			if (lineEnd > lineStart
+					&& !(lineEnd == lineStart + 1 && buffer[lineStart] == '\r')) {
+				Vertex vertex = parse(buffer, lineStart, lineEnd);
+				vertexMap.put(vertex.getID(), vertex);
+				numVertices++;
+			}
+			lineStart = lineEnd + 1;
+		}
+		return numVertices;
+	}
+
+	/**
+	 * Reads and parses the next non-empty vertex line of the input stream. The
+	 * stream should be buffered.
+	 * 
+	 * @param in
+	 *            the input stream
+	 * @return the vertex, or null at the end of the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	public Vertex readVertex(InputStream in) throws IOException,
+			InvalidVertexLineException {
+		return scanNext(in) ? createVertex() : null;
+	}
+
+	/**
+	 * Reads the next line of the input stream into the line buffer.
+	 * 
+	 * @param in
+	 *            the input stream
+	 * @return the length of the line, or -1 at the end of the stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int readLine(InputStream in) throws IOException {
+		int length = 0;
+		int b;
+		while ((b = in.read()) != -1 && b != '\n') {
+			if (length == line.length) {
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = (byte) b;
+		}
+		if (b == -1 && length == 0) {
+			return -1;
+		}
+		return length;
+	}
+
+	/**
+	 * Parses the non-negative decimal integer at the current position.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the start of the line, used for error reporting
+	 * @param end
+	 *            the end of the line
+	 * @return the integer
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	private long parseLong(byte[] buffer, int start, int end)
+			throws InvalidVertexLineException {
+		int first = position;
+		long value = 0;
+		while (position < end) {
+			int digit = buffer[position] - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			if (value > (Long.MAX_VALUE - digit) / 10)
+				throw invalidLine(buffer, start, end);
+			value = value * 10 + digit;
+			position++;
+		}
+		if (position == first)
+			throw invalidLine(buffer, start, end);
+		return value;
+	}
+
+	/**
+	 * Parses the decimal number at the current position, which extends up to
+	 * the next edges delimiter or the end of the line. Numbers with at most 15
+	 * significant digits and a small exponent, such as the ones written by the
+	 * input generator, are computed exactly from the digits; any other form is
+	 * handed over to {@link java.lang.Double#parseDouble(String)}.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the start of the line, used for error reporting
+	 * @param end
+	 *            the end of the line
+	 * @return the number
+	 * @throws InvalidVertexLineException
+	 *             the invalid vertex line exception
+	 */
+	private double parseDouble(byte[] buffer, int start, int end)
+			throws InvalidVertexLineException {
+		int first = position;
+		int last = first;
+		while (last < end && buffer[last] != edgesDelimiter) {
+			last++;
+		}
+		int i = first;
+		boolean negative = false;
+		if (i < last && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int numDigits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		for (; i < last; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				seenDigit = true;
+				if (mantissa != 0 || b != '0') {
+					if (++numDigits > 18) {
+						break;
+					}
+					mantissa = mantissa * 10 + (b - '0');
+				}
+				if (seenPoint) {
+					exponent--;
+				}
+			} else if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (seenDigit && i < last && (buffer[i] == 'E' || buffer[i] == 'e')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < last && (buffer[i] == '-' || buffer[i] == '+')) {
+				negativeExponent = buffer[i] == '-';
+				i++;
+			}
+			int exponentValue = 0;
+			int exponentStart = i;
+			while (i < last && buffer[i] >= '0' && buffer[i] <= '9'
+					&& exponentValue < 1000) {
+				exponentValue = exponentValue * 10 + (buffer[i] - '0');
+				i++;
+			}
+			if (i == exponentStart) {
+				seenDigit = false;
+			}
+			exponent += negativeExponent ? -exponentValue : exponentValue;
+		}
+		position = last;
+		if (seenDigit && i == last && mantissa <= MAX_EXACT_MANTISSA
+				&& exponent >= -22 && exponent <= 22) {
+			// Both operands are exact, so the single rounding of the product or
+			// quotient gives the correctly rounded result.
+			double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+					: mantissa / POWERS_OF_TEN[-exponent];
+			return negative ? -value : value;
+		}
+		try {
+			return Double.parseDouble(new String(buffer, first, last - first,
+					StandardCharsets.US_ASCII));
+		} catch (NumberFormatException e) {
+			throw invalidLine(buffer, start, end);
+		}
+	}
+
+	/**
+	 * Creates the exception for an invalid vertex line.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param start
+	 *            the start of the line
+	 * @param end
+	 *            the end of the line
+	 * @return the invalid vertex line exception
+	 */
+	private static InvalidVertexLineException invalidLine(byte[] buffer,
+			int start, int end) {
+		return new InvalidVertexLineException(new String(buffer, start, end
+				- start, StandardCharsets.US_ASCII), "Invalid Vertex Line");
+	}
+}
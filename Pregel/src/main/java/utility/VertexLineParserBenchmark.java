@@ -0,0 +1,101 @@
+package utility;
+
+import graphs.VertexID;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import api.Vertex;
+
+/**
+ * Compares the ingest throughput of the string splitting parser of
+ * {@link utility.GeneralUtils GeneralUtils} with that of the byte level
+ * {@link utility.VertexLineParser VertexLineParser}.
+ * 
+ * @author Prakash Chandrasekaran
+ * @author Gautham Narayanasamy
+ * @author Vijayaraghavan Subbaiah
+ */
+public class VertexLineParserBenchmark {
+
+	/**
+	 * Measures the ingest throughput of the string splitting parser and of the
+	 * byte level parser in lines per second. The vertex lines are read from
+	 * the graph file if one is given, otherwise a random graph is generated in
+	 * memory.
+	 * 
+	 * @param args
+	 *            the vertex class name, and optionally the graph file name
+	 * @throws Exception
+	 *             the exception
+	 */
+	public static void main(String args[]) throws Exception {
+		String vertexClassName = args.length > 0 ? args[0]
+				: "applications.ShortestPathVertex";
+		byte[] input;
+		if (args.length > 1) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (InputStream in = new BufferedInputStream(new FileInputStream(
+					args[1]))) {
+				// Skip the number of vertices in the first line.
+				int b;
+				while ((b = in.read()) != -1 && b != '\n')
+					;
+				byte[] chunk = new byte[65536];
+				int read;
+				while ((read = in.read(chunk)) != -1) {
+					bytes.write(chunk, 0, read);
+				}
+			}
+			input = bytes.toByteArray();
+		} else {
+			StringBuilder builder = new StringBuilder();
+			Random random = new Random(1);
+			for (int i = 0; i < 200000; i++) {
+				builder.append(i).append('-');
+				for (int j = 0; j < 10; j++) {
+					if (j > 0) {
+						builder.append(',');
+					}
+					builder.append(random.nextInt(200000)).append(':')
+							.append(1 + random.nextInt(100)).append(".0");
+				}
+				builder.append('\n');
+			}
+			input = builder.toString().getBytes(StandardCharsets.US_ASCII);
+		}
+		String[] lines = new String(input, StandardCharsets.US_ASCII)
+				.split("\n");
+		VertexFactory factory = VertexFactory.getInstance(vertexClassName);
+		VertexLineParser parser = new VertexLineParser(vertexClassName);
+		for (int run = 0; run < 5; run++) {
+			Map<VertexID, Vertex> vertexMap = new HashMap<>();
+			long startTime = System.nanoTime();
+			for (String vertexLine : lines) {
+				if (vertexLine.length() > 0) {
+					Vertex vertex = GeneralUtils.splitVertexLine(vertexLine,
+							factory);
+					vertexMap.put(vertex.getID(), vertex);
+				}
+			}
+			long splitTime = System.nanoTime() - startTime;
+
+			vertexMap = new HashMap<>();
+			startTime = System.nanoTime();
+			int numLines = parser.parseLines(input, 0, input.length,
+					vertexMap);
+			long byteTime = System.nanoTime() - startTime;
+
+			System.out.println("Run " + run + ": " + numLines + " lines"
+					+ ", string split " + (long) (numLines * 1e9 / splitTime)
+					+ " lines/sec" + ", byte parser "
+					+ (long) (numLines * 1e9 / byteTime) + " lines/sec");
+		}
+	}
+}